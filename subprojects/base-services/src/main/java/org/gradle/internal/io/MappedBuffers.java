@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Releases the memory mapping of a {@link MappedByteBuffer} without waiting for the buffer to be garbage collected.
+ *
+ * The JDK offers no public API for this, so the mapping is released through the buffer's cleaner, when the running JVM allows it.
+ * The buffer must not be used by any thread once it has been released.
+ */
+public abstract class MappedBuffers {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedBuffers.class);
+    private static final Releaser RELEASER = createReleaser();
+
+    /**
+     * Returns whether mappings can be released explicitly by this JVM.
+     */
+    public static boolean canRelease() {
+        return RELEASER != null;
+    }
+
+    /**
+     * Releases the mapping of the given buffer. Does nothing when this JVM does not allow mappings to be released explicitly,
+     * in which case the mapping is released once the buffer is garbage collected.
+     */
+    public static void release(MappedByteBuffer buffer) {
+        if (RELEASER == null) {
+            return;
+        }
+        try {
+            RELEASER.release(buffer);
+        } catch (Exception e) {
+            LOGGER.debug("Could not release mapped buffer.", e);
+        }
+    }
+
+    private static Releaser createReleaser() {
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", java.nio.ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            final Object unsafe = theUnsafe.get(null);
+            return new Releaser() {
+                @Override
+                public void release(MappedByteBuffer buffer) throws Exception {
+                    invokeCleaner.invoke(unsafe, buffer);
+                }
+            };
+        } catch (Exception e) {
+            // Fall through
+        }
+        try {
+            // Java 8
+            final Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            final Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return new Releaser() {
+                @Override
+                public void release(MappedByteBuffer buffer) throws Exception {
+                    Object bufferCleaner = cleaner.invoke(buffer);
+                    if (bufferCleaner != null) {
+                        clean.invoke(bufferCleaner);
+                    }
+                }
+            };
+        } catch (Exception e) {
+            LOGGER.debug("Mapped buffers cannot be released explicitly by this JVM.", e);
+            return null;
+        }
+    }
+
+    private interface Releaser {
+        void release(MappedByteBuffer buffer) throws Exception;
+    }
+}
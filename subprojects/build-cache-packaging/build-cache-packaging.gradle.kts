@@ -33,6 +33,8 @@ dependencies {
     implementation(library("commons_io"))
 
     testImplementation(project(":internalTesting"))
+
+    jmh(project(":native"))
 }
 
 gradlebuildJava {
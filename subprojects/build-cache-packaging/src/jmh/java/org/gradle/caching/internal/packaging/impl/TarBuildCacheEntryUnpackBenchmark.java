@@ -0,0 +1,165 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginMetadata;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.file.TreeType;
+import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.id.UniqueId;
+import org.gradle.internal.nativeintegration.services.FileSystems;
+import org.gradle.internal.nativeintegration.services.NativeServices;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unpacks a synthetic entry of 50,000 small files, writing the files sequentially or in parallel.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class TarBuildCacheEntryUnpackBenchmark {
+    private static final int DIRECTORY_COUNT = 500;
+    private static final int FILES_PER_DIRECTORY = 100;
+    private static final int MAX_FILE_SIZE = 8 * 1024;
+
+    @Param({"sequential", "parallel"})
+    String mode;
+
+    private File tempDir;
+    private File targetDir;
+    private byte[] entry;
+    private DefaultExecutorFactory executorFactory;
+    private ParallelUnpackExecutor unpackExecutor;
+    private TarBuildCacheEntryPacker packer;
+    private int iteration;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        tempDir = Files.createTempDirectory("unpack-benchmark").toFile();
+        NativeServices.initialize(tempDir);
+        entry = createEntry();
+        executorFactory = new DefaultExecutorFactory();
+        unpackExecutor = mode.equals("parallel") ? new ParallelUnpackExecutor(executorFactory, 4) : null;
+        packer = new TarBuildCacheEntryPacker(FileSystems.getDefault(), new DefaultStreamHasher(), new StringInterner(), unpackExecutor);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException {
+        if (unpackExecutor != null) {
+            unpackExecutor.stop();
+        }
+        executorFactory.stop();
+        FileUtils.forceDelete(tempDir);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        targetDir = new File(tempDir, "target-" + iteration++);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation() throws IOException {
+        FileUtils.forceDelete(targetDir);
+    }
+
+    @Benchmark
+    public BuildCacheEntryPacker.UnpackResult unpack() throws IOException {
+        return packer.unpack(new CacheableEntity() {
+            @Override
+            public String getIdentity() {
+                return "benchmark";
+            }
+
+            @Override
+            public void visitOutputTrees(CacheableTreeVisitor visitor) {
+                visitor.visitOutputTree("output", TreeType.DIRECTORY, targetDir);
+            }
+
+            @Override
+            public String getDisplayName() {
+                return "benchmark";
+            }
+        }, new ByteArrayInputStream(entry), input -> new OriginMetadata(UniqueId.generate(), 0));
+    }
+
+    private static byte[] createEntry() throws IOException {
+        Random random = new Random(1234);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tarOutput = new TarArchiveOutputStream(output, "utf-8")) {
+            tarOutput.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            writeEntry(tarOutput, "METADATA", new byte[0]);
+            writeDirectory(tarOutput, "tree-output/");
+            for (int dir = 0; dir < DIRECTORY_COUNT; dir++) {
+                String dirPath = "tree-output/dir-" + dir + "/";
+                writeDirectory(tarOutput, dirPath);
+                for (int file = 0; file < FILES_PER_DIRECTORY; file++) {
+                    byte[] content = new byte[random.nextInt(MAX_FILE_SIZE)];
+                    random.nextBytes(content);
+                    writeEntry(tarOutput, dirPath + "file-" + file + ".class", content);
+                }
+            }
+        }
+        return output.toByteArray();
+    }
+
+    @SuppressWarnings("OctalInteger")
+    private static void writeDirectory(TarArchiveOutputStream tarOutput, String path) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(path, true);
+        entry.setMode(040755);
+        tarOutput.putArchiveEntry(entry);
+        tarOutput.closeArchiveEntry();
+    }
+
+    @SuppressWarnings("OctalInteger")
+    private static void writeEntry(TarArchiveOutputStream tarOutput, String path, byte[] content) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(path, true);
+        entry.setMode(0100644);
+        entry.setSize(content.length);
+        tarOutput.putArchiveEntry(entry);
+        tarOutput.write(content);
+        tarOutput.closeArchiveEntry();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import org.gradle.caching.configuration.BuildCacheCompression;
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginReader;
+import org.gradle.caching.internal.origin.OriginWriter;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses the entries produced by another packer with the configured {@link BuildCacheCompression}.
+ *
+ * Gzip compressed entries are plain gzip streams, the same as the entries stored by previous versions.
+ * Entries using any other compression start with a header identifying the compression, so that entries stored with different compressions can be unpacked.
+ */
+public class CompressingBuildCacheEntryPacker implements BuildCacheEntryPacker {
+    private static final byte[] HEADER_MAGIC = {'G', 'B', 'C', 'E'};
+    private static final byte LZ4_ID = 1;
+    private static final byte STORE_ID = 2;
+
+    private final BuildCacheEntryPacker delegate;
+    private final Supplier<BuildCacheCompression> compression;
+
+    public CompressingBuildCacheEntryPacker(BuildCacheEntryPacker delegate, Supplier<BuildCacheCompression> compression) {
+        this.delegate = delegate;
+        this.compression = compression;
+    }
+
+    @Override
+    public PackResult pack(CacheableEntity entity, Map<String, CurrentFileCollectionFingerprint> fingerprints, OutputStream output, OriginWriter writeOrigin) throws IOException {
+        try (OutputStream compressedOutput = compress(compression.get(), output)) {
+            return delegate.pack(entity, fingerprints, compressedOutput, writeOrigin);
+        }
+    }
+
+    @Override
+    public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+        try (InputStream decompressedInput = decompress(input)) {
+            return delegate.unpack(entity, decompressedInput, readOrigin);
+        }
+    }
+
+    private static OutputStream compress(BuildCacheCompression compression, OutputStream output) throws IOException {
+        switch (compression) {
+            case GZIP:
+                return new GZIPOutputStream(output);
+            case GZIP_FAST:
+                return new GZIPOutputStream(output) {
+                    {
+                        def.setLevel(Deflater.BEST_SPEED);
+                    }
+                };
+            case LZ4:
+                writeHeader(output, LZ4_ID);
+                return new Lz4OutputStream(output);
+            case STORE:
+                writeHeader(output, STORE_ID);
+                return output;
+            default:
+                throw new IllegalArgumentException("Unknown build cache compression: " + compression);
+        }
+    }
+
+    private static void writeHeader(OutputStream output, byte compression) throws IOException {
+        output.write(HEADER_MAGIC);
+        output.write(compression);
+    }
+
+    private static InputStream decompress(InputStream input) throws IOException {
+        PushbackInputStream pushbackInput = new PushbackInputStream(input, HEADER_MAGIC.length + 1);
+        byte[] header = new byte[HEADER_MAGIC.length + 1];
+        int headerLength = readFully(pushbackInput, header);
+        if (headerLength < header.length || !Arrays.equals(Arrays.copyOf(header, HEADER_MAGIC.length), HEADER_MAGIC)) {
+            // No header, so a gzip stream
+            pushbackInput.unread(header, 0, headerLength);
+            return new GZIPInputStream(pushbackInput);
+        }
+        byte compression = header[HEADER_MAGIC.length];
+        switch (compression) {
+            case LZ4_ID:
+                return new Lz4InputStream(pushbackInput);
+            case STORE_ID:
+                return pushbackInput;
+            default:
+                throw new IOException("Build cache entry uses an unknown compression: " + compression);
+        }
+    }
+
+    private static int readFully(InputStream input, byte[] buffer) throws IOException {
+        int count = 0;
+        while (count < buffer.length) {
+            int read = input.read(buffer, count, buffer.length - count);
+            if (read < 0) {
+                break;
+            }
+            count += read;
+        }
+        return count;
+    }
+}
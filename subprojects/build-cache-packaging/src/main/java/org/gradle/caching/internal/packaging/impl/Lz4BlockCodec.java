@@ -0,0 +1,182 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compresses and decompresses single blocks in the LZ4 block format.
+ *
+ * Uses the greedy single-probe match search of the reference LZ4 implementation, which trades compression ratio for speed.
+ */
+class Lz4BlockCodec {
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int HASH_BITS = 14;
+    private static final int SKIP_TRIGGER = 6;
+
+    private final int[] hashTable = new int[1 << HASH_BITS];
+
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses the given bytes, returning the number of bytes written to the target, which must have room for {@link #maxCompressedLength(int)} bytes.
+     */
+    int compress(byte[] source, int length, byte[] target) {
+        Arrays.fill(hashTable, -1);
+        int anchor = 0;
+        int targetPos = 0;
+        int matchStartLimit = length - MATCH_FIND_LIMIT;
+        int matchEndLimit = length - LAST_LITERALS;
+        int pos = 0;
+        int searchCount = 1 << SKIP_TRIGGER;
+        while (pos < matchStartLimit) {
+            int sequence = readInt(source, pos);
+            int hash = hash(sequence);
+            int candidate = hashTable[hash];
+            hashTable[hash] = pos;
+            if (candidate < 0 || pos - candidate > MAX_DISTANCE || readInt(source, candidate) != sequence) {
+                pos += searchCount++ >>> SKIP_TRIGGER;
+                continue;
+            }
+            searchCount = 1 << SKIP_TRIGGER;
+            while (pos > anchor && candidate > 0 && source[pos - 1] == source[candidate - 1]) {
+                pos--;
+                candidate--;
+            }
+            int matchLength = MIN_MATCH;
+            while (pos + matchLength < matchEndLimit && source[pos + matchLength] == source[candidate + matchLength]) {
+                matchLength++;
+            }
+            targetPos = writeSequence(source, anchor, pos - anchor, pos - candidate, matchLength, target, targetPos);
+            pos += matchLength;
+            anchor = pos;
+        }
+        return writeLastLiterals(source, anchor, length - anchor, target, targetPos);
+    }
+
+    /**
+     * Decompresses a block into the given target, which must have exactly the length of the uncompressed block.
+     */
+    static void decompress(byte[] source, int length, byte[] target, int targetLength) throws IOException {
+        int sourcePos = 0;
+        int targetPos = 0;
+        try {
+            while (true) {
+                int token = source[sourcePos++] & 0xff;
+                int literalLength = token >>> 4;
+                if (literalLength == 15) {
+                    int next;
+                    do {
+                        next = source[sourcePos++] & 0xff;
+                        literalLength += next;
+                    } while (next == 255);
+                }
+                if (sourcePos + literalLength > length || targetPos + literalLength > targetLength) {
+                    throw corrupt();
+                }
+                System.arraycopy(source, sourcePos, target, targetPos, literalLength);
+                sourcePos += literalLength;
+                targetPos += literalLength;
+                if (sourcePos == length) {
+                    break;
+                }
+
+                int offset = (source[sourcePos] & 0xff) | (source[sourcePos + 1] & 0xff) << 8;
+                sourcePos += 2;
+                int matchLength = token & 0x0f;
+                if (matchLength == 15) {
+                    int next;
+                    do {
+                        next = source[sourcePos++] & 0xff;
+                        matchLength += next;
+                    } while (next == 255);
+                }
+                matchLength += MIN_MATCH;
+                int matchPos = targetPos - offset;
+                if (offset == 0 || matchPos < 0 || targetPos + matchLength > targetLength) {
+                    throw corrupt();
+                }
+                if (offset >= matchLength) {
+                    System.arraycopy(target, matchPos, target, targetPos, matchLength);
+                    targetPos += matchLength;
+                } else {
+                    // Overlapping match, which repeats the last offset bytes
+                    for (int i = 0; i < matchLength; i++) {
+                        target[targetPos++] = target[matchPos + i];
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw corrupt();
+        }
+        if (targetPos != targetLength) {
+            throw corrupt();
+        }
+    }
+
+    private static int writeSequence(byte[] source, int literalStart, int literalLength, int offset, int matchLength, byte[] target, int targetPos) {
+        int matchLengthCode = matchLength - MIN_MATCH;
+        target[targetPos++] = (byte) ((Math.min(literalLength, 15) << 4) | Math.min(matchLengthCode, 15));
+        if (literalLength >= 15) {
+            targetPos = writeLength(literalLength - 15, target, targetPos);
+        }
+        System.arraycopy(source, literalStart, target, targetPos, literalLength);
+        targetPos += literalLength;
+        target[targetPos++] = (byte) offset;
+        target[targetPos++] = (byte) (offset >>> 8);
+        if (matchLengthCode >= 15) {
+            targetPos = writeLength(matchLengthCode - 15, target, targetPos);
+        }
+        return targetPos;
+    }
+
+    private static int writeLastLiterals(byte[] source, int literalStart, int literalLength, byte[] target, int targetPos) {
+        target[targetPos++] = (byte) (Math.min(literalLength, 15) << 4);
+        if (literalLength >= 15) {
+            targetPos = writeLength(literalLength - 15, target, targetPos);
+        }
+        System.arraycopy(source, literalStart, target, targetPos, literalLength);
+        return targetPos + literalLength;
+    }
+
+    private static int writeLength(int length, byte[] target, int targetPos) {
+        while (length >= 255) {
+            target[targetPos++] = (byte) 255;
+            length -= 255;
+        }
+        target[targetPos++] = (byte) length;
+        return targetPos;
+    }
+
+    private static int readInt(byte[] bytes, int pos) {
+        return (bytes[pos] & 0xff) | (bytes[pos + 1] & 0xff) << 8 | (bytes[pos + 2] & 0xff) << 16 | (bytes[pos + 3] & 0xff) << 24;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_BITS);
+    }
+
+    private static IOException corrupt() {
+        return new IOException("Corrupted LZ4 block.");
+    }
+}
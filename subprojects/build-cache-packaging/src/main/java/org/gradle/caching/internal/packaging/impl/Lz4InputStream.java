@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Decompresses a stream written by {@link Lz4OutputStream}.
+ */
+class Lz4InputStream extends InputStream {
+    private final DataInputStream input;
+    private final CRC32 checksum = new CRC32();
+    private final byte[] buffer = new byte[Lz4OutputStream.BLOCK_SIZE];
+    private final byte[] compressed = new byte[Lz4BlockCodec.maxCompressedLength(Lz4OutputStream.BLOCK_SIZE)];
+    private int count;
+    private int pos;
+    private boolean finished;
+
+    Lz4InputStream(InputStream input) {
+        this.input = new DataInputStream(input);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos == count && !readBlock()) {
+            return -1;
+        }
+        return buffer[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (pos == count && !readBlock()) {
+            return -1;
+        }
+        int chunk = Math.min(length, count - pos);
+        System.arraycopy(buffer, pos, bytes, offset, chunk);
+        pos += chunk;
+        return chunk;
+    }
+
+    @Override
+    public int available() {
+        return count - pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private boolean readBlock() throws IOException {
+        if (finished) {
+            return false;
+        }
+        int length = input.readInt();
+        if (length == 0) {
+            finished = true;
+            return false;
+        }
+        int compressedLength = input.readInt();
+        int expectedChecksum = input.readInt();
+        if (length < 0 || length > buffer.length || compressedLength < Lz4OutputStream.STORED || compressedLength > compressed.length) {
+            throw new IOException("Corrupted LZ4 stream.");
+        }
+        if (compressedLength == Lz4OutputStream.STORED) {
+            input.readFully(buffer, 0, length);
+        } else {
+            input.readFully(compressed, 0, compressedLength);
+            Lz4BlockCodec.decompress(compressed, compressedLength, buffer, length);
+        }
+        checksum.reset();
+        checksum.update(buffer, 0, length);
+        if ((int) checksum.getValue() != expectedChecksum) {
+            throw new IOException("Corrupted LZ4 stream: checksum mismatch.");
+        }
+        count = length;
+        pos = 0;
+        return true;
+    }
+}
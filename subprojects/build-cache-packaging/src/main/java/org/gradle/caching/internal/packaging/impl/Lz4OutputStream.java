@@ -0,0 +1,108 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Compresses a stream as a sequence of LZ4 blocks.
+ *
+ * Each block is written as its uncompressed length, its compressed length, the CRC32 of its uncompressed content and the block itself.
+ * A block which does not get smaller is stored uncompressed, which is marked by a compressed length of -1.
+ * The stream ends with a block of length 0.
+ *
+ * @see Lz4InputStream
+ */
+class Lz4OutputStream extends OutputStream {
+    static final int BLOCK_SIZE = 256 * 1024;
+    static final int STORED = -1;
+
+    private final DataOutputStream output;
+    private final Lz4BlockCodec codec = new Lz4BlockCodec();
+    private final CRC32 checksum = new CRC32();
+    private final byte[] buffer = new byte[BLOCK_SIZE];
+    private final byte[] compressed = new byte[Lz4BlockCodec.maxCompressedLength(BLOCK_SIZE)];
+    private int count;
+    private boolean closed;
+
+    Lz4OutputStream(OutputStream output) {
+        this.output = new DataOutputStream(output);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == BLOCK_SIZE) {
+            writeBlock();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (count == BLOCK_SIZE) {
+                writeBlock();
+            }
+            int chunk = Math.min(length, BLOCK_SIZE - count);
+            System.arraycopy(bytes, offset, buffer, count, chunk);
+            count += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) {
+            writeBlock();
+        }
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (count > 0) {
+            writeBlock();
+        }
+        output.writeInt(0);
+        output.close();
+    }
+
+    private void writeBlock() throws IOException {
+        checksum.reset();
+        checksum.update(buffer, 0, count);
+        int compressedLength = codec.compress(buffer, count, compressed);
+        output.writeInt(count);
+        if (compressedLength < count) {
+            output.writeInt(compressedLength);
+            output.writeInt((int) checksum.getValue());
+            output.write(compressed, 0, compressedLength);
+        } else {
+            output.writeInt(STORED);
+            output.writeInt((int) checksum.getValue());
+            output.write(buffer, 0, count);
+        }
+        count = 0;
+    }
+}
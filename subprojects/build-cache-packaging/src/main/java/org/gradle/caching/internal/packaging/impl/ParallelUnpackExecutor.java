@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes the files of unpacked build cache entries on a bounded pool of threads.
+ *
+ * The content of each file is buffered in memory until it has been written, so the number of bytes waiting to be written is bounded as well.
+ */
+public class ParallelUnpackExecutor implements Stoppable {
+    /**
+     * Files larger than this are written by the thread reading the entry, instead of being buffered.
+     */
+    public static final int MAX_BUFFERED_FILE_SIZE = 1024 * 1024;
+
+    private static final int MAX_BUFFERED_BYTES = 64 * 1024 * 1024;
+
+    private final ManagedExecutor executor;
+    private final Semaphore bufferedBytes = new Semaphore(MAX_BUFFERED_BYTES);
+
+    public ParallelUnpackExecutor(ExecutorFactory executorFactory, int threads) {
+        this.executor = executorFactory.create("Build cache entry unpacking", threads);
+    }
+
+    /**
+     * Submits a write of a buffered file with the given size, blocking until there is room to buffer it.
+     */
+    public <T> Future<T> submit(int size, Callable<T> write) {
+        try {
+            bufferedBytes.acquire(size);
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        try {
+            return executor.submit(() -> {
+                try {
+                    return write.call();
+                } finally {
+                    bufferedBytes.release(size);
+                }
+            });
+        } catch (RuntimeException e) {
+            bufferedBytes.release(size);
+            throw e;
+        }
+    }
+
+    @Override
+    public void stop() {
+        executor.stop();
+    }
+}
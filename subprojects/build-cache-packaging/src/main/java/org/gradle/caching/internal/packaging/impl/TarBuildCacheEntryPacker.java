@@ -17,7 +17,10 @@
 package org.gradle.caching.internal.packaging.impl;
 
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
@@ -49,6 +52,7 @@ import org.gradle.internal.snapshot.RelativePathStringTracker;
 
 import javax.annotation.Nullable;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -59,8 +63,12 @@ import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -93,11 +101,20 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
     private final FileSystem fileSystem;
     private final StreamHasher streamHasher;
     private final StringInterner stringInterner;
+    private final ParallelUnpackExecutor unpackExecutor;
 
     public TarBuildCacheEntryPacker(FileSystem fileSystem, StreamHasher streamHasher, StringInterner stringInterner) {
+        this(fileSystem, streamHasher, stringInterner, null);
+    }
+
+    /**
+     * @param unpackExecutor when not {@code null}, the files in unpacked directory trees are written using this executor.
+     */
+    public TarBuildCacheEntryPacker(FileSystem fileSystem, StreamHasher streamHasher, StringInterner stringInterner, @Nullable ParallelUnpackExecutor unpackExecutor) {
         this.fileSystem = fileSystem;
         this.streamHasher = streamHasher;
         this.stringInterner = stringInterner;
+        this.unpackExecutor = unpackExecutor;
     }
 
     @Override
@@ -282,43 +299,188 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
         RelativePathParser parser = new RelativePathParser();
         parser.rootPath(rootEntry.getName());
 
-        MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+        DirectoryTreeUnpacker unpacker = unpackExecutor == null
+            ? new SequentialDirectoryTreeUnpacker()
+            : new ParallelDirectoryTreeUnpacker(unpackExecutor);
         String rootPath = stringInterner.intern(treeRoot.getAbsolutePath());
         String rootDirName = stringInterner.intern(treeRoot.getName());
-        builder.preVisitDirectory(rootPath, rootDirName);
+        unpacker.preVisitDirectory(rootPath, rootDirName);
 
         TarArchiveEntry entry;
 
-        while ((entry = input.getNextTarEntry()) != null) {
-            boolean isDir = entry.isDirectory();
-            int directoriesLeft = parser.nextPath(entry.getName(), isDir);
-            for (int i = 0; i < directoriesLeft; i++) {
-                builder.postVisitDirectory();
+        try {
+            while ((entry = input.getNextTarEntry()) != null) {
+                boolean isDir = entry.isDirectory();
+                int directoriesLeft = parser.nextPath(entry.getName(), isDir);
+                for (int i = 0; i < directoriesLeft; i++) {
+                    unpacker.postVisitDirectory();
+                }
+                if (parser.getDepth() == 0) {
+                    break;
+                }
+                entries.increment(1);
+
+                File file = new File(treeRoot, parser.getRelativePath());
+                if (isDir) {
+                    FileUtils.forceMkdir(file);
+                    chmodUnpackedFile(entry, file);
+                    String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
+                    String internedDirName = stringInterner.intern(parser.getName());
+                    unpacker.preVisitDirectory(internedAbsolutePath, internedDirName);
+                } else {
+                    unpacker.unpackFile(input, entry, file, parser.getName());
+                }
             }
-            if (parser.getDepth() == 0) {
-                break;
+
+            for (int i = 0; i < parser.getDepth(); i++) {
+                unpacker.postVisitDirectory();
             }
-            entries.increment(1);
+        } catch (IOException | RuntimeException e) {
+            // Make sure no file is written after the failure has been reported
+            unpacker.abort();
+            throw e;
+        }
+
+        snapshots.put(treeName, unpacker.finish());
+        return entry;
+    }
+
+    /**
+     * Unpacks the files of a directory tree and builds the snapshot of the tree.
+     */
+    private interface DirectoryTreeUnpacker {
+        void preVisitDirectory(String absolutePath, String name);
+
+        void unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException;
+
+        void postVisitDirectory();
+
+        FileSystemLocationSnapshot finish() throws IOException;
+
+        void abort();
+    }
+
+    private class SequentialDirectoryTreeUnpacker implements DirectoryTreeUnpacker {
+        private final MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+
+        @Override
+        public void preVisitDirectory(String absolutePath, String name) {
+            builder.preVisitDirectory(absolutePath, name);
+        }
+
+        @Override
+        public void unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+            builder.visit(TarBuildCacheEntryPacker.this.unpackFile(input, entry, file, fileName));
+        }
+
+        @Override
+        public void postVisitDirectory() {
+            builder.postVisitDirectory();
+        }
+
+        @Override
+        public FileSystemLocationSnapshot finish() {
+            return builder.getResult();
+        }
+
+        @Override
+        public void abort() {
+        }
+    }
+
+    /**
+     * Reads and hashes the content of each file on the calling thread, and hands the writing of the file to the {@link ParallelUnpackExecutor}.
+     * The snapshot of the tree is built once all the files have been written.
+     */
+    private class ParallelDirectoryTreeUnpacker implements DirectoryTreeUnpacker {
+        private final ParallelUnpackExecutor executor;
+        private final List<SnapshotVisit> visits = new ArrayList<>();
+        private final List<Future<RegularFileSnapshot>> pendingFiles = new ArrayList<>();
+
+        ParallelDirectoryTreeUnpacker(ParallelUnpackExecutor executor) {
+            this.executor = executor;
+        }
 
-            File file = new File(treeRoot, parser.getRelativePath());
-            if (isDir) {
-                FileUtils.forceMkdir(file);
+        @Override
+        public void preVisitDirectory(String absolutePath, String name) {
+            visits.add(builder -> builder.preVisitDirectory(absolutePath, name));
+        }
+
+        @Override
+        public void unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+            long size = entry.getSize();
+            if (size > ParallelUnpackExecutor.MAX_BUFFERED_FILE_SIZE) {
+                RegularFileSnapshot fileSnapshot = TarBuildCacheEntryPacker.this.unpackFile(input, entry, file, fileName);
+                visits.add(builder -> builder.visit(fileSnapshot));
+                return;
+            }
+            byte[] content = new byte[(int) size];
+            IOUtils.readFully(input, content);
+            HashCode hash = streamHasher.hash(new ByteArrayInputStream(content));
+            String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
+            String internedFileName = stringInterner.intern(fileName);
+            Future<RegularFileSnapshot> pendingFile = executor.submit(content.length, () -> {
+                try (OutputStream output = new FileOutputStream(file)) {
+                    output.write(content);
+                }
                 chmodUnpackedFile(entry, file);
-                String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
-                String internedDirName = stringInterner.intern(parser.getName());
-                builder.preVisitDirectory(internedAbsolutePath, internedDirName);
-            } else {
-                RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, parser.getName());
-                builder.visit(fileSnapshot);
+                return new RegularFileSnapshot(internedAbsolutePath, internedFileName, hash, file.lastModified());
+            });
+            pendingFiles.add(pendingFile);
+            visits.add(builder -> builder.visit(getUnpackedFile(pendingFile)));
+        }
+
+        @Override
+        public void postVisitDirectory() {
+            visits.add(MerkleDirectorySnapshotBuilder::postVisitDirectory);
+        }
+
+        @Override
+        public FileSystemLocationSnapshot finish() throws IOException {
+            awaitPendingFiles();
+            MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+            for (SnapshotVisit visit : visits) {
+                visit.visit(builder);
             }
+            return builder.getResult();
         }
 
-        for (int i = 0; i < parser.getDepth(); i++) {
-            builder.postVisitDirectory();
+        @Override
+        public void abort() {
+            for (Future<RegularFileSnapshot> pendingFile : pendingFiles) {
+                try {
+                    Uninterruptibles.getUninterruptibly(pendingFile);
+                } catch (ExecutionException ignored) {
+                    // The original failure is reported instead
+                }
+            }
         }
 
-        snapshots.put(treeName, builder.getResult());
-        return entry;
+        private void awaitPendingFiles() throws IOException {
+            Throwable failure = null;
+            for (Future<RegularFileSnapshot> pendingFile : pendingFiles) {
+                try {
+                    Uninterruptibles.getUninterruptibly(pendingFile);
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+            }
+            if (failure != null) {
+                Throwables.propagateIfPossible(failure, IOException.class);
+                throw new UncheckedIOException(failure);
+            }
+        }
+
+        private RegularFileSnapshot getUnpackedFile(Future<RegularFileSnapshot> pendingFile) {
+            // All files have been written when the visits are replayed
+            return Futures.getUnchecked(pendingFile);
+        }
+    }
+
+    private interface SnapshotVisit {
+        void visit(MerkleDirectorySnapshotBuilder builder);
     }
 
     private void chmodUnpackedFile(TarArchiveEntry entry, File file) {
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import org.gradle.caching.configuration.BuildCacheCompression
+import org.gradle.caching.internal.CacheableEntity
+import org.gradle.caching.internal.origin.OriginReader
+import org.gradle.caching.internal.origin.OriginWriter
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.function.Supplier
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+class CompressingBuildCacheEntryPackerTest extends Specification {
+    def content = ("some entry content " * 1000).bytes
+    def delegate = new CopyingPacker(content)
+    def compression = BuildCacheCompression.GZIP
+    def packer = new CompressingBuildCacheEntryPacker(delegate, { compression } as Supplier)
+
+    @Unroll
+    def "can unpack entries packed with #packedWith compression when #configured is configured"() {
+        def output = new ByteArrayOutputStream()
+
+        when:
+        compression = packedWith
+        packer.pack(Stub(CacheableEntity), [:], output, Stub(OriginWriter))
+        compression = configured
+        packer.unpack(Stub(CacheableEntity), new ByteArrayInputStream(output.toByteArray()), Stub(OriginReader))
+
+        then:
+        delegate.unpacked == content
+
+        where:
+        [packedWith, configured] << [BuildCacheCompression.values(), BuildCacheCompression.values()].combinations()
+    }
+
+    def "gzip compressed entries are plain gzip streams"() {
+        def output = new ByteArrayOutputStream()
+
+        when:
+        packer.pack(Stub(CacheableEntity), [:], output, Stub(OriginWriter))
+
+        then:
+        new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).bytes == content
+    }
+
+    def "can unpack gzip streams without a header"() {
+        def output = new ByteArrayOutputStream()
+        def gzipOutput = new GZIPOutputStream(output)
+        gzipOutput.write(content)
+        gzipOutput.close()
+
+        when:
+        compression = BuildCacheCompression.STORE
+        packer.unpack(Stub(CacheableEntity), new ByteArrayInputStream(output.toByteArray()), Stub(OriginReader))
+
+        then:
+        delegate.unpacked == content
+    }
+
+    def "stored entries are not compressed"() {
+        def output = new ByteArrayOutputStream()
+
+        when:
+        compression = BuildCacheCompression.STORE
+        packer.pack(Stub(CacheableEntity), [:], output, Stub(OriginWriter))
+
+        then:
+        output.size() == content.length + 5
+    }
+
+    private static class CopyingPacker implements BuildCacheEntryPacker {
+        final byte[] content
+        byte[] unpacked
+
+        CopyingPacker(byte[] content) {
+            this.content = content
+        }
+
+        @Override
+        PackResult pack(CacheableEntity entity, Map fingerprints, OutputStream output, OriginWriter writeOrigin) {
+            output.write(content)
+            return new PackResult(1)
+        }
+
+        @Override
+        UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) {
+            unpacked = input.bytes
+            return null
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class Lz4OutputStreamTest extends Specification {
+    def random = new Random(42)
+
+    @Unroll
+    def "can read back #length bytes of #kind content"() {
+        def content = generate(kind, length)
+
+        when:
+        def compressed = compress(content)
+
+        then:
+        decompress(compressed) == content
+
+        where:
+        [kind, length] << [["repetitive", "random", "mixed"], [0, 1, 15, 100, 70000, Lz4OutputStream.BLOCK_SIZE, 3 * Lz4OutputStream.BLOCK_SIZE + 17]].combinations()
+    }
+
+    def "compresses repetitive content"() {
+        def content = generate("repetitive", 1000000)
+
+        expect:
+        compress(content).length < content.length / 50
+    }
+
+    def "detects corrupted content"() {
+        def compressed = compress(generate("mixed", 100000))
+        compressed[compressed.length.intdiv(2)] ^= 0x55
+
+        when:
+        decompress(compressed)
+
+        then:
+        thrown(IOException)
+    }
+
+    private byte[] generate(String kind, int length) {
+        def content = new byte[length]
+        switch (kind) {
+            case "repetitive":
+                length.times { content[it] = "some repeated text ".charAt(it % 19) as byte }
+                break
+            case "random":
+                random.nextBytes(content)
+                break
+            default:
+                length.times { content[it] = (it > 100 && random.nextBoolean()) ? content[it - 1 - random.nextInt(100)] : (byte) random.nextInt(16) }
+        }
+        return content
+    }
+
+    private static byte[] compress(byte[] content) {
+        def output = new ByteArrayOutputStream()
+        def lz4Output = new Lz4OutputStream(output)
+        lz4Output.write(content)
+        lz4Output.close()
+        return output.toByteArray()
+    }
+
+    private static byte[] decompress(byte[] compressed) {
+        return new Lz4InputStream(new ByteArrayInputStream(compressed)).bytes
+    }
+}
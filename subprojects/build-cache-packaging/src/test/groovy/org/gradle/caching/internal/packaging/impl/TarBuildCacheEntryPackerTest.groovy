@@ -22,6 +22,7 @@ import org.gradle.caching.internal.CacheableEntity
 import org.gradle.caching.internal.TestCacheableTree
 import org.gradle.caching.internal.origin.OriginReader
 import org.gradle.caching.internal.origin.OriginWriter
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.file.TreeType
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint
 import org.gradle.internal.fingerprint.FingerprintingStrategy
@@ -30,6 +31,9 @@ import org.gradle.internal.fingerprint.impl.DefaultCurrentFileCollectionFingerpr
 import org.gradle.internal.hash.DefaultStreamHasher
 import org.gradle.internal.hash.TestFileHasher
 import org.gradle.internal.nativeplatform.filesystem.FileSystem
+import org.gradle.internal.snapshot.DirectorySnapshot
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.internal.snapshot.FileSystemSnapshotVisitor
 import org.gradle.internal.snapshot.WellKnownFileLocations
 import org.gradle.internal.snapshot.impl.DefaultFileSystemMirror
 import org.gradle.internal.snapshot.impl.DefaultFileSystemSnapshotter
@@ -55,7 +59,7 @@ class TarBuildCacheEntryPackerTest extends Specification {
     def streamHasher = new DefaultStreamHasher()
     def stringInterner = new StringInterner()
     def packer = new TarBuildCacheEntryPacker(fileSystem, streamHasher, stringInterner)
-    def fileSystemMirror = new DefaultFileSystemMirror(Stub(WellKnownFileLocations))
+    def fileSystemMirror = new DefaultFileSystemMirror(Stub(WellKnownFileLocations), TestFiles.fileSystem())
     def snapshotter = new DefaultFileSystemSnapshotter(new TestFileHasher(), stringInterner, TestFiles.fileSystem(), fileSystemMirror)
 
     @Unroll
@@ -324,6 +328,64 @@ class TarBuildCacheEntryPackerTest extends Specification {
         0 * _
     }
 
+    def "unpacks directory to the same result when writing files in parallel"() {
+        def sourceDir = temporaryFolder.file("source").createDir()
+        10.times { dirIndex ->
+            def subDir = sourceDir.file("dir-$dirIndex").createDir()
+            20.times { fileIndex ->
+                subDir.file("file-${fileIndex}.txt") << "content $dirIndex/$fileIndex\n" * (fileIndex * 100)
+            }
+            subDir.file("empty").createDir()
+        }
+        sourceDir.file("large.bin").bytes = new byte[ParallelUnpackExecutor.MAX_BUFFERED_FILE_SIZE + 1]
+        def sequentialTargetDir = temporaryFolder.file("sequential")
+        def parallelTargetDir = temporaryFolder.file("parallel")
+        def executorFactory = new DefaultExecutorFactory()
+        def unpackExecutor = new ParallelUnpackExecutor(executorFactory, 4)
+        def parallelPacker = new TarBuildCacheEntryPacker(fileSystem, streamHasher, stringInterner, unpackExecutor)
+        def output = new ByteArrayOutputStream()
+        pack output, prop(DIRECTORY, sourceDir)
+
+        when:
+        def sequentialResult = unpack new ByteArrayInputStream(output.toByteArray()), prop(DIRECTORY, sequentialTargetDir)
+        def parallelResult = parallelPacker.unpack(entity(prop(DIRECTORY, parallelTargetDir)), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        parallelResult.entries == sequentialResult.entries
+        def parallelSnapshot = parallelResult.snapshots["test"]
+        def sequentialSnapshot = sequentialResult.snapshots["test"]
+        parallelSnapshot.hash == sequentialSnapshot.hash
+        visitedPaths(parallelSnapshot, parallelTargetDir) == visitedPaths(sequentialSnapshot, sequentialTargetDir)
+        parallelTargetDir.file("dir-3/file-7.txt").text == sourceDir.file("dir-3/file-7.txt").text
+        parallelTargetDir.file("large.bin").length() == ParallelUnpackExecutor.MAX_BUFFERED_FILE_SIZE + 1
+
+        cleanup:
+        unpackExecutor?.stop()
+        executorFactory?.stop()
+    }
+
+    private static List<String> visitedPaths(FileSystemLocationSnapshot snapshot, File root) {
+        def paths = []
+        snapshot.accept(new FileSystemSnapshotVisitor() {
+            @Override
+            boolean preVisitDirectory(DirectorySnapshot directorySnapshot) {
+                paths << "dir:" + root.toPath().relativize(new File(directorySnapshot.absolutePath).toPath())
+                return true
+            }
+
+            @Override
+            void visit(FileSystemLocationSnapshot fileSnapshot) {
+                paths << "file:" + root.toPath().relativize(new File(fileSnapshot.absolutePath).toPath()) + ":" + fileSnapshot.hash
+            }
+
+            @Override
+            void postVisitDirectory(DirectorySnapshot directorySnapshot) {
+                paths << "end"
+            }
+        })
+        return paths
+    }
+
     def pack(OutputStream output, OriginWriter writeOrigin = this.writeOrigin, TreeDefinition... treeDefs) {
         Map<String, CurrentFileCollectionFingerprint> fingerprints = treeDefs.collectEntries { treeDef ->
             return [(treeDef.tree.name): treeDef.fingerprint()]
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.configuration;
+
+import org.gradle.api.Incubating;
+
+/**
+ * The compression used for entries stored in the build cache.
+ *
+ * <p>The compression used for an entry is recorded with the entry, so entries stored with any compression can be loaded regardless of the compression currently configured.</p>
+ *
+ * @since 5.5
+ */
+@Incubating
+public enum BuildCacheCompression {
+    /**
+     * Entries are compressed with gzip at its default level. This is the default.
+     */
+    GZIP,
+
+    /**
+     * Entries are compressed with gzip, favouring speed over size.
+     */
+    GZIP_FAST,
+
+    /**
+     * Entries are compressed with LZ4, which is much faster than gzip but produces larger entries.
+     */
+    LZ4,
+
+    /**
+     * Entries are stored uncompressed.
+     */
+    STORE
+}
@@ -17,6 +17,7 @@
 package org.gradle.caching.configuration;
 
 import org.gradle.api.Action;
+import org.gradle.api.Incubating;
 import org.gradle.caching.BuildCacheServiceFactory;
 import org.gradle.internal.HasInternalProtocol;
 
@@ -120,4 +121,22 @@ public interface BuildCacheConfiguration {
      * @throws IllegalStateException If no remote cache has been assigned yet
      */
     void remote(Action<? super BuildCache> configuration);
+
+    /**
+     * Returns the compression used for entries stored in the build cache. Defaults to {@link BuildCacheCompression#GZIP}.
+     *
+     * @since 5.5
+     */
+    @Incubating
+    BuildCacheCompression getCompression();
+
+    /**
+     * Sets the compression used for entries stored in the build cache.
+     *
+     * <p>Entries already in the cache can be loaded regardless of the compression they were stored with.</p>
+     *
+     * @since 5.5
+     */
+    @Incubating
+    void setCompression(BuildCacheCompression compression);
 }
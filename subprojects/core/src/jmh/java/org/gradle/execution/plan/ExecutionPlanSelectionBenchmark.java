@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.api.Task;
+import org.gradle.api.Transformer;
+import org.gradle.api.internal.GradleInternal;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.initialization.DefaultParallelismConfigurationManager;
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration;
+import org.gradle.internal.event.DefaultListenerManager;
+import org.gradle.internal.resources.DefaultResourceLockCoordinationService;
+import org.gradle.internal.resources.ResourceLockState;
+import org.gradle.internal.work.DefaultWorkerLeaseService;
+import org.gradle.internal.work.WorkerLeaseRegistry;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.gradle.internal.resources.ResourceLockState.Disposition.FINISHED;
+
+/**
+ * Measures the time spent selecting and completing all nodes of an execution plan while holding the state lock, for different numbers of tasks.
+ *
+ * The tasks are spread across projects and form parallel chains, so that many nodes are waiting for their dependencies at any time.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ExecutionPlanSelectionBenchmark {
+    private static final int PROJECT_COUNT = 32;
+    private static final int CHAIN_COUNT = 256;
+
+    @Param({"1000", "10000", "30000"})
+    int taskCount;
+
+    private final DefaultResourceLockCoordinationService coordinationService = new DefaultResourceLockCoordinationService();
+    private DefaultWorkerLeaseService workerLeaseService;
+    private GradleInternal gradle;
+    private List<Task> tasks;
+    private DefaultExecutionPlan executionPlan;
+
+    @Setup(Level.Trial)
+    public void createTasks() {
+        DefaultParallelismConfigurationManager parallelismConfigurationManager = new DefaultParallelismConfigurationManager(new DefaultListenerManager());
+        parallelismConfigurationManager.setParallelismConfiguration(new DefaultParallelismConfiguration(true, PROJECT_COUNT));
+        workerLeaseService = new DefaultWorkerLeaseService(coordinationService, parallelismConfigurationManager);
+
+        ProjectInternal rootProject = (ProjectInternal) ProjectBuilder.builder().build();
+        gradle = rootProject.getGradle();
+        List<ProjectInternal> projects = new ArrayList<ProjectInternal>();
+        for (int i = 0; i < PROJECT_COUNT; i++) {
+            projects.add((ProjectInternal) ProjectBuilder.builder().withName("project" + i).withParent(rootProject).build());
+        }
+        tasks = new ArrayList<Task>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            Task task = projects.get(i % PROJECT_COUNT).getTasks().create("task" + i);
+            if (i >= CHAIN_COUNT) {
+                task.dependsOn(tasks.get(i - CHAIN_COUNT));
+            }
+            tasks.add(task);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createExecutionPlan() {
+        TaskNodeFactory taskNodeFactory = new TaskNodeFactory(gradle, null);
+        List<DependencyResolver> dependencyResolvers = new ArrayList<DependencyResolver>();
+        dependencyResolvers.add(new TaskNodeDependencyResolver(taskNodeFactory));
+        executionPlan = new DefaultExecutionPlan(workerLeaseService, gradle, taskNodeFactory, new TaskDependencyResolver(dependencyResolvers));
+        executionPlan.addEntryTasks(tasks);
+        executionPlan.determineExecutionPlan();
+    }
+
+    @Benchmark
+    public int selectAllNodes() {
+        final WorkerLeaseRegistry.WorkerLease workerLease = workerLeaseService.getWorkerLease();
+        final int[] selected = new int[1];
+        coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+            @Override
+            public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                Node node = executionPlan.selectNext(workerLease, resourceLockState);
+                while (node != null) {
+                    selected[0]++;
+                    executionPlan.nodeComplete(node);
+                    workerLease.unlock();
+                    node = executionPlan.selectNext(workerLease, resourceLockState);
+                }
+                return FINISHED;
+            }
+        });
+        return selected[0];
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import org.gradle.internal.snapshot.WellKnownFileLocations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Compares hashing files through a stream with hashing them through a mapped or directly buffered channel.
+ */
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class FileHashingBenchmark {
+
+    @Param({"4096", "1048576", "67108864"})
+    int fileSize;
+
+    @Param({"stream", "mapped", "direct"})
+    String type;
+
+    File file;
+    FileHasher hasher;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = File.createTempFile("hashing", ".bin");
+        byte[] chunk = new byte[8192];
+        Random random = new Random(1234L);
+        OutputStream outputStream = new FileOutputStream(file);
+        try {
+            for (int written = 0; written < fileSize; written += chunk.length) {
+                random.nextBytes(chunk);
+                outputStream.write(chunk, 0, Math.min(chunk.length, fileSize - written));
+            }
+        } finally {
+            outputStream.close();
+        }
+        if (type.equals("stream")) {
+            hasher = new DefaultFileHasher(new DefaultStreamHasher(), Long.MAX_VALUE);
+        } else {
+            hasher = new DefaultFileHasher(new DefaultStreamHasher(), 0, new WellKnownFileLocations() {
+                @Override
+                public boolean isImmutable(String path) {
+                    return type.equals("mapped");
+                }
+            });
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public HashCode hash() {
+        return hasher.hash(file);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot;
+
+import org.gradle.api.internal.file.FileSystemSubset;
+import org.gradle.internal.file.FileMetadataSnapshot;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.nativeintegration.filesystem.DefaultFileMetadata;
+import org.gradle.internal.nativeintegration.filesystem.Stat;
+import org.gradle.internal.snapshot.impl.DefaultFileSystemMirror;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the work done on the retained file system state between editing a single file of a large watched tree and the start of the next
+ * continuous build, when the start of the build checks every retained directory and file ({@code stat}) and when the file watcher
+ * reported the edit ({@code watcher}).
+ *
+ * The tree is made of many directories which are snapshotted separately, like the source directories of the projects of a large build.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class RetainedFileSystemStateBenchmark {
+    private static final int FILES_PER_DIRECTORY = 500;
+
+    @Param({"10000", "50000"})
+    int fileCount;
+
+    @Param({"stat", "watcher"})
+    String detection;
+
+    private File root;
+    private File editedFile;
+    private List<DirectorySnapshot> directorySnapshots;
+    private FileSystemSubset watchedLocations;
+    private DefaultFileSystemMirror mirror;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("retained-state").toFile();
+        directorySnapshots = new ArrayList<DirectorySnapshot>();
+        for (int dir = 0; dir < fileCount / FILES_PER_DIRECTORY; dir++) {
+            File directory = new File(root, "dir" + dir);
+            directory.mkdirs();
+            List<FileSystemLocationSnapshot> files = new ArrayList<FileSystemLocationSnapshot>();
+            for (int i = 0; i < FILES_PER_DIRECTORY; i++) {
+                File file = new File(directory, "File" + i + ".java");
+                Files.write(file.toPath(), ("class File" + i + " {}").getBytes("UTF-8"));
+                files.add(new RegularFileSnapshot(file.getAbsolutePath(), file.getName(), HashCode.fromInt(i), file.lastModified()));
+            }
+            directorySnapshots.add(new DirectorySnapshot(directory.getAbsolutePath(), directory.getName(), files, HashCode.fromInt(dir)));
+        }
+        editedFile = new File(root, "dir0/File0.java");
+        watchedLocations = FileSystemSubset.builder().add(root).build();
+        mirror = new DefaultFileSystemMirror(new WellKnownFileLocations() {
+            @Override
+            public boolean isImmutable(String path) {
+                return false;
+            }
+        }, new NioStat());
+    }
+
+    @Setup(Level.Invocation)
+    public void finishBuildAndEditFile() {
+        for (DirectorySnapshot directorySnapshot : directorySnapshots) {
+            mirror.putSnapshot(directorySnapshot);
+        }
+        mirror.beforeBuildFinishedRetainingState();
+        editedFile.setLastModified(editedFile.lastModified() + 2000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.walk(root.toPath()).sorted(Collections.reverseOrder()).map(path -> path.toFile()).forEach(File::delete);
+    }
+
+    @Benchmark
+    public FileSystemLocationSnapshot editToBuildStart() {
+        if (detection.equals("watcher")) {
+            mirror.changesReportedByWatcher(watchedLocations, FileSystemSubset.builder().build(), Collections.singletonList(editedFile.getAbsolutePath()));
+        }
+        mirror.afterBuildStarted();
+        // An unchanged directory, which should still be retained
+        return mirror.getSnapshot(directorySnapshots.get(1).getAbsolutePath());
+    }
+
+    private static class NioStat implements Stat {
+        @Override
+        public int getUnixMode(File f) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileMetadataSnapshot stat(File f) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(f.toPath(), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                FileType type = attributes.isDirectory() ? FileType.Directory : FileType.RegularFile;
+                return new DefaultFileMetadata(type, attributes.lastModifiedTime().toMillis(), attributes.size());
+            } catch (IOException e) {
+                return new DefaultFileMetadata(FileType.Missing, 0, 0);
+            }
+        }
+    }
+}
@@ -31,22 +31,37 @@ import org.gradle.internal.serialize.Encoder;
 import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.InterningStringSerializer;
 
+import javax.annotation.Nullable;
 import java.io.File;
 
 public class CachingFileHasher implements FileHasher {
+    /**
+     * System property used to keep the file hashes in memory in an off-heap index, rather than as objects on the heap.
+     */
+    public static final String OFF_HEAP_INDEX_PROPERTY = "org.gradle.internal.file-hashes.off-heap";
+    private static final int MAX_ENTRIES_IN_MEMORY = 400000;
+
     private final PersistentIndexedCache<String, FileInfo> cache;
+    @Nullable
+    private final OffHeapFileHashIndex index;
     private final FileHasher delegate;
     private final FileSystem fileSystem;
     private final StringInterner stringInterner;
     private final FileTimeStampInspector timestampInspector;
 
     public CachingFileHasher(FileHasher delegate, CrossBuildFileHashCache store, StringInterner stringInterner, FileTimeStampInspector timestampInspector, String cacheName, FileSystem fileSystem) {
+        this(delegate, store, stringInterner, timestampInspector, cacheName, fileSystem, false);
+    }
+
+    public CachingFileHasher(FileHasher delegate, CrossBuildFileHashCache store, StringInterner stringInterner, FileTimeStampInspector timestampInspector, String cacheName, FileSystem fileSystem, boolean offHeapIndex) {
         this.delegate = delegate;
         this.fileSystem = fileSystem;
+        // The off-heap index replaces the in-memory store of the persistent cache
         this.cache = store.createCache(
             PersistentIndexedCacheParameters.of(cacheName, new InterningStringSerializer(stringInterner), new FileInfoSerializer()),
-            400000,
+            offHeapIndex ? 0 : MAX_ENTRIES_IN_MEMORY,
             true);
+        this.index = offHeapIndex ? store.getOffHeapIndex(cacheName, MAX_ENTRIES_IN_MEMORY) : null;
         this.stringInterner = stringInterner;
         this.timestampInspector = timestampInspector;
     }
@@ -58,45 +73,53 @@ public class CachingFileHasher implements FileHasher {
 
     @Override
     public HashCode hash(File file) {
-        return snapshot(file).getHash();
+        FileMetadataSnapshot fileMetadata = fileSystem.stat(file);
+        return hash(file, fileMetadata.getLength(), fileMetadata.getLastModified());
     }
 
     @Override
     public HashCode hash(FileTreeElement fileDetails) {
-        return snapshot(fileDetails).getHash();
+        return hash(fileDetails.getFile(), fileDetails.getSize(), fileDetails.getLastModified());
     }
 
     @Override
     public HashCode hash(File file, FileMetadataSnapshot fileDetails) {
-        return snapshot(file, fileDetails.getLength(), fileDetails.getLastModified()).getHash();
-    }
-
-    private FileInfo snapshot(File file) {
-        FileMetadataSnapshot fileMetadata = fileSystem.stat(file);
-        return snapshot(file, fileMetadata.getLength(), fileMetadata.getLastModified());
+        return hash(file, fileDetails.getLength(), fileDetails.getLastModified());
     }
 
-    private FileInfo snapshot(FileTreeElement file) {
-        return snapshot(file.getFile(), file.getSize(), file.getLastModified());
-    }
-
-    private FileInfo snapshot(File file, long length, long timestamp) {
+    private HashCode hash(File file, long length, long timestamp) {
         String absolutePath = file.getAbsolutePath();
         if (timestampInspector.timestampCanBeUsedToDetectFileChange(absolutePath, timestamp)) {
+            if (index != null) {
+                HashCode hash = index.get(absolutePath, length, timestamp);
+                if (hash != null) {
+                    return hash;
+                }
+            }
+
             FileInfo info = cache.get(absolutePath);
 
             if (info != null && length == info.length && timestamp == info.timestamp) {
-                return info;
+                if (index != null) {
+                    index.put(absolutePath, length, timestamp, info.hash);
+                }
+                return info.hash;
             }
         }
 
         HashCode hash = delegate.hash(file);
         FileInfo info = new FileInfo(hash, length, timestamp);
         cache.put(stringInterner.intern(absolutePath), info);
-        return info;
+        if (index != null) {
+            index.put(absolutePath, length, timestamp, hash);
+        }
+        return hash;
     }
 
     public void discard(String path) {
+        if (index != null) {
+            index.remove(path);
+        }
         cache.remove(path);
     }
 
@@ -35,9 +35,11 @@ public class CrossBuildFileHashCache implements Closeable {
 
     private final PersistentCache cache;
     private final InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory;
+    private final OffHeapFileHashIndexes offHeapIndexes;
 
-    public CrossBuildFileHashCache(@Nullable File cacheDir, CacheRepository repository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
+    public CrossBuildFileHashCache(@Nullable File cacheDir, CacheRepository repository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory, OffHeapFileHashIndexes offHeapIndexes) {
         this.inMemoryCacheDecoratorFactory = inMemoryCacheDecoratorFactory;
+        this.offHeapIndexes = offHeapIndexes;
         CacheBuilder cacheBuilder = cacheDir != null ? repository.cache(cacheDir) : repository.cache(FILE_HASHES_CACHE_KEY);
         cache = cacheBuilder
             .withDisplayName("file hash cache")
@@ -51,6 +53,13 @@ public class CrossBuildFileHashCache implements Closeable {
         );
     }
 
+    /**
+     * Returns the off-heap index for the given cache, which is shared by all builds using this cache in the current process.
+     */
+    OffHeapFileHashIndex getOffHeapIndex(String cacheName, int maxEntries) {
+        return offHeapIndexes.get(cache.getBaseDir(), cacheName, maxEntries);
+    }
+
     @Override
     public void close() {
         cache.close();
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.hash.HashCode;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * An open-addressed hash table of file hashes, stored off-heap as fixed width records.
+ *
+ * Each record holds a 128 bit hash of the absolute path of the file, the length and timestamp of the file, and the 16 byte MD5 hash of its content.
+ * Looking up the hash of an unchanged file does not allocate anything except the returned {@link HashCode}, and does not take a lock unless it races with a modification.
+ * When the table holds the maximum number of entries it is cleared, so the entries need to be backed by a persistent store.
+ */
+class OffHeapFileHashIndex {
+    private static final int KEY_HIGH = 0;
+    private static final int KEY_LOW = 8;
+    private static final int LENGTH = 16;
+    private static final int TIMESTAMP = 24;
+    private static final int HASH_HIGH = 32;
+    private static final int HASH_LOW = 40;
+    private static final int RECORD_SIZE = 48;
+    private static final int HASH_SIZE = 16;
+    private static final int MIN_CAPACITY = 1024;
+
+    private final StampedLock lock = new StampedLock();
+    private final int maxEntries;
+    private ByteBuffer records;
+    private int size;
+
+    OffHeapFileHashIndex(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.records = allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Returns the hash of the given file, or null when the file is not known or its length or timestamp have changed.
+     */
+    @Nullable
+    HashCode get(String absolutePath, long length, long timestamp) {
+        long keyHigh = keyHigh(absolutePath);
+        long keyLow = keyLow(absolutePath);
+        long stamp = lock.tryOptimisticRead();
+        boolean locked = false;
+        try {
+            while (true) {
+                ByteBuffer records = this.records;
+                int offset = find(records, keyHigh, keyLow);
+                boolean matches = offset >= 0
+                    && records.getLong(offset + LENGTH) == length
+                    && records.getLong(offset + TIMESTAMP) == timestamp;
+                long hashHigh = matches ? records.getLong(offset + HASH_HIGH) : 0;
+                long hashLow = matches ? records.getLong(offset + HASH_LOW) : 0;
+                if (locked || lock.validate(stamp)) {
+                    return matches ? toHashCode(hashHigh, hashLow) : null;
+                }
+                stamp = lock.readLock();
+                locked = true;
+            }
+        } finally {
+            if (locked) {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    void put(String absolutePath, long length, long timestamp, HashCode hash) {
+        if (hash.length() != HASH_SIZE) {
+            // Only MD5 hashes fit into a record
+            remove(absolutePath);
+            return;
+        }
+        byte[] hashBytes = hash.toByteArray();
+        long keyHigh = keyHigh(absolutePath);
+        long keyLow = keyLow(absolutePath);
+        long stamp = lock.writeLock();
+        try {
+            int offset = find(records, keyHigh, keyLow);
+            if (offset < 0) {
+                if (size >= maxEntries) {
+                    records = allocate(MIN_CAPACITY);
+                    size = 0;
+                } else if ((size + 1) * 4L > capacity(records) * 3L) {
+                    records = resize(records, capacity(records) * 2);
+                }
+                offset = findFree(records, keyLow);
+                records.putLong(offset + KEY_HIGH, keyHigh);
+                records.putLong(offset + KEY_LOW, keyLow);
+                size++;
+            }
+            records.putLong(offset + LENGTH, length);
+            records.putLong(offset + TIMESTAMP, timestamp);
+            records.putLong(offset + HASH_HIGH, toLong(hashBytes, 0));
+            records.putLong(offset + HASH_LOW, toLong(hashBytes, 8));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void remove(String absolutePath) {
+        long keyHigh = keyHigh(absolutePath);
+        long keyLow = keyLow(absolutePath);
+        long stamp = lock.writeLock();
+        try {
+            int offset = find(records, keyHigh, keyLow);
+            if (offset < 0) {
+                return;
+            }
+            // Shift the following records of the same probe sequence back, so lookups do not stop at the removed record
+            int mask = capacity(records) - 1;
+            int hole = offset / RECORD_SIZE;
+            int next = (hole + 1) & mask;
+            while (!isFree(records, next * RECORD_SIZE)) {
+                int home = slot(records.getLong(next * RECORD_SIZE + KEY_LOW), mask);
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    copyRecord(records, next * RECORD_SIZE, hole * RECORD_SIZE);
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            clearRecord(records, hole * RECORD_SIZE);
+            size--;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the offset of the record with the given key, or -1 when there is no such record.
+     * Gives up after probing every slot, so that a lookup racing with a modification terminates.
+     */
+    private static int find(ByteBuffer records, long keyHigh, long keyLow) {
+        int capacity = capacity(records);
+        int mask = capacity - 1;
+        int slot = slot(keyLow, mask);
+        for (int probes = 0; probes < capacity; probes++) {
+            int offset = slot * RECORD_SIZE;
+            if (isFree(records, offset)) {
+                return -1;
+            }
+            if (records.getLong(offset + KEY_LOW) == keyLow && records.getLong(offset + KEY_HIGH) == keyHigh) {
+                return offset;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int findFree(ByteBuffer records, long keyLow) {
+        int mask = capacity(records) - 1;
+        int slot = slot(keyLow, mask);
+        while (!isFree(records, slot * RECORD_SIZE)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot * RECORD_SIZE;
+    }
+
+    private static ByteBuffer resize(ByteBuffer records, int capacity) {
+        ByteBuffer resized = allocate(capacity);
+        for (int offset = 0; offset < records.capacity(); offset += RECORD_SIZE) {
+            if (!isFree(records, offset)) {
+                copyRecord(records, offset, resized, findFree(resized, records.getLong(offset + KEY_LOW)));
+            }
+        }
+        return resized;
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        // Direct buffers are zeroed, which marks all records as free
+        return ByteBuffer.allocateDirect(capacity * RECORD_SIZE);
+    }
+
+    private static int capacity(ByteBuffer records) {
+        return records.capacity() / RECORD_SIZE;
+    }
+
+    private static int slot(long keyLow, int mask) {
+        return (int) (keyLow ^ (keyLow >>> 32)) & mask;
+    }
+
+    private static boolean isFree(ByteBuffer records, int offset) {
+        return records.getLong(offset + KEY_HIGH) == 0 && records.getLong(offset + KEY_LOW) == 0;
+    }
+
+    private static void copyRecord(ByteBuffer records, int from, int to) {
+        copyRecord(records, from, records, to);
+    }
+
+    private static void copyRecord(ByteBuffer source, int from, ByteBuffer target, int to) {
+        for (int i = 0; i < RECORD_SIZE; i += 8) {
+            target.putLong(to + i, source.getLong(from + i));
+        }
+    }
+
+    private static void clearRecord(ByteBuffer records, int offset) {
+        for (int i = 0; i < RECORD_SIZE; i += 8) {
+            records.putLong(offset + i, 0);
+        }
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xff);
+        }
+        return value;
+    }
+
+    private static HashCode toHashCode(long high, long low) {
+        byte[] bytes = new byte[HASH_SIZE];
+        for (int i = 7; i >= 0; i--) {
+            bytes[i] = (byte) high;
+            bytes[i + 8] = (byte) low;
+            high >>>= 8;
+            low >>>= 8;
+        }
+        return HashCode.fromBytes(bytes);
+    }
+
+    // The key of a path is made of two independent 64 bit hashes of its characters, so a collision between two paths is practically impossible.
+
+    private static long keyHigh(String path) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            hash ^= path.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // Zero keys mark free records
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static long keyLow(String path) {
+        long hash = path.length();
+        for (int i = 0; i < path.length(); i++) {
+            hash = (hash + path.charAt(i)) * 0x9e3779b97f4a7c15L;
+            hash ^= hash >>> 29;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
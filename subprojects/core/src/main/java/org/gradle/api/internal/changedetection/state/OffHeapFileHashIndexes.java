@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.Transformer;
+import org.gradle.cache.internal.CrossBuildInMemoryCache;
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
+
+import java.io.File;
+
+/**
+ * Keeps the {@link OffHeapFileHashIndex} of each file hash cache across builds, so that build session scoped caches do not start with an empty index for every build.
+ */
+public class OffHeapFileHashIndexes {
+    private final CrossBuildInMemoryCache<String, OffHeapFileHashIndex> indexes;
+
+    public OffHeapFileHashIndexes(CrossBuildInMemoryCacheFactory cacheFactory) {
+        this.indexes = cacheFactory.newCache();
+    }
+
+    OffHeapFileHashIndex get(File cacheDir, String cacheName, final int maxEntries) {
+        return indexes.get(new File(cacheDir, cacheName).getAbsolutePath(), new Transformer<OffHeapFileHashIndex, String>() {
+            @Override
+            public OffHeapFileHashIndex transform(String key) {
+                return new OffHeapFileHashIndex(maxEntries);
+            }
+        });
+    }
+}
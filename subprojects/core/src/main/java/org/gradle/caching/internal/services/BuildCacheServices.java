@@ -21,6 +21,7 @@ import org.gradle.api.internal.GradleInternal;
 import org.gradle.internal.instantiation.InstantiatorFactory;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.logging.configuration.ShowStacktrace;
+import org.gradle.caching.configuration.BuildCacheCompression;
 import org.gradle.caching.configuration.internal.BuildCacheConfigurationInternal;
 import org.gradle.caching.internal.command.BuildCacheCommandFactory;
 import org.gradle.caching.internal.controller.BuildCacheController;
@@ -30,10 +31,12 @@ import org.gradle.caching.internal.controller.BuildCacheControllerFactory.Remote
 import org.gradle.caching.internal.controller.RootBuildCacheControllerRef;
 import org.gradle.caching.internal.origin.OriginMetadataFactory;
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
-import org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.CompressingBuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.ParallelUnpackExecutor;
 import org.gradle.caching.internal.packaging.impl.TarBuildCacheEntryPacker;
 import org.gradle.initialization.buildsrc.BuildSourceBuilder;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -47,6 +50,7 @@ import org.gradle.util.GradleVersion;
 import org.gradle.util.Path;
 
 import java.io.File;
+import java.util.function.Supplier;
 
 import static org.gradle.caching.internal.controller.BuildCacheControllerFactory.BuildCacheMode.DISABLED;
 import static org.gradle.caching.internal.controller.BuildCacheControllerFactory.BuildCacheMode.ENABLED;
@@ -57,8 +61,28 @@ public class BuildCacheServices {
 
     private static final Path ROOT_BUILD_SRC_PATH = Path.path(":" + BuildSourceBuilder.BUILD_SRC);
 
-    BuildCacheEntryPacker createResultPacker(FileSystem fileSystem, StreamHasher fileHasher, StringInterner stringInterner) {
-        return new GZipBuildCacheEntryPacker(new TarBuildCacheEntryPacker(fileSystem, fileHasher, stringInterner));
+    /**
+     * When enabled, the files of unpacked build cache entries are written on a pool of threads.
+     */
+    public static final String PARALLEL_UNPACK_PROPERTY = "org.gradle.internal.build-cache.parallel-unpack";
+
+    private static final int UNPACK_THREADS = 4;
+
+    ParallelUnpackExecutor createParallelUnpackExecutor(ExecutorFactory executorFactory) {
+        return new ParallelUnpackExecutor(executorFactory, UNPACK_THREADS);
+    }
+
+    BuildCacheEntryPacker createResultPacker(FileSystem fileSystem, StreamHasher fileHasher, StringInterner stringInterner, final BuildCacheConfigurationInternal buildCacheConfiguration, ParallelUnpackExecutor parallelUnpackExecutor) {
+        TarBuildCacheEntryPacker tarPacker = Boolean.getBoolean(PARALLEL_UNPACK_PROPERTY)
+            ? new TarBuildCacheEntryPacker(fileSystem, fileHasher, stringInterner, parallelUnpackExecutor)
+            : new TarBuildCacheEntryPacker(fileSystem, fileHasher, stringInterner);
+        // The compression is looked up for each entry, as the build cache can be configured after the packer has been created
+        return new CompressingBuildCacheEntryPacker(tarPacker, new Supplier<BuildCacheCompression>() {
+            @Override
+            public BuildCacheCompression get() {
+                return buildCacheConfiguration.getCompression();
+            }
+        });
     }
 
     OriginMetadataFactory createOriginMetadataFactory(
@@ -24,6 +24,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.Longs;
 import org.gradle.api.Action;
 import org.gradle.api.BuildCancelledException;
 import org.gradle.api.CircularReferenceException;
@@ -74,13 +75,16 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.function.Consumer;
 
 /**
@@ -90,7 +94,22 @@ import java.util.function.Consumer;
 public class DefaultExecutionPlan implements ExecutionPlan {
     private final Set<TaskNode> entryTasks = new LinkedHashSet<TaskNode>();
     private final NodeMapping nodeMapping = new NodeMapping();
-    private final List<Node> executionQueue = Lists.newLinkedList();
+    private final Set<Node> executionQueue = Sets.newLinkedHashSet();
+    private final Map<Node, Integer> executionQueuePositions = Maps.newIdentityHashMap();
+    // The longest expected duration of a chain of nodes starting with each node, only known when prioritizing the critical path
+    private final Map<Node, Long> remainingDurations = Maps.newIdentityHashMap();
+    // Nodes in the execution queue which may be ready to execute, ordered by priority and then in execution queue order.
+    // Nodes are added when they become ready and are removed lazily, so selecting a node does not need to scan the whole execution queue.
+    private final NavigableSet<Node> readyNodes = new TreeSet<Node>(new Comparator<Node>() {
+        @Override
+        public int compare(Node node1, Node node2) {
+            int result = Longs.compare(getRemainingDuration(node2), getRemainingDuration(node1));
+            if (result != 0) {
+                return result;
+            }
+            return executionQueuePositions.get(node1).compareTo(executionQueuePositions.get(node2));
+        }
+    });
     private final Map<Project, ResourceLock> projectLocks = Maps.newHashMap();
     private final FailureCollector failureCollector = new FailureCollector();
     private final TaskNodeFactory taskNodeFactory;
@@ -105,17 +124,26 @@ public class DefaultExecutionPlan implements ExecutionPlan {
     private final Map<File, String> canonicalizedFileCache = Maps.newIdentityHashMap();
     private final Map<Pair<Node, Node>, Boolean> reachableCache = Maps.newHashMap();
     private final List<Node> dependenciesWhichRequireMonitoring = Lists.newArrayList();
-    private boolean maybeNodesReady;
     private final WorkerLeaseService workerLeaseService;
     private final GradleInternal gradle;
+    @Nullable
+    private final NodeDurationEstimator durationEstimator;
 
     private boolean buildCancelled;
 
     public DefaultExecutionPlan(WorkerLeaseService workerLeaseService, GradleInternal gradle, TaskNodeFactory taskNodeFactory, TaskDependencyResolver dependencyResolver) {
+        this(workerLeaseService, gradle, taskNodeFactory, dependencyResolver, null);
+    }
+
+    /**
+     * @param durationEstimator used to start the nodes on the critical path first, or {@code null} to start nodes in execution queue order.
+     */
+    public DefaultExecutionPlan(WorkerLeaseService workerLeaseService, GradleInternal gradle, TaskNodeFactory taskNodeFactory, TaskDependencyResolver dependencyResolver, @Nullable NodeDurationEstimator durationEstimator) {
         this.workerLeaseService = workerLeaseService;
         this.gradle = gradle;
         this.taskNodeFactory = taskNodeFactory;
         this.dependencyResolver = dependencyResolver;
+        this.durationEstimator = durationEstimator;
     }
 
     @Override
@@ -343,13 +371,42 @@ public class DefaultExecutionPlan implements ExecutionPlan {
             }
         }
         executionQueue.clear();
+        executionQueuePositions.clear();
+        remainingDurations.clear();
+        readyNodes.clear();
         Iterables.addAll(executionQueue, nodeMapping);
         for (Node node : executionQueue) {
-            maybeNodesReady |= node.updateAllDependenciesComplete() && node.isReady();
+            executionQueuePositions.put(node, executionQueuePositions.size());
+        }
+        if (durationEstimator != null) {
+            determineRemainingDurations(durationEstimator);
+        }
+        for (Node node : executionQueue) {
+            node.updateAllDependenciesComplete();
+            maybeNodeReady(node);
         }
         this.dependenciesWhichRequireMonitoring.addAll(dependenciesWhichRequireMonitoring);
     }
 
+    /**
+     * Determines the longest expected duration of a chain of nodes starting with each node, which is how much the end of the build can be delayed by starting the node late.
+     * The nodes which have to run after a node come later in the execution queue, so visiting the queue in reverse order visits them first.
+     */
+    private void determineRemainingDurations(NodeDurationEstimator durationEstimator) {
+        for (Node node : Lists.reverse(Lists.newArrayList(executionQueue))) {
+            long longestRemainingDurationAfterNode = 0;
+            for (Node predecessor : node.getAllPredecessors()) {
+                longestRemainingDurationAfterNode = Math.max(longestRemainingDurationAfterNode, getRemainingDuration(predecessor));
+            }
+            remainingDurations.put(node, durationEstimator.estimateDuration(node) + longestRemainingDurationAfterNode);
+        }
+    }
+
+    private long getRemainingDuration(Node node) {
+        Long remainingDuration = remainingDurations.get(node);
+        return remainingDuration == null ? 0 : remainingDuration;
+    }
+
     private MutationInfo getOrCreateMutationsOf(Node node) {
         MutationInfo mutations = this.mutations.get(node);
         if (mutations == null) {
@@ -513,6 +570,9 @@ public class DefaultExecutionPlan implements ExecutionPlan {
         entryTasks.clear();
         nodeMapping.clear();
         executionQueue.clear();
+        executionQueuePositions.clear();
+        remainingDurations.clear();
+        readyNodes.clear();
         projectLocks.clear();
         failureCollector.clearFailures();
         mutations.clear();
@@ -560,43 +620,49 @@ public class DefaultExecutionPlan implements ExecutionPlan {
                 iterator.remove();
             }
         }
-        if (!maybeNodesReady) {
-            return null;
-        }
-        Iterator<Node> iterator = executionQueue.iterator();
-        boolean foundReadyNode = false;
+        Iterator<Node> iterator = readyNodes.iterator();
         while (iterator.hasNext()) {
             Node node = iterator.next();
-            if (node.isReady() && node.allDependenciesComplete()) {
-                foundReadyNode = true;
-                MutationInfo mutations = getResolvedMutationInfo(node);
-
-                // TODO: convert output file checks to a resource lock
-                if (!tryLockProjectFor(node)
-                    || !workerLease.tryLock()
-                    || !canRunWithCurrentlyExecutedNodes(node, mutations)) {
-                    resourceLockState.releaseLocks();
-                    continue;
-                }
-
-                if (node.allDependenciesSuccessful()) {
-                    recordNodeStarted(node);
-                    node.startExecution();
-                } else {
-                    node.skipExecution();
-                    updateAllDependenciesCompleteForPredecessors(node);
-                }
+            if (!node.isReady() || !node.allDependenciesComplete()) {
+                // No longer ready, will be added again when it becomes ready
                 iterator.remove();
-                return node;
+                continue;
+            }
+            MutationInfo mutations = getResolvedMutationInfo(node);
+
+            // TODO: convert output file checks to a resource lock
+            if (!tryLockProjectFor(node)
+                || !workerLease.tryLock()
+                || !canRunWithCurrentlyExecutedNodes(node, mutations)) {
+                resourceLockState.releaseLocks();
+                continue;
             }
+
+            iterator.remove();
+            executionQueue.remove(node);
+            if (node.allDependenciesSuccessful()) {
+                recordNodeStarted(node);
+                node.startExecution();
+            } else {
+                node.skipExecution();
+                updateAllDependenciesCompleteForPredecessors(node);
+            }
+            return node;
         }
-        maybeNodesReady = foundReadyNode;
         return null;
     }
 
     private void updateAllDependenciesCompleteForPredecessors(Node node) {
         for (Node predecessor : node.getAllPredecessors()) {
-            maybeNodesReady |= predecessor.updateAllDependenciesComplete() && predecessor.isReady();
+            if (predecessor.updateAllDependenciesComplete()) {
+                maybeNodeReady(predecessor);
+            }
+        }
+    }
+
+    private void maybeNodeReady(Node node) {
+        if (node.isReady() && node.allDependenciesComplete() && executionQueue.contains(node)) {
+            readyNodes.add(node);
         }
     }
 
@@ -894,7 +960,6 @@ public class DefaultExecutionPlan implements ExecutionPlan {
         try {
             if (!node.isComplete()) {
                 enforceFinalizers(node);
-                maybeNodesReady = true;
                 if (node.isFailed()) {
                     handleFailure(node);
                 }
@@ -907,7 +972,7 @@ public class DefaultExecutionPlan implements ExecutionPlan {
         }
     }
 
-    private static void enforceFinalizers(Node node) {
+    private void enforceFinalizers(Node node) {
         for (Node finalizerNode : node.getFinalizers()) {
             if (finalizerNode.isRequired() || finalizerNode.isMustNotRun()) {
                 HashSet<Node> enforcedNodes = Sets.newHashSet();
@@ -916,7 +981,7 @@ public class DefaultExecutionPlan implements ExecutionPlan {
         }
     }
 
-    private static void enforceWithDependencies(Node nodeInfo, Set<Node> enforcedNodes) {
+    private void enforceWithDependencies(Node nodeInfo, Set<Node> enforcedNodes) {
         Deque<Node> candidateNodes = new ArrayDeque<Node>();
         candidateNodes.add(nodeInfo);
 
@@ -929,9 +994,11 @@ public class DefaultExecutionPlan implements ExecutionPlan {
 
                 if (node.isMustNotRun() || node.isRequired()) {
                     node.enforceRun();
+                    maybeNodeReady(node);
                     // Completed changed from true to false - inform all nodes depending on this one.
                     for (Node predecessor : node.getAllPredecessors()) {
                         predecessor.forceAllDependenciesCompleteUpdate();
+                        maybeNodeReady(predecessor);
                     }
                 }
             }
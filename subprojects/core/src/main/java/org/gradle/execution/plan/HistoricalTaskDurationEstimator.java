@@ -0,0 +1,39 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
+
+/**
+ * Estimates the duration of a task as the execution time recorded in the execution history when its outputs were last produced.
+ */
+public class HistoricalTaskDurationEstimator implements NodeDurationEstimator {
+    private final ExecutionHistoryStore executionHistoryStore;
+
+    public HistoricalTaskDurationEstimator(ExecutionHistoryStore executionHistoryStore) {
+        this.executionHistoryStore = executionHistoryStore;
+    }
+
+    @Override
+    public long estimateDuration(Node node) {
+        if (!(node instanceof LocalTaskNode)) {
+            return 0;
+        }
+        // Only the execution time is loaded, as loading the whole execution state for every task in the graph is expensive
+        return executionHistoryStore.loadExecutionTime(((LocalTaskNode) node).getTask().getPath()).orElse(0L);
+    }
+}
@@ -21,9 +21,12 @@ import org.gradle.api.internal.file.FileSystemSubset;
 import org.gradle.initialization.BuildCancellationToken;
 import org.gradle.internal.UncheckedException;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -44,6 +47,12 @@ class DefaultFileSystemChangeWaiter implements FileSystemChangeWaiter {
     private FileWatcherEventListener eventListener;
     private final Collection<FileWatcherEvent> eventsBeforeListening = new ArrayList<FileWatcherEvent>();
     private final Lock eventDeliveryLock = new ReentrantLock();
+    private final FileSystemSubset.Builder watchedLocations = FileSystemSubset.builder();
+    private final Set<File> changedFiles = new LinkedHashSet<File>();
+    private boolean changesMissed;
+    private volatile FileWatcherChangesListener changesListener;
+    // Whether the build was triggered and changes are now reported to the listener as they happen
+    private boolean reportingChanges;
 
     private static long monotonicClockMillis() {
         return System.nanoTime() / 1000000L;
@@ -79,6 +88,7 @@ class DefaultFileSystemChangeWaiter implements FileSystemChangeWaiter {
             @Override
             public void execute(Throwable throwable) {
                 error.set(throwable);
+                recordMissedChanges();
                 signal(lock, condition);
             }
         };
@@ -87,6 +97,9 @@ class DefaultFileSystemChangeWaiter implements FileSystemChangeWaiter {
             new FileWatcherListener() {
                 @Override
                 public void onChange(final FileWatcher watcher, FileWatcherEvent event) {
+                    if (recordChange(event)) {
+                        return;
+                    }
                     if (!(event.getType() == FileWatcherEvent.Type.MODIFY && event.getFile().isDirectory())) {
                         deliverEvent(event);
                         signal(lock, condition, new Runnable() {
@@ -107,7 +120,11 @@ class DefaultFileSystemChangeWaiter implements FileSystemChangeWaiter {
         try {
             if (!fileSystemSubset.isEmpty()) {
                 watching = true;
+                watchedLocations.add(fileSystemSubset);
                 watcher.watch(fileSystemSubset);
+                if (changesListener != null) {
+                    changesListener.startedWatching(fileSystemSubset);
+                }
             }
         } catch (IOException e) {
             onError.execute(e);
@@ -147,8 +164,62 @@ class DefaultFileSystemChangeWaiter implements FileSystemChangeWaiter {
         } finally {
             detachEventListener();
             cancellationToken.removeCallback(cancellationHandler);
-            watcher.stop();
+            if (!startReportingChanges()) {
+                watcher.stop();
+            }
+        }
+    }
+
+    /**
+     * Records the change, or reports it straight away once the build was triggered. Returns whether the build was triggered already.
+     */
+    private boolean recordChange(FileWatcherEvent event) {
+        synchronized (changedFiles) {
+            if (event.getType() == FileWatcherEvent.Type.UNDEFINED || event.getFile() == null) {
+                recordMissedChanges();
+            } else if (reportingChanges) {
+                changesListener.changeReportedByWatcher(event.getFile().getAbsoluteFile());
+            } else {
+                changedFiles.add(event.getFile().getAbsoluteFile());
+            }
+            return reportingChanges;
+        }
+    }
+
+    private void recordMissedChanges() {
+        synchronized (changedFiles) {
+            if (reportingChanges && !changesMissed) {
+                changesListener.changesMissedByWatcher();
+            }
+            changesMissed = true;
+        }
+    }
+
+    @Override
+    public void reportChangesTo(FileWatcherChangesListener listener) {
+        this.changesListener = listener;
+    }
+
+    /**
+     * Passes the changes reported while waiting on to the listener, and keeps reporting changes until stopped.
+     * Returns false when there is nothing to report, so the watcher can be stopped.
+     */
+    private boolean startReportingChanges() {
+        if (changesListener == null || !watching || error.get() != null || cancellationToken.isCancellationRequested()) {
+            return false;
+        }
+        FileSystemSubset watched = watchedLocations.build();
+        FileSystemSubset unwatched = watcher.getUnwatchedLocations();
+        synchronized (changedFiles) {
+            if (changesMissed) {
+                return false;
+            }
+            // Report under the lock, so that no later change is reported before these
+            changesListener.changesReportedByWatcher(watched, unwatched, new ArrayList<File>(changedFiles));
+            changedFiles.clear();
+            reportingChanges = true;
         }
+        return true;
     }
 
     private boolean waitingForChanges(long lastChangeAtValue) {
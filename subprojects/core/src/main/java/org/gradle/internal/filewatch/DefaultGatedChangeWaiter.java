@@ -51,6 +51,11 @@ class DefaultGatedChangeWaiter implements FileSystemChangeWaiter {
         return delegate.isWatching();
     }
 
+    @Override
+    public void reportChangesTo(FileWatcherChangesListener listener) {
+        delegate.reportChangesTo(listener);
+    }
+
     @Override
     public void stop() {
         delegate.stop();
@@ -23,4 +23,10 @@ public interface FileSystemChangeWaiter extends Stoppable {
     void watch(FileSystemSubset fileSystemSubset);
     void wait(Runnable notifier, FileWatcherEventListener eventListener);
     boolean isWatching();
+
+    /**
+     * Reports the locations this waiter starts watching to the given listener and, once a change has triggered the next build, the changes reported by the watcher.
+     * The watcher then keeps running and reporting changes until this waiter is stopped. Nothing is reported when changes to the watched locations may have been missed.
+     */
+    void reportChangesTo(FileWatcherChangesListener listener);
 }
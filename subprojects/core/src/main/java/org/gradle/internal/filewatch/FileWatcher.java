@@ -39,4 +39,10 @@ public interface FileWatcher extends Stoppable {
     boolean isRunning();
 
     void watch(FileSystemSubset fileSystemSubset) throws IOException;
+
+    /**
+     * Returns the watched locations for which the watcher may not have reported all changes yet, such as directories that are polled for changes
+     * instead of being watched.
+     */
+    FileSystemSubset getUnwatchedLocations();
 }
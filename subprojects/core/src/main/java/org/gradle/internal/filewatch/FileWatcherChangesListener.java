@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.filewatch;
+
+import org.gradle.api.internal.file.FileSystemSubset;
+
+import java.io.File;
+import java.util.Collection;
+
+/**
+ * Receives the changes that the file watcher of a continuous build reported.
+ *
+ * The watcher of a build keeps running after it has triggered the next build, until the next build has completed,
+ * so that changes made before the watches of the next build are registered are still reported.
+ */
+public interface FileWatcherChangesListener {
+    /**
+     * Called when the watcher starts watching the given locations. Changes made to the locations before this are not reported.
+     */
+    void startedWatching(FileSystemSubset locations);
+
+    /**
+     * Called once a change has triggered the next build, when the watcher reported every change to the watched locations so far.
+     *
+     * @param watchedLocations the locations that were watched.
+     * @param unwatchedLocations the locations within the watched locations for which the watcher may have missed changes.
+     * @param changedFiles the files and directories in the watched locations that were created, modified or deleted.
+     */
+    void changesReportedByWatcher(FileSystemSubset watchedLocations, FileSystemSubset unwatchedLocations, Collection<File> changedFiles);
+
+    /**
+     * Called for each change the watcher reports after it has triggered the next build, until it stops.
+     */
+    void changeReportedByWatcher(File changedFile);
+
+    /**
+     * Called when the watcher may have missed changes to the watched locations after it has triggered the next build.
+     */
+    void changesMissedByWatcher();
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.filewatch.jdk7;
+
+import com.google.common.base.Predicate;
+import org.gradle.internal.filewatch.FileWatcherEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Detects changes to directory trees that cannot be watched by the {@link java.nio.file.WatchService}, by comparing the type, size
+ * and modification time of their files with those seen by the previous poll.
+ *
+ * Trees are added from the threads registering watches. Polling happens on the thread delivering the watch events.
+ */
+class DirectoryTreePoller {
+    static final long POLL_INTERVAL_MILLIS = 2000;
+    private final static Logger LOG = LoggerFactory.getLogger(DirectoryTreePoller.class);
+
+    private final List<PolledTree> trees = new CopyOnWriteArrayList<PolledTree>();
+
+    /**
+     * Starts polling the given directory and those of its descendant directories accepted by the given filter.
+     * Does nothing when the directory is already polled.
+     */
+    void poll(File root, Predicate<? super File> filter) {
+        if (isPolled(root)) {
+            return;
+        }
+        PolledTree tree = new PolledTree(root, filter);
+        tree.scan();
+        trees.add(tree);
+        LOG.debug("Polling {} for changes", root);
+    }
+
+    boolean isPolling() {
+        return !trees.isEmpty();
+    }
+
+    int getPolledTreeCount() {
+        return trees.size();
+    }
+
+    List<File> getPolledRoots() {
+        List<File> roots = new ArrayList<File>(trees.size());
+        for (PolledTree tree : trees) {
+            roots.add(tree.root);
+        }
+        return roots;
+    }
+
+    /**
+     * Returns whether the given file is located in one of the polled trees.
+     */
+    boolean isPolled(File file) {
+        String path = file.getAbsolutePath();
+        for (PolledTree tree : trees) {
+            if (path.equals(tree.rootPath) || path.startsWith(tree.rootPathWithSeparator)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the changes made to the polled trees since the previous call.
+     */
+    List<FileWatcherEvent> pollForChanges() {
+        List<FileWatcherEvent> events = new ArrayList<FileWatcherEvent>();
+        for (PolledTree tree : trees) {
+            tree.pollForChanges(events);
+        }
+        return events;
+    }
+
+    private static class PolledTree {
+        private final File root;
+        private final String rootPath;
+        private final String rootPathWithSeparator;
+        private final Predicate<? super File> filter;
+        private Map<Path, FileState> files;
+
+        PolledTree(File root, Predicate<? super File> filter) {
+            this.root = root;
+            this.rootPath = root.getAbsolutePath();
+            this.rootPathWithSeparator = rootPath + File.separator;
+            this.filter = filter;
+        }
+
+        void scan() {
+            files = snapshot();
+        }
+
+        void pollForChanges(List<FileWatcherEvent> events) {
+            Map<Path, FileState> previous = files;
+            Map<Path, FileState> current = snapshot();
+            for (Map.Entry<Path, FileState> entry : current.entrySet()) {
+                FileState previousState = previous.remove(entry.getKey());
+                if (previousState == null) {
+                    events.add(FileWatcherEvent.create(entry.getKey().toFile()));
+                } else if (!previousState.equals(entry.getValue())) {
+                    events.add(FileWatcherEvent.modify(entry.getKey().toFile()));
+                }
+            }
+            for (Path deleted : previous.keySet()) {
+                events.add(FileWatcherEvent.delete(deleted.toFile()));
+            }
+            files = current;
+        }
+
+        private Map<Path, FileState> snapshot() {
+            Map<Path, FileState> snapshot = new HashMap<Path, FileState>();
+            visitDirectory(root.toPath(), snapshot);
+            return snapshot;
+        }
+
+        private void visitDirectory(Path directory, Map<Path, FileState> snapshot) {
+            DirectoryStream<Path> stream;
+            try {
+                stream = Files.newDirectoryStream(directory);
+            } catch (IOException e) {
+                // The directory was deleted or cannot be read, which is reported by the previous state of its files
+                LOG.debug("Could not poll " + directory, e);
+                return;
+            }
+            try {
+                for (Path child : stream) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        if (filter.apply(child.toFile())) {
+                            snapshot.put(child, FileState.DIRECTORY);
+                            visitDirectory(child, snapshot);
+                        }
+                    } else {
+                        snapshot.put(child, new FileState(attributes.size(), attributes.lastModifiedTime().toMillis()));
+                    }
+                }
+            } finally {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private static class FileState {
+        static final FileState DIRECTORY = new FileState(-1, 0);
+
+        private final long length;
+        private final long lastModified;
+
+        FileState(long length, long lastModified) {
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            FileState other = (FileState) o;
+            return length == other.length && lastModified == other.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (length ^ (length >>> 32)) + (int) (lastModified ^ (lastModified >>> 32));
+        }
+    }
+}
@@ -35,6 +35,7 @@ import java.lang.ref.SoftReference;
 import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.WatchService;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -63,6 +64,11 @@ public class WatchServiceFileWatcherBacking {
             WatchServiceFileWatcherBacking.this.watchServiceRegistrar.watch(fileSystemSubset);
         }
 
+        @Override
+        public FileSystemSubset getUnwatchedLocations() {
+            return WatchServiceFileWatcherBacking.this.watchServiceRegistrar.getUnwatchedLocations();
+        }
+
         @Override
         public void stop() {
             WatchServiceFileWatcherBacking.this.stop();
@@ -127,10 +133,14 @@ public class WatchServiceFileWatcherBacking {
     private void pumpEvents() throws InterruptedException {
         while (isRunning()) {
             try {
-                List<FileWatcherEvent> events = poller.takeEvents();
+                long maxWaitMillis = watchServiceRegistrar.getMaxWaitMillis(TimeUnit.SECONDS.toMillis(WatchServicePoller.POLL_TIMEOUT_SECONDS));
+                List<FileWatcherEvent> events = poller.takeEvents(maxWaitMillis);
                 if (events != null) {
                     deliverEvents(events);
                 }
+                if (isRunning()) {
+                    watchServiceRegistrar.processPendingWork(fileWatcher);
+                }
             } catch (ClosedWatchServiceException e) {
                 LOGGER.debug("Received ClosedWatchServiceException, stopping");
                 stop();
@@ -157,6 +167,7 @@ public class WatchServiceFileWatcherBacking {
 
     private void stop() {
         if (stopped.compareAndSet(false, true)) {
+            watchServiceRegistrar.stop();
             if (running.compareAndSet(true, false)) {
                 LOGGER.debug("Stopping file watching");
                 interruptPollerThread();
@@ -34,7 +34,7 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 class WatchServicePoller {
-    private static final int POLL_TIMEOUT_SECONDS = 5;
+    static final int POLL_TIMEOUT_SECONDS = 5;
     private final WatchService watchService;
 
     WatchServicePoller(WatchService watchService) throws IOException {
@@ -43,7 +43,15 @@ class WatchServicePoller {
 
     @Nullable
     public List<FileWatcherEvent> takeEvents() throws InterruptedException {
-        WatchKey watchKey = watchService.poll(POLL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        return takeEvents(TimeUnit.SECONDS.toMillis(POLL_TIMEOUT_SECONDS));
+    }
+
+    /**
+     * Waits at most the given time for events, or only takes the events already available when the timeout is 0.
+     */
+    @Nullable
+    public List<FileWatcherEvent> takeEvents(long timeoutMillis) throws InterruptedException {
+        WatchKey watchKey = timeoutMillis > 0 ? watchService.poll(timeoutMillis, TimeUnit.MILLISECONDS) : watchService.poll();
         if (watchKey != null) {
             return handleWatchKey(watchKey);
         }
@@ -16,6 +16,7 @@
 
 package org.gradle.internal.filewatch.jdk7;
 
+import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
 import org.gradle.api.JavaVersion;
 import org.gradle.api.internal.file.FileSystemSubset;
@@ -29,39 +30,71 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystemException;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Registers the directories to watch with the {@link WatchService} and filters the events it reports.
+ *
+ * The directory trees of the starting watch points are walked and registered in parallel. The subdirectories of a directory created while
+ * watching are registered later, a batch at a time in between the delivery of events, so that events are not held up by large new trees.
+ * When the limit of watches of the operating system is reached, the directories which could not be watched are polled for changes instead.
+ */
 class WatchServiceRegistrar implements FileWatcherListener {
     private final static Logger LOG = LoggerFactory.getLogger(WatchServiceRegistrar.class);
     private static final boolean FILE_TREE_WATCHING_SUPPORTED = OperatingSystem.current().isWindows() && !JavaVersion.current().isJava9Compatible();
     private static final WatchEvent.Modifier[] WATCH_MODIFIERS = instantiateWatchModifiers();
+    private static final int NEW_DIRECTORIES_PER_BATCH = 100;
     private static final WatchEvent.Kind[] WATCH_KINDS = new WatchEvent.Kind[]{StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY};
 
     private final WatchService watchService;
     private final FileWatcherListener delegate;
     private final Lock lock = new ReentrantLock(true);
     private final WatchPointsRegistry watchPointsRegistry;
-    private final HashMap<Path, WatchKey> watchKeys = new HashMap<Path, WatchKey>();
+    private final Map<Path, WatchKey> watchKeys = new ConcurrentHashMap<Path, WatchKey>();
+    private final int registrationParallelism;
+    private final int maxWatchedDirectories;
+    private final AtomicBoolean watchLimitReached = new AtomicBoolean();
+    private final DirectoryTreePoller poller = new DirectoryTreePoller();
+    private final Deque<File> pendingNewDirectories = new ArrayDeque<File>();
+    private volatile ForkJoinPool registrationPool;
+    private volatile boolean stopped;
+    private long lastPollAt;
 
     WatchServiceRegistrar(WatchService watchService, FileWatcherListener delegate) {
+        this(watchService, delegate, Runtime.getRuntime().availableProcessors(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param registrationParallelism the number of threads walking and registering directory trees.
+     * @param maxWatchedDirectories the number of directories to watch before polling the remaining ones, in addition to the limit of the operating system.
+     */
+    WatchServiceRegistrar(WatchService watchService, FileWatcherListener delegate, int registrationParallelism, int maxWatchedDirectories) {
         this.watchService = watchService;
         this.delegate = delegate;
+        this.registrationParallelism = registrationParallelism;
+        this.maxWatchedDirectories = maxWatchedDirectories;
         this.watchPointsRegistry = new WatchPointsRegistry(!FILE_TREE_WATCHING_SUPPORTED);
     }
 
@@ -95,36 +128,148 @@ class WatchServiceRegistrar implements FileWatcherListener {
             final WatchPointsRegistry.Delta delta = watchPointsRegistry.appendFileSystemSubset(fileSystemSubset, getCurrentWatchPoints());
             Iterable<? extends File> startingWatchPoints = delta.getStartingWatchPoints();
 
+            List<RegisterDirectoryTree> registrations = new ArrayList<RegisterDirectoryTree>();
             for (File dir : startingWatchPoints) {
-                LOG.debug("Begin - handling starting point {}", dir);
-                final Path dirPath = dir.toPath();
-                watchDir(dirPath);
-                if (!FILE_TREE_WATCHING_SUPPORTED) {
-                    Files.walkFileTree(dirPath, new SimpleFileVisitor<Path>() {
-                        @Override
-                        public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) throws IOException {
-                            if (!path.equals(dirPath)) {
-                                if (delta.shouldWatch(path.toFile())) {
-                                    watchDir(path);
-                                    return FileVisitResult.CONTINUE;
-                                } else {
-                                    LOG.debug("Skipping watching for {}, filtered by WatchPointsRegistry", path);
-                                    return FileVisitResult.SKIP_SUBTREE;
-                                }
-                            } else {
-                                return FileVisitResult.CONTINUE;
-                            }
-                        }
-                    });
+                LOG.debug("Adding starting point {}", dir);
+                registrations.add(new RegisterDirectoryTree(dir.toPath(), delta));
+            }
+            if (FILE_TREE_WATCHING_SUPPORTED) {
+                // A single watch covers the whole tree
+                for (RegisterDirectoryTree registration : registrations) {
+                    registration.watchOrPoll();
                 }
-                LOG.debug("End - handling starting point {}", dir);
+            } else if (!registrations.isEmpty() && !stopped) {
+                getRegistrationPool().invoke(new RegisterDirectoryTrees(registrations));
             }
+            LOG.debug("Watching {} directories, polling {} directory trees", watchKeys.size(), poller.getPolledTreeCount());
             LOG.debug("End - adding watches for {}", fileSystemSubset);
         } finally {
             lock.unlock();
         }
     }
 
+    private ForkJoinPool getRegistrationPool() {
+        ForkJoinPool pool = registrationPool;
+        if (pool == null) {
+            pool = new ForkJoinPool(registrationParallelism, new NamedThreadFactory(), null, false);
+            registrationPool = pool;
+            if (stopped) {
+                pool.shutdownNow();
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Watches the given directory, or returns {@code false} when the limit of watches has been reached and the directory needs to be polled instead.
+     */
+    private boolean watchDirUnlessLimitReached(Path dir) throws IOException {
+        if (watchLimitReached.get()) {
+            return false;
+        }
+        if (watchKeys.size() >= maxWatchedDirectories) {
+            reachedWatchLimit();
+            return false;
+        }
+        try {
+            watchDir(dir);
+            return true;
+        } catch (IOException e) {
+            if (isWatchLimitError(e)) {
+                reachedWatchLimit();
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isWatchLimitError(IOException e) {
+        // The message used by the Linux watch service when inotify_add_watch() fails with ENOSPC
+        return e.getMessage() != null && e.getMessage().contains("limit of inotify watches reached");
+    }
+
+    private void reachedWatchLimit() {
+        if (watchLimitReached.compareAndSet(false, true)) {
+            LOG.warn("Reached the limit of file system watches after watching {} directories. The remaining directories will be polled for changes, which is slower. "
+                + "On Linux, the limit is set by the fs.inotify.max_user_watches kernel parameter.", watchKeys.size());
+        }
+    }
+
+    /**
+     * Returns how long the thread delivering events can wait for the next event before it needs to call {@link #processPendingWork(FileWatcher)}.
+     */
+    long getMaxWaitMillis(long defaultWaitMillis) {
+        lock.lock();
+        try {
+            if (!pendingNewDirectories.isEmpty()) {
+                return 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (poller.isPolling()) {
+            return Math.min(defaultWaitMillis, DirectoryTreePoller.POLL_INTERVAL_MILLIS);
+        }
+        return defaultWaitMillis;
+    }
+
+    /**
+     * Registers the next batch of directories of newly created trees, and polls the directories which could not be watched
+     * when the poll interval has elapsed since the previous poll.
+     */
+    void processPendingWork(FileWatcher watcher) {
+        lock.lock();
+        try {
+            for (int i = 0; i < NEW_DIRECTORIES_PER_BATCH && !pendingNewDirectories.isEmpty(); i++) {
+                maybeWatchNewDirectory(watcher, pendingNewDirectories.removeFirst());
+            }
+            if (poller.isPolling()) {
+                long now = System.currentTimeMillis();
+                if (now - lastPollAt >= DirectoryTreePoller.POLL_INTERVAL_MILLIS) {
+                    lastPollAt = now;
+                    for (FileWatcherEvent event : poller.pollForChanges()) {
+                        if (isStopRequested(watcher)) {
+                            return;
+                        }
+                        maybeFire(watcher, event);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the locations whose changes may not have been reported yet: the polled directory trees, whose changes are only found once per poll interval,
+     * and the newly created directories that have not been registered yet.
+     */
+    FileSystemSubset getUnwatchedLocations() {
+        lock.lock();
+        try {
+            FileSystemSubset.Builder unwatched = FileSystemSubset.builder();
+            for (File root : poller.getPolledRoots()) {
+                unwatched.add(root);
+            }
+            for (File dir : pendingNewDirectories) {
+                unwatched.add(dir);
+            }
+            return unwatched.build();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void stop() {
+        stopped = true;
+        ForkJoinPool pool = registrationPool;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
     private Iterable<File> getCurrentWatchPoints() {
         List<File> currentWatchPoints = new LinkedList<File>();
         for (Map.Entry<Path, WatchKey> entry : watchKeys.entrySet()) {
@@ -251,9 +396,18 @@ class WatchServiceRegistrar implements FileWatcherListener {
             LOG.debug("Ignoring watching {}", dir);
             return;
         }
+        if (poller.isPolled(dir)) {
+            LOG.debug("Directory {} is polled for changes", dir);
+            return;
+        }
         if (dir.exists()) {
-            if (!FILE_TREE_WATCHING_SUPPORTED) {
-                watchDir(dir.toPath());
+            if (!FILE_TREE_WATCHING_SUPPORTED && !watchDirUnlessLimitReached(dir.toPath())) {
+                poller.poll(dir, new Predicate<File>() {
+                    @Override
+                    public boolean apply(File input) {
+                        return watchPointsRegistry.shouldWatch(input);
+                    }
+                });
             }
             File[] contents = dir.listFiles();
             if (contents != null) {
@@ -264,7 +418,8 @@ class WatchServiceRegistrar implements FileWatcherListener {
                     }
                     maybeFire(watcher, FileWatcherEvent.create(file));
                     if (file.isDirectory()) {
-                        maybeWatchNewDirectory(watcher, file);
+                        // Registered by a later call to processPendingWork()
+                        pendingNewDirectories.addLast(file);
                     }
                 }
             }
@@ -276,5 +431,90 @@ class WatchServiceRegistrar implements FileWatcherListener {
         return Thread.currentThread().isInterrupted() || !watcher.isRunning();
     }
 
-}
+    private class RegisterDirectoryTrees extends RecursiveAction {
+        private final List<RegisterDirectoryTree> registrations;
+
+        RegisterDirectoryTrees(List<RegisterDirectoryTree> registrations) {
+            this.registrations = registrations;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(registrations);
+        }
+    }
+
+    private class RegisterDirectoryTree extends RecursiveAction {
+        private final Path dir;
+        private final WatchPointsRegistry.Delta delta;
+
+        RegisterDirectoryTree(Path dir, WatchPointsRegistry.Delta delta) {
+            this.dir = dir;
+            this.delta = delta;
+        }
 
+        @Override
+        protected void compute() {
+            if (stopped) {
+                return;
+            }
+            try {
+                if (watchOrPoll()) {
+                    invokeAll(subdirectoriesToWatch());
+                }
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+
+        /**
+         * Watches the directory, or polls its tree when the limit of watches has been reached.
+         */
+        boolean watchOrPoll() throws IOException {
+            if (watchDirUnlessLimitReached(dir)) {
+                return true;
+            }
+            poller.poll(dir.toFile(), new Predicate<File>() {
+                @Override
+                public boolean apply(File input) {
+                    return delta.shouldWatch(input);
+                }
+            });
+            return false;
+        }
+
+        private List<RegisterDirectoryTree> subdirectoriesToWatch() throws IOException {
+            List<RegisterDirectoryTree> subdirectories = new ArrayList<RegisterDirectoryTree>();
+            DirectoryStream<Path> stream;
+            try {
+                stream = Files.newDirectoryStream(dir);
+            } catch (NoSuchFileException e) {
+                LOG.debug("Directory {} was deleted while registering watches", dir);
+                return subdirectories;
+            }
+            try {
+                for (Path path : stream) {
+                    if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                        if (delta.shouldWatch(path.toFile())) {
+                            subdirectories.add(new RegisterDirectoryTree(path, delta));
+                        } else {
+                            LOG.debug("Skipping watching for {}, filtered by WatchPointsRegistry", path);
+                        }
+                    }
+                }
+            } finally {
+                stream.close();
+            }
+            return subdirectories;
+        }
+    }
+
+    private static class NamedThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("File watch registration " + thread.getPoolIndex());
+            return thread;
+        }
+    }
+}
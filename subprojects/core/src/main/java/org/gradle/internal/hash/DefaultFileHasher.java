@@ -19,30 +19,59 @@ import org.gradle.api.UncheckedIOException;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.internal.IoActions;
 import org.gradle.internal.file.FileMetadataSnapshot;
+import org.gradle.internal.snapshot.WellKnownFileLocations;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.InputStream;
+import java.io.IOException;
 
 public class DefaultFileHasher implements FileHasher {
-    private final StreamHasher streamHasher;
+    /**
+     * Files of at least this size are hashed through their {@link java.nio.channels.FileChannel} instead of a stream.
+     */
+    public static final long DEFAULT_CHANNEL_THRESHOLD = 1024 * 1024;
 
-    public DefaultFileHasher(StreamHasher streamHasher) {
+    private final DefaultStreamHasher streamHasher;
+    private final long channelThreshold;
+    private final WellKnownFileLocations wellKnownFileLocations;
+
+    public DefaultFileHasher(DefaultStreamHasher streamHasher) {
+        this(streamHasher, DEFAULT_CHANNEL_THRESHOLD);
+    }
+
+    public DefaultFileHasher(DefaultStreamHasher streamHasher, long channelThreshold) {
+        this(streamHasher, channelThreshold, null);
+    }
+
+    /**
+     * @param wellKnownFileLocations large files in immutable locations are mapped into memory for hashing, as they cannot be truncated while they are hashed.
+     */
+    public DefaultFileHasher(DefaultStreamHasher streamHasher, long channelThreshold, WellKnownFileLocations wellKnownFileLocations) {
         this.streamHasher = streamHasher;
+        this.channelThreshold = channelThreshold;
+        this.wellKnownFileLocations = wellKnownFileLocations;
     }
 
     @Override
     public HashCode hash(File file) {
         try {
-            InputStream inputStream = new FileInputStream(file);
+            FileInputStream inputStream = new FileInputStream(file);
             try {
+                if (inputStream.getChannel().size() >= channelThreshold) {
+                    if (wellKnownFileLocations != null && wellKnownFileLocations.isImmutable(file.getPath())) {
+                        return streamHasher.hashMapped(inputStream.getChannel());
+                    }
+                    return streamHasher.hash(inputStream.getChannel());
+                }
                 return streamHasher.hash(inputStream);
             } finally {
                 IoActions.closeQuietly(inputStream);
             }
         } catch (FileNotFoundException e) {
             throw new UncheckedIOException(String.format("Failed to create MD5 hash for file '%s' as it does not exist.", file), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create MD5 hash for file '%s'.", file), e);
         }
     }
 
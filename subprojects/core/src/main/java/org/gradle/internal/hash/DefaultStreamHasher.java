@@ -16,18 +16,42 @@
 package org.gradle.internal.hash;
 
 import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.io.BufferCaster;
+import org.gradle.internal.io.MappedBuffers;
 import org.gradle.internal.io.NullOutputStream;
+import org.gradle.internal.os.OperatingSystem;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 public class DefaultStreamHasher implements StreamHasher {
     private static final HashCode SIGNATURE = Hashing.signature(DefaultStreamHasher.class);
+    private static final int BUFFER_SIZE = 8192;
+    private static final int DIRECT_BUFFER_SIZE = 256 * 1024;
+    private static final long MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+    // A mapped file cannot be deleted on Windows until its mapping is released, which otherwise only happens once the buffer is garbage collected
+    private static final boolean MAPPING_SUPPORTED = !OperatingSystem.current().isWindows() || MappedBuffers.canRelease();
 
-    private final Queue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(16);
+    // Buffers are cached per thread, so hashing on many threads at the same time does not contend on a shared pool
+    private final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+    private final ThreadLocal<ByteBuffer> directBuffers = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+        }
+    };
+
+    public DefaultStreamHasher() {
+    }
 
     @Override
     public HashCode hash(InputStream inputStream) {
@@ -43,35 +67,77 @@ public class DefaultStreamHasher implements StreamHasher {
         return doHash(inputStream, outputStream);
     }
 
-    private HashCode doHash(InputStream inputStream, OutputStream outputStream) throws IOException {
-        byte[] buffer = takeBuffer();
+    /**
+     * Returns the hash of the content of the given channel from its current position, which is the same as the hash of a stream with the same content.
+     * This avoids the many small reads needed to hash a large file through a stream. The channel will not be closed by the method.
+     */
+    public HashCode hash(FileChannel channel) throws IOException {
+        PrimitiveHasher hasher = Hashing.newPrimitiveHasher();
+        hasher.putHash(SIGNATURE);
+        ByteBuffer buffer = directBuffers.get();
+        while (true) {
+            BufferCaster.cast(buffer).clear();
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+            BufferCaster.cast(buffer).flip();
+            hasher.putBytes(buffer);
+        }
+        return hasher.hash();
+    }
+
+    /**
+     * Returns the same hash as {@link #hash(FileChannel)}, mapping the content into memory rather than reading it.
+     *
+     * Only use this for files that are not modified while they are hashed, such as those in the immutable caches. Accessing the mapping of a
+     * file truncated by another process fails with an {@link InternalError}, in which case the content is read again through {@link #hash(FileChannel)}.
+     * Each mapped region is released as soon as it has been hashed.
+     */
+    public HashCode hashMapped(FileChannel channel) throws IOException {
+        if (!MAPPING_SUPPORTED) {
+            return hash(channel);
+        }
+        long start = channel.position();
         try {
             PrimitiveHasher hasher = Hashing.newPrimitiveHasher();
             hasher.putHash(SIGNATURE);
-            while (true) {
-                int nread = inputStream.read(buffer);
-                if (nread < 0) {
-                    break;
+            long position = start;
+            long size = channel.size();
+            while (position < size) {
+                long regionSize = Math.min(MAPPED_REGION_SIZE, size - position);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, regionSize);
+                try {
+                    hasher.putBytes(region);
+                } finally {
+                    MappedBuffers.release(region);
                 }
-                outputStream.write(buffer, 0, nread);
-                hasher.putBytes(buffer, 0, nread);
+                position += regionSize;
             }
+            channel.position(position);
             return hasher.hash();
-        } finally {
-            returnBuffer(buffer);
+        } catch (InternalError e) {
+            // The file was truncated while it was hashed
+            channel.position(start);
+            return hash(channel);
+        } catch (IOException e) {
+            // The file could not be mapped, for example because the address space is exhausted
+            channel.position(start);
+            return hash(channel);
         }
     }
 
-    private void returnBuffer(byte[] buffer) {
-        // Retain buffer if there is capacity in the queue, otherwise discard
-        buffers.offer(buffer);
-    }
-
-    private byte[] takeBuffer() {
-        byte[] buffer = buffers.poll();
-        if (buffer == null) {
-            buffer = new byte[8192];
+    private HashCode doHash(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = buffers.get();
+        PrimitiveHasher hasher = Hashing.newPrimitiveHasher();
+        hasher.putHash(SIGNATURE);
+        while (true) {
+            int nread = inputStream.read(buffer);
+            if (nread < 0) {
+                break;
+            }
+            outputStream.write(buffer, 0, nread);
+            hasher.putBytes(buffer, 0, nread);
         }
-        return buffer;
+        return hasher.hash();
     }
 }
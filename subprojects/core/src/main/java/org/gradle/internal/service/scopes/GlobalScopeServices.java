@@ -21,6 +21,7 @@ import org.gradle.api.execution.internal.DefaultTaskInputsListener;
 import org.gradle.api.execution.internal.TaskInputsListener;
 import org.gradle.api.internal.StartParameterInternal;
 import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.internal.changedetection.state.OffHeapFileHashIndexes;
 import org.gradle.api.internal.file.DefaultFilePropertyFactory;
 import org.gradle.api.internal.file.FileCollectionFactory;
 import org.gradle.api.internal.file.FileResolver;
@@ -59,7 +60,6 @@ import org.gradle.internal.execution.history.changes.ExecutionStateChangeDetecto
 import org.gradle.internal.filewatch.DefaultFileWatcherFactory;
 import org.gradle.internal.filewatch.FileWatcherFactory;
 import org.gradle.internal.hash.DefaultStreamHasher;
-import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.instantiation.DefaultInstantiatorFactory;
 import org.gradle.internal.instantiation.InjectAnnotationHandler;
 import org.gradle.internal.instantiation.InstantiatorFactory;
@@ -175,6 +175,10 @@ public class GlobalScopeServices extends WorkerSharedGlobalScopeServices {
         return new InMemoryCacheDecoratorFactory(environment.isLongLivingProcess(), cacheFactory);
     }
 
+    OffHeapFileHashIndexes createOffHeapFileHashIndexes(CrossBuildInMemoryCacheFactory cacheFactory) {
+        return new OffHeapFileHashIndexes(cacheFactory);
+    }
+
     DirectoryFileTreeFactory createDirectoryFileTreeFactory(Factory<PatternSet> patternSetFactory, FileSystem fileSystem) {
         return new DefaultDirectoryFileTreeFactory(patternSetFactory, fileSystem);
     }
@@ -274,7 +278,7 @@ public class GlobalScopeServices extends WorkerSharedGlobalScopeServices {
         return loggingManagerFactory.create();
     }
 
-    StreamHasher createStreamHasher() {
+    DefaultStreamHasher createStreamHasher() {
         return new DefaultStreamHasher();
     }
 
@@ -27,10 +27,12 @@ import org.gradle.api.internal.changedetection.state.DefaultFileAccessTimeJourna
 import org.gradle.api.internal.changedetection.state.DefaultResourceSnapshotterCacheService;
 import org.gradle.api.internal.changedetection.state.DefaultWellKnownFileLocations;
 import org.gradle.api.internal.changedetection.state.GlobalScopeFileTimeStampInspector;
+import org.gradle.api.internal.changedetection.state.OffHeapFileHashIndexes;
 import org.gradle.api.internal.changedetection.state.ResourceFilter;
 import org.gradle.api.internal.changedetection.state.ResourceSnapshotterCacheService;
 import org.gradle.api.internal.classpath.ModuleRegistry;
 import org.gradle.api.internal.file.FileCollectionFactory;
+import org.gradle.api.internal.file.FileSystemSubset;
 import org.gradle.api.internal.file.TemporaryFileProvider;
 import org.gradle.api.internal.initialization.loadercache.ClassLoaderCache;
 import org.gradle.api.internal.initialization.loadercache.DefaultClassLoaderCache;
@@ -68,12 +70,13 @@ import org.gradle.internal.execution.OutputChangeListener;
 import org.gradle.internal.execution.timeout.TimeoutHandler;
 import org.gradle.internal.execution.timeout.impl.DefaultTimeoutHandler;
 import org.gradle.internal.file.JarCache;
+import org.gradle.internal.filewatch.FileWatcherChangesListener;
 import org.gradle.internal.fingerprint.classpath.ClasspathFingerprinter;
 import org.gradle.internal.fingerprint.classpath.impl.DefaultClasspathFingerprinter;
 import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DefaultStreamHasher;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
-import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.id.LongIdGenerator;
 import org.gradle.internal.jvm.inspection.JvmVersionDetector;
 import org.gradle.internal.logging.LoggingManagerInternal;
@@ -90,6 +93,7 @@ import org.gradle.internal.snapshot.WellKnownFileLocations;
 import org.gradle.internal.snapshot.impl.DefaultFileSystemMirror;
 import org.gradle.internal.snapshot.impl.DefaultFileSystemSnapshotter;
 import org.gradle.internal.snapshot.impl.DefaultValueSnapshotter;
+import org.gradle.internal.snapshot.impl.DirectorySnapshotterPool;
 import org.gradle.process.internal.JavaExecHandleFactory;
 import org.gradle.process.internal.health.memory.MemoryManager;
 import org.gradle.process.internal.worker.DefaultWorkerProcessFactory;
@@ -98,6 +102,8 @@ import org.gradle.process.internal.worker.child.WorkerProcessClassPathProvider;
 import org.gradle.util.GradleVersion;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -123,8 +129,8 @@ public class GradleUserHomeScopeServices {
         return parent.createChild();
     }
 
-    CrossBuildFileHashCache createCrossBuildFileHashCache(CacheRepository cacheRepository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
-        return new CrossBuildFileHashCache(null, cacheRepository, inMemoryCacheDecoratorFactory);
+    CrossBuildFileHashCache createCrossBuildFileHashCache(CacheRepository cacheRepository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory, OffHeapFileHashIndexes offHeapFileHashIndexes) {
+        return new CrossBuildFileHashCache(null, cacheRepository, inMemoryCacheDecoratorFactory, offHeapFileHashIndexes);
     }
 
     GlobalScopeFileTimeStampInspector createFileTimestampInspector(CacheScopeMapping cacheScopeMapping, ListenerManager listenerManager) {
@@ -133,8 +139,8 @@ public class GradleUserHomeScopeServices {
         return timeStampInspector;
     }
 
-    FileHasher createCachingFileHasher(StringInterner stringInterner, CrossBuildFileHashCache fileStore, FileSystem fileSystem, GlobalScopeFileTimeStampInspector fileTimeStampInspector, StreamHasher streamHasher) {
-        CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem);
+    FileHasher createCachingFileHasher(StringInterner stringInterner, CrossBuildFileHashCache fileStore, FileSystem fileSystem, GlobalScopeFileTimeStampInspector fileTimeStampInspector, DefaultStreamHasher streamHasher, WellKnownFileLocations wellKnownFileLocations) {
+        CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher, DefaultFileHasher.DEFAULT_CHANNEL_THRESHOLD, wellKnownFileLocations), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, Boolean.getBoolean(CachingFileHasher.OFF_HEAP_INDEX_PROPERTY));
         fileTimeStampInspector.attach(fileHasher);
         return fileHasher;
     }
@@ -159,8 +165,8 @@ public class GradleUserHomeScopeServices {
         return new DefaultWellKnownFileLocations(fileStores);
     }
 
-    FileSystemMirror createFileSystemMirror(ListenerManager listenerManager, WellKnownFileLocations wellKnownFileLocations) {
-        final DefaultFileSystemMirror fileSystemMirror = new DefaultFileSystemMirror(wellKnownFileLocations);
+    FileSystemMirror createFileSystemMirror(ListenerManager listenerManager, WellKnownFileLocations wellKnownFileLocations, FileSystem fileSystem) {
+        final DefaultFileSystemMirror fileSystemMirror = new DefaultFileSystemMirror(wellKnownFileLocations, fileSystem);
         listenerManager.addListener(new OutputChangeListener() {
             @Override
             public void beforeOutputChange() {
@@ -172,21 +178,76 @@ public class GradleUserHomeScopeServices {
                 fileSystemMirror.beforeOutputChange(affectedOutputPaths);
             }
         });
+        listenerManager.addListener(new FileWatcherChangesListener() {
+            @Override
+            public void startedWatching(FileSystemSubset locations) {
+                if (isRetainingFileSystemState()) {
+                    fileSystemMirror.startedWatching(locations);
+                }
+            }
+
+            @Override
+            public void changesReportedByWatcher(FileSystemSubset watchedLocations, FileSystemSubset unwatchedLocations, Collection<File> changedFiles) {
+                if (isRetainingFileSystemState()) {
+                    List<String> changedPaths = new ArrayList<String>(changedFiles.size());
+                    for (File changedFile : changedFiles) {
+                        changedPaths.add(changedFile.getAbsolutePath());
+                    }
+                    fileSystemMirror.changesReportedByWatcher(watchedLocations, unwatchedLocations, changedPaths);
+                }
+            }
+
+            @Override
+            public void changeReportedByWatcher(File changedFile) {
+                if (isRetainingFileSystemState()) {
+                    fileSystemMirror.changeReportedByWatcher(changedFile.getAbsolutePath());
+                }
+            }
+
+            @Override
+            public void changesMissedByWatcher() {
+                if (isRetainingFileSystemState()) {
+                    fileSystemMirror.changesMissedByWatcher();
+                }
+            }
+
+            private boolean isRetainingFileSystemState() {
+                return Boolean.getBoolean(DefaultFileSystemMirror.RETAIN_STATE_PROPERTY);
+            }
+        });
         listenerManager.addListener(new RootBuildLifecycleListener() {
             @Override
             public void afterStart() {
+                if (isRetainingFileSystemState()) {
+                    fileSystemMirror.afterBuildStarted();
+                } else {
+                    // State may still be around when the previous build retained it
+                    fileSystemMirror.beforeBuildFinished();
+                }
             }
 
             @Override
             public void beforeComplete() {
-                fileSystemMirror.beforeBuildFinished();
+                if (isRetainingFileSystemState()) {
+                    fileSystemMirror.beforeBuildFinishedRetainingState();
+                } else {
+                    fileSystemMirror.beforeBuildFinished();
+                }
+            }
+
+            private boolean isRetainingFileSystemState() {
+                return Boolean.getBoolean(DefaultFileSystemMirror.RETAIN_STATE_PROPERTY);
             }
         });
         return fileSystemMirror;
     }
 
-    FileSystemSnapshotter createFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, FileSystemMirror fileSystemMirror) {
-        return new DefaultFileSystemSnapshotter(hasher, stringInterner, fileSystem, fileSystemMirror, DirectoryScanner.getDefaultExcludes());
+    DirectorySnapshotterPool createDirectorySnapshotterPool() {
+        return DirectorySnapshotterPool.fromSystemProperties();
+    }
+
+    FileSystemSnapshotter createFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, FileSystemMirror fileSystemMirror, DirectorySnapshotterPool directorySnapshotterPool) {
+        return new DefaultFileSystemSnapshotter(hasher, stringInterner, fileSystem, fileSystemMirror, directorySnapshotterPool.getPool(), DirectoryScanner.getDefaultExcludes());
     }
 
     ResourceSnapshotterCacheService createResourceSnapshotterCacheService(CrossBuildFileHashCache store) {
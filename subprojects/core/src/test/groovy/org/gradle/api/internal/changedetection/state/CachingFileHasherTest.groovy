@@ -21,6 +21,7 @@ import org.gradle.api.internal.cache.StringInterner
 import org.gradle.api.internal.changedetection.state.CachingFileHasher.FileInfo
 import org.gradle.api.internal.file.TestFiles
 import org.gradle.cache.PersistentIndexedCache
+import org.gradle.cache.internal.TestCrossBuildInMemoryCacheFactory
 import org.gradle.internal.hash.FileHasher
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.nativeintegration.filesystem.DefaultFileMetadata
@@ -193,4 +194,27 @@ class CachingFileHasherTest extends Specification {
         }
         0 * _._
     }
+
+    def reusesOffHeapIndexOfCacheInLaterBuilds() {
+        def indexes = new OffHeapFileHashIndexes(new TestCrossBuildInMemoryCacheFactory())
+        def cacheDir = tmpDir.file("fileHashes")
+        def sessionCacheAccess = Mock(CrossBuildFileHashCache)
+        _ * sessionCacheAccess.createCache(_, _, _) >> cache
+        _ * sessionCacheAccess.getOffHeapIndex("fileHashes", _) >> { String cacheName, int maxEntries -> indexes.get(cacheDir, cacheName, maxEntries) }
+        _ * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, _) >> true
+
+        when:
+        def firstBuild = new CachingFileHasher(target, sessionCacheAccess, new StringInterner(), timeStampInspector, "fileHashes", fileSystem, true)
+        firstBuild.hash(file)
+        def secondBuild = new CachingFileHasher(target, sessionCacheAccess, new StringInterner(), timeStampInspector, "fileHashes", fileSystem, true)
+        def result = secondBuild.hash(file)
+
+        then:
+        result == HashCode.fromString("0123456789abcdef0123456789abcdef")
+
+        and:
+        1 * cache.get(file.absolutePath) >> null
+        1 * target.hash(file) >> HashCode.fromString("0123456789abcdef0123456789abcdef")
+        1 * cache.put(file.absolutePath, _)
+    }
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.internal.hash.HashCode
+import spock.lang.Specification
+
+class OffHeapFileHashIndexTest extends Specification {
+    def index = new OffHeapFileHashIndex(100000)
+    def hash = HashCode.fromString("0123456789abcdef0123456789abcdef")
+    def otherHash = HashCode.fromString("fedcba9876543210fedcba9876543210")
+
+    def "returns hash when length and timestamp match"() {
+        when:
+        index.put("/some/file", 12, 34, hash)
+
+        then:
+        index.get("/some/file", 12, 34) == hash
+        index.get("/some/file", 13, 34) == null
+        index.get("/some/file", 12, 35) == null
+        index.get("/some/other", 12, 34) == null
+    }
+
+    def "replaces the record for a file"() {
+        when:
+        index.put("/some/file", 12, 34, hash)
+        index.put("/some/file", 13, 35, otherHash)
+
+        then:
+        index.get("/some/file", 13, 35) == otherHash
+        index.get("/some/file", 12, 34) == null
+        index.size() == 1
+    }
+
+    def "keeps all records when growing and after removing records"() {
+        def paths = (0..<5000).collect { "/dir/file" + it }
+
+        when:
+        paths.eachWithIndex { path, i -> index.put(path, i, i, hash) }
+        paths.eachWithIndex { path, i ->
+            if (i % 3 == 0) {
+                index.remove(path)
+            }
+        }
+
+        then:
+        index.size() == paths.size() - paths.size().intdiv(3) - 1
+        paths.eachWithIndex { path, i ->
+            assert index.get(path, i, i) == (i % 3 == 0 ? null : hash)
+        }
+    }
+
+    def "does not keep hashes which do not fit into a record"() {
+        when:
+        index.put("/some/file", 12, 34, hash)
+        index.put("/some/file", 12, 34, HashCode.fromInt(1))
+
+        then:
+        index.get("/some/file", 12, 34) == null
+        index.size() == 0
+    }
+
+    def "starts over when the maximum number of entries is reached"() {
+        def index = new OffHeapFileHashIndex(10)
+
+        when:
+        (0..<10).each { index.put("/file" + it, 1, 1, hash) }
+        index.put("/file10", 1, 1, hash)
+
+        then:
+        index.size() == 1
+        index.get("/file10", 1, 1) == hash
+        index.get("/file0", 1, 1) == null
+    }
+}
@@ -59,7 +59,7 @@ class SkipEmptySourceFilesTaskExecuterTest extends Specification {
     final executionHistoryStore = Mock(ExecutionHistoryStore)
     final executer = new SkipEmptySourceFilesTaskExecuter(taskInputsListener, executionHistoryStore, cleanupRegistry, outputChangeListener, target)
     final stringInterner = new StringInterner()
-    final fileSystemSnapshotter = new DefaultFileSystemSnapshotter(TestFiles.fileHasher(), stringInterner, TestFiles.fileSystem(), new DefaultFileSystemMirror(new DefaultWellKnownFileLocations([])))
+    final fileSystemSnapshotter = new DefaultFileSystemSnapshotter(TestFiles.fileHasher(), stringInterner, TestFiles.fileSystem(), new DefaultFileSystemMirror(new DefaultWellKnownFileLocations([]), TestFiles.fileSystem()))
     final fingerprinter = new AbsolutePathFileCollectionFingerprinter(fileSystemSnapshotter)
 
     def 'skips task when sourceFiles are empty and previous output is empty'() {
@@ -786,6 +786,29 @@ class DefaultExecutionPlanParallelTest extends AbstractProjectBuilderSpec {
         executionPlan.getNode(finalizer).state == Node.ExecutionState.SKIPPED
     }
 
+    def "starts tasks on the longest remaining path first when durations are known"() {
+        given:
+        def durations = [a: 10L, b: 20L, c: 10L, d: 1000L]
+        def taskNodeFactory = new TaskNodeFactory(project.gradle, Stub(IncludedBuildTaskGraph))
+        def dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)])
+        def estimator = { Node node -> durations[((TaskNode) node).task.name] } as NodeDurationEstimator
+        executionPlan = new DefaultExecutionPlan(lockSetup.workerLeaseService, project.gradle, taskNodeFactory, dependencyResolver, estimator)
+
+        Task a = project.task("a", type: Async)
+        Task b = project.task("b", type: Async)
+        Task c = project.task("c", type: Async)
+        Task d = project.task("d", type: Async, dependsOn: c)
+
+        when:
+        addToGraphAndPopulate(a, b, d)
+
+        then:
+        selectNextTask() == c
+        selectNextTask() == b
+        selectNextTask() == a
+        selectNextTask() == null
+    }
+
     private void addToGraphAndPopulate(Task... tasks) {
         executionPlan.addEntryTasks(Arrays.asList(tasks))
         executionPlan.determineExecutionPlan()
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.filewatch.jdk7
+
+import com.google.common.base.Predicate
+import com.google.common.base.Predicates
+import org.gradle.internal.filewatch.FileWatcherEvent
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class DirectoryTreePollerTest extends Specification {
+    @Rule
+    public final TestNameTestDirectoryProvider testDir = new TestNameTestDirectoryProvider()
+
+    def poller = new DirectoryTreePoller()
+
+    def "reports files created, modified and deleted since the previous poll"() {
+        def root = testDir.createDir("root")
+        def modified = root.createFile("a/modified.txt")
+        def deleted = root.createFile("a/b/deleted.txt")
+        def unchanged = root.createFile("unchanged.txt")
+
+        given:
+        poller.poll(root, Predicates.alwaysTrue())
+
+        when:
+        modified.text = "changed content"
+        deleted.delete()
+        def created = root.createFile("a/b/c/created.txt")
+
+        then:
+        events(poller.pollForChanges()) as Set == [
+            "CREATE ${root.file("a/b/c")}",
+            "CREATE ${created}",
+            "MODIFY ${modified}",
+            "DELETE ${deleted}"
+        ].collect { it.toString() } as Set
+
+        and:
+        poller.pollForChanges().empty
+        unchanged.exists()
+    }
+
+    def "does not poll directories rejected by the filter"() {
+        def root = testDir.createDir("root")
+        def excluded = root.createDir("build")
+
+        given:
+        poller.poll(root, { File dir -> dir != excluded } as Predicate)
+
+        when:
+        excluded.createFile("output.txt")
+
+        then:
+        poller.pollForChanges().empty
+    }
+
+    def "does not poll trees twice"() {
+        def root = testDir.createDir("root")
+        def child = root.createDir("child")
+
+        when:
+        poller.poll(root, Predicates.alwaysTrue())
+        poller.poll(child, Predicates.alwaysTrue())
+
+        then:
+        poller.polledTreeCount == 1
+        poller.isPolled(child.file("some-file"))
+        !poller.isPolled(testDir.file("other"))
+    }
+
+    private static List<String> events(List<FileWatcherEvent> events) {
+        events.collect { "${it.type} ${it.file}".toString() }
+    }
+}
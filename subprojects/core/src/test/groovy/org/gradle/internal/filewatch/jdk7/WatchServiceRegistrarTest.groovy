@@ -16,18 +16,28 @@
 
 package org.gradle.internal.filewatch.jdk7
 
+import org.gradle.api.internal.file.FileSystemSubset
+import org.gradle.internal.filewatch.FileWatcher
+import org.gradle.internal.filewatch.FileWatcherEvent
 import org.gradle.internal.filewatch.FileWatcherListener
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
 import spock.lang.Specification
 
 import java.nio.file.AccessDeniedException
 import java.nio.file.FileSystem
+import java.nio.file.FileSystems
 import java.nio.file.FileSystemException
 import java.nio.file.Path
 import java.nio.file.WatchKey
 import java.nio.file.WatchService
 import java.nio.file.spi.FileSystemProvider
 
+@UsesNativeServices
 class WatchServiceRegistrarTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider testDir = new TestNameTestDirectoryProvider()
     def fileSystem = Stub(org.gradle.internal.nativeintegration.filesystem.FileSystem)
 
     def "registering gets retried"() {
@@ -106,4 +116,57 @@ class WatchServiceRegistrarTest extends Specification {
         }
         thrown(IOException)
     }
+
+    def "polls directories for changes once the limit of watches is reached"() {
+        given:
+        def root = testDir.createDir("root")
+        root.createDir("a/b")
+        def file = root.createFile("c/d/file.txt")
+        def listener = Mock(FileWatcherListener)
+        def watcher = Stub(FileWatcher) {
+            isRunning() >> true
+        }
+        def watchService = FileSystems.getDefault().newWatchService()
+        def registrar = new WatchServiceRegistrar(watchService, listener, 2, 2)
+
+        when:
+        registrar.watch(FileSystemSubset.builder().add(root).build())
+
+        then:
+        registrar.getMaxWaitMillis(5000) == DirectoryTreePoller.POLL_INTERVAL_MILLIS
+
+        when:
+        file.text = "changed"
+        file.lastModified = file.lastModified() + 2000
+        registrar.processPendingWork(watcher)
+
+        then:
+        1 * listener.onChange(watcher, { FileWatcherEvent event -> event.type == FileWatcherEvent.Type.MODIFY && event.file == file })
+
+        cleanup:
+        registrar?.stop()
+        watchService?.close()
+    }
+
+    def "reports the polled directories as unwatched locations"() {
+        given:
+        def root = testDir.createDir("root")
+        def dirs = [root, root.createDir("a"), root.createDir("a/b"), root.createDir("c"), root.createDir("c/d")]
+        def watchService = FileSystems.getDefault().newWatchService()
+        def registrar = new WatchServiceRegistrar(watchService, Mock(FileWatcherListener), 2, 2)
+
+        expect:
+        registrar.unwatchedLocations.empty
+
+        when:
+        registrar.watch(FileSystemSubset.builder().add(root).build())
+
+        then:
+        // Only two of the five directories can be watched, the others are polled
+        dirs.count { registrar.unwatchedLocations.contains(it) } >= 3
+
+        cleanup:
+        registrar?.stop()
+        watchService?.close()
+    }
 }
@@ -46,7 +46,7 @@ class DefaultClasspathFingerprinterTest extends Specification {
         intern(_) >> { String s -> s }
     }
     def fileSystem = TestFiles.fileSystem()
-    def fileSystemMirror = new DefaultFileSystemMirror(Stub(WellKnownFileLocations))
+    def fileSystemMirror = new DefaultFileSystemMirror(Stub(WellKnownFileLocations), TestFiles.fileSystem())
     def fileHasher = new TestFileHasher()
     def fileSystemSnapshotter = new DefaultFileSystemSnapshotter(fileHasher, stringInterner, fileSystem, fileSystemMirror)
     InMemoryIndexedCache<HashCode, HashCode> resourceHashesCache = new InMemoryIndexedCache<>(new HashCodeSerializer())
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash
+
+import org.gradle.api.UncheckedIOException
+import org.gradle.internal.snapshot.WellKnownFileLocations
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class DefaultFileHasherTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    @Unroll
+    def "hashes #size bytes the same through a stream and through a channel (memory mapping: #memoryMapping)"() {
+        def file = tmpDir.file("file.bin")
+        def content = new byte[size]
+        new Random(size).nextBytes(content)
+        file.bytes = content
+
+        def streamHasher = new DefaultStreamHasher()
+        def viaStream = new DefaultFileHasher(streamHasher, Long.MAX_VALUE)
+        def viaChannel = new DefaultFileHasher(streamHasher, 0, Stub(WellKnownFileLocations) {
+            isImmutable(_) >> memoryMapping
+        })
+
+        expect:
+        viaChannel.hash(file) == viaStream.hash(file)
+        viaStream.hash(file) == streamHasher.hash(new ByteArrayInputStream(content))
+
+        where:
+        [size, memoryMapping] << [[0, 1, 8191, 8193, 300 * 1024, 1024 * 1024 + 17], [true, false]].combinations()
+    }
+
+    def "hashes mapped channel from its current position"() {
+        def file = tmpDir.file("file.bin")
+        def content = new byte[1024 * 1024]
+        new Random(1).nextBytes(content)
+        file.bytes = content
+        def streamHasher = new DefaultStreamHasher()
+
+        when:
+        def inputStream = new FileInputStream(file)
+        def channel = inputStream.channel
+        channel.position(17)
+        def hash = streamHasher.hashMapped(channel)
+        def position = channel.position()
+        inputStream.close()
+
+        then:
+        hash == streamHasher.hash(new ByteArrayInputStream(content, 17, content.length - 17))
+        position == content.length
+    }
+
+    def "fails when the file does not exist"() {
+        def file = tmpDir.file("missing")
+
+        when:
+        new DefaultFileHasher(new DefaultStreamHasher()).hash(file)
+
+        then:
+        def e = thrown(UncheckedIOException)
+        e.message == "Failed to create MD5 hash for file '$file' as it does not exist."
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Parses a corpus of real POMs into a DOM, as POMs used to be parsed, and with {@link PomStaxParser}.
+ *
+ * The corpus is a handful of POMs bundled with the benchmark.
+ * Set the {@code org.gradle.benchmark.pomCorpus} system property to a directory, for example a local Maven repository, to parse all the POMs in there instead.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class PomParserBenchmark {
+    private static final String[] BUNDLED_POMS = {
+        "ant-1.10.13.pom",
+        "ant-junit-1.10.13.pom",
+        "ant-launcher-1.10.13.pom",
+        "ant-parent-1.10.13.pom",
+        "junit-4.12.pom"
+    };
+    private static final byte[] M2_ENTITIES = readEntities();
+
+    private List<byte[]> poms;
+    private DocumentBuilderFactory documentBuilderFactory;
+
+    @Setup
+    public void setup() throws IOException {
+        String corpus = System.getProperty("org.gradle.benchmark.pomCorpus");
+        poms = corpus == null ? readBundledPoms() : readPoms(Paths.get(corpus));
+        documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setValidating(false);
+    }
+
+    @Benchmark
+    public void dom(Blackhole blackhole) throws Exception {
+        for (byte[] pom : poms) {
+            DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
+            documentBuilder.setEntityResolver((publicId, systemId) -> new InputSource(new ByteArrayInputStream(M2_ENTITIES)));
+            Document document = documentBuilder.parse(new PomStaxParser.AddDTDFilterInputStream(new ByteArrayInputStream(pom)), "pom.xml");
+            blackhole.consume(document);
+        }
+    }
+
+    @Benchmark
+    public void stax(Blackhole blackhole) throws Exception {
+        for (byte[] pom : poms) {
+            blackhole.consume(PomStaxParser.parse(new ByteArrayInputStream(pom), "pom.xml"));
+        }
+    }
+
+    private static List<byte[]> readBundledPoms() throws IOException {
+        List<byte[]> poms = new ArrayList<>();
+        for (String name : BUNDLED_POMS) {
+            try (InputStream inputStream = PomParserBenchmark.class.getResourceAsStream("poms/" + name)) {
+                poms.add(IOUtils.toByteArray(inputStream));
+            }
+        }
+        return poms;
+    }
+
+    private static List<byte[]> readPoms(Path corpus) throws IOException {
+        List<byte[]> poms = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(corpus)) {
+            for (Path pom : files.filter(path -> path.toString().endsWith(".pom")).collect(Collectors.toList())) {
+                poms.add(Files.readAllBytes(pom));
+            }
+        }
+        if (poms.isEmpty()) {
+            throw new IllegalArgumentException("No POMs found in " + corpus);
+        }
+        return poms;
+    }
+
+    private static byte[] readEntities() {
+        try (InputStream inputStream = org.apache.ivy.plugins.parser.m2.PomReader.class.getResourceAsStream("m2-entities.ent")) {
+            return IOUtils.toByteArray(inputStream);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
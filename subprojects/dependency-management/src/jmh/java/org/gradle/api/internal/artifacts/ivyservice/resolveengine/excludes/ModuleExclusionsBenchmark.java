@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.internal.component.external.descriptor.DefaultExclude;
+import org.gradle.internal.component.model.ExcludeMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Combines the exclusions of a layered dependency graph in which most edges declare excludes, the way {@code DependencyGraphBuilder} does when it traverses the graph.
+ *
+ * The {@code cold} benchmark starts every traversal with a new {@link ModuleExclusions}, the {@code warm} benchmark reuses the same instance for all traversals,
+ * as happens when the same combinations are seen again on other edges of a large graph.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ModuleExclusionsBenchmark {
+    private static final int LAYERS = 8;
+    private static final int NODES_PER_LAYER = 40;
+    private static final int DEPENDENCIES_PER_NODE = 4;
+    private static final int MAX_EXCLUDES_PER_EDGE = 5;
+
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory = new DefaultImmutableModuleIdentifierFactory();
+
+    // For each node of each layer, the targets of its outgoing edges in the next layer and the excludes declared on them
+    private int[][][] targets;
+    private List<List<List<ImmutableList<ExcludeMetadata>>>> excludes;
+    private ModuleExclusions warmExclusions;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        List<ExcludeMetadata> rules = new ArrayList<ExcludeMetadata>();
+        for (int i = 0; i < 20; i++) {
+            rules.add(new DefaultExclude(moduleIdentifierFactory.module("org" + (i % 5), "module" + i)));
+            rules.add(new DefaultExclude(moduleIdentifierFactory.module("*", "lib" + i)));
+        }
+        for (int i = 0; i < 5; i++) {
+            rules.add(new DefaultExclude(moduleIdentifierFactory.module("group" + i, "*")));
+        }
+
+        targets = new int[LAYERS][NODES_PER_LAYER][DEPENDENCIES_PER_NODE];
+        excludes = new ArrayList<List<List<ImmutableList<ExcludeMetadata>>>>();
+        for (int layer = 0; layer < LAYERS; layer++) {
+            List<List<ImmutableList<ExcludeMetadata>>> layerExcludes = new ArrayList<List<ImmutableList<ExcludeMetadata>>>();
+            for (int node = 0; node < NODES_PER_LAYER; node++) {
+                List<ImmutableList<ExcludeMetadata>> nodeExcludes = new ArrayList<ImmutableList<ExcludeMetadata>>();
+                for (int dependency = 0; dependency < DEPENDENCIES_PER_NODE; dependency++) {
+                    targets[layer][node][dependency] = random.nextInt(NODES_PER_LAYER);
+                    ImmutableList.Builder<ExcludeMetadata> edgeExcludes = ImmutableList.builder();
+                    int count = random.nextInt(MAX_EXCLUDES_PER_EDGE + 1);
+                    for (int i = 0; i < count; i++) {
+                        edgeExcludes.add(rules.get(random.nextInt(rules.size())));
+                    }
+                    nodeExcludes.add(edgeExcludes.build());
+                }
+                layerExcludes.add(nodeExcludes);
+            }
+            excludes.add(layerExcludes);
+        }
+        warmExclusions = new ModuleExclusions(moduleIdentifierFactory);
+    }
+
+    @Benchmark
+    public void cold(Blackhole blackhole) {
+        blackhole.consume(traverse(new ModuleExclusions(moduleIdentifierFactory)));
+    }
+
+    @Benchmark
+    public void warm(Blackhole blackhole) {
+        blackhole.consume(traverse(warmExclusions));
+    }
+
+    private ModuleExclusion[] traverse(ModuleExclusions moduleExclusions) {
+        ModuleExclusion[] current = new ModuleExclusion[NODES_PER_LAYER];
+        for (int node = 0; node < NODES_PER_LAYER; node++) {
+            current[node] = ModuleExclusions.excludeNone();
+        }
+        for (int layer = 0; layer < LAYERS; layer++) {
+            ModuleExclusion[] next = new ModuleExclusion[NODES_PER_LAYER];
+            for (int node = 0; node < NODES_PER_LAYER; node++) {
+                for (int dependency = 0; dependency < DEPENDENCIES_PER_NODE; dependency++) {
+                    // Excludes declared on an edge apply on top of those inherited from the path to it...
+                    ModuleExclusion edgeExclusion = moduleExclusions.excludeAny(excludes.get(layer).get(node).get(dependency));
+                    ModuleExclusion pathExclusion = moduleExclusions.either(edgeExclusion, current[node]);
+                    // ...and a module reached by several paths is only excluded when excluded by all of them
+                    int target = targets[layer][node][dependency];
+                    next[target] = next[target] == null ? pathExclusion : moduleExclusions.both(next[target], pathExclusion);
+                }
+            }
+            for (int node = 0; node < NODES_PER_LAYER; node++) {
+                if (next[node] == null) {
+                    next[node] = ModuleExclusions.excludeNone();
+                }
+            }
+            current = next;
+        }
+        return current;
+    }
+}
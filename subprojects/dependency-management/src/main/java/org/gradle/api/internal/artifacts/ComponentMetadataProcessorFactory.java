@@ -16,6 +16,12 @@
 
 package org.gradle.api.internal.artifacts;
 
+import org.gradle.api.internal.artifacts.dsl.SpecConfigurableRule;
+import org.gradle.internal.component.external.model.VariantDerivationStrategy;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
 /**
  * A factory for {@link ComponentMetadataProcessor}.
  * <p>
@@ -34,4 +40,16 @@ public interface ComponentMetadataProcessorFactory {
      * @return a {@code ComponentMetadataProcessor}
      */
     ComponentMetadataProcessor createComponentMetadataProcessor(MetadataResolutionContext resolutionContext);
+
+    /**
+     * Returns the class based rules applied by the processors this factory creates, in the order they are applied,
+     * or {@code null} when closure or action based rules are registered as well.
+     */
+    @Nullable
+    List<SpecConfigurableRule> getClassBasedRules();
+
+    /**
+     * Returns the strategy used to derive variants of components that do not declare any.
+     */
+    VariantDerivationStrategy getVariantDerivationStrategy();
 }
@@ -53,6 +53,7 @@ import org.gradle.api.internal.artifacts.ivyservice.DefaultConfigurationResolver
 import org.gradle.api.internal.artifacts.ivyservice.ErrorHandlingConfigurationResolver;
 import org.gradle.api.internal.artifacts.ivyservice.IvyContextManager;
 import org.gradle.api.internal.artifacts.ivyservice.IvyContextualArtifactPublisher;
+import org.gradle.api.internal.artifacts.ivyservice.ResolvedGraphCache;
 import org.gradle.api.internal.artifacts.ivyservice.ShortCircuitEmptyConfigurationResolver;
 import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DependencySubstitutionRules;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ResolveIvyFactory;
@@ -563,7 +564,10 @@ public class DefaultDependencyManagementServices implements DependencyManagement
                                                        ComponentSelectorConverter componentSelectorConverter,
                                                        AttributeContainerSerializer attributeContainerSerializer,
                                                        BuildState currentBuild,
-                                                       TransformationNodeRegistry transformationNodeRegistry) {
+                                                       TransformationNodeRegistry transformationNodeRegistry,
+                                                       ResolvedGraphCache resolvedGraphCache,
+                                                       VersionSelectorScheme versionSelectorScheme,
+                                                       ClassLoaderHierarchyHasher classLoaderHierarchyHasher) {
             return new ErrorHandlingConfigurationResolver(
                     new ShortCircuitEmptyConfigurationResolver(
                         new DefaultConfigurationResolver(
@@ -587,7 +591,10 @@ public class DefaultDependencyManagementServices implements DependencyManagement
                             artifactTypeRegistry,
                             componentSelectorConverter,
                             attributeContainerSerializer,
-                            currentBuild.getBuildIdentifier()
+                            currentBuild.getBuildIdentifier(),
+                            resolvedGraphCache.isEnabled() && !startParameter.isRefreshDependencies() ? resolvedGraphCache : null,
+                            versionSelectorScheme,
+                            classLoaderHierarchyHasher
                         ),
                         componentIdentifierFactory,
                         moduleIdentifierFactory,
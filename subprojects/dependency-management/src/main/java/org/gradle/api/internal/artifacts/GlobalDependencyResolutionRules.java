@@ -15,7 +15,13 @@
  */
 package org.gradle.api.internal.artifacts;
 
+import org.gradle.api.internal.artifacts.dsl.SpecConfigurableRule;
 import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DependencySubstitutionRules;
+import org.gradle.internal.component.external.model.NoOpDerivationStrategy;
+import org.gradle.internal.component.external.model.VariantDerivationStrategy;
+
+import java.util.Collections;
+import java.util.List;
 
 public interface GlobalDependencyResolutionRules {
 
@@ -24,6 +30,16 @@ public interface GlobalDependencyResolutionRules {
         public ComponentMetadataProcessor createComponentMetadataProcessor(MetadataResolutionContext resolutionContext) {
             return ComponentMetadataProcessor.NO_OP;
         }
+
+        @Override
+        public List<SpecConfigurableRule> getClassBasedRules() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public VariantDerivationStrategy getVariantDerivationStrategy() {
+            return new NoOpDerivationStrategy();
+        }
     };
 
     GlobalDependencyResolutionRules NO_OP = new GlobalDependencyResolutionRules() {
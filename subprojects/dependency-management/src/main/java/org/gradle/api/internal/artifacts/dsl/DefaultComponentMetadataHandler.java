@@ -15,6 +15,7 @@
  */
 package org.gradle.api.internal.artifacts.dsl;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Interner;
 import groovy.lang.Closure;
 import org.gradle.api.Action;
@@ -56,6 +57,7 @@ import org.gradle.internal.typeconversion.NotationParser;
 import org.gradle.internal.typeconversion.NotationParserBuilder;
 import org.gradle.internal.typeconversion.UnsupportedNotationException;
 
+import javax.annotation.Nullable;
 import java.util.Collections;
 import java.util.List;
 
@@ -199,6 +201,23 @@ public class DefaultComponentMetadataHandler implements ComponentMetadataHandler
         return new DefaultComponentMetadataProcessor(metadataRuleContainer, instantiator, dependencyMetadataNotationParser, dependencyConstraintMetadataNotationParser, componentIdentifierNotationParser, attributesFactory, ruleExecutor, resolutionContext);
     }
 
+    @Nullable
+    @Override
+    public List<SpecConfigurableRule> getClassBasedRules() {
+        if (!metadataRuleContainer.isClassBasedRulesOnly()) {
+            return null;
+        }
+        if (metadataRuleContainer.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return ImmutableList.copyOf(metadataRuleContainer.getOnlyClassRules());
+    }
+
+    @Override
+    public VariantDerivationStrategy getVariantDerivationStrategy() {
+        return metadataRuleContainer.getVariantDerivationStrategy();
+    }
+
     @Override
     public void setVariantDerivationStrategy(VariantDerivationStrategy strategy) {
         metadataRuleContainer.setVariantDerivationStrategy(strategy);
@@ -224,6 +243,10 @@ public class DefaultComponentMetadataHandler implements ComponentMetadataHandler
             this.target = target;
         }
 
+        ModuleIdentifier getTarget() {
+            return target;
+        }
+
         public boolean isSatisfiedBy(ModuleVersionIdentifier identifier) {
             return identifier.getGroup().equals(target.getGroup()) && identifier.getName().equals(target.getName());
         }
@@ -17,11 +17,15 @@
 package org.gradle.api.internal.artifacts.dsl;
 
 import org.gradle.api.artifacts.ComponentMetadataContext;
+import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.specs.Spec;
+import org.gradle.api.specs.Specs;
 import org.gradle.internal.action.ConfigurableRule;
 
-class SpecConfigurableRule {
+import javax.annotation.Nullable;
+
+public class SpecConfigurableRule {
 
     private final ConfigurableRule<ComponentMetadataContext> configurableRule;
     private final Spec<ModuleVersionIdentifier> spec;
@@ -39,4 +43,19 @@ class SpecConfigurableRule {
     public Spec<ModuleVersionIdentifier> getSpec() {
         return spec;
     }
+
+    public boolean appliesToAllModules() {
+        return spec == Specs.<ModuleVersionIdentifier>satisfyAll();
+    }
+
+    /**
+     * Returns the module this rule applies to, or {@code null} when the rule is not limited to a single module.
+     */
+    @Nullable
+    public ModuleIdentifier getTargetModule() {
+        if (spec instanceof DefaultComponentMetadataHandler.ModuleVersionIdentifierSpec) {
+            return ((DefaultComponentMetadataHandler.ModuleVersionIdentifierSpec) spec).getTarget();
+        }
+        return null;
+    }
 }
@@ -17,28 +17,43 @@
 package org.gradle.api.internal.artifacts.ivyservice;
 
 import com.google.common.collect.ImmutableList;
+import org.gradle.api.artifacts.Dependency;
 import org.gradle.api.artifacts.ProjectDependency;
 import org.gradle.api.artifacts.UnresolvedDependency;
 import org.gradle.api.artifacts.component.BuildIdentifier;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
 import org.gradle.api.artifacts.dsl.RepositoryHandler;
+import org.gradle.api.artifacts.result.ResolutionResult;
 import org.gradle.api.artifacts.result.ResolvedComponentResult;
 import org.gradle.api.internal.artifacts.ArtifactDependencyResolver;
 import org.gradle.api.internal.artifacts.ComponentSelectorConverter;
 import org.gradle.api.internal.artifacts.ConfigurationResolver;
+import org.gradle.api.internal.artifacts.DefaultResolverResults;
 import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
 import org.gradle.api.internal.artifacts.ResolverResults;
 import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
 import org.gradle.api.internal.artifacts.configurations.ConflictResolution;
 import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ArtifactVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.BuildDependenciesOnlyVisitedArtifactSet;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DefaultResolvedArtifactsBuilder;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DependencyArtifactsVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.SelectedArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactSet;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactsResults;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedFileDependencyResults;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.CompositeDependencyArtifactsVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.CompositeDependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphComponent;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.RootGraphNode;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.FailOnVersionConflictArtifactsVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.DefaultResolvedConfigurationBuilder;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.ResolutionFailureCollector;
@@ -51,23 +66,30 @@ import org.gradle.api.internal.artifacts.ivyservice.resolveengine.projectresult.
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.AttributeContainerSerializer;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.FileDependencyCollectingGraphVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.InMemoryBinaryStore;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsStoreFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.StoreSet;
 import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
 import org.gradle.api.internal.artifacts.transform.ArtifactTransforms;
 import org.gradle.api.internal.artifacts.type.ArtifactTypeRegistry;
+import org.gradle.api.internal.attributes.AttributeContainerInternal;
 import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.api.internal.tasks.TaskDependencyResolveContext;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.specs.Specs;
 import org.gradle.cache.internal.BinaryStore;
 import org.gradle.cache.internal.Store;
 import org.gradle.internal.Transformers;
+import org.gradle.internal.classloader.ClassLoaderHierarchyHasher;
 import org.gradle.internal.component.local.model.DslOriginDependencyMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
 import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.locking.DependencyLockingArtifactVisitor;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.util.CollectionUtils;
 
+import javax.annotation.Nullable;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -92,6 +114,8 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
     private final ComponentSelectorConverter componentSelectorConverter;
     private final AttributeContainerSerializer attributeContainerSerializer;
     private final BuildIdentifier currentBuild;
+    private final ResolvedGraphCache graphCache;
+    private final ResolvedGraphCacheKeyCalculator graphCacheKeyCalculator;
 
     public DefaultConfigurationResolver(ArtifactDependencyResolver resolver, RepositoryHandler repositories,
                                         GlobalDependencyResolutionRules metadataHandler,
@@ -104,7 +128,10 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
                                         ArtifactTypeRegistry artifactTypeRegistry,
                                         ComponentSelectorConverter componentSelectorConverter,
                                         AttributeContainerSerializer attributeContainerSerializer,
-                                        BuildIdentifier currentBuild) {
+                                        BuildIdentifier currentBuild,
+                                        @Nullable ResolvedGraphCache graphCache,
+                                        VersionSelectorScheme versionSelectorScheme,
+                                        ClassLoaderHierarchyHasher classLoaderHierarchyHasher) {
         this.resolver = resolver;
         this.repositories = repositories;
         this.metadataHandler = metadataHandler;
@@ -118,6 +145,8 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
         this.componentSelectorConverter = componentSelectorConverter;
         this.attributeContainerSerializer = attributeContainerSerializer;
         this.currentBuild = currentBuild;
+        this.graphCache = graphCache;
+        this.graphCacheKeyCalculator = graphCache == null ? null : new ResolvedGraphCacheKeyCalculator(metadataHandler, attributesSchema, versionSelectorScheme, currentBuild, classLoaderHierarchyHasher);
     }
 
     @Override
@@ -133,6 +162,29 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
 
     public void resolveGraph(ConfigurationInternal configuration, ResolverResults results) {
         List<ResolutionAwareRepository> resolutionAwareRepositories = getRepositories();
+        HashCode graphKey = graphCache == null ? null : graphCacheKeyCalculator.calculate(configuration, resolutionAwareRepositories);
+        if (graphKey == null || !graphCache.isCacheable(graphKey)) {
+            resolveGraph(configuration, resolutionAwareRepositories, results, null);
+            return;
+        }
+        byte[] cachedGraph = graphCache.get(graphKey);
+        if (cachedGraph != null) {
+            // The artifacts of the graph refer to state of the current build, so only the graph is reused and the artifacts are resolved again when needed
+            ResolutionResult resolutionResult = StreamingResolutionResultBuilder.replay(InMemoryBinaryStore.read(cachedGraph), storeFactory.createStoreSet().newModelCache(), moduleIdentifierFactory, attributeContainerSerializer);
+            DeferredArtifactResolveState resolveState = new DeferredArtifactResolveState(configuration, resolutionAwareRepositories, graphKey);
+            results.graphResolved(resolutionResult, new ResolvedLocalComponentsResultGraphVisitor(currentBuild), resolveState);
+            results.retainState(resolveState);
+            return;
+        }
+        InMemoryBinaryStore graphStore = new InMemoryBinaryStore();
+        CacheableGraphVisitor cacheableGraphVisitor = new CacheableGraphVisitor(graphStore, graphKey);
+        resolveGraph(configuration, resolutionAwareRepositories, results, cacheableGraphVisitor);
+        if (cacheableGraphVisitor.isCacheable() && !results.hasError()) {
+            graphCache.put(graphKey, graphStore.getBytes());
+        }
+    }
+
+    private void resolveGraph(ConfigurationInternal configuration, List<ResolutionAwareRepository> resolutionAwareRepositories, ResolverResults results, @Nullable CacheableGraphVisitor cacheableGraphVisitor) {
         StoreSet stores = storeFactory.createStoreSet();
 
         BinaryStore oldModelStore = stores.nextBinaryStore();
@@ -141,7 +193,7 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
         DefaultResolvedConfigurationBuilder oldModelBuilder = new DefaultResolvedConfigurationBuilder(oldTransientModelBuilder);
         ResolvedConfigurationDependencyGraphVisitor oldModelVisitor = new ResolvedConfigurationDependencyGraphVisitor(oldModelBuilder);
 
-        BinaryStore newModelStore = stores.nextBinaryStore();
+        BinaryStore newModelStore = cacheableGraphVisitor == null ? stores.nextBinaryStore() : cacheableGraphVisitor.graphStore;
         Store<ResolvedComponentResult> newModelCache = stores.newModelCache();
         StreamingResolutionResultBuilder newModelBuilder = new StreamingResolutionResultBuilder(newModelStore, newModelCache, moduleIdentifierFactory, attributeContainerSerializer);
 
@@ -151,7 +203,9 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
         DefaultResolvedArtifactsBuilder artifactsBuilder = new DefaultResolvedArtifactsBuilder(currentBuild, buildProjectDependencies, resolutionStrategy.getSortOrder());
         FileDependencyCollectingGraphVisitor fileDependencyVisitor = new FileDependencyCollectingGraphVisitor();
         ResolutionFailureCollector failureCollector = new ResolutionFailureCollector(componentSelectorConverter);
-        DependencyGraphVisitor graphVisitor = new CompositeDependencyGraphVisitor(newModelBuilder, localComponentsVisitor, failureCollector);
+        DependencyGraphVisitor graphVisitor = cacheableGraphVisitor == null
+            ? new CompositeDependencyGraphVisitor(newModelBuilder, localComponentsVisitor, failureCollector)
+            : new CompositeDependencyGraphVisitor(newModelBuilder, localComponentsVisitor, failureCollector, cacheableGraphVisitor);
 
         ImmutableList.Builder<DependencyArtifactsVisitor> visitors = new ImmutableList.Builder<DependencyArtifactsVisitor>();
         visitors.add(oldModelVisitor);
@@ -181,7 +235,10 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
         Set<UnresolvedDependency> failures = failureCollector.complete(extraFailures);
         results.graphResolved(newModelBuilder.complete(extraFailures), localComponentsVisitor, new BuildDependenciesOnlyVisitedArtifactSet(failures, artifactsResults, artifactTransforms, configuration.getIncoming(), configuration.getDependenciesResolver()));
 
-        results.retainState(new ArtifactResolveState(graphResults, artifactsResults, fileDependencyResults, failures, oldTransientModelBuilder));
+        results.retainState(new ArtifactResolveState(graphResults, artifactsResults, fileDependencyResults, failures, oldTransientModelBuilder, cacheableGraphVisitor == null ? null : cacheableGraphVisitor.graphKey));
+        if (cacheableGraphVisitor != null && !failures.isEmpty()) {
+            cacheableGraphVisitor.cacheable = false;
+        }
         if (!results.hasError() && failures.isEmpty()) {
             artifactsVisitor.complete();
         }
@@ -192,7 +249,17 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
     }
 
     public void resolveArtifacts(ConfigurationInternal configuration, ResolverResults results) {
-        ArtifactResolveState resolveState = (ArtifactResolveState) results.getArtifactResolveState();
+        Object state = results.getArtifactResolveState();
+        if (state instanceof DeferredArtifactResolveState) {
+            ResolverResults fullResults = ((DeferredArtifactResolveState) state).getFullResults();
+            resolveArtifacts(configuration, fullResults);
+            results.artifactsResolved(fullResults.getResolvedConfiguration(), fullResults.getVisitedArtifacts());
+            return;
+        }
+        ArtifactResolveState resolveState = (ArtifactResolveState) state;
+        if (resolveState.graphKey != null) {
+            graphCache.artifactsRequired(resolveState.graphKey);
+        }
         ResolvedGraphResults graphResults = resolveState.graphResults;
         VisitedArtifactsResults artifactResults = resolveState.artifactsResults;
         TransientConfigurationResultsBuilder transientConfigurationResultsBuilder = resolveState.transientConfigurationResultsBuilder;
@@ -209,13 +276,116 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
         final VisitedFileDependencyResults fileDependencyResults;
         final Set<UnresolvedDependency> failures;
         final TransientConfigurationResultsBuilder transientConfigurationResultsBuilder;
+        @Nullable
+        final HashCode graphKey;
 
-        ArtifactResolveState(ResolvedGraphResults graphResults, VisitedArtifactsResults artifactsResults, VisitedFileDependencyResults fileDependencyResults, Set<UnresolvedDependency> failures, TransientConfigurationResultsBuilder transientConfigurationResultsBuilder) {
+        ArtifactResolveState(ResolvedGraphResults graphResults, VisitedArtifactsResults artifactsResults, VisitedFileDependencyResults fileDependencyResults, Set<UnresolvedDependency> failures, TransientConfigurationResultsBuilder transientConfigurationResultsBuilder, @Nullable HashCode graphKey) {
             this.graphResults = graphResults;
             this.artifactsResults = artifactsResults;
             this.fileDependencyResults = fileDependencyResults;
             this.failures = failures;
             this.transientConfigurationResultsBuilder = transientConfigurationResultsBuilder;
+            this.graphKey = graphKey;
+        }
+    }
+
+    /**
+     * Checks that a resolved graph only depends on the immutable metadata of external modules, so that it can be cached.
+     */
+    private class CacheableGraphVisitor implements DependencyGraphVisitor {
+        private final InMemoryBinaryStore graphStore;
+        private final HashCode graphKey;
+        private boolean cacheable = true;
+
+        CacheableGraphVisitor(InMemoryBinaryStore graphStore, HashCode graphKey) {
+            this.graphStore = graphStore;
+            this.graphKey = graphKey;
+        }
+
+        boolean isCacheable() {
+            return cacheable;
+        }
+
+        @Override
+        public void start(RootGraphNode root) {
+        }
+
+        @Override
+        public void visitNode(DependencyGraphNode node) {
+            if (node.isRoot()) {
+                return;
+            }
+            DependencyGraphComponent component = node.getOwner();
+            if (!(component.getComponentId() instanceof ModuleComponentIdentifier)) {
+                cacheable = false;
+                return;
+            }
+            ComponentResolveMetadata metadata = component.getMetadata();
+            if (metadata == null || metadata.isChanging() || metadataHandler.getModuleMetadataProcessor().getModuleReplacements().participatesInReplacements(component.getModuleVersion().getModule())) {
+                cacheable = false;
+            }
+        }
+
+        @Override
+        public void visitSelector(DependencyGraphSelector selector) {
+            ComponentSelector requested = selector.getRequested();
+            if (!(requested instanceof ModuleComponentSelector) || graphCacheKeyCalculator.isDynamic(((ModuleComponentSelector) requested).getVersionConstraint())) {
+                cacheable = false;
+            }
+        }
+
+        @Override
+        public void visitEdges(DependencyGraphNode node) {
+        }
+
+        @Override
+        public void finish(DependencyGraphNode root) {
+        }
+    }
+
+    /**
+     * The state of a graph that was loaded from the {@link ResolvedGraphCache}. Resolves the graph again, once, when its artifacts or build dependencies are needed,
+     * in which case the graph of the configuration is no longer cached.
+     */
+    private class DeferredArtifactResolveState implements VisitedArtifactSet {
+        private final ConfigurationInternal configuration;
+        private final List<ResolutionAwareRepository> repositories;
+        private final HashCode graphKey;
+        private DefaultResolverResults fullResults;
+
+        DeferredArtifactResolveState(ConfigurationInternal configuration, List<ResolutionAwareRepository> repositories, HashCode graphKey) {
+            this.configuration = configuration;
+            this.repositories = repositories;
+            this.graphKey = graphKey;
+        }
+
+        synchronized ResolverResults getFullResults() {
+            if (fullResults == null) {
+                graphCache.artifactsRequired(graphKey);
+                DefaultResolverResults results = new DefaultResolverResults();
+                resolveGraph(configuration, repositories, results, null);
+                fullResults = results;
+            }
+            return fullResults;
+        }
+
+        @Override
+        public SelectedArtifactSet select(final Spec<? super Dependency> dependencySpec, final AttributeContainerInternal requestedAttributes, final Spec<? super ComponentIdentifier> componentSpec, final boolean allowNoMatchingVariant) {
+            return new SelectedArtifactSet() {
+                @Override
+                public void visitDependencies(TaskDependencyResolveContext context) {
+                    selected().visitDependencies(context);
+                }
+
+                @Override
+                public void visitArtifacts(ArtifactVisitor visitor, boolean continueOnSelectionFailure) {
+                    selected().visitArtifacts(visitor, continueOnSelectionFailure);
+                }
+
+                private SelectedArtifactSet selected() {
+                    return getFullResults().getVisitedArtifacts().select(dependencySpec, requestedAttributes, componentSpec, allowNoMatchingVariant);
+                }
+            };
         }
     }
 
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.cache.internal.CrossBuildInMemoryCache;
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
+import org.gradle.internal.hash.HashCode;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps the serialized resolution results of dependency graphs in memory across builds, keyed by a hash of the inputs of the resolution.
+ *
+ * Only the graphs of configurations whose artifacts are not needed are worth caching, as the artifacts refer to state of the current build
+ * and are resolved by resolving the graph again. Such configurations are remembered, so that their graphs are resolved directly in later builds.
+ *
+ * The cache is disabled unless the {@value #ENABLED_PROPERTY} system property is set to {@code true}.
+ */
+public class ResolvedGraphCache {
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.dependency-resolution.graph-cache";
+    private static final byte[] ARTIFACTS_REQUIRED = new byte[0];
+
+    private final boolean enabled;
+    private final CrossBuildInMemoryCache<HashCode, byte[]> graphs;
+
+    public ResolvedGraphCache(CrossBuildInMemoryCacheFactory cacheFactory) {
+        this(cacheFactory, Boolean.getBoolean(ENABLED_PROPERTY));
+    }
+
+    public ResolvedGraphCache(CrossBuildInMemoryCacheFactory cacheFactory, boolean enabled) {
+        this.enabled = enabled;
+        this.graphs = cacheFactory.newCache();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the graph stored for the given key, or {@code null} when there is none or the graph should not be cached.
+     */
+    @Nullable
+    public byte[] get(HashCode key) {
+        byte[] graph = graphs.get(key);
+        return graph == ARTIFACTS_REQUIRED ? null : graph;
+    }
+
+    /**
+     * Returns whether the graph with the given key should be cached, which is not the case when its artifacts have been needed before.
+     */
+    public boolean isCacheable(HashCode key) {
+        return graphs.get(key) != ARTIFACTS_REQUIRED;
+    }
+
+    /**
+     * Records that the artifacts of the configuration with the given key are needed, which discards its graph and stops it from being cached.
+     */
+    public void artifactsRequired(HashCode key) {
+        graphs.put(key, ARTIFACTS_REQUIRED);
+    }
+
+    public void put(HashCode key, byte[] graph) {
+        graphs.put(key, graph);
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import org.gradle.api.Action;
+import org.gradle.api.artifacts.ClientModule;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.DependencyArtifact;
+import org.gradle.api.artifacts.DependencyConstraint;
+import org.gradle.api.artifacts.ExcludeRule;
+import org.gradle.api.artifacts.ExternalModuleDependency;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.VersionConstraint;
+import org.gradle.api.artifacts.component.BuildIdentifier;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.attributes.AttributeContainer;
+import org.gradle.api.capabilities.Capability;
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.dependencies.DefaultProjectDependencyConstraint;
+import org.gradle.api.internal.artifacts.dependencies.DefaultResolvedVersionConstraint;
+import org.gradle.api.internal.artifacts.dsl.SpecConfigurableRule;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ConfiguredModuleComponentRepository;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.repositories.AbstractArtifactRepository;
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.api.internal.artifacts.repositories.resolver.ExternalResourceResolver;
+import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.api.internal.attributes.CompatibilityRule;
+import org.gradle.api.internal.attributes.DefaultCompatibilityRuleChain;
+import org.gradle.api.internal.attributes.DefaultDisambiguationRuleChain;
+import org.gradle.api.internal.attributes.DefaultOrderedCompatibilityRule;
+import org.gradle.api.internal.attributes.DefaultOrderedDisambiguationRule;
+import org.gradle.api.internal.attributes.DisambiguationRule;
+import org.gradle.internal.action.ConfigurableRule;
+import org.gradle.internal.action.InstantiatingAction;
+import org.gradle.internal.classloader.ClassLoaderHierarchyHasher;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Calculates the key under which the resolved graph of a configuration is stored in the {@link ResolvedGraphCache}.
+ *
+ * Only configurations whose graph is fully determined by the inputs hashed here are cacheable: every declared dependency must be a fixed version
+ * of an external module, no rules that are not hashable may apply, and all repositories must be remote ones whose metadata is cached.
+ * Component metadata rules, attribute matching rules and the variant derivation strategy are hashed by their implementation and parameters, so that only rules whose
+ * classes are loaded by a class loader with a known hash and which carry no state other than their isolated parameters are cacheable.
+ * Closure and action based component metadata rules cannot be told apart by their inputs, so no graph is cached while any of them is registered.
+ * Whether the graph reached from those dependencies is cacheable is checked separately, once the graph has been resolved.
+ */
+class ResolvedGraphCacheKeyCalculator {
+    private final GlobalDependencyResolutionRules metadataHandler;
+    private final AttributesSchemaInternal attributesSchema;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final BuildIdentifier currentBuild;
+    private final ClassLoaderHierarchyHasher classLoaderHierarchyHasher;
+
+    ResolvedGraphCacheKeyCalculator(GlobalDependencyResolutionRules metadataHandler, AttributesSchemaInternal attributesSchema, VersionSelectorScheme versionSelectorScheme, BuildIdentifier currentBuild, ClassLoaderHierarchyHasher classLoaderHierarchyHasher) {
+        this.metadataHandler = metadataHandler;
+        this.attributesSchema = attributesSchema;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.currentBuild = currentBuild;
+        this.classLoaderHierarchyHasher = classLoaderHierarchyHasher;
+    }
+
+    /**
+     * Returns the key for the given configuration, or {@code null} when its graph cannot be cached.
+     */
+    @Nullable
+    HashCode calculate(ConfigurationInternal configuration, List<ResolutionAwareRepository> repositories) {
+        ResolutionStrategyInternal resolutionStrategy = configuration.getResolutionStrategy();
+        if (resolutionStrategy.isDependencyLockingEnabled()
+            || resolutionStrategy.getDependencySubstitution().hasRules()
+            || !resolutionStrategy.getComponentSelection().getRules().isEmpty()
+            || metadataHandler.getDependencySubstitutionRules().hasRules()) {
+            return null;
+        }
+
+        Hasher hasher = Hashing.newHasher();
+        hasher.putString(currentBuild.getName());
+        hasher.putString(configuration.getPath());
+        hasher.putString(String.valueOf(configuration.getModule().getProjectPath()));
+        hasher.putString(configuration.getModule().getGroup());
+        hasher.putString(configuration.getModule().getName());
+        hasher.putString(configuration.getModule().getVersion());
+        hasher.putBoolean(configuration.isTransitive());
+        appendAttributes(hasher, configuration.getAttributes());
+        appendExcludes(hasher, configuration.getAllExcludeRules());
+        for (Configuration inHierarchy : configuration.getHierarchy()) {
+            appendCapabilities(hasher, inHierarchy.getOutgoing().getCapabilities());
+        }
+
+        for (Dependency dependency : configuration.getAllDependencies()) {
+            if (!(dependency instanceof ExternalModuleDependency) || dependency instanceof ClientModule) {
+                return null;
+            }
+            ExternalModuleDependency moduleDependency = (ExternalModuleDependency) dependency;
+            if (moduleDependency.isChanging() || isDynamic(moduleDependency.getVersionConstraint())) {
+                return null;
+            }
+            hasher.putString(dependency.getClass().getName());
+            appendModule(hasher, moduleDependency.getGroup(), moduleDependency.getName(), moduleDependency.getVersionConstraint());
+            hasher.putBoolean(moduleDependency.isTransitive());
+            hasher.putBoolean(moduleDependency.isForce());
+            hasher.putString(String.valueOf(moduleDependency.getTargetConfiguration()));
+            hasher.putString(String.valueOf(moduleDependency.getReason()));
+            appendAttributes(hasher, moduleDependency.getAttributes());
+            appendCapabilities(hasher, moduleDependency.getRequestedCapabilities());
+            appendExcludes(hasher, moduleDependency.getExcludeRules());
+            hasher.putInt(moduleDependency.getArtifacts().size());
+            for (DependencyArtifact artifact : moduleDependency.getArtifacts()) {
+                hasher.putString(artifact.getName());
+                hasher.putString(String.valueOf(artifact.getType()));
+                hasher.putString(String.valueOf(artifact.getExtension()));
+                hasher.putString(String.valueOf(artifact.getClassifier()));
+            }
+        }
+        for (DependencyConstraint constraint : configuration.getAllDependencyConstraints()) {
+            if (constraint instanceof DefaultProjectDependencyConstraint || isDynamic(constraint.getVersionConstraint())) {
+                return null;
+            }
+            hasher.putString(constraint.getClass().getName());
+            appendModule(hasher, constraint.getGroup(), constraint.getName(), constraint.getVersionConstraint());
+            hasher.putString(String.valueOf(constraint.getReason()));
+            appendAttributes(hasher, constraint.getAttributes());
+        }
+
+        hasher.putString(resolutionStrategy.getConflictResolution().name());
+        hasher.putString(resolutionStrategy.getSortOrder().name());
+        for (ModuleVersionSelector forcedModule : resolutionStrategy.getForcedModules()) {
+            hasher.putString(forcedModule.getGroup());
+            hasher.putString(forcedModule.getName());
+            hasher.putString(String.valueOf(forcedModule.getVersion()));
+        }
+        if (!appendComponentMetadataRules(hasher, metadataHandler.getComponentMetadataProcessorFactory().getClassBasedRules())) {
+            return null;
+        }
+
+        for (Attribute<?> attribute : sortedByName(attributesSchema.getAttributes())) {
+            hasher.putString(attribute.getName());
+            hasher.putString(attribute.getType().getName());
+            if (!appendRules(hasher, attributesSchema.compatibilityRules(attribute)) || !appendRules(hasher, attributesSchema.disambiguationRules(attribute))) {
+                return null;
+            }
+        }
+        if (!appendStatelessImplementation(hasher, metadataHandler.getComponentMetadataProcessorFactory().getVariantDerivationStrategy())) {
+            return null;
+        }
+
+        for (ResolutionAwareRepository repository : repositories) {
+            if (repository instanceof AbstractArtifactRepository && ((AbstractArtifactRepository) repository).getContentFilter() != null) {
+                return null;
+            }
+            ConfiguredModuleComponentRepository resolver = repository.createResolver();
+            if (resolver.isLocal() || !(resolver instanceof ExternalResourceResolver)) {
+                return null;
+            }
+            hasher.putString(resolver.getId());
+        }
+        return hasher.hash();
+    }
+
+    boolean isDynamic(VersionConstraint versionConstraint) {
+        return versionConstraint.getBranch() != null || new DefaultResolvedVersionConstraint(versionConstraint, versionSelectorScheme).isDynamic();
+    }
+
+    /**
+     * Appends the given component metadata rules to the key, or returns false when closure or action based rules are registered, or any of the rules cannot be hashed reliably.
+     */
+    private boolean appendComponentMetadataRules(Hasher hasher, @Nullable List<SpecConfigurableRule> rules) {
+        if (rules == null) {
+            return false;
+        }
+        hasher.putInt(rules.size());
+        for (SpecConfigurableRule rule : rules) {
+            ModuleIdentifier targetModule = rule.getTargetModule();
+            if (targetModule != null) {
+                hasher.putString(targetModule.getGroup());
+                hasher.putString(targetModule.getName());
+            } else if (rule.appliesToAllModules()) {
+                hasher.putNull();
+            } else {
+                return false;
+            }
+            ConfigurableRule<?> configurableRule = rule.getConfigurableRule();
+            if (!appendImplementation(hasher, configurableRule.getRuleClass())) {
+                return false;
+            }
+            configurableRule.getRuleParams().appendToHasher(hasher);
+        }
+        return true;
+    }
+
+    private boolean appendRules(Hasher hasher, CompatibilityRule<?> rule) {
+        if (!rule.doesSomething()) {
+            hasher.putInt(0);
+            return true;
+        }
+        return rule instanceof DefaultCompatibilityRuleChain && appendRules(hasher, ((DefaultCompatibilityRuleChain<?>) rule).getRules());
+    }
+
+    private boolean appendRules(Hasher hasher, DisambiguationRule<?> rule) {
+        if (!rule.doesSomething()) {
+            hasher.putInt(0);
+            return true;
+        }
+        return rule instanceof DefaultDisambiguationRuleChain && appendRules(hasher, ((DefaultDisambiguationRuleChain<?>) rule).getRules());
+    }
+
+    /**
+     * Appends the given attribute matching rules to the key, or returns false when any of them cannot be hashed reliably.
+     */
+    private boolean appendRules(Hasher hasher, List<? extends Action<?>> rules) {
+        hasher.putInt(rules.size());
+        for (Action<?> rule : rules) {
+            if (rule instanceof InstantiatingAction) {
+                for (ConfigurableRule<?> configurableRule : ((InstantiatingAction<?>) rule).getRules().getConfigurableRules()) {
+                    if (!appendImplementation(hasher, configurableRule.getRuleClass())) {
+                        return false;
+                    }
+                    configurableRule.getRuleParams().appendToHasher(hasher);
+                }
+            } else if (rule instanceof DefaultOrderedCompatibilityRule) {
+                DefaultOrderedCompatibilityRule<?> orderedRule = (DefaultOrderedCompatibilityRule<?>) rule;
+                hasher.putBoolean(orderedRule.isReverse());
+                if (!appendComparator(hasher, orderedRule.getComparator())) {
+                    return false;
+                }
+            } else if (rule instanceof DefaultOrderedDisambiguationRule) {
+                DefaultOrderedDisambiguationRule<?> orderedRule = (DefaultOrderedDisambiguationRule<?>) rule;
+                hasher.putBoolean(orderedRule.isPickFirst());
+                if (!appendComparator(hasher, orderedRule.getComparator())) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean appendComparator(Hasher hasher, Comparator<?> comparator) {
+        if (comparator.equals(Ordering.natural()) || comparator.equals(Comparator.naturalOrder())) {
+            hasher.putString("natural");
+            return true;
+        }
+        if (comparator.equals(Ordering.natural().reverse()) || comparator.equals(Comparator.reverseOrder())) {
+            hasher.putString("reverse");
+            return true;
+        }
+        return appendStatelessImplementation(hasher, comparator);
+    }
+
+    /**
+     * Appends the implementation of the given object to the key, provided that the object has no state which could change the result of the resolution.
+     */
+    private boolean appendStatelessImplementation(Hasher hasher, Object object) {
+        for (Class<?> type = object.getClass(); type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    return false;
+                }
+            }
+        }
+        return appendImplementation(hasher, object.getClass());
+    }
+
+    private boolean appendImplementation(Hasher hasher, Class<?> type) {
+        hasher.putString(type.getName());
+        ClassLoader classLoader = type.getClassLoader();
+        if (classLoader == null) {
+            // Loaded by the bootstrap class loader
+            return true;
+        }
+        HashCode classLoaderHash = classLoaderHierarchyHasher.getClassLoaderHash(classLoader);
+        if (classLoaderHash == null) {
+            return false;
+        }
+        hasher.putHash(classLoaderHash);
+        return true;
+    }
+
+    private static void appendModule(Hasher hasher, String group, String name, VersionConstraint versionConstraint) {
+        hasher.putString(String.valueOf(group));
+        hasher.putString(name);
+        hasher.putString(versionConstraint.getRequiredVersion());
+        hasher.putString(versionConstraint.getPreferredVersion());
+        hasher.putString(versionConstraint.getStrictVersion());
+        hasher.putInt(versionConstraint.getRejectedVersions().size());
+        for (String rejectedVersion : versionConstraint.getRejectedVersions()) {
+            hasher.putString(rejectedVersion);
+        }
+    }
+
+    private static void appendAttributes(Hasher hasher, AttributeContainer attributes) {
+        hasher.putInt(attributes.keySet().size());
+        for (Attribute<?> attribute : sortedByName(attributes.keySet())) {
+            hasher.putString(attribute.getName());
+            hasher.putString(attribute.getType().getName());
+            hasher.putString(String.valueOf(attributes.getAttribute(attribute)));
+        }
+    }
+
+    private static List<Attribute<?>> sortedByName(Iterable<Attribute<?>> attributes) {
+        List<Attribute<?>> sorted = Lists.newArrayList(attributes);
+        sorted.sort(Comparator.comparing(Attribute::getName));
+        return sorted;
+    }
+
+    private static void appendCapabilities(Hasher hasher, Iterable<? extends Capability> capabilities) {
+        for (Capability capability : capabilities) {
+            hasher.putString(capability.getGroup());
+            hasher.putString(capability.getName());
+            hasher.putString(String.valueOf(capability.getVersion()));
+        }
+        hasher.putNull();
+    }
+
+    private static void appendExcludes(Hasher hasher, Iterable<ExcludeRule> excludeRules) {
+        for (ExcludeRule excludeRule : excludeRules) {
+            hasher.putString(String.valueOf(excludeRule.getGroup()));
+            hasher.putString(String.valueOf(excludeRule.getModule()));
+        }
+        hasher.putNull();
+    }
+}
@@ -16,34 +16,23 @@
 package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
 
 import com.google.common.collect.Lists;
-import org.apache.commons.io.IOUtils;
 import org.apache.ivy.core.IvyPatternHelper;
 import org.gradle.api.Transformer;
 import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomStaxParser.ParsedCoordinates;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomStaxParser.ParsedDependency;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomStaxParser.ParsedPom;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomStaxParser.ParsedProfile;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.data.MavenDependencyKey;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.data.PomDependencyMgt;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.data.PomProfile;
-import org.gradle.internal.UncheckedException;
-import org.gradle.internal.classloader.ClassLoaderUtils;
 import org.gradle.internal.resource.local.LocallyAvailableExternalResource;
-import org.w3c.dom.Comment;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.EntityResolver;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -52,72 +41,16 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomDomParser.*;
-
 /**
  * Copied from org.apache.ivy.plugins.parser.m2.PomReader.
  */
 public class PomReader implements PomParent {
 
-    private static final String PACKAGING = "packaging";
-    private static final String DEPENDENCY = "dependency";
-    private static final String DEPENDENCIES = "dependencies";
-    private static final String DEPENDENCY_MGT = "dependencyManagement";
     private static final String PROJECT = "project";
     private static final String MODEL = "model";
     private static final String GROUP_ID = "groupId";
     private static final String ARTIFACT_ID = "artifactId";
-    private static final String VERSION = "version";
-    private static final String DESCRIPTION = "description";
-    private static final String PARENT = "parent";
-    private static final String SCOPE = "scope";
-    private static final String CLASSIFIER = "classifier";
-    private static final String OPTIONAL = "optional";
-    private static final String EXCLUSIONS = "exclusions";
-    private static final String EXCLUSION = "exclusion";
-    private static final String DISTRIBUTION_MGT = "distributionManagement";
-    private static final String RELOCATION = "relocation";
-    private static final String PROPERTIES = "properties";
-    private static final String TYPE = "type";
-    private static final String PROFILES = "profiles";
-    private static final String PROFILE = "profile";
-    private static final String PROFILE_ID = "id";
-    private static final String PROFILE_ACTIVATION = "activation";
-    private static final String PROFILE_ACTIVATION_ACTIVE_BY_DEFAULT = "activeByDefault";
-    private static final String PROFILE_ACTIVATION_PROPERTY = "property";
-    private static final byte[] M2_ENTITIES_RESOURCE;
-    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY;
-
-    static {
-        byte[] bytes;
-        try {
-            bytes = IOUtils.toByteArray(org.apache.ivy.plugins.parser.m2.PomReader.class.getResourceAsStream("m2-entities.ent"));
-        } catch (IOException e) {
-            throw UncheckedException.throwAsUncheckedException(e);
-        }
-        M2_ENTITIES_RESOURCE = bytes;
-
-        // Set the context classloader the bootstrap classloader, to work around the way that JAXP locates implementation classes
-        // This should ensure that the JAXP classes provided by the JVM are used, rather than some other implementation
-        ClassLoader original = Thread.currentThread().getContextClassLoader();
-        Thread.currentThread().setContextClassLoader(ClassLoaderUtils.getPlatformClassLoader());
-        try {
-            DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
-            DOCUMENT_BUILDER_FACTORY.setValidating(false);
-        } finally {
-            Thread.currentThread().setContextClassLoader(original);
-        }
-    }
-
-    private static final EntityResolver M2_ENTITY_RESOLVER = new EntityResolver() {
-        public InputSource resolveEntity(String publicId, String systemId)
-            throws SAXException, IOException {
-            if ((systemId != null) && systemId.endsWith("m2-entities.ent")) {
-                return new InputSource(new ByteArrayInputStream(M2_ENTITIES_RESOURCE));
-            }
-            return null;
-        }
-    };
+    private static final String DEPENDENCY = "dependency";
 
     private PomParent pomParent = new RootPomParent();
     private final Map<String, String> pomProperties = new HashMap<String, String>();
@@ -129,30 +62,29 @@ public class PomReader implements PomParent {
     private Map<MavenDependencyKey, PomDependencyData> resolvedDependencies;
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
 
-    private final Element projectElement;
-    private final Element parentElement;
+    private final ParsedPom pom;
+    private final ParsedCoordinates parent;
 
     public PomReader(final LocallyAvailableExternalResource resource, ImmutableModuleIdentifierFactory moduleIdentifierFactory, Map<String, String> childPomProperties) throws SAXException {
         this.moduleIdentifierFactory = moduleIdentifierFactory;
         setPomProperties(childPomProperties);
         final String systemId = resource.getFile().toURI().toASCIIString();
-        Document pomDomDoc = resource.withContent(new Transformer<Document, InputStream>() {
-            public Document transform(InputStream inputStream) {
+        pom = resource.withContent(new Transformer<ParsedPom, InputStream>() {
+            public ParsedPom transform(InputStream inputStream) {
                 try {
-                    return parseToDom(inputStream, systemId);
+                    return PomStaxParser.parse(inputStream, systemId);
                 } catch (Exception e) {
                     throw new MetaDataParseException("POM", resource, e);
                 }
             }
         }).getResult();
-        projectElement = pomDomDoc.getDocumentElement();
-        if (!PROJECT.equals(projectElement.getNodeName()) && !MODEL.equals(projectElement.getNodeName())) {
+        if (!PROJECT.equals(pom.getRootElementName()) && !MODEL.equals(pom.getRootElementName())) {
             throw new SAXParseException("project must be the root tag", systemId, systemId, 0, 0);
         }
-        parentElement = getFirstChildElement(projectElement, PARENT);
+        parent = pom.getParent();
 
         setDefaultParentGavProperties();
-        setPomProperties(parseProperties(projectElement));
+        setPomProperties(pom.getProperties());
         setActiveProfileProperties();
     }
 
@@ -231,36 +163,11 @@ public class PomReader implements PomParent {
 
     @Override
     public String toString() {
-        return projectElement.getOwnerDocument().getDocumentURI();
-    }
-
-    private static DocumentBuilder getDocBuilder(EntityResolver entityResolver) {
-        try {
-            DocumentBuilder docBuilder = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
-            if (entityResolver != null) {
-                docBuilder.setEntityResolver(entityResolver);
-            }
-            return docBuilder;
-        } catch (ParserConfigurationException e) {
-            throw UncheckedException.throwAsUncheckedException(e);
-        }
-    }
-
-    private static Document parseToDom(InputStream stream, String systemId) throws IOException, SAXException {
-        // Set the context classloader the bootstrap classloader, to work around the way that JAXP locates implementation classes
-        // This should ensure that the JAXP classes provided by the JVM are used, rather than some other implementation
-        ClassLoader original = Thread.currentThread().getContextClassLoader();
-        Thread.currentThread().setContextClassLoader(ClassLoaderUtils.getPlatformClassLoader());
-        try {
-            InputStream dtdStream = new AddDTDFilterInputStream(stream);
-            return getDocBuilder(M2_ENTITY_RESOLVER).parse(dtdStream, systemId);
-        } finally {
-            Thread.currentThread().setContextClassLoader(original);
-        }
+        return pom.getSystemId();
     }
 
     public boolean hasParent() {
-        return parentElement != null;
+        return parent != null;
     }
 
     public Map<String, String> getProperties() {
@@ -286,59 +193,59 @@ public class PomReader implements PomParent {
     }
 
     public String getGroupId() {
-        String groupId = getFirstChildText(projectElement, GROUP_ID);
-        if (groupId == null) {
-            groupId = getFirstChildText(parentElement, GROUP_ID);
+        String groupId = pom.getGroupId();
+        if (groupId == null && parent != null) {
+            groupId = parent.getGroupId();
         }
         checkNotNull(groupId, GROUP_ID);
         return replaceProps(groupId);
     }
 
     public String getParentGroupId() {
-        String groupId = getFirstChildText(parentElement, GROUP_ID);
+        String groupId = parent == null ? null : parent.getGroupId();
         if (groupId == null) {
-            groupId = getFirstChildText(projectElement, GROUP_ID);
+            groupId = pom.getGroupId();
         }
         checkNotNull(groupId, GROUP_ID);
         return replaceProps(groupId);
     }
 
     public String getArtifactId() {
-        String val = getFirstChildText(projectElement, ARTIFACT_ID);
-        if (val == null) {
-            val = getFirstChildText(parentElement, ARTIFACT_ID);
+        String val = pom.getArtifactId();
+        if (val == null && parent != null) {
+            val = parent.getArtifactId();
         }
         checkNotNull(val, ARTIFACT_ID);
         return replaceProps(val);
     }
 
     public String getParentArtifactId() {
-        String val = getFirstChildText(parentElement, ARTIFACT_ID);
+        String val = parent == null ? null : parent.getArtifactId();
         if (val == null) {
-            val = getFirstChildText(projectElement, ARTIFACT_ID);
+            val = pom.getArtifactId();
         }
         checkNotNull(val, ARTIFACT_ID);
         return replaceProps(val);
     }
 
     public String getVersion() {
-        String val = getFirstChildText(projectElement, VERSION);
-        if (val == null) {
-            val = getFirstChildText(parentElement, VERSION);
+        String val = pom.getVersion();
+        if (val == null && parent != null) {
+            val = parent.getVersion();
         }
         return replaceProps(val);
     }
 
     public String getParentVersion() {
-        String val = getFirstChildText(parentElement, VERSION);
+        String val = parent == null ? null : parent.getVersion();
         if (val == null) {
-            val = getFirstChildText(projectElement, VERSION);
+            val = pom.getVersion();
         }
         return replaceProps(val);
     }
 
     public String getPackaging() {
-        String val = getFirstChildText(projectElement, PACKAGING);
+        String val = pom.getPackaging();
         if (val == null) {
             val = "jar";
         }
@@ -346,28 +253,17 @@ public class PomReader implements PomParent {
     }
 
     public boolean hasGradleMetadataMarker() {
-        NodeList childNodes = projectElement.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++) {
-            Node node = childNodes.item(i);
-            if (node instanceof Comment) {
-                String comment = node.getNodeValue();
-                if (comment.contains(MetaDataParser.GRADLE_METADATA_MARKER)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return pom.hasGradleMetadataMarker();
     }
 
     public ModuleVersionIdentifier getRelocation() {
-        Element distrMgt = getFirstChildElement(projectElement, DISTRIBUTION_MGT);
-        Element relocation = getFirstChildElement(distrMgt, RELOCATION);
+        ParsedCoordinates relocation = pom.getRelocation();
         if (relocation == null) {
             return null;
         } else {
-            String relocGroupId = getFirstChildText(relocation, GROUP_ID);
-            String relocArtId = getFirstChildText(relocation, ARTIFACT_ID);
-            String relocVersion = getFirstChildText(relocation, VERSION);
+            String relocGroupId = relocation.getGroupId();
+            String relocArtId = relocation.getArtifactId();
+            String relocVersion = relocation.getVersion();
             relocGroupId = relocGroupId == null ? getGroupId() : relocGroupId;
             relocArtId = relocArtId == null ? getArtifactId() : relocArtId;
             relocVersion = relocVersion == null ? getVersion() : relocVersion;
@@ -388,7 +284,7 @@ public class PomReader implements PomParent {
     private Map<MavenDependencyKey, PomDependencyData> resolveDependencies() {
         Map<MavenDependencyKey, PomDependencyData> dependencies = new LinkedHashMap<MavenDependencyKey, PomDependencyData>();
 
-        for (PomDependencyData dependency : getDependencyData(projectElement)) {
+        for (PomDependencyData dependency : getDependencyData(pom.getDependencies())) {
             dependencies.put(dependency.getId(), dependency);
         }
 
@@ -408,19 +304,11 @@ public class PomReader implements PomParent {
         return dependencies;
     }
 
-    private List<PomDependencyData> getDependencyData(Element parentElement) {
-        List<PomDependencyData> depElements = new ArrayList<PomDependencyData>();
-        Element dependenciesElement = getFirstChildElement(parentElement, DEPENDENCIES);
-        if (dependenciesElement != null) {
-            NodeList childs = dependenciesElement.getChildNodes();
-            for (int i = 0; i < childs.getLength(); i++) {
-                Node node = childs.item(i);
-                if (node instanceof Element && DEPENDENCY.equals(node.getNodeName())) {
-                    depElements.add(new PomDependencyData((Element) node));
-                }
-            }
+    private List<PomDependencyData> getDependencyData(List<ParsedDependency> dependencies) {
+        List<PomDependencyData> depElements = new ArrayList<PomDependencyData>(dependencies.size());
+        for (ParsedDependency dependency : dependencies) {
+            depElements.add(new PomDependencyData(dependency));
         }
-
         return depElements;
     }
 
@@ -451,7 +339,7 @@ public class PomReader implements PomParent {
      */
     public List<PomDependencyMgt> parseDependencyMgt() {
         if (declaredDependencyMgts == null) {
-            List<PomDependencyMgt> dependencyMgts = getDependencyMgt(projectElement);
+            List<PomDependencyMgt> dependencyMgts = getDependencyMgt(pom.getDependencyMgts());
 
             for (PomProfile pomProfile : parseActivePomProfiles()) {
                 for (PomDependencyMgt dependencyMgt : pomProfile.getDependencyMgts()) {
@@ -465,21 +353,11 @@ public class PomReader implements PomParent {
         return declaredDependencyMgts;
     }
 
-    private List<PomDependencyMgt> getDependencyMgt(Element parentElement) {
-        List<PomDependencyMgt> depMgmtElements = new ArrayList<PomDependencyMgt>();
-        Element dependenciesElement = getFirstChildElement(parentElement, DEPENDENCY_MGT);
-        dependenciesElement = getFirstChildElement(dependenciesElement, DEPENDENCIES);
-
-        if (dependenciesElement != null) {
-            NodeList childs = dependenciesElement.getChildNodes();
-            for (int i = 0; i < childs.getLength(); i++) {
-                Node node = childs.item(i);
-                if (node instanceof Element && DEPENDENCY.equals(node.getNodeName())) {
-                    depMgmtElements.add(new PomDependencyMgtElement((Element) node));
-                }
-            }
+    private List<PomDependencyMgt> getDependencyMgt(List<ParsedDependency> dependencies) {
+        List<PomDependencyMgt> depMgmtElements = new ArrayList<PomDependencyMgt>(dependencies.size());
+        for (ParsedDependency dependency : dependencies) {
+            depMgmtElements.add(new PomDependencyMgtElement(dependency));
         }
-
         return depMgmtElements;
     }
 
@@ -500,10 +378,10 @@ public class PomReader implements PomParent {
     }
 
     public class PomDependencyMgtElement implements PomDependencyMgt {
-        private final Element depElement;
+        private final ParsedDependency dependency;
 
-        PomDependencyMgtElement(Element depElement) {
-            this.depElement = depElement;
+        PomDependencyMgtElement(ParsedDependency dependency) {
+            this.dependency = dependency;
         }
 
         public MavenDependencyKey getId() {
@@ -514,7 +392,7 @@ public class PomReader implements PomParent {
          * @see org.apache.ivy.plugins.parser.m2.PomDependencyMgt#getGroupId()
          */
         public String getGroupId() {
-            String val = getFirstChildText(depElement, GROUP_ID);
+            String val = dependency.getGroupId();
             checkNotNull(val, GROUP_ID, DEPENDENCY);
             return replaceProps(val);
         }
@@ -523,7 +401,7 @@ public class PomReader implements PomParent {
          * @see org.apache.ivy.plugins.parser.m2.PomDependencyMgt#getArtifactId()
          */
         public String getArtifactId() {
-            String val = getFirstChildText(depElement, ARTIFACT_ID);
+            String val = dependency.getArtifactId();
             checkNotNull(val, ARTIFACT_ID, DEPENDENCY);
             return replaceProps(val);
         }
@@ -532,17 +410,17 @@ public class PomReader implements PomParent {
          * @see org.apache.ivy.plugins.parser.m2.PomDependencyMgt#getVersion()
          */
         public String getVersion() {
-            String val = getFirstChildText(depElement, VERSION);
+            String val = dependency.getVersion();
             return replaceProps(val);
         }
 
         public String getScope() {
-            String val = getFirstChildText(depElement, SCOPE);
+            String val = dependency.getScope();
             return replaceProps(val);
         }
 
         public String getType() {
-            String val = getFirstChildText(depElement, TYPE);
+            String val = dependency.getType();
             val = replaceProps(val);
 
             if (val == null) {
@@ -553,23 +431,19 @@ public class PomReader implements PomParent {
         }
 
         public String getClassifier() {
-            String val = getFirstChildText(depElement, CLASSIFIER);
+            String val = dependency.getClassifier();
             return replaceProps(val);
         }
 
         public List<ModuleIdentifier> getExcludedModules() {
-            Element exclusionsElement = getFirstChildElement(depElement, EXCLUSIONS);
-            if (exclusionsElement != null) {
-                NodeList childs = exclusionsElement.getChildNodes();
+            List<ParsedCoordinates> exclusionElements = dependency.getExclusions();
+            if (exclusionElements != null) {
                 List<ModuleIdentifier> exclusions = Lists.newArrayList();
-                for (int i = 0; i < childs.getLength(); i++) {
-                    Node node = childs.item(i);
-                    if (node instanceof Element && EXCLUSION.equals(node.getNodeName())) {
-                        String groupId = getFirstChildText((Element) node, GROUP_ID);
-                        String artifactId = getFirstChildText((Element) node, ARTIFACT_ID);
-                        if ((groupId != null) || (artifactId != null)) {
-                            exclusions.add(moduleIdentifierFactory.module(groupId != null ? groupId : "*", artifactId != null ? artifactId : "*"));
-                        }
+                for (ParsedCoordinates exclusion : exclusionElements) {
+                    String groupId = exclusion.getGroupId();
+                    String artifactId = exclusion.getArtifactId();
+                    if ((groupId != null) || (artifactId != null)) {
+                        exclusions.add(moduleIdentifierFactory.module(groupId != null ? groupId : "*", artifactId != null ? artifactId : "*"));
                     }
                 }
                 return exclusions;
@@ -579,39 +453,38 @@ public class PomReader implements PomParent {
     }
 
     public class PomDependencyData extends PomDependencyMgtElement {
-        private final Element depElement;
+        private final ParsedDependency dependency;
 
-        PomDependencyData(Element depElement) {
-            super(depElement);
-            this.depElement = depElement;
+        PomDependencyData(ParsedDependency dependency) {
+            super(dependency);
+            this.dependency = dependency;
         }
 
         public boolean isOptional() {
-            Element e = getFirstChildElement(depElement, OPTIONAL);
-            return (e != null) && "true".equalsIgnoreCase(getTextContent(e));
+            return "true".equalsIgnoreCase(dependency.getOptional());
         }
     }
 
     public class PomProfileElement implements PomProfile {
-        private final Element element;
+        private final ParsedProfile profile;
         private List<PomDependencyMgt> declaredDependencyMgts;
         private List<PomDependencyData> declaredDependencies;
 
-        PomProfileElement(Element element) {
-            this.element = element;
+        PomProfileElement(ParsedProfile profile) {
+            this.profile = profile;
         }
 
         public String getId() {
-            return getFirstChildText(element, PROFILE_ID);
+            return profile.getId();
         }
 
         public Map<String, String> getProperties() {
-            return parseProperties(element);
+            return profile.getProperties();
         }
 
         public List<PomDependencyMgt> getDependencyMgts() {
             if (declaredDependencyMgts == null) {
-                declaredDependencyMgts = getDependencyMgt(element);
+                declaredDependencyMgts = getDependencyMgt(profile.getDependencyMgts());
             }
 
             return declaredDependencyMgts;
@@ -619,7 +492,7 @@ public class PomReader implements PomParent {
 
         public List<PomDependencyData> getDependencies() {
             if (declaredDependencies == null) {
-                declaredDependencies = getDependencyData(element);
+                declaredDependencies = getDependencyData(profile.getDependencies());
             }
 
             return declaredDependencies;
@@ -635,27 +508,15 @@ public class PomReader implements PomParent {
         if (declaredActivePomProfiles == null) {
             List<PomProfile> activeByDefaultPomProfiles = new ArrayList<PomProfile>();
             List<PomProfile> activeByAbsenceOfPropertyPomProfiles = new ArrayList<PomProfile>();
-            Element profilesElement = getFirstChildElement(projectElement, PROFILES);
-
-            if (profilesElement != null) {
-                for (Element profileElement : getAllChilds(profilesElement)) {
-                    if (PROFILE.equals(profileElement.getNodeName())) {
-                        Element activationElement = getFirstChildElement(profileElement, PROFILE_ACTIVATION);
-
-                        if (activationElement != null) {
-                            String activeByDefault = getFirstChildText(activationElement, PROFILE_ACTIVATION_ACTIVE_BY_DEFAULT);
-
-                            if (activeByDefault != null && "true".equals(activeByDefault)) {
-                                activeByDefaultPomProfiles.add(new PomProfileElement(profileElement));
-                            } else {
-                                Element propertyElement = getFirstChildElement(activationElement, PROFILE_ACTIVATION_PROPERTY);
-
-                                if (propertyElement != null) {
-                                    if (isActivationPropertyActivated(propertyElement)) {
-                                        activeByAbsenceOfPropertyPomProfiles.add(new PomProfileElement(profileElement));
-                                    }
-                                }
-                            }
+            for (ParsedProfile profile : pom.getProfiles()) {
+                if (profile.hasActivation()) {
+                    String activeByDefault = profile.getActiveByDefault();
+
+                    if (activeByDefault != null && "true".equals(activeByDefault)) {
+                        activeByDefaultPomProfiles.add(new PomProfileElement(profile));
+                    } else if (profile.hasActivationProperty()) {
+                        if (isActivationPropertyActivated(profile)) {
+                            activeByAbsenceOfPropertyPomProfiles.add(new PomProfileElement(profile));
                         }
                     }
                 }
@@ -682,12 +543,12 @@ public class PomReader implements PomParent {
     /**
      * Checks if activation property is active through absence of system property.
      *
-     * @param propertyElement Property element
+     * @param profile Profile with an activation property
      * @return Activation indicator
      * @see <a href="http://books.sonatype.com/mvnref-book/reference/profiles-sect-activation.html#profiles-sect-activation-config">Maven documentation</a>
      */
-    private boolean isActivationPropertyActivated(Element propertyElement) {
-        String propertyName = getFirstChildText(propertyElement, "name");
+    private boolean isActivationPropertyActivated(ParsedProfile profile) {
+        String propertyName = profile.getActivationPropertyName();
         return propertyName.startsWith("!");
     }
 
@@ -698,18 +559,6 @@ public class PomReader implements PomParent {
         return pomProperties;
     }
 
-    private Map<String, String> parseProperties(Element parentElement) {
-        Map<String, String> pomProperties = new HashMap<String, String>();
-        Element propsEl = getFirstChildElement(parentElement, PROPERTIES);
-        if (propsEl != null) {
-            propsEl.normalize();
-        }
-        for (Element prop : getAllChilds(propsEl)) {
-            pomProperties.put(prop.getNodeName(), getTextContent(prop));
-        }
-        return pomProperties;
-    }
-
     private String replaceProps(String val) {
         if (val == null) {
             return null;
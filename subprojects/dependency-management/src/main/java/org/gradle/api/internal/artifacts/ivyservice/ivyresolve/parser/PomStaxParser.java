@@ -0,0 +1,699 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.classloader.ClassLoaderUtils;
+
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the elements of a POM that {@link PomReader} needs with a streaming pull parser, without building a DOM for the whole document.
+ *
+ * Values are kept as they appear in the POM, so that {@link PomReader} can substitute properties once the parent POMs are known.
+ * As with a DOM lookup, only the first occurrence of an element is used and the text of an element is the text of its direct children.
+ */
+public final class PomStaxParser {
+    private static final String PARENT = "parent";
+    private static final String GROUP_ID = "groupId";
+    private static final String ARTIFACT_ID = "artifactId";
+    private static final String VERSION = "version";
+    private static final String PACKAGING = "packaging";
+    private static final String PROPERTIES = "properties";
+    private static final String DISTRIBUTION_MGT = "distributionManagement";
+    private static final String RELOCATION = "relocation";
+    private static final String DEPENDENCIES = "dependencies";
+    private static final String DEPENDENCY = "dependency";
+    private static final String DEPENDENCY_MGT = "dependencyManagement";
+    private static final String SCOPE = "scope";
+    private static final String TYPE = "type";
+    private static final String CLASSIFIER = "classifier";
+    private static final String OPTIONAL = "optional";
+    private static final String EXCLUSIONS = "exclusions";
+    private static final String EXCLUSION = "exclusion";
+    private static final String PROFILES = "profiles";
+    private static final String PROFILE = "profile";
+    private static final String PROFILE_ID = "id";
+    private static final String PROFILE_ACTIVATION = "activation";
+    private static final String PROFILE_ACTIVATION_ACTIVE_BY_DEFAULT = "activeByDefault";
+    private static final String PROFILE_ACTIVATION_PROPERTY = "property";
+    private static final String PROFILE_ACTIVATION_PROPERTY_NAME = "name";
+
+    private static final byte[] M2_ENTITIES_RESOURCE;
+    private static final XMLInputFactory XML_INPUT_FACTORY;
+
+    static {
+        byte[] bytes;
+        try {
+            bytes = IOUtils.toByteArray(org.apache.ivy.plugins.parser.m2.PomReader.class.getResourceAsStream("m2-entities.ent"));
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        M2_ENTITIES_RESOURCE = bytes;
+
+        // Set the context classloader the bootstrap classloader, to work around the way that JAXP locates implementation classes
+        // This should ensure that the JAXP classes provided by the JVM are used, rather than some other implementation
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(ClassLoaderUtils.getPlatformClassLoader());
+        try {
+            XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_VALIDATING, false);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, true);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
+            XML_INPUT_FACTORY.setXMLResolver(new XMLResolver() {
+                public Object resolveEntity(String publicId, String systemId, String baseUri, String namespace) {
+                    if ((systemId != null) && systemId.endsWith("m2-entities.ent")) {
+                        return new ByteArrayInputStream(M2_ENTITIES_RESOURCE);
+                    }
+                    return null;
+                }
+            });
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    private PomStaxParser() {}
+
+    public static ParsedPom parse(InputStream stream, String systemId) throws IOException, XMLStreamException {
+        // Set the context classloader the bootstrap classloader, to work around the way that JAXP locates implementation classes
+        // This should ensure that the JAXP classes provided by the JVM are used, rather than some other implementation
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(ClassLoaderUtils.getPlatformClassLoader());
+        try {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(systemId, new AddDTDFilterInputStream(stream));
+            try {
+                // Skip the prolog, which contains the DTD declaring the entities that POMs commonly use
+                while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    // Keep going
+                }
+                return readProject(reader, systemId);
+            } finally {
+                reader.close();
+            }
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    private static ParsedPom readProject(XMLStreamReader reader, String systemId) throws XMLStreamException {
+        ParsedPom pom = new ParsedPom(systemId, elementName(reader));
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+            if (event == XMLStreamConstants.COMMENT) {
+                if (reader.getText().contains(MetaDataParser.GRADLE_METADATA_MARKER)) {
+                    pom.hasGradleMetadataMarker = true;
+                }
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            String name = elementName(reader);
+            if (GROUP_ID.equals(name) && pom.groupId == null) {
+                pom.groupId = readText(reader);
+            } else if (ARTIFACT_ID.equals(name) && pom.artifactId == null) {
+                pom.artifactId = readText(reader);
+            } else if (VERSION.equals(name) && pom.version == null) {
+                pom.version = readText(reader);
+            } else if (PACKAGING.equals(name) && pom.packaging == null) {
+                pom.packaging = readText(reader);
+            } else if (PARENT.equals(name) && pom.parent == null) {
+                pom.parent = readCoordinates(reader);
+            } else if (PROPERTIES.equals(name) && pom.properties == null) {
+                pom.properties = readProperties(reader);
+            } else if (DISTRIBUTION_MGT.equals(name) && !pom.hasDistributionManagement) {
+                pom.hasDistributionManagement = true;
+                pom.relocation = readRelocation(reader);
+            } else if (DEPENDENCIES.equals(name) && pom.dependencies == null) {
+                pom.dependencies = readDependencies(reader);
+            } else if (DEPENDENCY_MGT.equals(name) && pom.dependencyMgts == null) {
+                pom.dependencyMgts = readDependencyMgt(reader);
+            } else if (PROFILES.equals(name) && pom.profiles == null) {
+                pom.profiles = readProfiles(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return pom;
+    }
+
+    @Nullable
+    private static ParsedCoordinates readRelocation(XMLStreamReader reader) throws XMLStreamException {
+        ParsedCoordinates relocation = null;
+        while (nextChildElement(reader)) {
+            if (RELOCATION.equals(elementName(reader)) && relocation == null) {
+                relocation = readCoordinates(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return relocation;
+    }
+
+    private static ParsedCoordinates readCoordinates(XMLStreamReader reader) throws XMLStreamException {
+        ParsedCoordinates coordinates = new ParsedCoordinates();
+        while (nextChildElement(reader)) {
+            String name = elementName(reader);
+            if (GROUP_ID.equals(name) && coordinates.groupId == null) {
+                coordinates.groupId = readText(reader);
+            } else if (ARTIFACT_ID.equals(name) && coordinates.artifactId == null) {
+                coordinates.artifactId = readText(reader);
+            } else if (VERSION.equals(name) && coordinates.version == null) {
+                coordinates.version = readText(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return coordinates;
+    }
+
+    private static Map<String, String> readProperties(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, String> properties = new HashMap<String, String>();
+        while (nextChildElement(reader)) {
+            String name = elementName(reader);
+            properties.put(name, readText(reader));
+        }
+        return properties;
+    }
+
+    private static List<ParsedDependency> readDependencyMgt(XMLStreamReader reader) throws XMLStreamException {
+        List<ParsedDependency> dependencies = null;
+        while (nextChildElement(reader)) {
+            if (DEPENDENCIES.equals(elementName(reader)) && dependencies == null) {
+                dependencies = readDependencies(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return dependencies == null ? Collections.<ParsedDependency>emptyList() : dependencies;
+    }
+
+    private static List<ParsedDependency> readDependencies(XMLStreamReader reader) throws XMLStreamException {
+        List<ParsedDependency> dependencies = new ArrayList<ParsedDependency>();
+        while (nextChildElement(reader)) {
+            if (DEPENDENCY.equals(elementName(reader))) {
+                dependencies.add(readDependency(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return dependencies;
+    }
+
+    private static ParsedDependency readDependency(XMLStreamReader reader) throws XMLStreamException {
+        ParsedDependency dependency = new ParsedDependency();
+        while (nextChildElement(reader)) {
+            String name = elementName(reader);
+            if (GROUP_ID.equals(name) && dependency.groupId == null) {
+                dependency.groupId = readText(reader);
+            } else if (ARTIFACT_ID.equals(name) && dependency.artifactId == null) {
+                dependency.artifactId = readText(reader);
+            } else if (VERSION.equals(name) && dependency.version == null) {
+                dependency.version = readText(reader);
+            } else if (SCOPE.equals(name) && dependency.scope == null) {
+                dependency.scope = readText(reader);
+            } else if (TYPE.equals(name) && dependency.type == null) {
+                dependency.type = readText(reader);
+            } else if (CLASSIFIER.equals(name) && dependency.classifier == null) {
+                dependency.classifier = readText(reader);
+            } else if (OPTIONAL.equals(name) && dependency.optional == null) {
+                dependency.optional = readText(reader);
+            } else if (EXCLUSIONS.equals(name) && dependency.exclusions == null) {
+                dependency.exclusions = readExclusions(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return dependency;
+    }
+
+    private static List<ParsedCoordinates> readExclusions(XMLStreamReader reader) throws XMLStreamException {
+        List<ParsedCoordinates> exclusions = new ArrayList<ParsedCoordinates>();
+        while (nextChildElement(reader)) {
+            if (EXCLUSION.equals(elementName(reader))) {
+                exclusions.add(readCoordinates(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return exclusions;
+    }
+
+    private static List<ParsedProfile> readProfiles(XMLStreamReader reader) throws XMLStreamException {
+        List<ParsedProfile> profiles = new ArrayList<ParsedProfile>();
+        while (nextChildElement(reader)) {
+            if (PROFILE.equals(elementName(reader))) {
+                profiles.add(readProfile(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return profiles;
+    }
+
+    private static ParsedProfile readProfile(XMLStreamReader reader) throws XMLStreamException {
+        ParsedProfile profile = new ParsedProfile();
+        while (nextChildElement(reader)) {
+            String name = elementName(reader);
+            if (PROFILE_ID.equals(name) && profile.id == null) {
+                profile.id = readText(reader);
+            } else if (PROFILE_ACTIVATION.equals(name) && !profile.hasActivation) {
+                profile.hasActivation = true;
+                readActivation(reader, profile);
+            } else if (PROPERTIES.equals(name) && profile.properties == null) {
+                profile.properties = readProperties(reader);
+            } else if (DEPENDENCIES.equals(name) && profile.dependencies == null) {
+                profile.dependencies = readDependencies(reader);
+            } else if (DEPENDENCY_MGT.equals(name) && profile.dependencyMgts == null) {
+                profile.dependencyMgts = readDependencyMgt(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return profile;
+    }
+
+    private static void readActivation(XMLStreamReader reader, ParsedProfile profile) throws XMLStreamException {
+        while (nextChildElement(reader)) {
+            String name = elementName(reader);
+            if (PROFILE_ACTIVATION_ACTIVE_BY_DEFAULT.equals(name) && profile.activeByDefault == null) {
+                profile.activeByDefault = readText(reader);
+            } else if (PROFILE_ACTIVATION_PROPERTY.equals(name) && !profile.hasActivationProperty) {
+                profile.hasActivationProperty = true;
+                profile.activationPropertyName = readActivationPropertyName(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    @Nullable
+    private static String readActivationPropertyName(XMLStreamReader reader) throws XMLStreamException {
+        String propertyName = null;
+        while (nextChildElement(reader)) {
+            if (PROFILE_ACTIVATION_PROPERTY_NAME.equals(elementName(reader)) && propertyName == null) {
+                propertyName = readText(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return propertyName;
+    }
+
+    /**
+     * Moves to the start of the next child element of the current element, or to the end of the current element when there are no more children.
+     */
+    private static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the text of the current element, ignoring the text of nested elements, and moves to the end of the element.
+     */
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = null;
+        String singleText = "";
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (depth == 0) {
+                        return text == null ? singleText : text.toString();
+                    }
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (depth == 0) {
+                        // Most elements contain a single run of text, so only copy into a builder when there is more than one
+                        if (text != null) {
+                            text.append(reader.getText());
+                        } else if (singleText.isEmpty()) {
+                            singleText = reader.getText();
+                        } else {
+                            text = new StringBuilder(singleText).append(reader.getText());
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return text == null ? singleText : text.toString();
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 0) {
+                    return;
+                }
+                depth--;
+            }
+        }
+    }
+
+    private static String elementName(XMLStreamReader reader) {
+        String prefix = reader.getPrefix();
+        if (prefix == null || prefix.isEmpty()) {
+            return reader.getLocalName();
+        }
+        return prefix + ":" + reader.getLocalName();
+    }
+
+    /**
+     * The elements of a POM used by {@link PomReader}. A value is {@code null} when the element is missing, and empty when the element has no text.
+     */
+    public static final class ParsedPom {
+        private final String systemId;
+        private final String rootElementName;
+        private String groupId;
+        private String artifactId;
+        private String version;
+        private String packaging;
+        private ParsedCoordinates parent;
+        private boolean hasGradleMetadataMarker;
+        private Map<String, String> properties;
+        private boolean hasDistributionManagement;
+        private ParsedCoordinates relocation;
+        private List<ParsedDependency> dependencies;
+        private List<ParsedDependency> dependencyMgts;
+        private List<ParsedProfile> profiles;
+
+        private ParsedPom(String systemId, String rootElementName) {
+            this.systemId = systemId;
+            this.rootElementName = rootElementName;
+        }
+
+        public String getSystemId() {
+            return systemId;
+        }
+
+        public String getRootElementName() {
+            return rootElementName;
+        }
+
+        @Nullable
+        public String getGroupId() {
+            return groupId;
+        }
+
+        @Nullable
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        @Nullable
+        public String getVersion() {
+            return version;
+        }
+
+        @Nullable
+        public String getPackaging() {
+            return packaging;
+        }
+
+        @Nullable
+        public ParsedCoordinates getParent() {
+            return parent;
+        }
+
+        public boolean hasGradleMetadataMarker() {
+            return hasGradleMetadataMarker;
+        }
+
+        public Map<String, String> getProperties() {
+            return properties == null ? Collections.<String, String>emptyMap() : properties;
+        }
+
+        @Nullable
+        public ParsedCoordinates getRelocation() {
+            return relocation;
+        }
+
+        public List<ParsedDependency> getDependencies() {
+            return dependencies == null ? Collections.<ParsedDependency>emptyList() : dependencies;
+        }
+
+        public List<ParsedDependency> getDependencyMgts() {
+            return dependencyMgts == null ? Collections.<ParsedDependency>emptyList() : dependencyMgts;
+        }
+
+        public List<ParsedProfile> getProfiles() {
+            return profiles == null ? Collections.<ParsedProfile>emptyList() : profiles;
+        }
+    }
+
+    public static final class ParsedCoordinates {
+        private String groupId;
+        private String artifactId;
+        private String version;
+
+        @Nullable
+        public String getGroupId() {
+            return groupId;
+        }
+
+        @Nullable
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        @Nullable
+        public String getVersion() {
+            return version;
+        }
+    }
+
+    public static final class ParsedDependency {
+        private String groupId;
+        private String artifactId;
+        private String version;
+        private String scope;
+        private String type;
+        private String classifier;
+        private String optional;
+        private List<ParsedCoordinates> exclusions;
+
+        @Nullable
+        public String getGroupId() {
+            return groupId;
+        }
+
+        @Nullable
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        @Nullable
+        public String getVersion() {
+            return version;
+        }
+
+        @Nullable
+        public String getScope() {
+            return scope;
+        }
+
+        @Nullable
+        public String getType() {
+            return type;
+        }
+
+        @Nullable
+        public String getClassifier() {
+            return classifier;
+        }
+
+        @Nullable
+        public String getOptional() {
+            return optional;
+        }
+
+        @Nullable
+        public List<ParsedCoordinates> getExclusions() {
+            return exclusions;
+        }
+    }
+
+    public static final class ParsedProfile {
+        private String id;
+        private boolean hasActivation;
+        private String activeByDefault;
+        private boolean hasActivationProperty;
+        private String activationPropertyName;
+        private Map<String, String> properties;
+        private List<ParsedDependency> dependencies;
+        private List<ParsedDependency> dependencyMgts;
+
+        @Nullable
+        public String getId() {
+            return id;
+        }
+
+        public boolean hasActivation() {
+            return hasActivation;
+        }
+
+        @Nullable
+        public String getActiveByDefault() {
+            return activeByDefault;
+        }
+
+        public boolean hasActivationProperty() {
+            return hasActivationProperty;
+        }
+
+        @Nullable
+        public String getActivationPropertyName() {
+            return activationPropertyName;
+        }
+
+        public Map<String, String> getProperties() {
+            return properties == null ? Collections.<String, String>emptyMap() : properties;
+        }
+
+        public List<ParsedDependency> getDependencies() {
+            return dependencies == null ? Collections.<ParsedDependency>emptyList() : dependencies;
+        }
+
+        public List<ParsedDependency> getDependencyMgts() {
+            return dependencyMgts == null ? Collections.<ParsedDependency>emptyList() : dependencyMgts;
+        }
+    }
+
+    public static final class AddDTDFilterInputStream extends FilterInputStream {
+        private static final int MARK = 10000;
+        private static final String DOCTYPE = "<!DOCTYPE project SYSTEM \"m2-entities.ent\">\n";
+
+        private int count;
+        private byte[] prefix = DOCTYPE.getBytes();
+
+        public AddDTDFilterInputStream(InputStream in) throws IOException {
+            super(new BufferedInputStream(in));
+
+            this.in.mark(MARK);
+
+            // TODO: we should really find a better solution for this...
+            // maybe we could use a FilterReader instead of a FilterInputStream?
+            int byte1 = this.in.read();
+            int byte2 = this.in.read();
+            int byte3 = this.in.read();
+
+            if (byte1 == 239 && byte2 == 187 && byte3 == 191) {
+                // skip the UTF-8 BOM
+                this.in.mark(MARK);
+            } else {
+                this.in.reset();
+            }
+
+            int bytesToSkip = 0;
+            LineNumberReader reader = new LineNumberReader(new InputStreamReader(this.in, "UTF-8"), 100);
+            String firstLine = reader.readLine();
+            if (firstLine != null) {
+                String trimmed = firstLine.trim();
+                if (trimmed.startsWith("<?xml ")) {
+                    int endIndex = trimmed.indexOf("?>");
+                    String xmlDecl = trimmed.substring(0, endIndex + 2);
+                    prefix = (xmlDecl + "\n" + DOCTYPE).getBytes();
+                    bytesToSkip = xmlDecl.getBytes().length;
+                }
+            }
+
+            this.in.reset();
+            for (int i = 0; i < bytesToSkip; i++) {
+                this.in.read();
+            }
+        }
+
+        public int read() throws IOException {
+            if (count < prefix.length) {
+                return prefix[count++];
+            }
+
+            return super.read();
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (b == null) {
+                throw new NullPointerException();
+            } else if ((off < 0) || (off > b.length) || (len < 0)
+                    || ((off + len) > b.length) || ((off + len) < 0)) {
+                throw new IndexOutOfBoundsException();
+            } else if (len == 0) {
+                return 0;
+            }
+
+            int nbrBytesCopied = 0;
+
+            if (count < prefix.length) {
+                int nbrBytesFromPrefix = Math.min(prefix.length - count, len);
+                System.arraycopy(prefix, count, b, off, nbrBytesFromPrefix);
+                nbrBytesCopied = nbrBytesFromPrefix;
+            }
+
+            if (nbrBytesCopied < len) {
+                nbrBytesCopied += in.read(b, off + nbrBytesCopied, len - nbrBytesCopied);
+            }
+
+            count += nbrBytesCopied;
+            return nbrBytesCopied;
+        }
+    }
+}
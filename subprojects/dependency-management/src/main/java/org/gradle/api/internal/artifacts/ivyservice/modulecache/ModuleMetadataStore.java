@@ -26,13 +26,19 @@ import org.gradle.internal.component.external.model.ModuleComponentResolveMetada
 import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetadata;
 import org.gradle.internal.resource.local.LocallyAvailableResource;
 import org.gradle.internal.resource.local.PathKeyFileStore;
-import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
-import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.internal.serialize.kryo.StringDeduplicatingKryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.StringDeduplicatingKryoBackedEncoder;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 
+/**
+ * Stores the metadata of each module in its own file.
+ *
+ * Each file carries its own string table: a string is written in full the first time it occurs and referenced by index after that. As the same group, module
+ * and version strings are repeated in most dependencies of a module, this keeps the files small and decodes each of these strings only once per file.
+ */
 public class ModuleMetadataStore {
 
     private static final Joiner PATH_JOINER = Joiner.on("/");
@@ -53,7 +59,7 @@ public class ModuleMetadataStore {
         final LocallyAvailableResource resource = metaDataStore.get(filePath);
         if (resource != null) {
             try {
-                StringDeduplicatingDecoder decoder = new StringDeduplicatingDecoder(new KryoBackedDecoder(new FileInputStream(resource.getFile())), stringInterner);
+                StringDeduplicatingDecoder decoder = new StringDeduplicatingDecoder(new StringDeduplicatingKryoBackedDecoder(new FileInputStream(resource.getFile())), stringInterner);
                 try {
                     return moduleMetadataSerializer.read(decoder, moduleIdentifierFactory, Maps.newHashMap());
                 } finally {
@@ -71,9 +77,10 @@ public class ModuleMetadataStore {
         return metaDataStore.add(PATH_JOINER.join(filePath), new Action<File>() {
             public void execute(File moduleDescriptorFile) {
                 try {
-                    KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(moduleDescriptorFile));
+                    StringDeduplicatingKryoBackedEncoder encoder = new StringDeduplicatingKryoBackedEncoder(new FileOutputStream(moduleDescriptorFile));
                     try {
                         moduleMetadataSerializer.write(encoder, metadata, Maps.newHashMap());
+                        encoder.done();
                     } finally {
                         encoder.close();
                     }
@@ -16,8 +16,12 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.gradle.api.artifacts.ModuleIdentifier;
@@ -50,16 +54,25 @@ import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.exclude
  * <ul> <li>When a module dependency has multiple exclusions, then the resulting exclusion is the _intersection_ of those exclusions (module is excluded if excluded by _any_).</li> <li>When a module
  * is depended on via a transitive path, then the resulting exclusion is the _intersection_ of the exclusions on each leg of the path (module is excluded if excluded by _any_).</li> <li>When a module
  * is depended on via multiple paths in the graph, then the resulting exclusion is the _union_ of the exclusions on each of those paths (module is excluded if excluded by _all_).</li> </ul>
+ *
+ * <p>All specs created by this class are canonical: equal specs are represented by the same instance, so that specs can be compared and combined cheaply.
+ * Because the same specs are combined over and over again as the graph is traversed, the results of {@link #either(ModuleExclusion, ModuleExclusion)} and
+ * {@link #both(ModuleExclusion, ModuleExclusion)} are kept in bounded caches.</p>
  */
 public class ModuleExclusions {
     private static final ExcludeNone EXCLUDE_NONE = new ExcludeNone();
     private static final ExcludeAllModulesSpec EXCLUDE_ALL_MODULES_SPEC = new ExcludeAllModulesSpec();
+    private static final int MAX_CACHED_OPERATIONS = 10000;
 
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
 
     private final Map<MergeOperation, AbstractModuleExclusion> mergeCache = Maps.newConcurrentMap();
     private final Map<ImmutableList<ExcludeMetadata>, AbstractModuleExclusion> excludeAnyCache = Maps.newConcurrentMap();
     private final Map<ImmutableSet<AbstractModuleExclusion>, EitherExclusion> eitherCache = Maps.newConcurrentMap();
+    private final Map<ImmutableList<AbstractModuleExclusion>, AllExclusion> allCache = Maps.newConcurrentMap();
+    private final Cache<OperationKey, ModuleExclusion> eitherOperationCache = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_OPERATIONS).build();
+    private final Cache<OperationKey, ModuleExclusion> bothOperationCache = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_OPERATIONS).build();
+    private final Interner<AbstractModuleExclusion> otherSpecs = Interners.newStrongInterner();
     private final Map<AbstractModuleExclusion[], Map<AbstractModuleExclusion[], MergeOperation>> mergeOperationCache = Maps.newIdentityHashMap();
     private final Map<ModuleIdentifier, ModuleIdExcludeSpec> moduleIdSpecs = Maps.newConcurrentMap();
     private final Map<String, ModuleNameExcludeSpec> moduleNameSpecs = Maps.newConcurrentMap();
@@ -111,7 +124,7 @@ public class ModuleExclusions {
     private AbstractModuleExclusion forExclude(ExcludeMetadata rule) {
         // For custom ivy pattern matchers, don't inspect the rule any more deeply: this prevents us from doing smart merging later
         if (!PatternMatchers.isExactMatcher(rule.getMatcher())) {
-            return new IvyPatternMatcherExcludeRuleSpec(rule);
+            return otherSpecs.intern(new IvyPatternMatcherExcludeRuleSpec(rule));
         }
 
         ModuleIdentifier moduleId = rule.getModuleId();
@@ -131,7 +144,7 @@ public class ModuleExclusions {
                 return EXCLUDE_ALL_MODULES_SPEC;
             }
         } else {
-            return new ArtifactExcludeSpec(moduleId, artifact);
+            return otherSpecs.intern(new ArtifactExcludeSpec(moduleId, artifact));
         }
     }
 
@@ -185,6 +198,12 @@ public class ModuleExclusions {
             return two;
         }
 
+        OperationKey key = new OperationKey(one, two);
+        ModuleExclusion result = eitherOperationCache.getIfPresent(key);
+        if (result != null) {
+            return result;
+        }
+
         AbstractModuleExclusion aOne = (AbstractModuleExclusion) one;
         AbstractModuleExclusion aTwo = (AbstractModuleExclusion) two;
 
@@ -193,7 +212,9 @@ public class ModuleExclusions {
         aOne.unpackEither(builder);
         aTwo.unpackEither(builder);
 
-        return asEither(ImmutableSet.copyOf(builder));
+        result = asEither(ImmutableSet.copyOf(builder));
+        eitherOperationCache.put(key, result);
+        return result;
     }
 
     private static int estimateSize(AbstractModuleExclusion ex) {
@@ -217,6 +238,12 @@ public class ModuleExclusions {
             return one;
         }
 
+        OperationKey key = new OperationKey(one, two);
+        ModuleExclusion result = bothOperationCache.getIfPresent(key);
+        if (result != null) {
+            return result;
+        }
+
         List<AbstractModuleExclusion> specs = new ArrayList<AbstractModuleExclusion>();
         ((AbstractModuleExclusion) one).unpackAll(specs);
         ((AbstractModuleExclusion) two).unpackAll(specs);
@@ -239,9 +266,12 @@ public class ModuleExclusions {
             }
         }
         if (specs.size() == 1) {
-            return specs.get(0);
+            result = specs.get(0);
+        } else {
+            result = asAll(ImmutableList.copyOf(specs));
         }
-        return new AllExclusion(specs);
+        bothOperationCache.put(key, result);
+        return result;
     }
 
     /**
@@ -330,6 +360,15 @@ public class ModuleExclusions {
         return cached;
     }
 
+    private AllExclusion asAll(ImmutableList<AbstractModuleExclusion> excludes) {
+        AllExclusion cached = allCache.get(excludes);
+        if (cached == null) {
+            cached = new AllExclusion(excludes);
+            allCache.put(excludes, cached);
+        }
+        return cached;
+    }
+
     // Add exclusions to the list that will exclude modules/artifacts that are excluded by _both_ of the candidate rules.
     private void mergeExcludeRules(AbstractModuleExclusion spec1, AbstractModuleExclusion spec2, Set<AbstractModuleExclusion> merged) {
         if (spec1 == spec2) {
@@ -444,6 +483,39 @@ public class ModuleExclusions {
         }
     }
 
+    /**
+     * The arguments of an operation on 2 specs. Specs are canonical, so they are compared by identity.
+     */
+    private static final class OperationKey {
+        private final ModuleExclusion one;
+        private final ModuleExclusion two;
+        private final int hashCode;
+
+        private OperationKey(ModuleExclusion one, ModuleExclusion two) {
+            this.one = one;
+            this.two = two;
+            this.hashCode = 31 * System.identityHashCode(one) + System.identityHashCode(two);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            OperationKey that = (OperationKey) o;
+            return one == that.one && two == that.two;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
     private static final class MergeSet extends LinkedHashSet<AbstractModuleExclusion> {
         private final BitSet remaining;
         private int idx;
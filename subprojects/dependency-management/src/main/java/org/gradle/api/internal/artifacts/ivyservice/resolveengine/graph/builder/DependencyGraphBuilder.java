@@ -26,6 +26,7 @@ import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.artifacts.component.ComponentIdentifier;
 import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.artifacts.component.ModuleComponentSelector;
 import org.gradle.api.attributes.Attribute;
 import org.gradle.api.capabilities.Capability;
@@ -76,6 +77,15 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 public class DependencyGraphBuilder {
+    /**
+     * When set to {@code true}, the metadata of all external modules targeted by the edges of a node is resolved concurrently,
+     * including metadata that is already cached and only needs to be loaded and processed.
+     *
+     * This only parallelizes metadata fetches. The graph is not traversed concurrently: edge processing, selector resolution,
+     * conflict resolution and exclusions are still handled by the resolving thread, in the same order as when this property is not set.
+     */
+    public static final String PARALLEL_METADATA_RESOLUTION_PROPERTY = "org.gradle.internal.dependency-resolution.parallel-metadata";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(DependencyGraphBuilder.class);
     private final ModuleConflictHandler moduleConflictHandler;
     private final Spec<? super DependencyMetadata> edgeFilter;
@@ -93,6 +103,7 @@ public class DependencyGraphBuilder {
     private final VersionSelectorScheme versionSelectorScheme;
     private final Comparator<Version> versionComparator;
     private final VersionParser versionParser;
+    private final boolean parallelMetadataResolution;
 
     public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolver,
                                   ComponentMetaDataResolver componentMetaDataResolver,
@@ -109,7 +120,8 @@ public class DependencyGraphBuilder {
                                   ImmutableAttributesFactory attributesFactory,
                                   VersionSelectorScheme versionSelectorScheme,
                                   Comparator<Version> versionComparator,
-                                  VersionParser versionParser) {
+                                  VersionParser versionParser,
+                                  boolean parallelMetadataResolution) {
         this.idResolver = componentIdResolver;
         this.metaDataResolver = componentMetaDataResolver;
         this.moduleResolver = resolveContextToComponentResolver;
@@ -126,6 +138,7 @@ public class DependencyGraphBuilder {
         this.versionSelectorScheme = versionSelectorScheme;
         this.versionComparator = versionComparator;
         this.versionParser = versionParser;
+        this.parallelMetadataResolution = parallelMetadataResolution;
     }
 
     public void resolve(final ResolveContext resolveContext, final DependencyGraphVisitor modelVisitor) {
@@ -295,16 +308,21 @@ public class DependencyGraphBuilder {
     /**
      * Prepares the resolution of edges, either serially or concurrently.
      * It uses a simple heuristic to determine if we should perform concurrent resolution, based on the the number of edges, and whether they have unresolved metadata.
+     *
+     * When parallel metadata resolution is enabled, the metadata of every unresolved external module is resolved concurrently, whatever its cost:
+     * loading and processing cached metadata is CPU bound and worth spreading over several threads for large graphs.
+     * The metadata of other components, such as projects, is always resolved by the resolving thread, as resolving it may require locks held by that thread.
+     * The graph itself is still only modified by the resolving thread, in the same order as before, so the result does not change.
      */
     private void maybeDownloadMetadataInParallel(NodeState node, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, List<EdgeState> dependencies) {
-        List<ComponentState> requiringDownload = null;
+        Set<ComponentState> requiringDownload = null;
         for (EdgeState dependency : dependencies) {
             ComponentState targetComponent = dependency.getTargetComponent();
             if (targetComponent != null && targetComponent.isSelected() && !targetComponent.alreadyResolved()) {
-                if (!metaDataResolver.isFetchingMetadataCheap(toComponentId(targetComponent.getId(), componentIdentifierCache))) {
-                    // Avoid initializing the list if there are no components requiring download (a common case)
+                if (requiresConcurrentResolution(targetComponent, componentIdentifierCache)) {
+                    // Avoid initializing the set if there are no components requiring download (a common case)
                     if (requiringDownload == null) {
-                        requiringDownload = Lists.newArrayList();
+                        requiringDownload = Sets.newLinkedHashSet();
                     }
                     requiringDownload.add(targetComponent);
                 }
@@ -325,6 +343,15 @@ public class DependencyGraphBuilder {
         }
     }
 
+    private boolean requiresConcurrentResolution(ComponentState targetComponent, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+        if (parallelMetadataResolution) {
+            // Resolving a project component may configure the project, which requires the project lock held by the resolving thread
+            // Virtual platforms derive their metadata from the other versions of the platform, so resolve them serially
+            return targetComponent.getComponentId() instanceof ModuleComponentIdentifier && !targetComponent.getModule().isVirtualPlatform();
+        }
+        return !metaDataResolver.isFetchingMetadataCheap(toComponentId(targetComponent.getId(), componentIdentifierCache));
+    }
+
     private ComponentIdentifier toComponentId(ModuleVersionIdentifier id, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
         ComponentIdentifier identifier = componentIdentifierCache.get(id);
         if (identifier == null) {
@@ -44,6 +44,7 @@ import org.gradle.internal.time.Timer;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -80,6 +81,14 @@ public class StreamingResolutionResultBuilder implements DependencyGraphVisitor
         return new DefaultResolutionResult(rootSource);
     }
 
+    /**
+     * Creates a resolution result from the data written by a previous builder, whose graph had no failures.
+     */
+    public static ResolutionResult replay(BinaryStore.BinaryData data, Store<ResolvedComponentResult> cache, ImmutableModuleIdentifierFactory moduleIdentifierFactory, AttributeContainerSerializer attributeContainerSerializer) {
+        RootFactory rootSource = new RootFactory(data, Collections.emptyMap(), cache, new ComponentSelectorSerializer(attributeContainerSerializer), new DependencyResultSerializer(), new ComponentResultSerializer(moduleIdentifierFactory, attributeContainerSerializer), Collections.emptySet());
+        return new DefaultResolutionResult(rootSource);
+    }
+
     @Override
     public void start(final RootGraphNode root) {
     }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.cache.internal.BinaryStore;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.kryo.StringDeduplicatingKryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.StringDeduplicatingKryoBackedEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * A binary store that keeps its data in memory, so that the data can outlive the build that wrote it.
+ * Uses the same encoding as the file backed stores.
+ */
+public class InMemoryBinaryStore implements BinaryStore {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final StringDeduplicatingKryoBackedEncoder encoder = new StringDeduplicatingKryoBackedEncoder(bytes);
+    private byte[] data;
+
+    @Override
+    public void write(WriteAction write) {
+        if (data != null) {
+            throw new IllegalStateException("Cannot write to " + this + " after it has been completed.");
+        }
+        try {
+            write.write(encoder);
+        } catch (Exception e) {
+            throw new RuntimeException("Problems writing to " + this, e);
+        }
+    }
+
+    @Override
+    public BinaryData done() {
+        if (data == null) {
+            encoder.done();
+            encoder.flush();
+            data = bytes.toByteArray();
+        }
+        return read(data);
+    }
+
+    /**
+     * Returns the data written to this store. Can only be called after {@link #done()}.
+     */
+    public byte[] getBytes() {
+        if (data == null) {
+            throw new IllegalStateException("Cannot read from " + this + " before it has been completed.");
+        }
+        return data;
+    }
+
+    /**
+     * Returns a view of data previously written to an in-memory store.
+     */
+    public static BinaryData read(byte[] data) {
+        return new ByteArrayBinaryData(data);
+    }
+
+    @Override
+    public String toString() {
+        return "In-memory binary store";
+    }
+
+    private static class ByteArrayBinaryData implements BinaryData {
+        private final byte[] data;
+        private Decoder decoder;
+
+        ByteArrayBinaryData(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public <T> T read(ReadAction<T> readAction) {
+            try {
+                if (decoder == null) {
+                    decoder = new StringDeduplicatingKryoBackedDecoder(new ByteArrayInputStream(data));
+                }
+                return readAction.read(decoder);
+            } catch (Exception e) {
+                throw new RuntimeException("Problems reading data from " + this, e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            decoder = null;
+        }
+
+        @Override
+        public String toString() {
+            return "In-memory binary data (" + data.length + " bytes)";
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice
+
+import org.gradle.api.artifacts.DependencyConstraintSet
+import org.gradle.api.artifacts.DependencySet
+import org.gradle.api.artifacts.ProjectDependency
+import org.gradle.api.artifacts.ResolutionStrategy
+import org.gradle.api.artifacts.dsl.RepositoryHandler
+import org.gradle.api.internal.artifacts.ArtifactDependencyResolver
+import org.gradle.api.internal.artifacts.ComponentSelectorConverter
+import org.gradle.api.internal.artifacts.DefaultBuildIdentifier
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.DefaultResolverResults
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
+import org.gradle.api.internal.artifacts.configurations.ConflictResolution
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal
+import org.gradle.api.internal.artifacts.dependencies.DefaultExternalModuleDependency
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.AttributeContainerSerializer
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsStoreFactory
+import org.gradle.api.internal.artifacts.transform.ArtifactTransforms
+import org.gradle.api.internal.artifacts.type.ArtifactTypeRegistry
+import org.gradle.api.internal.attributes.DefaultAttributesSchema
+import org.gradle.api.internal.file.TmpDirTemporaryFileProvider
+import org.gradle.cache.internal.TestCrossBuildInMemoryCacheFactory
+import org.gradle.internal.classloader.ClassLoaderHierarchyHasher
+import org.gradle.internal.component.model.ComponentAttributeMatcher
+import org.gradle.internal.operations.BuildOperationExecutor
+import org.gradle.util.SnapshotTestUtil
+import org.gradle.util.TestUtil
+import spock.lang.Specification
+
+class DefaultConfigurationResolverTest extends Specification {
+    def dependencyResolver = Mock(ArtifactDependencyResolver)
+    def dependencies = [new DefaultExternalModuleDependency("org", "lib", "1.0")]
+    def configuration = Stub(ConfigurationInternal) {
+        getPath() >> ":compile"
+        getResolutionStrategy() >> Stub(ResolutionStrategyInternal) {
+            getConflictResolution() >> ConflictResolution.latest
+            getSortOrder() >> ResolutionStrategy.SortOrder.DEFAULT
+        }
+        getAllDependencies() >> Stub(DependencySet) {
+            iterator() >> { dependencies.iterator() }
+        }
+        getAllDependencyConstraints() >> Stub(DependencyConstraintSet) {
+            iterator() >> { [].iterator() }
+        }
+    }
+    def repositories = Stub(RepositoryHandler) {
+        iterator() >> { [].iterator() }
+    }
+    def graphCache = new ResolvedGraphCache(new TestCrossBuildInMemoryCacheFactory(), true)
+    def resolver = new DefaultConfigurationResolver(dependencyResolver, repositories, GlobalDependencyResolutionRules.NO_OP, new ResolutionResultsStoreFactory(new TmpDirTemporaryFileProvider()),
+        false, new DefaultAttributesSchema(new ComponentAttributeMatcher(), TestUtil.instantiatorFactory(), SnapshotTestUtil.valueSnapshotter()), Stub(ArtifactTransforms),
+        new DefaultImmutableModuleIdentifierFactory(), Stub(BuildOperationExecutor), Stub(ArtifactTypeRegistry), Stub(ComponentSelectorConverter), Stub(AttributeContainerSerializer),
+        new DefaultBuildIdentifier(":"), graphCache, new DefaultVersionSelectorScheme(new DefaultVersionComparator(), new VersionParser()), Stub(ClassLoaderHierarchyHasher))
+
+    def "reuses cached graph when configuration is resolved again"() {
+        when:
+        resolver.resolveGraph(configuration, new DefaultResolverResults())
+
+        then:
+        1 * dependencyResolver.resolve(*_)
+
+        when:
+        def results = new DefaultResolverResults()
+        resolver.resolveGraph(configuration, results)
+
+        then:
+        0 * dependencyResolver.resolve(*_)
+        results.resolutionResult != null
+    }
+
+    def "does not cache graph of configuration that is not cacheable"() {
+        dependencies << Stub(ProjectDependency)
+
+        when:
+        resolver.resolveGraph(configuration, new DefaultResolverResults())
+        resolver.resolveGraph(configuration, new DefaultResolverResults())
+
+        then:
+        2 * dependencyResolver.resolve(*_)
+    }
+
+    def "resolves cached graph again when its artifacts are needed and stops caching it"() {
+        given:
+        resolver.resolveGraph(configuration, new DefaultResolverResults())
+        def results = new DefaultResolverResults()
+        resolver.resolveGraph(configuration, results)
+
+        when:
+        resolver.resolveArtifacts(configuration, results)
+
+        then:
+        1 * dependencyResolver.resolve(*_)
+        results.resolvedConfiguration != null
+
+        when:
+        resolver.resolveGraph(configuration, new DefaultResolverResults())
+        resolver.resolveGraph(configuration, new DefaultResolverResults())
+
+        then:
+        2 * dependencyResolver.resolve(*_)
+    }
+
+    def "stops caching graph when its artifacts are needed after it was resolved"() {
+        given:
+        def results = new DefaultResolverResults()
+        resolver.resolveGraph(configuration, results)
+
+        when:
+        resolver.resolveArtifacts(configuration, results)
+        resolver.resolveGraph(configuration, new DefaultResolverResults())
+
+        then:
+        1 * dependencyResolver.resolve(*_)
+    }
+}
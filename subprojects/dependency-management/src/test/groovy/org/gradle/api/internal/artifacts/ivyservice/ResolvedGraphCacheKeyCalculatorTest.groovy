@@ -0,0 +1,284 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice
+
+import org.gradle.api.Action
+import org.gradle.api.ActionConfiguration
+import org.gradle.api.artifacts.ComponentMetadataContext
+import org.gradle.api.artifacts.ComponentMetadataRule
+import org.gradle.api.artifacts.DependencyConstraintSet
+import org.gradle.api.artifacts.DependencySet
+import org.gradle.api.artifacts.ModuleVersionIdentifier
+import org.gradle.api.artifacts.ProjectDependency
+import org.gradle.api.artifacts.ResolutionStrategy
+import org.gradle.api.attributes.Attribute
+import org.gradle.api.attributes.AttributeCompatibilityRule
+import org.gradle.api.attributes.AttributeDisambiguationRule
+import org.gradle.api.attributes.CompatibilityCheckDetails
+import org.gradle.api.attributes.MultipleCandidatesDetails
+import org.gradle.api.internal.artifacts.ComponentMetadataProcessorFactory
+import org.gradle.api.internal.artifacts.DefaultBuildIdentifier
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
+import org.gradle.api.internal.artifacts.configurations.ConflictResolution
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal
+import org.gradle.api.internal.artifacts.dependencies.DefaultExternalModuleDependency
+import org.gradle.api.internal.artifacts.dsl.DefaultComponentMetadataHandler
+import org.gradle.api.internal.artifacts.dsl.SpecConfigurableRule
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser
+import org.gradle.api.internal.attributes.DefaultAttributesSchema
+import org.gradle.api.specs.Spec
+import org.gradle.api.specs.Specs
+import org.gradle.internal.action.DefaultConfigurableRule
+import org.gradle.internal.classloader.ClassLoaderHierarchyHasher
+import org.gradle.internal.component.external.model.JavaEcosystemVariantDerivationStrategy
+import org.gradle.internal.component.external.model.NoOpDerivationStrategy
+import org.gradle.internal.component.external.model.VariantDerivationStrategy
+import org.gradle.internal.component.model.ComponentAttributeMatcher
+import org.gradle.internal.hash.HashCode
+import org.gradle.util.SnapshotTestUtil
+import org.gradle.util.TestUtil
+import spock.lang.Specification
+
+class ResolvedGraphCacheKeyCalculatorTest extends Specification {
+    def usage = Attribute.of("usage", String)
+    def dependencies = [new DefaultExternalModuleDependency("org", "lib", "1.0")]
+    HashCode classLoaderHash = HashCode.fromInt(123)
+    VariantDerivationStrategy variantDerivationStrategy = new NoOpDerivationStrategy()
+    List<SpecConfigurableRule> classBasedRules = []
+    def classLoaderHierarchyHasher = Stub(ClassLoaderHierarchyHasher) {
+        getClassLoaderHash(_) >> { classLoaderHash }
+    }
+    def metadataHandler = Stub(GlobalDependencyResolutionRules) {
+        getComponentMetadataProcessorFactory() >> Stub(ComponentMetadataProcessorFactory) {
+            getVariantDerivationStrategy() >> { variantDerivationStrategy }
+            getClassBasedRules() >> { classBasedRules }
+        }
+    }
+    def configuration = Stub(ConfigurationInternal) {
+        getPath() >> ":compile"
+        getResolutionStrategy() >> Stub(ResolutionStrategyInternal) {
+            getConflictResolution() >> ConflictResolution.latest
+            getSortOrder() >> ResolutionStrategy.SortOrder.DEFAULT
+        }
+        getAllDependencies() >> Stub(DependencySet) {
+            iterator() >> { dependencies.iterator() }
+        }
+        getAllDependencyConstraints() >> Stub(DependencyConstraintSet) {
+            iterator() >> { [].iterator() }
+        }
+    }
+
+    def "calculates same key for same inputs"() {
+        expect:
+        key() != null
+        key() == key()
+        key() == key(schema())
+    }
+
+    def "key changes when dependencies change"() {
+        def original = key()
+
+        when:
+        dependencies << new DefaultExternalModuleDependency("org", "other", "1.0")
+
+        then:
+        key() != original
+    }
+
+    def "configuration with project dependency is not cacheable"() {
+        dependencies << Stub(ProjectDependency)
+
+        expect:
+        key() == null
+    }
+
+    def "key changes when parameters of attribute compatibility rule change"() {
+        def schemaA = schema()
+        schemaA.attribute(usage).compatibilityRules.add(UsageCompatibilityRule) { it.params("a") }
+        def schemaB = schema()
+        schemaB.attribute(usage).compatibilityRules.add(UsageCompatibilityRule) { it.params("b") }
+        def schemaA2 = schema()
+        schemaA2.attribute(usage).compatibilityRules.add(UsageCompatibilityRule) { it.params("a") }
+
+        expect:
+        key(schemaA) != null
+        key(schemaA) == key(schemaA2)
+        key(schemaA) != key(schemaB)
+        key(schemaA) != key(schema())
+    }
+
+    def "key changes when implementation of attribute compatibility rule changes"() {
+        def rulesSchema = schema()
+        rulesSchema.attribute(usage).compatibilityRules.add(UsageCompatibilityRule)
+        def original = key(rulesSchema)
+
+        when:
+        classLoaderHash = HashCode.fromInt(456)
+
+        then:
+        key(rulesSchema) != null
+        key(rulesSchema) != original
+    }
+
+    def "configuration is not cacheable when class loader of attribute rule cannot be hashed"() {
+        def rulesSchema = schema()
+        rulesSchema.attribute(usage).disambiguationRules.add(UsageDisambiguationRule)
+
+        when:
+        classLoaderHash = null
+
+        then:
+        key(rulesSchema) == null
+    }
+
+    def "key distinguishes natural and reverse ordering of attribute values"() {
+        def natural = schema()
+        natural.attribute(usage).compatibilityRules.ordered(Comparator.naturalOrder())
+        def reverse = schema()
+        reverse.attribute(usage).compatibilityRules.ordered(Comparator.reverseOrder())
+
+        expect:
+        key(natural) != null
+        key(reverse) != null
+        key(natural) != key(reverse)
+    }
+
+    def "configuration is not cacheable when attribute values are ordered by comparator with state"() {
+        def rulesSchema = schema()
+        rulesSchema.attribute(usage).disambiguationRules.pickFirst(new ConfigurableComparator())
+
+        expect:
+        key(rulesSchema) == null
+    }
+
+    def "key changes when variant derivation strategy changes"() {
+        def original = key()
+
+        when:
+        variantDerivationStrategy = new JavaEcosystemVariantDerivationStrategy()
+
+        then:
+        key() != null
+        key() != original
+    }
+
+    def "configuration is not cacheable when closure or action based component metadata rules are registered"() {
+        when:
+        classBasedRules = null
+
+        then:
+        key() == null
+    }
+
+    def "key changes when parameters of component metadata rule change"() {
+        def withoutRules = key()
+        classBasedRules = [metadataRule(Specs.satisfyAll(), "a")]
+        def withA = key()
+        classBasedRules = [metadataRule(Specs.satisfyAll(), "a")]
+        def withA2 = key()
+        classBasedRules = [metadataRule(Specs.satisfyAll(), "b")]
+        def withB = key()
+
+        expect:
+        withA != null
+        withA == withA2
+        withA != withB
+        withA != withoutRules
+    }
+
+    def "key changes when module targeted by component metadata rule changes"() {
+        classBasedRules = [metadataRule(new DefaultComponentMetadataHandler.ModuleVersionIdentifierSpec(DefaultModuleIdentifier.newId("org", "lib")), "a")]
+        def forLib = key()
+        classBasedRules = [metadataRule(new DefaultComponentMetadataHandler.ModuleVersionIdentifierSpec(DefaultModuleIdentifier.newId("org", "other")), "a")]
+        def forOther = key()
+        classBasedRules = [metadataRule(Specs.satisfyAll(), "a")]
+        def forAll = key()
+
+        expect:
+        forLib != null
+        forLib != forOther
+        forLib != forAll
+    }
+
+    def "key changes when implementation of component metadata rule changes"() {
+        classBasedRules = [metadataRule(Specs.satisfyAll(), "a")]
+        def original = key()
+
+        when:
+        classLoaderHash = HashCode.fromInt(456)
+
+        then:
+        key() != null
+        key() != original
+    }
+
+    def "configuration is not cacheable when class loader of component metadata rule cannot be hashed"() {
+        classBasedRules = [metadataRule(Specs.satisfyAll(), "a")]
+
+        when:
+        classLoaderHash = null
+
+        then:
+        key() == null
+    }
+
+    private HashCode key(DefaultAttributesSchema attributesSchema = schema()) {
+        def versionSelectorScheme = new DefaultVersionSelectorScheme(new DefaultVersionComparator(), new VersionParser())
+        def calculator = new ResolvedGraphCacheKeyCalculator(metadataHandler, attributesSchema, versionSelectorScheme, new DefaultBuildIdentifier(":"), classLoaderHierarchyHasher)
+        return calculator.calculate(configuration, [])
+    }
+
+    private static SpecConfigurableRule metadataRule(Spec<ModuleVersionIdentifier> spec, String param) {
+        return new SpecConfigurableRule(DefaultConfigurableRule.of(TestMetadataRule, { it.params(param) } as Action<ActionConfiguration>, SnapshotTestUtil.valueSnapshotter()), spec)
+    }
+
+    private static DefaultAttributesSchema schema() {
+        return new DefaultAttributesSchema(new ComponentAttributeMatcher(), TestUtil.instantiatorFactory(), SnapshotTestUtil.valueSnapshotter())
+    }
+
+    static class TestMetadataRule implements ComponentMetadataRule {
+        @Override
+        void execute(ComponentMetadataContext context) {
+        }
+    }
+
+    static class UsageCompatibilityRule implements AttributeCompatibilityRule<String> {
+        @Override
+        void execute(CompatibilityCheckDetails<String> details) {
+        }
+    }
+
+    static class UsageDisambiguationRule implements AttributeDisambiguationRule<String> {
+        @Override
+        void execute(MultipleCandidatesDetails<String> details) {
+        }
+    }
+
+    static class ConfigurableComparator implements Comparator<String> {
+        boolean reversed
+
+        @Override
+        int compare(String o1, String o2) {
+            return reversed ? o2 <=> o1 : o1 <=> o2
+        }
+    }
+}
@@ -1016,4 +1016,37 @@ class PomReaderTest extends AbstractPomReaderTest {
         then:
         def excluded = pomReader.dependencies[keyGroupTwo].excludedModules
         excluded == [DefaultModuleIdentifier.newId('*', '*')]
-    }}
+    }
+
+    def "reads text of elements like a DOM lookup"() {
+        when:
+        pomFile << """<?xml version="1.0" encoding="UTF-8"?>
+<project>
+    <!-- ${MetaDataParser.GRADLE_METADATA_MARKER} -->
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>group<![CDATA[-one]]></groupId>
+    <groupId>ignored</groupId>
+    <artifactId>artifact&#45;one</artifactId>
+    <version>version-one</version>
+    <name>Caf&eacute; &amp; co</name>
+    <properties>
+        <entity>&copy;</entity>
+        <nested>a<ignored>b</ignored>c</nested>
+        <empty/>
+    </properties>
+    <properties>
+        <entity>ignored</entity>
+    </properties>
+</project>
+"""
+        pomReader = new PomReader(locallyAvailableExternalResource, moduleIdentifierFactory)
+
+        then:
+        pomReader.groupId == 'group-one'
+        pomReader.artifactId == 'artifact-one'
+        pomReader.hasGradleMetadataMarker()
+        pomReader.properties['entity'] == '\u00a9'
+        pomReader.properties['nested'] == 'ac'
+        pomReader.properties['empty'] == ''
+    }
+}
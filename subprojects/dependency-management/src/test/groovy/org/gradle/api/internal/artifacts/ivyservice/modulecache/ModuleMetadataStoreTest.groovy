@@ -18,8 +18,15 @@ package org.gradle.api.internal.artifacts.ivyservice.modulecache
 
 import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DesugaredAttributeContainerSerializer
+import org.gradle.api.internal.artifacts.repositories.metadata.IvyMutableModuleMetadataFactory
 import org.gradle.api.internal.artifacts.repositories.metadata.MavenMutableModuleMetadataFactory
+import org.gradle.api.internal.model.NamedObjectInstantiator
+import org.gradle.internal.component.external.descriptor.MavenScope
 import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.external.model.maven.MavenDependencyDescriptor
+import org.gradle.internal.component.external.model.maven.MavenDependencyType
 import org.gradle.internal.resource.local.LocallyAvailableResource
 import org.gradle.internal.resource.local.PathKeyFileStore
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
@@ -71,4 +78,51 @@ class ModuleMetadataStoreTest extends Specification {
         };
         1 * serializer.write(_, descriptor, _)
     }
+
+    def "metadata written to the store can be read back"() {
+        setup:
+        File descriptorFile = temporaryFolder.createFile("fileStoreEntry")
+        def serializer = new ModuleMetadataSerializer(
+            new DesugaredAttributeContainerSerializer(AttributeTestUtil.attributesFactory(), NamedObjectInstantiator.INSTANCE),
+            mavenMetadataFactory,
+            new IvyMutableModuleMetadataFactory(moduleIdentifierFactory, AttributeTestUtil.attributesFactory()))
+        def store = new ModuleMetadataStore(pathKeyFileStore, serializer, moduleIdentifierFactory, SimpleMapInterner.notThreadSafe())
+        def key = new ModuleComponentAtRepositoryKey(repository, moduleComponentIdentifier)
+        def dependencies = (1..3).collect { new MavenDependencyDescriptor(MavenScope.Compile, MavenDependencyType.DEPENDENCY, DefaultModuleComponentSelector.newSelector(DefaultModuleIdentifier.newId("org.test", "dep$it"), "1.0"), null, []) }
+        def descriptor = mavenMetadataFactory.create(moduleComponentIdentifier, dependencies).asImmutable()
+        pathKeyFileStore.add(_, _) >> { path, action -> action.execute(descriptorFile); fileStoreEntry }
+        pathKeyFileStore.get(_) >> fileStoreEntry
+        fileStoreEntry.file >> descriptorFile
+
+        when:
+        store.putModuleDescriptor(key, descriptor)
+        def result = store.getModuleDescriptor(key)
+
+        then:
+        result.asImmutable() == descriptor
+    }
+
+    def "writes a string repeated across dependencies only once"() {
+        setup:
+        File descriptorFile = temporaryFolder.createFile("fileStoreEntry")
+        def serializer = new ModuleMetadataSerializer(
+            new DesugaredAttributeContainerSerializer(AttributeTestUtil.attributesFactory(), NamedObjectInstantiator.INSTANCE),
+            mavenMetadataFactory,
+            new IvyMutableModuleMetadataFactory(moduleIdentifierFactory, AttributeTestUtil.attributesFactory()))
+        def store = new ModuleMetadataStore(pathKeyFileStore, serializer, moduleIdentifierFactory, SimpleMapInterner.notThreadSafe())
+        def key = new ModuleComponentAtRepositoryKey(repository, moduleComponentIdentifier)
+        def dependencies = (1..20).collect { new MavenDependencyDescriptor(MavenScope.Compile, MavenDependencyType.DEPENDENCY, DefaultModuleComponentSelector.newSelector(DefaultModuleIdentifier.newId("org.example.shared", "dep$it"), "1.0"), null, []) }
+        def descriptor = mavenMetadataFactory.create(moduleComponentIdentifier, dependencies).asImmutable()
+        pathKeyFileStore.add(_, _) >> { path, action -> action.execute(descriptorFile); fileStoreEntry }
+        pathKeyFileStore.get(_) >> fileStoreEntry
+        fileStoreEntry.file >> descriptorFile
+
+        when:
+        store.putModuleDescriptor(key, descriptor)
+
+        then:
+        // Kryo marks the end of an ASCII string in its last character, so only look for the characters before it
+        new String(descriptorFile.bytes, "ISO-8859-1").count("org.example.share") == 1
+        store.getModuleDescriptor(key).asImmutable() == descriptor
+    }
 }
@@ -71,7 +71,14 @@ import org.gradle.internal.resolve.resolver.ResolveContextToComponentResolver
 import org.gradle.internal.resolve.result.BuildableComponentIdResolveResult
 import org.gradle.internal.resolve.result.BuildableComponentResolveResult
 import org.gradle.util.AttributeTestUtil
+import spock.lang.Shared
 import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CopyOnWriteArraySet
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.TimeUnit
 
 import static org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier.newId
 import static org.gradle.internal.component.external.model.DefaultModuleComponentSelector.newSelector
@@ -115,6 +122,11 @@ class DependencyGraphBuilderTest extends Specification {
     def versionSelectorScheme = new DefaultVersionSelectorScheme(new DefaultVersionComparator())
 
     DependencyGraphBuilder builder
+    // The graph resolved with sequential metadata resolution, which the iterations with parallel metadata resolution are compared to
+    @Shared
+    List<ModuleVersionIdentifier> sequentialComponents
+    @Shared
+    List<String> sequentialCandidateVersions
 
     def setup() {
         _ * configuration.name >> 'root'
@@ -122,7 +134,7 @@ class DependencyGraphBuilderTest extends Specification {
         _ * configuration.allDependencies >> Stub(DependencySet)
         _ * moduleResolver.resolve(_, _) >> { it[1].resolved(root) }
 
-        builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, moduleConflictHandler, capabilitiesConflictHandler, Specs.satisfyAll(), attributesSchema, moduleExclusions, buildOperationProcessor, moduleReplacements, dependencySubstitutionApplicator, componentSelectorConverter, AttributeTestUtil.attributesFactory(), versionSelectorScheme, Stub(Comparator), new VersionParser())
+        builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, moduleConflictHandler, capabilitiesConflictHandler, Specs.satisfyAll(), attributesSchema, moduleExclusions, buildOperationProcessor, moduleReplacements, dependencySubstitutionApplicator, componentSelectorConverter, AttributeTestUtil.attributesFactory(), versionSelectorScheme, Stub(Comparator), new VersionParser(), false)
     }
 
     private TestGraphVisitor resolve(DependencyGraphBuilder builder = this.builder) {
@@ -149,6 +161,128 @@ class DependencyGraphBuilderTest extends Specification {
         result.components == ids(root, a, b, c)
     }
 
+    def "resolves metadata of all targets concurrently when parallel metadata resolution is enabled"() {
+        given:
+        builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, moduleConflictHandler, capabilitiesConflictHandler, Specs.satisfyAll(), attributesSchema, moduleExclusions, buildOperationProcessor, moduleReplacements, dependencySubstitutionApplicator, componentSelectorConverter, AttributeTestUtil.attributesFactory(), versionSelectorScheme, Stub(Comparator), new VersionParser(), true)
+        def a = revision("a")
+        def b = revision("b")
+        def c = revision("c")
+        traverses root, a
+        traverses root, b
+        traverses a, c
+
+        when:
+        def result = resolve()
+        result.rethrowFailure()
+
+        then:
+        result.components == ids(root, a, b, c)
+        0 * metaDataResolver.isFetchingMetadataCheap(_)
+    }
+
+    def "resolves metadata of external modules on different threads when parallel metadata resolution is enabled"() {
+        given:
+        builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, moduleConflictHandler, capabilitiesConflictHandler, Specs.satisfyAll(), attributesSchema, moduleExclusions, concurrentBuildOperationProcessor(), moduleReplacements, dependencySubstitutionApplicator, componentSelectorConverter, AttributeTestUtil.attributesFactory(), versionSelectorScheme, Stub(Comparator), new VersionParser(), true)
+        def a = revision("a")
+        def b = revision("b")
+        def resolvingThreads = new CopyOnWriteArraySet<Thread>()
+        def bothResolving = new CyclicBarrier(2)
+        [a, b].each { to ->
+            selectorResolvesTo(dependsOn(root, to.moduleVersionId), to.id, to.moduleVersionId)
+            1 * metaDataResolver.resolve(to.id, _, _) >> { ComponentIdentifier id, ComponentOverrideMetadata requestMetaData, BuildableComponentResolveResult result ->
+                resolvingThreads << Thread.currentThread()
+                // Only completes when the metadata of both modules is being resolved at the same time
+                bothResolving.await(10, TimeUnit.SECONDS)
+                result.resolved(to)
+            }
+        }
+
+        when:
+        def result = resolve()
+        result.rethrowFailure()
+
+        then:
+        result.components == ids(root, a, b)
+        resolvingThreads.size() == 2
+        !resolvingThreads.contains(Thread.currentThread())
+    }
+
+    def "resolves metadata of projects on the resolving thread when parallel metadata resolution is enabled"() {
+        given:
+        builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, moduleConflictHandler, capabilitiesConflictHandler, Specs.satisfyAll(), attributesSchema, moduleExclusions, concurrentBuildOperationProcessor(), moduleReplacements, dependencySubstitutionApplicator, componentSelectorConverter, AttributeTestUtil.attributesFactory(), versionSelectorScheme, Stub(Comparator), new VersionParser(), true)
+        def a = revision("a")
+        def b = revision("b")
+        def p = project("p")
+        def q = project("q")
+        def moduleThreads = new CopyOnWriteArraySet<Thread>()
+        def projectThreads = new CopyOnWriteArraySet<Thread>()
+        [a, b, p, q].each { to ->
+            selectorResolvesTo(dependsOn(root, to.moduleVersionId), to.id, to.moduleVersionId)
+            1 * metaDataResolver.resolve(to.id, _, _) >> { ComponentIdentifier id, ComponentOverrideMetadata requestMetaData, BuildableComponentResolveResult result ->
+                (to in [p, q] ? projectThreads : moduleThreads) << Thread.currentThread()
+                result.resolved(to)
+            }
+        }
+
+        when:
+        def result = resolve()
+        result.rethrowFailure()
+
+        then:
+        result.components == ids(root, a, b, p, q)
+        projectThreads == [Thread.currentThread()] as Set
+        !moduleThreads.contains(Thread.currentThread())
+    }
+
+    @Unroll("resolves the same graph with conflicts and excludes as sequential metadata resolution (parallel: #parallel, run #run)")
+    def "resolves the same graph with conflicts and excludes as sequential metadata resolution when parallel metadata resolution is enabled"() {
+        given:
+        builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, moduleConflictHandler, capabilitiesConflictHandler, Specs.satisfyAll(), attributesSchema, moduleExclusions, parallel ? concurrentBuildOperationProcessor() : buildOperationProcessor, moduleReplacements, dependencySubstitutionApplicator, componentSelectorConverter, AttributeTestUtil.attributesFactory(), versionSelectorScheme, Stub(Comparator), new VersionParser(), parallel)
+        def a = revision('a')
+        def b = revision('b')
+        def evicted = revision('c', '1')
+        def selected = revision('c', '2')
+        def d = revision('d')
+        def e = revision('e')
+        traverses root, evicted
+        traverses root, a, exclude: b
+        doesNotResolve evicted, a
+        traverses a, b
+        traverses root, d
+        traverses d, e
+        traverses e, selected
+        def candidateVersions = null
+
+        when:
+        def result = resolve()
+        result.rethrowFailure()
+        if (!parallel) {
+            sequentialComponents = result.components as List
+            sequentialCandidateVersions = candidateVersions
+        }
+
+        then:
+        1 * conflictResolver.select(_) >> { args ->
+            def details = args[0]
+            Collection<ComponentResolutionState> candidates = details.candidates
+            candidateVersions = candidates*.version
+            details.select(candidates.find { it.version == '2' })
+        }
+        0 * conflictResolver._
+
+        and:
+        result.components == ids(root, a, selected, d, e)
+        candidateVersions == ['1', '2']
+
+        and:
+        result.components as List == sequentialComponents
+        candidateVersions == sequentialCandidateVersions
+
+        where:
+        parallel << [false, true, true, true, true, true]
+        run << (0..5)
+    }
+
     def "honors component replacements"() {
         given:
         def a = revision('a') // a->c
@@ -573,7 +707,7 @@ class DependencyGraphBuilderTest extends Specification {
     def "does not include filtered dependencies"() {
         given:
         def spec = { DependencyMetadata dep -> dep.selector.module != 'c' }
-        builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, moduleConflictHandler, capabilitiesConflictHandler, spec, attributesSchema, moduleExclusions, buildOperationProcessor, moduleReplacements, dependencySubstitutionApplicator, componentSelectorConverter, AttributeTestUtil.attributesFactory(), versionSelectorScheme, Stub(Comparator), new VersionParser())
+        builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, moduleConflictHandler, capabilitiesConflictHandler, spec, attributesSchema, moduleExclusions, buildOperationProcessor, moduleReplacements, dependencySubstitutionApplicator, componentSelectorConverter, AttributeTestUtil.attributesFactory(), versionSelectorScheme, Stub(Comparator), new VersionParser(), false)
 
         def a = revision('a')
         def b = revision('b')
@@ -1025,6 +1159,41 @@ class DependencyGraphBuilderTest extends Specification {
         return metaData
     }
 
+    def project(String name, String revision = '1.0') {
+        def id = newId("group", name, revision)
+        def metaData = new DefaultLocalComponentMetadata(id, newProjectId(":${name}"), "release", attributesSchema)
+        metaData.addConfiguration("default", "defaultConfig", [] as Set<String>, ImmutableSet.of("default"), true, true, attributes, true, true, ImmutableCapabilities.EMPTY)
+        return metaData
+    }
+
+    /**
+     * Runs each queued operation on a thread of its own, so that operations run concurrently.
+     */
+    def concurrentBuildOperationProcessor() {
+        return Stub(BuildOperationExecutor) {
+            runAll(_) >> { args ->
+                def operations = []
+                args[0].execute(Stub(BuildOperationQueue) {
+                    add(_) >> { operations << it[0] }
+                })
+                def failures = new CopyOnWriteArrayList<Throwable>()
+                def threads = operations.collect { operation ->
+                    Thread.start {
+                        try {
+                            operation.run(null)
+                        } catch (Throwable t) {
+                            failures << t
+                        }
+                    }
+                }
+                threads*.join()
+                if (!failures.empty) {
+                    throw failures.first()
+                }
+            }
+        }
+    }
+
     def rootProject(String name, String revision = '1.0', List<String> extraConfigs = []) {
         def metaData = new RootLocalComponentMetadata(newId("group", name, revision), newProjectId(":${name}"), "release", attributesSchema, NoOpDependencyLockingProvider.getInstance())
         metaData.addConfiguration("default", "defaultConfig", [] as Set<String>, ImmutableSet.of("default"), true, true, attributes, true, true, ImmutableCapabilities.EMPTY)
@@ -758,6 +758,22 @@ class DefaultModuleExclusionTest extends Specification {
         both(either, simpleExclude)
     }
 
+    def "equal specs are represented by the same instance"() {
+        def rule1 = excludeRule("org", "module")
+        def rule2 = regexpExcludeRule("org", "module2")
+        def rule3 = excludeArtifactRule("a", "jar", "jar")
+        def spec1 = excludeAny(rule1, rule2)
+        def spec2 = excludeAny(rule3)
+
+        expect:
+        excludeAny(rule2).is(excludeAny(regexpExcludeRule("org", "module2")))
+        excludeAny(rule3).is(excludeAny(excludeArtifactRule("a", "jar", "jar")))
+        either(spec1, spec2).is(either(spec1, spec2))
+        either(spec1, spec2).is(either(spec2, spec1))
+        both(spec1, spec2).is(both(spec1, spec2))
+        both(either(spec1, spec2), spec2).is(both(either(spec2, spec1), spec2))
+    }
+
     ModuleExclusion both(ModuleExclusion spec, ModuleExclusion otherRule) {
         moduleExclusions.both(spec, otherRule)
     }
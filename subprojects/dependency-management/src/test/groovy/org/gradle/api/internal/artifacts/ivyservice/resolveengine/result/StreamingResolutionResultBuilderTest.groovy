@@ -27,6 +27,7 @@ import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.Dependen
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.RootGraphNode
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.InMemoryBinaryStore
 import org.gradle.api.internal.model.NamedObjectInstantiator
 import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
 import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
@@ -41,7 +42,8 @@ import static ComponentSelectionReasons.*
 class StreamingResolutionResultBuilderTest extends Specification {
 
     final ImmutableModuleIdentifierFactory moduleIdentifierFactory = new DefaultImmutableModuleIdentifierFactory()
-    StreamingResolutionResultBuilder builder = new StreamingResolutionResultBuilder(new DummyBinaryStore(), new DummyStore(), moduleIdentifierFactory, new DesugaredAttributeContainerSerializer(AttributeTestUtil.attributesFactory(), NamedObjectInstantiator.INSTANCE))
+    final AttributeContainerSerializer attributeContainerSerializer = new DesugaredAttributeContainerSerializer(AttributeTestUtil.attributesFactory(), NamedObjectInstantiator.INSTANCE)
+    StreamingResolutionResultBuilder builder = new StreamingResolutionResultBuilder(new DummyBinaryStore(), new DummyStore(), moduleIdentifierFactory, attributeContainerSerializer)
 
     def "result can be read multiple times"() {
         def rootNode = rootNode(1, "org", "root", "1.0")
@@ -91,6 +93,31 @@ class StreamingResolutionResultBuilderTest extends Specification {
 """
     }
 
+    def "graph can be replayed from the data of an in-memory store"() {
+        def store = new InMemoryBinaryStore()
+        def builder = new StreamingResolutionResultBuilder(store, new DummyStore(), moduleIdentifierFactory, attributeContainerSerializer)
+        def root = rootNode(1, "org", "root", "1.0")
+        def selector1 = selector(1, "org", "dep1", "2.0")
+        def dep1 = node(2, "org", "dep1", "2.0", of(CONFLICT_RESOLUTION))
+        root.outgoingEdges >> [dep(selector1, 2)]
+
+        builder.start(root)
+        builder.visitNode(root)
+        builder.visitNode(dep1)
+        builder.visitSelector(selector1)
+        builder.visitEdges(root)
+        builder.finish(root)
+        builder.complete(emptySet())
+
+        when:
+        def result = StreamingResolutionResultBuilder.replay(InMemoryBinaryStore.read(store.bytes), new DummyStore(), moduleIdentifierFactory, attributeContainerSerializer)
+
+        then:
+        printGraph(result.root) == """org:root:1.0
+  org:dep1:2.0(C) [root]
+"""
+    }
+
     def "visiting resolved module version again has no effect"() {
         def root = rootNode(1, "org", "root", "1.0")
         def selector = selector(7, "org", "dep1", "2.0")
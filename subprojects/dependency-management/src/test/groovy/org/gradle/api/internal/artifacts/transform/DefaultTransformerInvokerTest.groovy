@@ -58,7 +58,7 @@ class DefaultTransformerInvokerTest extends AbstractProjectBuilderSpec {
     def mutableTransformsStoreDirectory = temporaryFolder.file("child/build/transforms")
 
     def executionHistoryStore = new TestExecutionHistoryStore()
-    def fileSystemMirror = new DefaultFileSystemMirror(new DefaultWellKnownFileLocations([]))
+    def fileSystemMirror = new DefaultFileSystemMirror(new DefaultWellKnownFileLocations([]), TestFiles.fileSystem())
     def workExecutorTestFixture = new WorkExecutorTestFixture(fileSystemMirror)
     def fileSystemSnapshotter = new DefaultFileSystemSnapshotter(TestFiles.fileHasher(), new StringInterner(), TestFiles.fileSystem(), fileSystemMirror)
 
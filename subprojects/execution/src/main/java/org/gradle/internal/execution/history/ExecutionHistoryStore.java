@@ -23,11 +23,22 @@ import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
 import org.gradle.internal.snapshot.ValueSnapshot;
 import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
 
+import javax.annotation.Nullable;
 import java.util.Optional;
 
 public interface ExecutionHistoryStore {
     Optional<AfterPreviousExecutionState> load(String key);
 
+    /**
+     * Returns the execution time of the last execution stored for the given key, without loading the state of the execution.
+     */
+    Optional<Long> loadExecutionTime(String key);
+
+    /**
+     * Stores the state of an execution.
+     *
+     * @param previousExecutionState the state loaded for the same key before the execution, if any. Fingerprints which did not change since then are stored using the instances of the previous state.
+     */
     void store(String key,
                OriginMetadata originMetadata,
                ImplementationSnapshot implementation,
@@ -35,7 +46,8 @@ public interface ExecutionHistoryStore {
                ImmutableSortedMap<String, ValueSnapshot> inputProperties,
                ImmutableSortedMap<String, CurrentFileCollectionFingerprint> inputFileProperties,
                ImmutableSortedMap<String, CurrentFileCollectionFingerprint> outputFileProperties,
-               boolean successful);
+               boolean successful,
+               @Nullable AfterPreviousExecutionState previousExecutionState);
 
     void remove(String key);
 }
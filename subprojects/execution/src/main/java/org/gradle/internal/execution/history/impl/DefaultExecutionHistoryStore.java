@@ -18,6 +18,7 @@ package org.gradle.internal.execution.history.impl;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Iterables;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
@@ -27,24 +28,58 @@ import org.gradle.internal.execution.history.ExecutionHistoryCacheAccess;
 import org.gradle.internal.execution.history.ExecutionHistoryStore;
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
 import org.gradle.internal.fingerprint.FileCollectionFingerprint;
+import org.gradle.internal.fingerprint.FileSystemLocationFingerprint;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.snapshot.ValueSnapshot;
 import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
 
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
-import static com.google.common.collect.ImmutableSortedMap.copyOfSorted;
-import static com.google.common.collect.Maps.transformValues;
+import static org.gradle.internal.execution.history.impl.ExecutionHistoryRecord.NO_FINGERPRINTS;
+import static org.gradle.internal.serialize.BaseSerializerFactory.LONG_SERIALIZER;
 
+/**
+ * Stores the execution history in two caches: one with a small record for each execution, and one with the file collection fingerprints the records refer to.
+ * The execution time of each execution is also kept in a third cache, so that it can be looked up without deserializing the record.
+ *
+ * The key of a fingerprint entry is derived from the execution, the property and the root hashes of the fingerprint.
+ * A fingerprint which did not change since the previous execution keeps its entry, so only the changed fingerprints are written for each execution.
+ * When only a few files of a fingerprint changed, the new entry only holds the changed files and refers to the entry of the previous execution as its base.
+ * After a few such entries, or when most files changed, the fingerprint is written completely again and the chain is discarded.
+ * Each entry belongs to a single execution, and is removed once that execution does not refer to it anymore, directly or as a base.
+ * Entries written by a process that stops before storing the record, or whose record is replaced by another process storing the same execution at the same time,
+ * are not referred to by any record. They are only discarded along with the cache, like the records of work that does not exist anymore.
+ */
 public class DefaultExecutionHistoryStore implements ExecutionHistoryStore {
+    private static final int MAX_CHANGES_CHAIN_LENGTH = 8;
 
-    private final PersistentIndexedCache<String, AfterPreviousExecutionState> store;
+    private final PersistentIndexedCache<String, ExecutionHistoryRecord> store;
+    private final PersistentIndexedCache<HashCode, FileCollectionFingerprintEntry> fingerprints;
+    private final PersistentIndexedCache<String, Long> executionTimes;
 
     public DefaultExecutionHistoryStore(ExecutionHistoryCacheAccess executionHistoryCacheAccess, StringInterner stringInterner) {
-        DefaultPreviousExecutionStateSerializer serializer = new DefaultPreviousExecutionStateSerializer(
-            new FileCollectionFingerprintSerializer(stringInterner));
-
         this.store = executionHistoryCacheAccess.createCache(
-            PersistentIndexedCacheParameters.of("executionHistory", String.class, serializer),
+            PersistentIndexedCacheParameters.of("executionHistory", String.class, new ExecutionHistoryRecordSerializer()),
+            10000,
+            false
+        );
+        // An execution usually has a few file properties, so keep about as many fingerprints in memory as the records refer to
+        this.fingerprints = executionHistoryCacheAccess.createCache(
+            PersistentIndexedCacheParameters.of("executionHistoryFingerprints", HashCode.class, new FileCollectionFingerprintEntrySerializer(stringInterner)),
+            30000,
+            false
+        );
+        this.executionTimes = executionHistoryCacheAccess.createCache(
+            PersistentIndexedCacheParameters.of("executionHistoryExecutionTimes", String.class, LONG_SERIALIZER),
             10000,
             false
         );
@@ -52,7 +87,73 @@ public class DefaultExecutionHistoryStore implements ExecutionHistoryStore {
 
     @Override
     public Optional<AfterPreviousExecutionState> load(String key) {
-        return Optional.ofNullable(store.get(key));
+        ExecutionHistoryRecord record = store.get(key);
+        if (record == null) {
+            return Optional.empty();
+        }
+        ImmutableSortedMap<String, FileCollectionFingerprint> inputFileProperties = loadFingerprints(record.getInputFileProperties());
+        ImmutableSortedMap<String, FileCollectionFingerprint> outputFileProperties = loadFingerprints(record.getOutputFileProperties());
+        if (inputFileProperties == null || outputFileProperties == null) {
+            // A fingerprint entry is missing, for example because another process stored the same execution at the same time
+            return Optional.empty();
+        }
+        return Optional.of(new DefaultAfterPreviousExecutionState(
+            record.getOriginMetadata(),
+            record.getImplementation(),
+            record.getAdditionalImplementations(),
+            record.getInputProperties(),
+            inputFileProperties,
+            outputFileProperties,
+            record.isSuccessful()
+        ));
+    }
+
+    @Override
+    public Optional<Long> loadExecutionTime(String key) {
+        return Optional.ofNullable(executionTimes.get(key));
+    }
+
+    @Nullable
+    private ImmutableSortedMap<String, FileCollectionFingerprint> loadFingerprints(ImmutableSortedMap<String, HashCode> fingerprintKeys) {
+        ImmutableSortedMap.Builder<String, FileCollectionFingerprint> builder = ImmutableSortedMap.naturalOrder();
+        for (Map.Entry<String, HashCode> entry : fingerprintKeys.entrySet()) {
+            HashCode fingerprintKey = entry.getValue();
+            if (fingerprintKey.equals(NO_FINGERPRINTS)) {
+                builder.put(entry.getKey(), FileCollectionFingerprint.EMPTY);
+                continue;
+            }
+            FileCollectionFingerprintEntry fingerprintEntry = fingerprints.get(fingerprintKey);
+            if (fingerprintEntry == null) {
+                return null;
+            }
+            Map<String, FileSystemLocationFingerprint> fileFingerprints = loadFileFingerprints(fingerprintEntry);
+            if (fileFingerprints == null) {
+                return null;
+            }
+            builder.put(entry.getKey(), new SerializableFileCollectionFingerprint(fileFingerprints, fingerprintEntry.getRootHashes(), fingerprintKey));
+        }
+        return builder.build();
+    }
+
+    @Nullable
+    private Map<String, FileSystemLocationFingerprint> loadFileFingerprints(FileCollectionFingerprintEntry fingerprintEntry) {
+        Deque<FileCollectionFingerprintEntry> changes = new ArrayDeque<>();
+        FileCollectionFingerprintEntry current = fingerprintEntry;
+        while (!current.isComplete()) {
+            changes.push(current);
+            current = fingerprints.get(current.getBase());
+            if (current == null) {
+                return null;
+            }
+        }
+        if (changes.isEmpty()) {
+            return current.getFingerprints();
+        }
+        Map<String, FileSystemLocationFingerprint> fileFingerprints = new LinkedHashMap<>(current.getFingerprints());
+        while (!changes.isEmpty()) {
+            changes.pop().applyTo(fileFingerprints);
+        }
+        return fileFingerprints;
     }
 
     @Override
@@ -64,28 +165,139 @@ public class DefaultExecutionHistoryStore implements ExecutionHistoryStore {
         ImmutableSortedMap<String, ValueSnapshot> inputProperties,
         ImmutableSortedMap<String, CurrentFileCollectionFingerprint> inputFileProperties,
         ImmutableSortedMap<String, CurrentFileCollectionFingerprint> outputFileProperties,
-        boolean successful
+        boolean successful,
+        @Nullable AfterPreviousExecutionState previousExecutionState
     ) {
-        store.put(key, new DefaultAfterPreviousExecutionState(
+        Set<HashCode> previousFingerprintKeys = previousExecutionState != null
+            ? fingerprintKeysOf(previousExecutionState)
+            : fingerprintKeysOf(store.get(key));
+        ExecutionHistoryRecord record = new ExecutionHistoryRecord(
             originMetadata,
             implementation,
             additionalImplementations,
             inputProperties,
-            prepareForSerialization(inputFileProperties),
-            prepareForSerialization(outputFileProperties),
+            storeFingerprints(key, "input", inputFileProperties, previousExecutionState == null ? ImmutableSortedMap.of() : previousExecutionState.getInputFileProperties()),
+            storeFingerprints(key, "output", outputFileProperties, previousExecutionState == null ? ImmutableSortedMap.of() : previousExecutionState.getOutputFileProperties()),
             successful
-        ));
+        );
+        store.put(key, record);
+        executionTimes.put(key, originMetadata.getExecutionTime());
+        previousFingerprintKeys.removeAll(fingerprintKeysOf(record));
+        removeFingerprints(previousFingerprintKeys);
     }
 
     @Override
     public void remove(String key) {
+        Set<HashCode> fingerprintKeys = fingerprintKeysOf(store.get(key));
         store.remove(key);
+        executionTimes.remove(key);
+        removeFingerprints(fingerprintKeys);
+    }
+
+    private ImmutableSortedMap<String, HashCode> storeFingerprints(String key, String kind, ImmutableSortedMap<String, CurrentFileCollectionFingerprint> currentFingerprints, ImmutableSortedMap<String, FileCollectionFingerprint> previousFingerprints) {
+        ImmutableSortedMap.Builder<String, HashCode> builder = ImmutableSortedMap.naturalOrder();
+        for (Map.Entry<String, CurrentFileCollectionFingerprint> entry : currentFingerprints.entrySet()) {
+            String propertyName = entry.getKey();
+            builder.put(propertyName, storeFingerprint(key, kind, propertyName, entry.getValue(), previousFingerprints.get(propertyName)));
+        }
+        return builder.build();
+    }
+
+    private HashCode storeFingerprint(String key, String kind, String propertyName, CurrentFileCollectionFingerprint fingerprint, @Nullable FileCollectionFingerprint previousFingerprint) {
+        if (fingerprint.getFingerprints().isEmpty()) {
+            return NO_FINGERPRINTS;
+        }
+        HashCode previousKey = previousFingerprint instanceof SerializableFileCollectionFingerprint
+            ? ((SerializableFileCollectionFingerprint) previousFingerprint).getKey()
+            : null;
+        if (previousKey != null) {
+            // Keep the entry of the previous execution when the roots did not change, which is also when the change detection considers the fingerprint unchanged
+            if (hasSameRootHashes(fingerprint, previousFingerprint)) {
+                return previousKey;
+            }
+            FileCollectionFingerprintEntry changes = changesSince(previousKey, previousFingerprint, fingerprint);
+            if (changes != null) {
+                HashCode changesKey = fingerprintKey(key, kind, propertyName, fingerprint, previousKey);
+                fingerprints.put(changesKey, changes);
+                return changesKey;
+            }
+        }
+        HashCode fingerprintKey = fingerprintKey(key, kind, propertyName, fingerprint, null);
+        fingerprints.put(fingerprintKey, FileCollectionFingerprintEntry.complete(fingerprint.getFingerprints(), fingerprint.getRootHashes()));
+        return fingerprintKey;
+    }
+
+    /**
+     * Returns the changes to store on top of the entry of the previous fingerprint,
+     * or {@code null} when the chain of changes is already long, when most files changed, or when the changes would not reproduce the order of the files.
+     */
+    @Nullable
+    private FileCollectionFingerprintEntry changesSince(HashCode previousKey, FileCollectionFingerprint previousFingerprint, CurrentFileCollectionFingerprint fingerprint) {
+        FileCollectionFingerprintEntry previousEntry = fingerprints.get(previousKey);
+        if (previousEntry == null || previousEntry.getDepth() >= MAX_CHANGES_CHAIN_LENGTH) {
+            return null;
+        }
+        FileCollectionFingerprintEntry changes = FileCollectionFingerprintEntry.changesBetween(previousFingerprint, fingerprint, previousKey, previousEntry.getDepth() + 1);
+        if (changes == null || 2 * (changes.getFingerprints().size() + changes.getRemovedPaths().size()) > fingerprint.getFingerprints().size()) {
+            return null;
+        }
+        return changes;
+    }
+
+    private void removeFingerprints(Iterable<HashCode> fingerprintKeys) {
+        for (HashCode fingerprintKey : fingerprintKeys) {
+            fingerprints.remove(fingerprintKey);
+        }
+    }
+
+    private static HashCode fingerprintKey(String key, String kind, String propertyName, CurrentFileCollectionFingerprint fingerprint, @Nullable HashCode base) {
+        Hasher hasher = Hashing.newHasher();
+        hasher.putString(key);
+        hasher.putString(kind);
+        hasher.putString(propertyName);
+        hasher.putString(fingerprint.getStrategyIdentifier());
+        for (Map.Entry<String, HashCode> root : fingerprint.getRootHashes().entries()) {
+            hasher.putString(root.getKey());
+            hasher.putHash(root.getValue());
+        }
+        if (base != null) {
+            hasher.putHash(base);
+        }
+        return hasher.hash();
+    }
+
+    private Set<HashCode> fingerprintKeysOf(@Nullable ExecutionHistoryRecord record) {
+        Set<HashCode> fingerprintKeys = new HashSet<>();
+        if (record != null) {
+            for (HashCode fingerprintKey : Iterables.concat(record.getInputFileProperties().values(), record.getOutputFileProperties().values())) {
+                addChainOf(fingerprintKey, fingerprintKeys);
+            }
+        }
+        return fingerprintKeys;
+    }
+
+    private Set<HashCode> fingerprintKeysOf(AfterPreviousExecutionState state) {
+        Set<HashCode> fingerprintKeys = new HashSet<>();
+        for (FileCollectionFingerprint fingerprint : Iterables.concat(state.getInputFileProperties().values(), state.getOutputFileProperties().values())) {
+            if (fingerprint instanceof SerializableFileCollectionFingerprint) {
+                addChainOf(((SerializableFileCollectionFingerprint) fingerprint).getKey(), fingerprintKeys);
+            }
+        }
+        return fingerprintKeys;
+    }
+
+    /**
+     * Adds the key of the entry and of all the entries it is based on.
+     */
+    private void addChainOf(@Nullable HashCode fingerprintKey, Set<HashCode> fingerprintKeys) {
+        HashCode current = fingerprintKey;
+        while (current != null && !current.equals(NO_FINGERPRINTS) && fingerprintKeys.add(current)) {
+            FileCollectionFingerprintEntry fingerprintEntry = fingerprints.get(current);
+            current = fingerprintEntry == null ? null : fingerprintEntry.getBase();
+        }
     }
 
-    private static ImmutableSortedMap<String, FileCollectionFingerprint> prepareForSerialization(ImmutableSortedMap<String, CurrentFileCollectionFingerprint> fingerprints) {
-        return copyOfSorted(transformValues(fingerprints, value -> {
-            //noinspection ConstantConditions
-            return new SerializableFileCollectionFingerprint(value.getFingerprints(), value.getRootHashes());
-        }));
+    private static boolean hasSameRootHashes(FileCollectionFingerprint current, FileCollectionFingerprint previous) {
+        return Iterables.elementsEqual(current.getRootHashes().entries(), previous.getRootHashes().entries());
     }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import org.gradle.caching.internal.origin.OriginMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.snapshot.ValueSnapshot;
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
+
+/**
+ * The state of an execution as it is stored in the execution history.
+ *
+ * The file collection fingerprints are stored as separate entries, so that a fingerprint which does not change is not written again for each execution.
+ * The record refers to each of them by the key of its entry.
+ */
+public class ExecutionHistoryRecord {
+    /**
+     * The key used for a property without any fingerprints, which has no entry.
+     */
+    public static final HashCode NO_FINGERPRINTS = HashCode.fromInt(0);
+
+    private final OriginMetadata originMetadata;
+    private final ImplementationSnapshot implementation;
+    private final ImmutableList<ImplementationSnapshot> additionalImplementations;
+    private final ImmutableSortedMap<String, ValueSnapshot> inputProperties;
+    private final ImmutableSortedMap<String, HashCode> inputFileProperties;
+    private final ImmutableSortedMap<String, HashCode> outputFileProperties;
+    private final boolean successful;
+
+    public ExecutionHistoryRecord(
+        OriginMetadata originMetadata,
+        ImplementationSnapshot implementation,
+        ImmutableList<ImplementationSnapshot> additionalImplementations,
+        ImmutableSortedMap<String, ValueSnapshot> inputProperties,
+        ImmutableSortedMap<String, HashCode> inputFileProperties,
+        ImmutableSortedMap<String, HashCode> outputFileProperties,
+        boolean successful
+    ) {
+        this.originMetadata = originMetadata;
+        this.implementation = implementation;
+        this.additionalImplementations = additionalImplementations;
+        this.inputProperties = inputProperties;
+        this.inputFileProperties = inputFileProperties;
+        this.outputFileProperties = outputFileProperties;
+        this.successful = successful;
+    }
+
+    public OriginMetadata getOriginMetadata() {
+        return originMetadata;
+    }
+
+    public ImplementationSnapshot getImplementation() {
+        return implementation;
+    }
+
+    public ImmutableList<ImplementationSnapshot> getAdditionalImplementations() {
+        return additionalImplementations;
+    }
+
+    public ImmutableSortedMap<String, ValueSnapshot> getInputProperties() {
+        return inputProperties;
+    }
+
+    /**
+     * The keys of the fingerprints of the input file properties.
+     */
+    public ImmutableSortedMap<String, HashCode> getInputFileProperties() {
+        return inputFileProperties;
+    }
+
+    /**
+     * The keys of the fingerprints of the output file properties.
+     */
+    public ImmutableSortedMap<String, HashCode> getOutputFileProperties() {
+        return outputFileProperties;
+    }
+
+    public boolean isSuccessful() {
+        return successful;
+    }
+}
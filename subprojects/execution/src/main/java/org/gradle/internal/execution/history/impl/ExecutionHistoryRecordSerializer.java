@@ -20,12 +20,12 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
 import org.gradle.caching.internal.origin.OriginMetadata;
-import org.gradle.internal.execution.history.AfterPreviousExecutionState;
-import org.gradle.internal.fingerprint.FileCollectionFingerprint;
+import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.id.UniqueId;
 import org.gradle.internal.serialize.AbstractSerializer;
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.Serializer;
 import org.gradle.internal.snapshot.ValueSnapshot;
 import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
@@ -33,17 +33,16 @@ import org.gradle.internal.snapshot.impl.SnapshotSerializer;
 
 import java.util.Map;
 
-public class DefaultPreviousExecutionStateSerializer extends AbstractSerializer<AfterPreviousExecutionState> {
-    private final Serializer<FileCollectionFingerprint> fileCollectionFingerprintSerializer;
+public class ExecutionHistoryRecordSerializer extends AbstractSerializer<ExecutionHistoryRecord> {
     private final Serializer<ImplementationSnapshot> implementationSnapshotSerializer;
     private final Serializer<ValueSnapshot> valueSnapshotSerializer = new SnapshotSerializer();
+    private final HashCodeSerializer hashCodeSerializer = new HashCodeSerializer();
 
-    public DefaultPreviousExecutionStateSerializer(Serializer<FileCollectionFingerprint> fileCollectionFingerprintSerializer) {
-        this.fileCollectionFingerprintSerializer = fileCollectionFingerprintSerializer;
+    public ExecutionHistoryRecordSerializer() {
         this.implementationSnapshotSerializer = new ImplementationSnapshot.SerializerImpl();
     }
 
-    public AfterPreviousExecutionState read(Decoder decoder) throws Exception {
+    public ExecutionHistoryRecord read(Decoder decoder) throws Exception {
         OriginMetadata originMetadata = new OriginMetadata(
             UniqueId.from(decoder.readString()),
             decoder.readLong()
@@ -61,12 +60,12 @@ public class DefaultPreviousExecutionStateSerializer extends AbstractSerializer<
         ImmutableList<ImplementationSnapshot> taskActionImplementations = taskActionImplementationsBuilder.build();
 
         ImmutableSortedMap<String, ValueSnapshot> inputProperties = readInputProperties(decoder);
-        ImmutableSortedMap<String, FileCollectionFingerprint> inputFilesFingerprints = readFingerprints(decoder);
-        ImmutableSortedMap<String, FileCollectionFingerprint> outputFilesFingerprints = readFingerprints(decoder);
+        ImmutableSortedMap<String, HashCode> inputFilesFingerprints = readFingerprintKeys(decoder);
+        ImmutableSortedMap<String, HashCode> outputFilesFingerprints = readFingerprintKeys(decoder);
 
         boolean successful = decoder.readBoolean();
 
-        return new DefaultAfterPreviousExecutionState(
+        return new ExecutionHistoryRecord(
             originMetadata,
             taskImplementation,
             taskActionImplementations,
@@ -77,7 +76,7 @@ public class DefaultPreviousExecutionStateSerializer extends AbstractSerializer<
         );
     }
 
-    public void write(Encoder encoder, AfterPreviousExecutionState execution) throws Exception {
+    public void write(Encoder encoder, ExecutionHistoryRecord execution) throws Exception {
         OriginMetadata originMetadata = execution.getOriginMetadata();
         encoder.writeString(originMetadata.getBuildInvocationId().asString());
         encoder.writeLong(originMetadata.getExecutionTime());
@@ -90,8 +89,8 @@ public class DefaultPreviousExecutionStateSerializer extends AbstractSerializer<
         }
 
         writeInputProperties(encoder, execution.getInputProperties());
-        writeFingerprints(encoder, execution.getInputFileProperties());
-        writeFingerprints(encoder, execution.getOutputFileProperties());
+        writeFingerprintKeys(encoder, execution.getInputFileProperties());
+        writeFingerprintKeys(encoder, execution.getOutputFileProperties());
 
         encoder.writeBoolean(execution.isSuccessful());
     }
@@ -120,22 +119,22 @@ public class DefaultPreviousExecutionStateSerializer extends AbstractSerializer<
         }
     }
 
-    private ImmutableSortedMap<String, FileCollectionFingerprint> readFingerprints(Decoder decoder) throws Exception {
+    private ImmutableSortedMap<String, HashCode> readFingerprintKeys(Decoder decoder) throws Exception {
         int count = decoder.readSmallInt();
-        ImmutableSortedMap.Builder<String, FileCollectionFingerprint> builder = ImmutableSortedMap.naturalOrder();
+        ImmutableSortedMap.Builder<String, HashCode> builder = ImmutableSortedMap.naturalOrder();
         for (int fingerprintIdx = 0; fingerprintIdx < count; fingerprintIdx++) {
             String property = decoder.readString();
-            FileCollectionFingerprint fingerprint = fileCollectionFingerprintSerializer.read(decoder);
-            builder.put(property, fingerprint);
+            HashCode key = hashCodeSerializer.read(decoder);
+            builder.put(property, key);
         }
         return builder.build();
     }
 
-    private void writeFingerprints(Encoder encoder, Map<String, FileCollectionFingerprint> fingerprints) throws Exception {
-        encoder.writeSmallInt(fingerprints.size());
-        for (Map.Entry<String, FileCollectionFingerprint> entry : fingerprints.entrySet()) {
+    private void writeFingerprintKeys(Encoder encoder, Map<String, HashCode> fingerprintKeys) throws Exception {
+        encoder.writeSmallInt(fingerprintKeys.size());
+        for (Map.Entry<String, HashCode> entry : fingerprintKeys.entrySet()) {
             encoder.writeString(entry.getKey());
-            fileCollectionFingerprintSerializer.write(encoder, entry.getValue());
+            hashCodeSerializer.write(encoder, entry.getValue());
         }
     }
 
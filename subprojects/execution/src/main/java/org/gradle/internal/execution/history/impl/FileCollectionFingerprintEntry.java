@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import org.gradle.internal.fingerprint.FileCollectionFingerprint;
+import org.gradle.internal.fingerprint.FileSystemLocationFingerprint;
+import org.gradle.internal.hash.HashCode;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An entry of the fingerprint cache of the execution history.
+ *
+ * An entry either holds a complete file collection fingerprint, or only the file fingerprints which changed since the fingerprint of its base entry.
+ * Applying the changes of each entry in a chain to the complete fingerprint at its start reproduces the fingerprint, including the order of its files.
+ */
+public class FileCollectionFingerprintEntry {
+    private final Map<String, FileSystemLocationFingerprint> fingerprints;
+    private final ImmutableMultimap<String, HashCode> rootHashes;
+    private final HashCode base;
+    private final ImmutableSet<String> removedPaths;
+    private final int depth;
+
+    private FileCollectionFingerprintEntry(Map<String, FileSystemLocationFingerprint> fingerprints, ImmutableMultimap<String, HashCode> rootHashes, @Nullable HashCode base, ImmutableSet<String> removedPaths, int depth) {
+        this.fingerprints = fingerprints;
+        this.rootHashes = rootHashes;
+        this.base = base;
+        this.removedPaths = removedPaths;
+        this.depth = depth;
+    }
+
+    public static FileCollectionFingerprintEntry complete(Map<String, FileSystemLocationFingerprint> fingerprints, ImmutableMultimap<String, HashCode> rootHashes) {
+        return new FileCollectionFingerprintEntry(fingerprints, rootHashes, null, ImmutableSet.of(), 0);
+    }
+
+    public static FileCollectionFingerprintEntry changes(HashCode base, int depth, Map<String, FileSystemLocationFingerprint> changedFingerprints, ImmutableSet<String> removedPaths, ImmutableMultimap<String, HashCode> rootHashes) {
+        return new FileCollectionFingerprintEntry(changedFingerprints, rootHashes, base, removedPaths, depth);
+    }
+
+    /**
+     * Returns the changes needed to turn the {@code previous} fingerprint into the {@code current} one,
+     * or {@code null} when applying them would not reproduce the order of the files in the current fingerprint.
+     */
+    @Nullable
+    public static FileCollectionFingerprintEntry changesBetween(FileCollectionFingerprint previous, FileCollectionFingerprint current, HashCode base, int depth) {
+        Map<String, FileSystemLocationFingerprint> previousFingerprints = previous.getFingerprints();
+        Map<String, FileSystemLocationFingerprint> currentFingerprints = current.getFingerprints();
+        Map<String, FileSystemLocationFingerprint> changedFingerprints = new LinkedHashMap<>();
+        for (Map.Entry<String, FileSystemLocationFingerprint> entry : currentFingerprints.entrySet()) {
+            if (!entry.getValue().equals(previousFingerprints.get(entry.getKey()))) {
+                changedFingerprints.put(entry.getKey(), entry.getValue());
+            }
+        }
+        ImmutableSet.Builder<String> removedPaths = ImmutableSet.builder();
+        for (String path : previousFingerprints.keySet()) {
+            if (!currentFingerprints.containsKey(path)) {
+                removedPaths.add(path);
+            }
+        }
+        FileCollectionFingerprintEntry changes = changes(base, depth, changedFingerprints, removedPaths.build(), current.getRootHashes());
+        // Added files end up after the existing ones, which only matches the current order if they were added at the end
+        Map<String, FileSystemLocationFingerprint> reproducedFingerprints = new LinkedHashMap<>(previousFingerprints);
+        changes.applyTo(reproducedFingerprints);
+        if (!Iterables.elementsEqual(reproducedFingerprints.keySet(), currentFingerprints.keySet())) {
+            return null;
+        }
+        return changes;
+    }
+
+    public boolean isComplete() {
+        return base == null;
+    }
+
+    /**
+     * The key of the entry these changes apply to, or {@code null} for a complete fingerprint.
+     */
+    @Nullable
+    public HashCode getBase() {
+        return base;
+    }
+
+    /**
+     * The number of entries between this one and the complete fingerprint at the start of its chain.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * All file fingerprints for a complete entry, or the added and changed file fingerprints otherwise.
+     */
+    public Map<String, FileSystemLocationFingerprint> getFingerprints() {
+        return fingerprints;
+    }
+
+    public ImmutableSet<String> getRemovedPaths() {
+        return removedPaths;
+    }
+
+    public ImmutableMultimap<String, HashCode> getRootHashes() {
+        return rootHashes;
+    }
+
+    /**
+     * Applies the changes of this entry to the file fingerprints of its base entry.
+     */
+    public void applyTo(Map<String, FileSystemLocationFingerprint> baseFingerprints) {
+        baseFingerprints.keySet().removeAll(removedPaths);
+        baseFingerprints.putAll(fingerprints);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.internal.fingerprint.FileSystemLocationFingerprint;
+import org.gradle.internal.fingerprint.impl.FingerprintMapSerializer;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.serialize.AbstractSerializer;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.HashCodeSerializer;
+
+import java.util.Map;
+
+public class FileCollectionFingerprintEntrySerializer extends AbstractSerializer<FileCollectionFingerprintEntry> {
+
+    private final FingerprintMapSerializer fingerprintMapSerializer;
+    private final FileCollectionFingerprintSerializer fileCollectionFingerprintSerializer;
+    private final StringInterner stringInterner;
+    private final HashCodeSerializer hashCodeSerializer;
+
+    public FileCollectionFingerprintEntrySerializer(StringInterner stringInterner) {
+        this.fingerprintMapSerializer = new FingerprintMapSerializer(stringInterner);
+        this.fileCollectionFingerprintSerializer = new FileCollectionFingerprintSerializer(stringInterner);
+        this.stringInterner = stringInterner;
+        this.hashCodeSerializer = new HashCodeSerializer();
+    }
+
+    @Override
+    public FileCollectionFingerprintEntry read(Decoder decoder) throws Exception {
+        boolean complete = decoder.readBoolean();
+        if (complete) {
+            Map<String, FileSystemLocationFingerprint> fingerprints = fingerprintMapSerializer.read(decoder);
+            ImmutableMultimap<String, HashCode> rootHashes = fileCollectionFingerprintSerializer.readRootHashes(decoder);
+            return FileCollectionFingerprintEntry.complete(fingerprints, rootHashes);
+        }
+        HashCode base = hashCodeSerializer.read(decoder);
+        int depth = decoder.readSmallInt();
+        int removedCount = decoder.readSmallInt();
+        ImmutableSet.Builder<String> removedPaths = ImmutableSet.builder();
+        for (int i = 0; i < removedCount; i++) {
+            removedPaths.add(stringInterner.intern(decoder.readString()));
+        }
+        Map<String, FileSystemLocationFingerprint> changedFingerprints = fingerprintMapSerializer.read(decoder);
+        ImmutableMultimap<String, HashCode> rootHashes = fileCollectionFingerprintSerializer.readRootHashes(decoder);
+        return FileCollectionFingerprintEntry.changes(base, depth, changedFingerprints, removedPaths.build(), rootHashes);
+    }
+
+    @Override
+    public void write(Encoder encoder, FileCollectionFingerprintEntry value) throws Exception {
+        encoder.writeBoolean(value.isComplete());
+        if (!value.isComplete()) {
+            hashCodeSerializer.write(encoder, value.getBase());
+            encoder.writeSmallInt(value.getDepth());
+            encoder.writeSmallInt(value.getRemovedPaths().size());
+            for (String removedPath : value.getRemovedPaths()) {
+                encoder.writeString(removedPath);
+            }
+        }
+        fingerprintMapSerializer.write(encoder, value.getFingerprints());
+        fileCollectionFingerprintSerializer.writeRootHashes(encoder, value.getRootHashes());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!super.equals(obj)) {
+            return false;
+        }
+
+        FileCollectionFingerprintEntrySerializer rhs = (FileCollectionFingerprintEntrySerializer) obj;
+        return Objects.equal(fingerprintMapSerializer, rhs.fingerprintMapSerializer)
+            && Objects.equal(hashCodeSerializer, rhs.hashCodeSerializer);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(super.hashCode(), fingerprintMapSerializer, hashCodeSerializer);
+    }
+}
@@ -53,7 +53,7 @@ public class FileCollectionFingerprintSerializer implements Serializer<FileColle
         return new SerializableFileCollectionFingerprint(fingerprints, rootHashes);
     }
 
-    private ImmutableMultimap<String, HashCode> readRootHashes(Decoder decoder) throws IOException {
+    ImmutableMultimap<String, HashCode> readRootHashes(Decoder decoder) throws IOException {
         int numberOfRoots = decoder.readSmallInt();
         if (numberOfRoots == 0) {
             return ImmutableMultimap.of();
@@ -75,7 +75,7 @@ public class FileCollectionFingerprintSerializer implements Serializer<FileColle
         }
     }
 
-    private void writeRootHashes(Encoder encoder, ImmutableMultimap<String, HashCode> rootHashes) throws IOException {
+    void writeRootHashes(Encoder encoder, ImmutableMultimap<String, HashCode> rootHashes) throws IOException {
         encoder.writeSmallInt(rootHashes.size());
         for (Map.Entry<String, HashCode> entry : rootHashes.entries()) {
             encoder.writeString(entry.getKey());
@@ -21,16 +21,23 @@ import org.gradle.internal.fingerprint.FileCollectionFingerprint;
 import org.gradle.internal.fingerprint.FileSystemLocationFingerprint;
 import org.gradle.internal.hash.HashCode;
 
+import javax.annotation.Nullable;
 import java.util.Map;
 
 public class SerializableFileCollectionFingerprint implements FileCollectionFingerprint {
 
     private final Map<String, FileSystemLocationFingerprint> fingerprints;
     private final ImmutableMultimap<String, HashCode> rootHashes;
+    private final HashCode key;
 
     public SerializableFileCollectionFingerprint(Map<String, FileSystemLocationFingerprint> fingerprints, ImmutableMultimap<String, HashCode> rootHashes) {
+        this(fingerprints, rootHashes, null);
+    }
+
+    public SerializableFileCollectionFingerprint(Map<String, FileSystemLocationFingerprint> fingerprints, ImmutableMultimap<String, HashCode> rootHashes, @Nullable HashCode key) {
         this.fingerprints = fingerprints;
         this.rootHashes = rootHashes;
+        this.key = key;
     }
 
     @Override
@@ -43,4 +50,12 @@ public class SerializableFileCollectionFingerprint implements FileCollectionFing
         return rootHashes;
     }
 
+    /**
+     * The key of the entry holding this fingerprint in the execution history, if it was loaded from there.
+     */
+    @Nullable
+    public HashCode getKey() {
+        return key;
+    }
+
 }
@@ -44,10 +44,11 @@ public class StoreSnapshotsStep<C extends IncrementalContext> implements Step<C,
         ImmutableSortedMap<String, CurrentFileCollectionFingerprint> finalOutputs = result.getFinalOutputs();
         context.getBeforeExecutionState().ifPresent(beforeExecutionState -> {
             boolean successful = result.getOutcome().isSuccessful();
+            Optional<AfterPreviousExecutionState> afterPreviousExecutionState = context.getAfterPreviousExecutionState();
             // We do not store the history if there was a failure and the outputs did not change, since then the next execution can be incremental.
             // For example the current execution fails because of a compile failure and for the next execution the source file is fixed, so only the one changed source file needs to be compiled.
             if (successful
-                || didChangeOutput(context.getAfterPreviousExecutionState(), finalOutputs)) {
+                || didChangeOutput(afterPreviousExecutionState, finalOutputs)) {
                 UnitOfWork work = context.getWork();
                 work.getExecutionHistoryStore().store(
                     work.getIdentity(),
@@ -57,7 +58,8 @@ public class StoreSnapshotsStep<C extends IncrementalContext> implements Step<C,
                     beforeExecutionState.getInputProperties(),
                     beforeExecutionState.getInputFileProperties(),
                     finalOutputs,
-                    successful
+                    successful,
+                    afterPreviousExecutionState.orElse(null)
                 );
             }
         });
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl
+
+import com.google.common.collect.ImmutableList
+import com.google.common.collect.ImmutableSortedMap
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.cache.PersistentIndexedCache
+import org.gradle.cache.PersistentIndexedCacheParameters
+import org.gradle.caching.internal.origin.OriginMetadata
+import org.gradle.internal.execution.history.AfterPreviousExecutionState
+import org.gradle.internal.execution.history.ExecutionHistoryCacheAccess
+import org.gradle.internal.execution.steps.FingerprinterFixture
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.id.UniqueId
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class DefaultExecutionHistoryStoreTest extends Specification implements FingerprinterFixture {
+    @Rule
+    final TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+
+    def caches = [:]
+    def cacheAccess = Stub(ExecutionHistoryCacheAccess) {
+        createCache(_, _, _) >> { PersistentIndexedCacheParameters parameters, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses ->
+            def entries = [:]
+            caches[parameters.cacheName] = entries
+            Stub(PersistentIndexedCache) {
+                get(_) >> { key -> entries[key] }
+                put(_, _) >> { key, value -> entries[key] = value }
+                remove(_) >> { key -> entries.remove(key) }
+            }
+        }
+    }
+    def store = new DefaultExecutionHistoryStore(cacheAccess, new StringInterner())
+    def implementation = ImplementationSnapshot.of("Test", HashCode.fromInt(123))
+
+    def "reuses fingerprints of the previous execution when their roots did not change"() {
+        temporaryFolder.file("unchanged.txt").text = "unchanged"
+        temporaryFolder.file("changed-1.txt").text = "changed"
+        temporaryFolder.file("changed-2.txt").text = "changed again"
+        temporaryFolder.file("output.txt").text = "output"
+
+        when:
+        storeExecution(fingerprintsOf(unchanged: "unchanged.txt", changed: "changed-1.txt"), null)
+        def previous = store.load("key").get()
+        storeExecution(fingerprintsOf(unchanged: "unchanged.txt", changed: "changed-2.txt"), previous)
+        def current = store.load("key").get()
+
+        then:
+        current.inputFileProperties["unchanged"].key == previous.inputFileProperties["unchanged"].key
+        current.inputFileProperties["changed"].key != previous.inputFileProperties["changed"].key
+        current.inputFileProperties["changed"].fingerprints.keySet() == [temporaryFolder.file("changed-2.txt").absolutePath] as Set
+        current.outputFileProperties["output"].key == previous.outputFileProperties["output"].key
+        fingerprintEntries.keySet() == [
+            current.inputFileProperties["unchanged"].key,
+            current.inputFileProperties["changed"].key,
+            current.outputFileProperties["output"].key
+        ] as Set
+    }
+
+    def "removes fingerprints when storing without previous execution state"() {
+        temporaryFolder.file("input-1.txt").text = "input"
+        temporaryFolder.file("input-2.txt").text = "changed input"
+        temporaryFolder.file("output.txt").text = "output"
+
+        when:
+        storeExecution(fingerprintsOf(input: "input-1.txt"), null)
+        storeExecution(fingerprintsOf(input: "input-2.txt"), null)
+        def current = store.load("key").get()
+
+        then:
+        current.inputFileProperties["input"].fingerprints.keySet() == [temporaryFolder.file("input-2.txt").absolutePath] as Set
+        fingerprintEntries.keySet() == [current.inputFileProperties["input"].key, current.outputFileProperties["output"].key] as Set
+    }
+
+    def "removes fingerprints together with the execution"() {
+        temporaryFolder.file("input.txt").text = "input"
+        temporaryFolder.file("output.txt").text = "output"
+
+        when:
+        storeExecution(fingerprintsOf(input: "input.txt"), null)
+        store.remove("key")
+
+        then:
+        !store.load("key").present
+        fingerprintEntries.isEmpty()
+    }
+
+    def "does not load execution with missing fingerprints"() {
+        temporaryFolder.file("input.txt").text = "input"
+        temporaryFolder.file("output.txt").text = "output"
+
+        when:
+        storeExecution(fingerprintsOf(input: "input.txt"), null)
+        fingerprintEntries.clear()
+
+        then:
+        !store.load("key").present
+    }
+
+    def "stores only the changed files of a fingerprint when few of its files changed"() {
+        def files = (1..10).collect { temporaryFolder.file("input-${it}.txt") }
+        files.each { it.text = it.name }
+        def added = temporaryFolder.file("added.txt")
+        added.text = "added"
+        def changedFiles = files.subList(0, 9) + [added]
+        temporaryFolder.file("output.txt").text = "output"
+
+        when:
+        storeExecution(fingerprintsOf(input: files), null)
+        def previous = store.load("key").get()
+        storeExecution(fingerprintsOf(input: changedFiles), previous)
+        def current = store.load("key").get()
+
+        then:
+        def changes = fingerprintEntries[current.inputFileProperties["input"].key]
+        !changes.complete
+        changes.base == previous.inputFileProperties["input"].key
+        changes.fingerprints.keySet() == [added.absolutePath] as Set
+        changes.removedPaths == [files.last().absolutePath] as Set
+        current.inputFileProperties["input"].fingerprints.keySet() as List == changedFiles*.absolutePath
+        fingerprintEntries.keySet() == [
+            current.inputFileProperties["input"].key,
+            previous.inputFileProperties["input"].key,
+            current.outputFileProperties["output"].key
+        ] as Set
+    }
+
+    def "stores the fingerprint completely when the changes do not reproduce the order of its files"() {
+        def files = (1..10).collect { temporaryFolder.file("input-${it}.txt") }
+        files.each { it.text = it.name }
+        temporaryFolder.file("output.txt").text = "output"
+
+        when:
+        storeExecution(fingerprintsOf(input: files), null)
+        def previous = store.load("key").get()
+        storeExecution(fingerprintsOf(input: files.reverse()), previous)
+        def current = store.load("key").get()
+
+        then:
+        fingerprintEntries[current.inputFileProperties["input"].key].complete
+        current.inputFileProperties["input"].fingerprints.keySet() as List == files.reverse()*.absolutePath
+        fingerprintEntries.keySet() == [current.inputFileProperties["input"].key, current.outputFileProperties["output"].key] as Set
+    }
+
+    def "stores the fingerprint completely again and discards the previous entries after a number of changes"() {
+        def files = (1..10).collect { temporaryFolder.file("input-${it}.txt") }
+        files.each { it.text = it.name }
+        temporaryFolder.file("output.txt").text = "output"
+        def extraFiles = (1..9).collect { temporaryFolder.file("extra-${it}.txt") }
+        extraFiles.each { it.text = it.name }
+
+        when:
+        storeExecution(fingerprintsOf(input: files), null)
+        def current = store.load("key").get()
+        extraFiles.take(8).each { extraFile ->
+            storeExecution(fingerprintsOf(input: files + [extraFile]), current)
+            current = store.load("key").get()
+        }
+
+        then:
+        fingerprintEntries[current.inputFileProperties["input"].key].depth == 8
+        fingerprintEntries.size() == 10
+
+        when:
+        storeExecution(fingerprintsOf(input: files + [extraFiles.last()]), current)
+        current = store.load("key").get()
+
+        then:
+        fingerprintEntries[current.inputFileProperties["input"].key].complete
+        current.inputFileProperties["input"].fingerprints.keySet() as List == (files + [extraFiles.last()])*.absolutePath
+        fingerprintEntries.keySet() == [current.inputFileProperties["input"].key, current.outputFileProperties["output"].key] as Set
+    }
+
+    def "removes the entries a fingerprint is based on together with the execution"() {
+        def files = (1..10).collect { temporaryFolder.file("input-${it}.txt") }
+        files.each { it.text = it.name }
+        def added = temporaryFolder.file("added.txt")
+        added.text = "added"
+        temporaryFolder.file("output.txt").text = "output"
+
+        when:
+        storeExecution(fingerprintsOf(input: files), null)
+        storeExecution(fingerprintsOf(input: files + [added]), store.load("key").get())
+        store.remove("key")
+
+        then:
+        !store.load("key").present
+        fingerprintEntries.isEmpty()
+    }
+
+    def "loads execution time without loading the execution"() {
+        temporaryFolder.file("input.txt").text = "input"
+        temporaryFolder.file("output.txt").text = "output"
+
+        when:
+        storeExecution(fingerprintsOf(input: "input.txt"), null, 1234)
+        caches["executionHistory"].clear()
+        fingerprintEntries.clear()
+
+        then:
+        store.loadExecutionTime("key") == Optional.of(1234L)
+        !store.loadExecutionTime("other").present
+
+        when:
+        store.remove("key")
+
+        then:
+        !store.loadExecutionTime("key").present
+    }
+
+    private Map getFingerprintEntries() {
+        caches["executionHistoryFingerprints"]
+    }
+
+    private void storeExecution(ImmutableSortedMap inputFileProperties, AfterPreviousExecutionState previous, long executionTime = 0) {
+        store.store(
+            "key",
+            new OriginMetadata(UniqueId.generate(), executionTime),
+            implementation,
+            ImmutableList.of(),
+            ImmutableSortedMap.of(),
+            inputFileProperties,
+            fingerprintsOf(output: "output.txt"),
+            true,
+            previous
+        )
+    }
+}
@@ -49,7 +49,7 @@ class DefaultOutputFilesRepositoryTest extends Specification {
         decorator(100000, true) >> cacheDecorator
     }
     def repository = new DefaultOutputFilesRepository(cacheAccess, inMemoryCacheDecoratorFactory)
-    def snapshotter = new DefaultFileSystemSnapshotter(new TestFileHasher(), new StringInterner(), TestFiles.fileSystem(), new DefaultFileSystemMirror(Stub(WellKnownFileLocations)))
+    def snapshotter = new DefaultFileSystemSnapshotter(new TestFileHasher(), new StringInterner(), TestFiles.fileSystem(), new DefaultFileSystemMirror(Stub(WellKnownFileLocations), TestFiles.fileSystem()))
 
     def "should determine output files generated by Gradle"() {
         def outputFiles = [
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl
+
+import com.google.common.collect.ImmutableMultimap
+import com.google.common.collect.ImmutableSet
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.internal.file.FileType
+import org.gradle.internal.fingerprint.impl.DefaultFileSystemLocationFingerprint
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.serialize.SerializerSpec
+
+class FileCollectionFingerprintEntrySerializerTest extends SerializerSpec {
+
+    def serializer = new FileCollectionFingerprintEntrySerializer(new StringInterner())
+
+    def "reads and writes complete fingerprints"() {
+        def rootHashes = ImmutableMultimap.of("/3", HashCode.fromInt(1234), "/1", HashCode.fromInt(5678))
+
+        when:
+        def out = serialize(FileCollectionFingerprintEntry.complete([
+            "/3": new DefaultFileSystemLocationFingerprint('3', FileType.RegularFile, HashCode.fromInt(1234)),
+            "/1": new DefaultFileSystemLocationFingerprint('1', FileType.RegularFile, HashCode.fromInt(5678))
+        ], rootHashes), serializer)
+
+        then:
+        out.complete
+        out.base == null
+        out.depth == 0
+        out.fingerprints.keySet() as List == ["/3", "/1"]
+        out.removedPaths.empty
+        out.rootHashes == rootHashes
+    }
+
+    def "reads and writes changes to a fingerprint"() {
+        def base = HashCode.fromInt(42)
+        def rootHashes = ImmutableMultimap.of("/dir", HashCode.fromInt(1234))
+
+        when:
+        def out = serialize(FileCollectionFingerprintEntry.changes(base, 3, [
+            "/dir/2": new DefaultFileSystemLocationFingerprint('2', FileType.RegularFile, HashCode.fromInt(5678))
+        ], ImmutableSet.of("/dir/1", "/dir/3"), rootHashes), serializer)
+
+        then:
+        !out.complete
+        out.base == base
+        out.depth == 3
+        out.fingerprints.keySet() as List == ["/dir/2"]
+        out.removedPaths == ["/dir/1", "/dir/3"] as Set
+        out.rootHashes == rootHashes
+    }
+}
@@ -37,7 +37,7 @@ class OutputFilterUtilTest extends Specification {
     final TestNameTestDirectoryProvider temporaryFolder = TestNameTestDirectoryProvider.newInstance()
 
     def fileHasher = new TestFileHasher()
-    def fileSystemMirror = new DefaultFileSystemMirror(Stub(WellKnownFileLocations))
+    def fileSystemMirror = new DefaultFileSystemMirror(Stub(WellKnownFileLocations), TestFiles.fileSystem())
     def snapshotter = new DefaultFileSystemSnapshotter(fileHasher, new StringInterner(), TestFiles.fileSystem(), fileSystemMirror)
     def outputFingerprinter = new OutputFileCollectionFingerprinter(snapshotter)
 
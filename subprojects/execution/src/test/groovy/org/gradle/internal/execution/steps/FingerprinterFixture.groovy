@@ -34,7 +34,7 @@ abstract trait FingerprinterFixture {
     private fileHasher = new TestFileHasher()
     private stringInterner = new StringInterner()
     private fileSystem = TestFiles.fileSystem()
-    private fileSystemMirror = new DefaultFileSystemMirror(new NoWellKnownFileLocations())
+    private fileSystemMirror = new DefaultFileSystemMirror(new NoWellKnownFileLocations(), TestFiles.fileSystem())
 
     final inputFingerprinter = new AbsolutePathFileCollectionFingerprinter(
         new DefaultFileSystemSnapshotter(
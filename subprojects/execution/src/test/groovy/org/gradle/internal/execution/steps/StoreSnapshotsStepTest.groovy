@@ -65,6 +65,7 @@ class StoreSnapshotsStepTest extends StepSpec implements FingerprinterFixture {
         1 * delegateResult.finalOutputs >> finalOutputs
         1 * context.beforeExecutionState >> Optional.of(beforeExecutionState)
         1 * delegateResult.outcome >> Try.successful(ExecutionOutcome.EXECUTED_NON_INCREMENTALLY)
+        1 * context.afterPreviousExecutionState >> Optional.empty()
 
         then:
         interaction { expectStore(true, finalOutputs) }
@@ -112,7 +113,7 @@ class StoreSnapshotsStepTest extends StepSpec implements FingerprinterFixture {
         1 * afterPreviousExecutionState.outputFileProperties >> fingerprintsOf([:])
 
         then:
-        interaction { expectStore(false, finalOutputs) }
+        interaction { expectStore(false, finalOutputs, afterPreviousExecutionState) }
         0 * _
     }
 
@@ -137,7 +138,7 @@ class StoreSnapshotsStepTest extends StepSpec implements FingerprinterFixture {
         0 * _
     }
 
-    void expectStore(boolean successful, ImmutableSortedMap<String, CurrentFileCollectionFingerprint> finalOutputs) {
+    void expectStore(boolean successful, ImmutableSortedMap<String, CurrentFileCollectionFingerprint> finalOutputs, AfterPreviousExecutionState afterPreviousExecutionState = null) {
         1 * context.work >> work
         1 * work.executionHistoryStore >> executionHistoryStore
         1 * work.identity >> identity
@@ -150,7 +151,8 @@ class StoreSnapshotsStepTest extends StepSpec implements FingerprinterFixture {
             inputProperties,
             inputFileProperties,
             finalOutputs,
-            successful
+            successful,
+            afterPreviousExecutionState
         )
     }
 }
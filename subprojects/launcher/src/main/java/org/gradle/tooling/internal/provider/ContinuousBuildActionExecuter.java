@@ -35,6 +35,7 @@ import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.filewatch.DefaultFileWatcherEventListener;
 import org.gradle.internal.filewatch.FileSystemChangeWaiter;
 import org.gradle.internal.filewatch.FileSystemChangeWaiterFactory;
+import org.gradle.internal.filewatch.FileWatcherChangesListener;
 import org.gradle.internal.filewatch.FileWatcherEventListener;
 import org.gradle.internal.filewatch.PendingChangesListener;
 import org.gradle.internal.filewatch.SingleFirePendingChangesListener;
@@ -72,7 +73,7 @@ public class ContinuousBuildActionExecuter implements BuildActionExecuter<BuildA
         if (actionParameters.isContinuous()) {
             DefaultContinuousExecutionGate alwaysOpenExecutionGate = new DefaultContinuousExecutionGate();
             final CancellableOperationManager cancellableOperationManager = createCancellableOperationManager(requestContext, cancellationToken);
-            return executeMultipleBuilds(action, requestContext, actionParameters, buildSessionScopeServices, cancellableOperationManager, alwaysOpenExecutionGate);
+            return executeMultipleBuilds(action, requestContext, actionParameters, buildSessionScopeServices, cancellableOperationManager, alwaysOpenExecutionGate, true);
         } else {
             try {
                 return delegate.execute(action, requestContext, actionParameters, buildSessionScopeServices);
@@ -107,51 +108,76 @@ public class ContinuousBuildActionExecuter implements BuildActionExecuter<BuildA
             logger.println().println("Reloadable deployment detected. Entering continuous build.");
             resetBuildStartedTime(buildSessionScopeServices);
             ContinuousExecutionGate deploymentRequestExecutionGate = deploymentRegistry.getExecutionGate();
-            executeMultipleBuilds(action, requestContext, actionParameters, buildSessionScopeServices, cancellableOperationManager, deploymentRequestExecutionGate);
+            // Changes made while the gate is closed are not watched, so they cannot be reported to the retained file system state
+            executeMultipleBuilds(action, requestContext, actionParameters, buildSessionScopeServices, cancellableOperationManager, deploymentRequestExecutionGate, false);
         }
         cancellableOperationManager.closeInput();
     }
 
     private BuildActionResult executeMultipleBuilds(BuildAction action, final BuildRequestContext requestContext, final BuildActionParameters actionParameters, final ServiceRegistry buildSessionScopeServices,
-                                         CancellableOperationManager cancellableOperationManager, ContinuousExecutionGate continuousExecutionGate) {
+                                         CancellableOperationManager cancellableOperationManager, ContinuousExecutionGate continuousExecutionGate, final boolean reportChanges) {
         BuildCancellationToken cancellationToken = requestContext.getCancellationToken();
 
         BuildActionResult lastResult;
-        while (true) {
-            PendingChangesListener pendingChangesListener = buildSessionScopeServices.get(ListenerManager.class).getBroadcaster(PendingChangesListener.class);
-            final FileSystemChangeWaiter waiter = changeWaiterFactory.createChangeWaiter(new SingleFirePendingChangesListener(pendingChangesListener), cancellationToken, continuousExecutionGate);
-            try {
-                lastResult = executeBuildAndAccumulateInputs(action, requestContext, actionParameters, waiter, buildSessionScopeServices);
-
-                if (!waiter.isWatching()) {
-                    logger.println().withStyle(StyledTextOutput.Style.Failure).println("Exiting continuous build as no executed tasks declared file system inputs.");
-                    return lastResult;
-                } else {
-                    cancellableOperationManager.monitorInput(new Action<BuildCancellationToken>() {
-                        @Override
-                        public void execute(BuildCancellationToken cancellationToken) {
-                            FileWatcherEventListener reporter = new DefaultFileWatcherEventListener();
-                            waiter.wait(new Runnable() {
-                                @Override
-                                public void run() {
-                                    logger.println().println("Waiting for changes to input files of tasks..." + determineExitHint(requestContext));
+        // The waiter of the previous build keeps reporting changes until the current build, which registers the new watches, has completed
+        FileSystemChangeWaiter previousWaiter = null;
+        try {
+            while (true) {
+                ListenerManager listenerManager = buildSessionScopeServices.get(ListenerManager.class);
+                PendingChangesListener pendingChangesListener = listenerManager.getBroadcaster(PendingChangesListener.class);
+                final FileSystemChangeWaiter waiter = changeWaiterFactory.createChangeWaiter(new SingleFirePendingChangesListener(pendingChangesListener), cancellationToken, continuousExecutionGate);
+                if (reportChanges) {
+                    waiter.reportChangesTo(listenerManager.getBroadcaster(FileWatcherChangesListener.class));
+                }
+                try {
+                    try {
+                        lastResult = executeBuildAndAccumulateInputs(action, requestContext, actionParameters, waiter, buildSessionScopeServices);
+                    } finally {
+                        if (previousWaiter != null) {
+                            previousWaiter.stop();
+                            previousWaiter = null;
+                        }
+                    }
+
+                    if (!waiter.isWatching()) {
+                        logger.println().withStyle(StyledTextOutput.Style.Failure).println("Exiting continuous build as no executed tasks declared file system inputs.");
+                        return lastResult;
+                    } else {
+                        cancellableOperationManager.monitorInput(new Action<BuildCancellationToken>() {
+                            @Override
+                            public void execute(BuildCancellationToken cancellationToken) {
+                                FileWatcherEventListener reporter = new DefaultFileWatcherEventListener();
+                                waiter.wait(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        logger.println().println("Waiting for changes to input files of tasks..." + determineExitHint(requestContext));
+                                    }
+                                }, reporter);
+                                if (!cancellationToken.isCancellationRequested()) {
+                                    reporter.reportChanges(logger);
                                 }
-                            }, reporter);
-                            if (!cancellationToken.isCancellationRequested()) {
-                                reporter.reportChanges(logger);
                             }
+                        });
+                        if (reportChanges && !cancellationToken.isCancellationRequested()) {
+                            previousWaiter = waiter;
                         }
-                    });
+                    }
+                } finally {
+                    if (previousWaiter != waiter) {
+                        waiter.stop();
+                    }
                 }
-            } finally {
-                waiter.stop();
-            }
 
-            if (cancellationToken.isCancellationRequested()) {
-                break;
-            } else {
-                logger.println("Change detected, executing build...").println();
-                resetBuildStartedTime(buildSessionScopeServices);
+                if (cancellationToken.isCancellationRequested()) {
+                    break;
+                } else {
+                    logger.println("Change detected, executing build...").println();
+                    resetBuildStartedTime(buildSessionScopeServices);
+                }
+            }
+        } finally {
+            if (previousWaiter != null) {
+                previousWaiter.stop();
             }
         }
 
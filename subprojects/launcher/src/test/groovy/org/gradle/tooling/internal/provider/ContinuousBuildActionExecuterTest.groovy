@@ -129,6 +129,44 @@ class ContinuousBuildActionExecuterTest extends ConcurrentSpec {
         }
     }
 
+    def "keeps the watcher of the previous build running until the next build has completed"() {
+        def previousWaiter = Mock(FileSystemChangeWaiter)
+        def nextWaiter = Mock(FileSystemChangeWaiter)
+        previousWaiter.isWatching() >> true
+        nextWaiter.isWatching() >> true
+
+        when:
+        continuousBuild()
+        executeBuild()
+
+        then:
+        1 * waiterFactory.createChangeWaiter(_, _, _) >> previousWaiter
+        1 * previousWaiter.reportChangesTo(_)
+        1 * delegate.execute(action, requestContext, actionParameters, _) >> {
+            declareInput(file)
+        }
+        1 * previousWaiter.wait(_, _)
+
+        then:
+        1 * waiterFactory.createChangeWaiter(_, _, _) >> nextWaiter
+        1 * nextWaiter.reportChangesTo(_)
+        1 * delegate.execute(action, requestContext, actionParameters, _) >> {
+            declareInput(file)
+        }
+
+        then:
+        1 * previousWaiter.stop()
+
+        then:
+        1 * nextWaiter.wait(_, _) >> {
+            cancellationToken.cancel()
+        }
+
+        then:
+        1 * nextWaiter.stop()
+        0 * previousWaiter.stop()
+    }
+
     def "exits if there are no file system inputs"() {
         when:
         continuousBuild()
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.internal.remote.internal.hub;
+
+import org.gradle.api.Action;
+import org.gradle.internal.Cast;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.dispatch.Dispatch;
+import org.gradle.internal.remote.internal.KryoBackedMessageSerializer;
+import org.gradle.internal.remote.internal.RemoteConnection;
+import org.gradle.internal.remote.internal.hub.protocol.InterHubMessage;
+import org.gradle.internal.remote.internal.inet.SocketConnection;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Serializers;
+import org.gradle.internal.serialize.StatefulSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends messages from a number of threads through a {@link MessageHub} to another hub connected over a loopback socket,
+ * the way a test worker sends test events and output to the build process.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class MessageHubThroughputBenchmark {
+    private static final int MESSAGES_PER_INVOCATION = 20000;
+    private static final String CHANNEL = "events";
+    private static final String MESSAGE = "Test output written by one of the tests of a chatty test suite";
+
+    @Param({"1", "4"})
+    int producers;
+
+    private final Semaphore received = new Semaphore(0);
+    private DefaultExecutorFactory executorFactory;
+    private ExecutorService producerThreads;
+    private ServerSocketChannel server;
+    private MessageHub sender;
+    private MessageHub receiver;
+    private RemoteConnection<InterHubMessage> senderConnection;
+    private RemoteConnection<InterHubMessage> receiverConnection;
+    private Dispatch<String> outgoing;
+
+    @Setup(Level.Trial)
+    public void connect() throws IOException {
+        executorFactory = new DefaultExecutorFactory();
+        producerThreads = Executors.newFixedThreadPool(producers);
+        server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+        SocketChannel client = SocketChannel.open(server.socket().getLocalSocketAddress());
+        SocketChannel accepted = server.accept();
+
+        Action<Throwable> errorHandler = new Action<Throwable>() {
+            @Override
+            public void execute(Throwable throwable) {
+                throwable.printStackTrace();
+            }
+        };
+        sender = new MessageHub("sender", executorFactory, errorHandler);
+        receiver = new MessageHub("receiver", executorFactory, errorHandler);
+        senderConnection = connection(client);
+        receiverConnection = connection(accepted);
+        sender.addConnection(senderConnection);
+        receiver.addConnection(receiverConnection);
+        receiver.addHandler(CHANNEL, new Dispatch<Object>() {
+            @Override
+            public void dispatch(Object message) {
+                received.release();
+            }
+        });
+        outgoing = sender.getOutgoing(CHANNEL, String.class);
+    }
+
+    private static RemoteConnection<InterHubMessage> connection(SocketChannel socket) {
+        StatefulSerializer<Object> payloadSerializer = Cast.uncheckedCast(Serializers.stateful(BaseSerializerFactory.STRING_SERIALIZER));
+        return new SocketConnection<InterHubMessage>(socket, new KryoBackedMessageSerializer(), new InterHubMessageSerializer(payloadSerializer));
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() throws IOException {
+        sender.requestStop();
+        receiver.requestStop();
+        CompositeStoppable.stoppable(sender, senderConnection, receiver, receiverConnection).stop();
+        producerThreads.shutdown();
+        executorFactory.stop();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES_PER_INVOCATION)
+    public void dispatchToConnectedHub() throws Exception {
+        final int messagesPerProducer = MESSAGES_PER_INVOCATION / producers;
+        List<Future<?>> dispatched = new ArrayList<Future<?>>();
+        for (int i = 0; i < producers; i++) {
+            dispatched.add(producerThreads.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < messagesPerProducer; j++) {
+                        outgoing.dispatch(MESSAGE);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : dispatched) {
+            future.get();
+        }
+        received.acquire(messagesPerProducer * producers);
+    }
+}
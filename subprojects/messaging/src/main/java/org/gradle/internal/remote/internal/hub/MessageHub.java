@@ -30,6 +30,8 @@ import org.gradle.internal.remote.internal.hub.queue.EndPointQueue;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -45,11 +47,16 @@ public class MessageHub implements AsyncStoppable {
     private enum State {Running, Stopping, Stopped}
 
     private static final Discard DISCARD = new Discard();
+    private static final int MAX_MESSAGES_PER_FLUSH = 1000;
     private final ManagedExecutor workers;
     private final String displayName;
     private final Action<? super Throwable> errorHandler;
     private final Lock lock = new ReentrantLock();
-    private State state = State.Running;
+    private volatile State state = State.Running;
+    // The number of outgoing messages being dispatched without holding the lock
+    private final AtomicInteger dispatching = new AtomicInteger();
+    // Signalled when the last outgoing message being dispatched without holding the lock has been queued, once stop has been requested
+    private final Condition dispatchesFinished = lock.newCondition();
     private final IncomingQueue incomingQueue = new IncomingQueue(lock);
     private final OutgoingQueue outgoingQueue = new OutgoingQueue(incomingQueue, lock);
     private final ConnectionSet connections = new ConnectionSet(incomingQueue, outgoingQueue);
@@ -186,12 +193,13 @@ public class MessageHub implements AsyncStoppable {
             if (state != State.Running) {
                 return;
             }
-            try {
-                outgoingQueue.endOutput();
-                connections.noFurtherConnections();
-            } finally {
-                state = State.Stopping;
+            state = State.Stopping;
+            // Outgoing messages are dispatched without holding the lock, so wait for those already accepted to be queued ahead of the end of the stream
+            while (dispatching.get() != 0) {
+                dispatchesFinished.awaitUninterruptibly();
             }
+            outgoingQueue.endOutput();
+            connections.noFurtherConnections();
         } finally {
             lock.unlock();
         }
@@ -309,25 +317,25 @@ public class MessageHub implements AsyncStoppable {
                 List<InterHubMessage> messages = new ArrayList<InterHubMessage>();
                 try {
                     while (true) {
-                        lock.lock();
-                        try {
-                            queue.take(messages);
-                        } finally {
-                            lock.unlock();
-                        }
-                        for (InterHubMessage message : messages) {
-                            try {
-                                connection.dispatch(message);
-                            } catch (RecoverableMessageIOException e) {
-                                addToIncoming(new StreamFailureMessage(e));
+                        queue.take(messages);
+                        int dispatchedSinceFlush = 0;
+                        do {
+                            for (InterHubMessage message : messages) {
+                                try {
+                                    connection.dispatch(message);
+                                } catch (RecoverableMessageIOException e) {
+                                    addToIncoming(new StreamFailureMessage(e));
+                                }
+                                if (message instanceof EndOfStream) {
+                                    connection.flush();
+                                    return;
+                                }
                             }
-                            if (message instanceof EndOfStream) {
-                                connection.flush();
-                                return;
-                            }
-                        }
+                            dispatchedSinceFlush += messages.size();
+                            messages.clear();
+                            // Keep writing while more messages have been queued in the meantime, so that a busy connection is flushed once per burst rather than once per message
+                        } while (dispatchedSinceFlush < MAX_MESSAGES_PER_FLUSH && queue.poll(messages));
                         connection.flush();
-                        messages.clear();
                     }
                 } finally {
                     lock.lock();
@@ -358,12 +366,20 @@ public class MessageHub implements AsyncStoppable {
         }
 
         public void dispatch(T message) {
-            lock.lock();
+            // Does not take the lock, so that threads dispatching many messages do not contend with each other and with the threads forwarding them
+            dispatching.incrementAndGet();
             try {
                 assertRunning("dispatch message");
                 outgoingQueue.dispatch(new ChannelMessage(channelIdentifier, message));
             } finally {
-                lock.unlock();
+                if (dispatching.decrementAndGet() == 0 && state != State.Running) {
+                    lock.lock();
+                    try {
+                        dispatchesFinished.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
             }
         }
     }
@@ -388,12 +404,7 @@ public class MessageHub implements AsyncStoppable {
                 List<InterHubMessage> messages = new ArrayList<InterHubMessage>();
                 try {
                     while (true) {
-                        lock.lock();
-                        try {
-                            queue.take(messages);
-                        } finally {
-                            lock.unlock();
-                        }
+                        queue.take(messages);
                         for (InterHubMessage message : messages) {
                             if (message instanceof EndOfStream) {
                                 boundedDispatch.endStream();
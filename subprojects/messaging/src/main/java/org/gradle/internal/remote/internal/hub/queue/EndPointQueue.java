@@ -23,36 +23,99 @@ import org.gradle.internal.remote.internal.hub.protocol.InterHubMessage;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.locks.Condition;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * The messages routed to a single consumer of a {@link MultiEndPointQueue}.
+ *
+ * The consumer does not hold the lock while it waits for messages. It parks instead, and is woken up by the first message
+ * routed or dispatched to it, so that a burst of messages results in a single wake up.
+ */
 public class EndPointQueue implements Dispatch<InterHubMessage> {
     private final List<InterHubMessage> queue = new ArrayList<InterHubMessage>();
     private final MultiEndPointQueue owner;
-    private final Condition condition;
+    private final Lock lock;
+    private final AtomicReference<Thread> waiting = new AtomicReference<Thread>();
 
-    public EndPointQueue(MultiEndPointQueue owner, Condition condition) {
+    public EndPointQueue(MultiEndPointQueue owner, Lock lock) {
         this.owner = owner;
-        this.condition = condition;
+        this.lock = lock;
     }
 
+    /**
+     * Adds a message for this endpoint. The caller must hold the lock.
+     */
     public void dispatch(InterHubMessage message) {
         queue.add(message);
-        condition.signalAll();
+        wakeUp();
     }
 
+    /**
+     * Wakes up the consumer of this endpoint, if it is waiting for messages. Can be called from any thread.
+     *
+     * @return true if the consumer was waiting.
+     */
+    boolean wakeUp() {
+        Thread thread = waiting.getAndSet(null);
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Blocks until there are messages for this endpoint and moves them to the given collection. The caller must not hold the lock.
+     */
     public void take(Collection<InterHubMessage> drainTo) {
-        if (queue.isEmpty()) {
-            owner.empty(this);
-            while (queue.isEmpty()) {
-                try {
-                    condition.await();
-                } catch (InterruptedException e) {
-                    throw UncheckedException.throwAsUncheckedException(e);
+        while (true) {
+            lock.lock();
+            try {
+                if (queue.isEmpty()) {
+                    owner.empty(this);
+                }
+                if (!queue.isEmpty()) {
+                    drainTo.addAll(queue);
+                    queue.clear();
+                    return;
+                }
+                waiting.set(Thread.currentThread());
+            } finally {
+                lock.unlock();
+            }
+            // Check again for messages dispatched without the lock before waiting, as their producer may have missed this thread
+            if (!owner.hasMessagesFor(this)) {
+                LockSupport.park(this);
+            }
+            waiting.set(null);
+            if (Thread.interrupted()) {
+                throw UncheckedException.throwAsUncheckedException(new InterruptedException());
+            }
+        }
+    }
+
+    /**
+     * Moves the messages currently available for this endpoint to the given collection, without waiting for more. The caller must not hold the lock.
+     *
+     * @return true if any messages were moved.
+     */
+    public boolean poll(Collection<InterHubMessage> drainTo) {
+        lock.lock();
+        try {
+            if (queue.isEmpty()) {
+                owner.empty(this);
+                if (queue.isEmpty()) {
+                    return false;
                 }
             }
+            drainTo.addAll(queue);
+            queue.clear();
+            return true;
+        } finally {
+            lock.unlock();
         }
-        drainTo.addAll(queue);
-        queue.clear();
     }
 
     public void stop() {
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.internal.remote.internal.hub.queue;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An unbounded queue that any number of threads can add to without locking, and that a single thread at a time takes from.
+ *
+ * Adding an element is a single atomic swap of the tail, so producers never wait for each other or for the consumer.
+ * Consumers need to be serialized by the caller, for example by holding a lock.
+ */
+class MpscQueue<T> {
+    private final AtomicReference<Node<T>> tail;
+    private volatile Node<T> head;
+
+    MpscQueue() {
+        Node<T> stub = new Node<T>(null);
+        head = stub;
+        tail = new AtomicReference<Node<T>>(stub);
+    }
+
+    /**
+     * Adds the given element. Can be called from any thread.
+     */
+    void offer(T element) {
+        Node<T> node = new Node<T>(element);
+        Node<T> previous = tail.getAndSet(node);
+        previous.next = node;
+    }
+
+    /**
+     * Removes and returns the oldest element, or returns {@code null} when there are no elements.
+     *
+     * An element being added concurrently may not be visible yet, in which case its producer has not returned from {@link #offer(Object)}.
+     */
+    @Nullable
+    T poll() {
+        Node<T> next = head.next;
+        if (next == null) {
+            return null;
+        }
+        T element = next.element;
+        next.element = null;
+        head = next;
+        return element;
+    }
+
+    boolean isEmpty() {
+        return head.next == null;
+    }
+
+    private static class Node<T> {
+        private T element;
+        private volatile Node<T> next;
+
+        Node(@Nullable T element) {
+            this.element = element;
+        }
+    }
+}
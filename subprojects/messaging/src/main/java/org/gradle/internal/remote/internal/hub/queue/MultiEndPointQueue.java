@@ -20,15 +20,21 @@ import org.gradle.internal.dispatch.Dispatch;
 import org.gradle.internal.remote.internal.hub.protocol.EndOfStream;
 import org.gradle.internal.remote.internal.hub.protocol.InterHubMessage;
 
-import java.util.*;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
 
-// TODO - use circular buffers to avoid copying
+/**
+ * Routes messages to a set of endpoints.
+ *
+ * Messages for a single handler can be dispatched from any thread without holding the lock. They are queued without locking and routed, in the
+ * order they were queued, by the first endpoint that runs out of messages. Messages for all handlers are dispatched while holding the lock.
+ */
 // TODO - share a single initializer with MultiChannelQueue
 public class MultiEndPointQueue implements Dispatch<InterHubMessage> {
-    private final Set<EndPointQueue> endpoints = new HashSet<EndPointQueue>();
-    private final List<InterHubMessage> queue = new ArrayList<InterHubMessage>();
-    private final List<EndPointQueue> waiting = new ArrayList<EndPointQueue>();
+    private final List<EndPointQueue> endpoints = new CopyOnWriteArrayList<EndPointQueue>();
+    private final MpscQueue<InterHubMessage> queue = new MpscQueue<InterHubMessage>();
     private final Lock lock;
     private final QueueInitializer initializer = new QueueInitializer();
 
@@ -36,55 +42,56 @@ public class MultiEndPointQueue implements Dispatch<InterHubMessage> {
         this.lock = lock;
     }
 
+    /**
+     * Queues the given message. Messages with {@link InterHubMessage.Delivery#SingleHandler} delivery can be dispatched without holding the lock,
+     * other messages require the lock.
+     */
     public void dispatch(InterHubMessage message) {
-        queue.add(message);
-        flush();
-    }
-
-    void empty(EndPointQueue endPointQueue) {
-        waiting.add(endPointQueue);
-        flush();
-    }
-
-    void stopped(EndPointQueue queue) {
-        waiting.remove(queue);
-        endpoints.remove(queue);
-        queue.dispatch(new EndOfStream());
+        switch (message.getDelivery()) {
+            case SingleHandler:
+                queue.offer(message);
+                wakeUpWaitingEndpoint();
+                break;
+            case Stateful:
+            case AllHandlers:
+                if (queue.isEmpty() && !endpoints.isEmpty()) {
+                    // Nothing queued ahead of this message, so it can be forwarded straight away
+                    forwardToAll(message);
+                } else {
+                    queue.offer(message);
+                    wakeUpWaitingEndpoint();
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown delivery type: " + message.getDelivery());
+        }
     }
 
-    public void drain(Collection<InterHubMessage> drainTo) {
-        drainTo.addAll(queue);
-        queue.clear();
+    private void wakeUpWaitingEndpoint() {
+        // Only the first message queued while an endpoint is waiting wakes it up, the endpoint takes the following ones with it
+        for (EndPointQueue endpoint : endpoints) {
+            if (endpoint.wakeUp()) {
+                return;
+            }
+        }
     }
 
-    private void flush() {
-        // TODO - need to do a better job of routing messages when there are multiple endpoints. This is just going to forward all queued messages to the first
-        // waiting endpoint, even if there are multiple waiting to do work
-        EndPointQueue selected = waiting.isEmpty() ? null : waiting.get(0);
-        while (!queue.isEmpty()) {
-            InterHubMessage message = queue.get(0);
+    /**
+     * Forwards the queued messages to the given endpoint, which has run out of messages. The caller must hold the lock.
+     */
+    void empty(EndPointQueue endPointQueue) {
+        if (!endpoints.contains(endPointQueue)) {
+            return;
+        }
+        InterHubMessage message;
+        while ((message = queue.poll()) != null) {
             switch (message.getDelivery()) {
                 case Stateful:
                 case AllHandlers:
-                    if (endpoints.isEmpty()) {
-                        return;
-                    }
-                    if (message.getDelivery() == InterHubMessage.Delivery.Stateful) {
-                        initializer.onStatefulMessage(message);
-                    }
-                    for (EndPointQueue endpoint : endpoints) {
-                        endpoint.dispatch(message);
-                    }
-                    queue.remove(0);
-                    waiting.clear();
-                    continue;
+                    forwardToAll(message);
+                    break;
                 case SingleHandler:
-                    if (selected == null) {
-                        return;
-                    }
-                    queue.remove(0);
-                    waiting.remove(selected);
-                    selected.dispatch(message);
+                    endPointQueue.dispatch(message);
                     break;
                 default:
                     throw new IllegalArgumentException("Unknown delivery type: " + message.getDelivery());
@@ -92,8 +99,36 @@ public class MultiEndPointQueue implements Dispatch<InterHubMessage> {
         }
     }
 
+    private void forwardToAll(InterHubMessage message) {
+        if (message.getDelivery() == InterHubMessage.Delivery.Stateful) {
+            initializer.onStatefulMessage(message);
+        }
+        for (EndPointQueue endpoint : endpoints) {
+            endpoint.dispatch(message);
+        }
+    }
+
+    /**
+     * Returns whether there are queued messages that the given endpoint would receive if it ran out of messages.
+     */
+    boolean hasMessagesFor(EndPointQueue endPointQueue) {
+        return !queue.isEmpty() && endpoints.contains(endPointQueue);
+    }
+
+    void stopped(EndPointQueue queue) {
+        endpoints.remove(queue);
+        queue.dispatch(new EndOfStream());
+    }
+
+    public void drain(Collection<InterHubMessage> drainTo) {
+        InterHubMessage message;
+        while ((message = queue.poll()) != null) {
+            drainTo.add(message);
+        }
+    }
+
     public EndPointQueue newEndpoint() {
-        EndPointQueue endPointQueue = new EndPointQueue(this, lock.newCondition());
+        EndPointQueue endPointQueue = new EndPointQueue(this, lock);
         endpoints.add(endPointQueue);
         initializer.onQueueAdded(endPointQueue);
         return endPointQueue;
@@ -146,16 +146,18 @@ public class SocketConnection<T> implements RemoteConnection<T> {
     }
 
     private static class SocketInputStream extends InputStream {
+        private static final int BUFFER_SIZE = 64 * 1024;
         private final Selector selector;
         private final ByteBuffer buffer;
         private final SocketChannel socket;
         private final byte[] readBuffer = new byte[1];
+        private boolean previousReadFilledBuffer;
 
         public SocketInputStream(SocketChannel socket) throws IOException {
             this.socket = socket;
             selector = Selector.open();
             socket.register(selector, SelectionKey.OP_READ);
-            buffer = ByteBuffer.allocateDirect(4096);
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
             BufferCaster.cast(buffer).limit(0);
         }
 
@@ -175,32 +177,20 @@ public class SocketConnection<T> implements RemoteConnection<T> {
             }
 
             if (buffer.remaining() == 0) {
-                try {
-                    selector.select();
-                } catch (ClosedSelectorException e) {
-                    return -1;
-                }
-                if (!selector.isOpen()) {
-                    return -1;
-                }
-
-                BufferCaster.cast(buffer).clear();
-                int nread;
-                try {
-                    nread = socket.read(buffer);
-                } catch (IOException e) {
-                    if (isEndOfStream(e)) {
-                        BufferCaster.cast(buffer).position(0);
-                        BufferCaster.cast(buffer).limit(0);
+                // When the previous read filled the buffer, more bytes are likely to be available already, so read them without waiting
+                int nread = previousReadFilledBuffer ? readFromChannel() : 0;
+                while (nread == 0) {
+                    try {
+                        selector.select();
+                    } catch (ClosedSelectorException e) {
                         return -1;
                     }
-                    throw e;
+                    nread = readFromChannel();
                 }
-                BufferCaster.cast(buffer).flip();
-
                 if (nread < 0) {
                     return -1;
                 }
+                previousReadFilledBuffer = nread == buffer.capacity();
             }
 
             int count = Math.min(buffer.remaining(), max);
@@ -208,6 +198,29 @@ public class SocketConnection<T> implements RemoteConnection<T> {
             return count;
         }
 
+        /**
+         * Reads into the buffer without blocking. Returns the number of bytes read, which is 0 when no bytes are available, or -1 at the end of the stream.
+         */
+        private int readFromChannel() throws IOException {
+            if (!selector.isOpen()) {
+                return -1;
+            }
+            BufferCaster.cast(buffer).clear();
+            int nread;
+            try {
+                nread = socket.read(buffer);
+            } catch (IOException e) {
+                if (isEndOfStream(e)) {
+                    nread = -1;
+                } else {
+                    BufferCaster.cast(buffer).limit(0);
+                    throw e;
+                }
+            }
+            BufferCaster.cast(buffer).flip();
+            return nread;
+        }
+
         @Override
         public void close() throws IOException {
             selector.close();
@@ -216,6 +229,7 @@ public class SocketConnection<T> implements RemoteConnection<T> {
 
     private static class SocketOutputStream extends OutputStream {
         private static final int RETRIES_WHEN_BUFFER_FULL = 2;
+        private static final int BUFFER_SIZE = 64 * 1024;
         private Selector selector;
         private final SocketChannel socket;
         private final ByteBuffer buffer;
@@ -223,7 +237,7 @@ public class SocketConnection<T> implements RemoteConnection<T> {
 
         public SocketOutputStream(SocketChannel socket) throws IOException {
             this.socket = socket;
-            buffer = ByteBuffer.allocateDirect(32 * 1024);
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
         }
 
         @Override
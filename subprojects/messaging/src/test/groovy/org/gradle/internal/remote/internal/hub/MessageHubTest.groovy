@@ -31,6 +31,7 @@ import spock.lang.Timeout
 import java.util.concurrent.BlockingQueue
 import java.util.concurrent.CopyOnWriteArrayList
 import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.atomic.AtomicInteger
 
 @Timeout(60)
 class MessageHubTest extends ConcurrentSpec {
@@ -168,6 +169,53 @@ class MessageHubTest extends ConcurrentSpec {
         0 * _._
     }
 
+    def "outgoing messages accepted while stop is requested are dispatched to connection ahead of end of stream"() {
+        def received = new CopyOnWriteArrayList()
+        def accepted = new AtomicInteger()
+        RemoteConnection<InterHubMessage> outgoing = Stub()
+        def connection = new MockOutgoingConnection(outgoing)
+
+        given:
+        outgoing.dispatch(_) >> { InterHubMessage message ->
+            received.add(message)
+            if (message instanceof EndOfStream) {
+                connection.stop()
+            }
+        }
+
+        and:
+        hub.addConnection(connection)
+        def dispatcher = hub.getOutgoing("channel", Long)
+
+        when:
+        async {
+            4.times {
+                start {
+                    try {
+                        while (true) {
+                            dispatcher.dispatch(12)
+                            accepted.incrementAndGet()
+                        }
+                    } catch (IllegalStateException e) {
+                        // Stop has been requested
+                    }
+                }
+            }
+            start {
+                while (accepted.get() < 1000) {
+                    Thread.sleep(1)
+                }
+                hub.requestStop()
+            }
+        }
+        hub.stop()
+
+        then:
+        received.last() instanceof EndOfStream
+        received.count { it instanceof ChannelMessage } == accepted.get()
+        received.size() == accepted.get() + 1
+    }
+
     def "each outgoing message is dispatched in order to connection"() {
         def messages = new CopyOnWriteArrayList()
         RemoteConnection<InterHubMessage> outgoing = Mock()
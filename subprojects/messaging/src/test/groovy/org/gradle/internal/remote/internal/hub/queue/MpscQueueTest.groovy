@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.internal.remote.internal.hub.queue
+
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+
+class MpscQueueTest extends Specification {
+    def queue = new MpscQueue<String>()
+
+    def "takes elements in the order they were added"() {
+        expect:
+        queue.empty
+        queue.poll() == null
+
+        when:
+        queue.offer("a")
+        queue.offer("b")
+
+        then:
+        !queue.empty
+        queue.poll() == "a"
+        queue.poll() == "b"
+        queue.poll() == null
+        queue.empty
+    }
+
+    def "keeps the order of the elements added by each thread when threads add concurrently"() {
+        given:
+        def threads = 4
+        def elementsPerThread = 10000
+        def start = new CountDownLatch(1)
+        def producers = (0..<threads).collect { thread ->
+            Thread.start {
+                start.await()
+                elementsPerThread.times { queue.offer("${thread}:${it}".toString()) }
+            }
+        }
+
+        when:
+        start.countDown()
+        producers*.join()
+
+        then:
+        def next = [0] * threads
+        def element
+        while ((element = queue.poll()) != null) {
+            def (thread, index) = element.split(":")*.toInteger()
+            assert next[thread] == index
+            next[thread]++
+        }
+        next == [elementsPerThread] * threads
+    }
+}
@@ -18,6 +18,9 @@ package org.gradle.internal.remote.internal.hub.queue
 
 import org.gradle.internal.remote.internal.hub.protocol.EndOfStream
 
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.locks.ReentrantLock
+
 class MultiEndPointQueueTest extends AbstractQueueTest {
     final MultiEndPointQueue queue = new MultiEndPointQueue(lock)
 
@@ -162,4 +165,28 @@ class MultiEndPointQueueTest extends AbstractQueueTest {
         messages.size() == 1
         messages[0] instanceof EndOfStream
     }
+
+    def "wakes up waiting endpoint when message is dispatched without holding the lock"() {
+        given:
+        def lockingQueue = new MultiEndPointQueue(new ReentrantLock())
+        def endpoint = lockingQueue.newEndpoint()
+        def message1 = unicast()
+        def message2 = unicast()
+        def messages = new CopyOnWriteArrayList()
+        def consumer = Thread.start {
+            while (messages.size() < 2) {
+                endpoint.take(messages)
+            }
+        }
+
+        when:
+        Thread.sleep(100)
+        lockingQueue.dispatch(message1)
+        lockingQueue.dispatch(message2)
+        consumer.join(10000)
+
+        then:
+        !consumer.alive
+        messages == [message1, message2]
+    }
 }
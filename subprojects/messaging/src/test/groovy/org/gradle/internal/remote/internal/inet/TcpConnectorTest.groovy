@@ -223,6 +223,33 @@ class TcpConnectorTest extends ConcurrentSpec {
         acceptor?.stop()
     }
 
+    def "receives messages written in bursts larger than the socket buffers"() {
+        def messages = (0..<20000).collect { "message ${it} ".toString() * (it % 50) }
+        def large = "x" * 200000
+
+        when:
+        def acceptor = incomingConnector.accept({ ConnectCompletion event ->
+            def connection = event.create(serializer)
+            messages.each { connection.dispatch(it) }
+            connection.dispatch(large)
+            connection.stop()
+        } as Action, false)
+
+        def connection = outgoingConnector.connect(acceptor.address).create(serializer)
+        def received = []
+        def message
+        while ((message = connection.receive()) != null) {
+            received << message
+        }
+
+        then:
+        received == messages + [large]
+
+        cleanup:
+        connection?.stop()
+        acceptor?.stop()
+    }
+
     def "returns null on failure to receive due to truncated input"() {
         given:
         def incomingSerializer = { Encoder encoder, String value ->
@@ -46,6 +46,9 @@ public class InMemoryCacheDecoratorFactory {
         caches = cacheFactory.newCache();
     }
 
+    /**
+     * Creates a decorator which keeps up to the given number of entries in memory, scaled to the size of the heap. When the given number is 0, only updates are made asynchronously.
+     */
     public CacheDecorator decorator(final int maxEntriesToKeepInMemory, final boolean cacheInMemoryForShortLivedProcesses) {
         return new InMemoryCacheDecorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses);
     }
@@ -56,6 +59,11 @@ public class InMemoryCacheDecoratorFactory {
             LOG.debug("Creating cache {} without in-memory store.", cacheId);
             return backingCache;
         }
+        if (maxEntriesToKeepInMemory == 0) {
+            // The caller keeps its own in-memory store
+            LOG.debug("Creating cache {} without in-memory store.", cacheId);
+            return backingCache;
+        }
         int targetSize = cacheSizer.scaleCacheSize(maxEntriesToKeepInMemory);
         CacheDetails cacheDetails = getCache(cacheId, targetSize);
         return new InMemoryDecoratedCache<K, V>(backingCache, cacheDetails.entries, cacheId, cacheDetails.lockState);
@@ -19,6 +19,7 @@ import com.google.common.collect.ImmutableSet;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.io.StreamByteBuffer;
+import org.gradle.internal.os.OperatingSystem;
 import org.gradle.internal.serialize.Serializer;
 import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
 import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
@@ -49,6 +50,12 @@ import java.util.List;
 @SuppressWarnings("unchecked")
 public class BTreePersistentIndexedCache<K, V> {
     private static final Logger LOGGER = LoggerFactory.getLogger(BTreePersistentIndexedCache.class);
+    /**
+     * The system property which opts in to accessing cache files through a memory mapping. The cache files are accessed through a {@link java.io.RandomAccessFile} by default.
+     */
+    public static final String MEMORY_MAPPED_PROPERTY = "org.gradle.internal.btree.memory-mapped";
+    // A mapped file cannot be truncated on Windows, and keeps the file from being deleted
+    private static final boolean MEMORY_MAPPED_BY_DEFAULT = Boolean.getBoolean(MEMORY_MAPPED_PROPERTY) && !OperatingSystem.current().isWindows();
     private final File cacheFile;
     private final KeyHasher<K> keyHasher;
     private final Serializer<V> serializer;
@@ -63,12 +70,21 @@ public class BTreePersistentIndexedCache<K, V> {
 
     public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer,
                                        short maxChildIndexEntries, int maxFreeListEntries) {
+        this(cacheFile, keySerializer, valueSerializer, maxChildIndexEntries, maxFreeListEntries, MEMORY_MAPPED_BY_DEFAULT);
+    }
+
+    /**
+     * @param memoryMapped whether to access the cache file through a memory mapping. The file format is the same either way.
+     */
+    public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                                       short maxChildIndexEntries, int maxFreeListEntries, boolean memoryMapped) {
         this.cacheFile = cacheFile;
         this.keyHasher = new KeyHasher<K>(keySerializer);
         this.serializer = valueSerializer;
         this.maxChildIndexEntries = maxChildIndexEntries;
         this.minIndexChildNodes = maxChildIndexEntries / 2;
-        BlockStore cachingStore = new CachingBlockStore(new FileBackedBlockStore(cacheFile), ImmutableSet.of(IndexBlock.class, FreeListBlockStore.FreeListBlock.class));
+        BlockStore fileStore = memoryMapped ? new MappedFileBlockStore(cacheFile) : new FileBackedBlockStore(cacheFile);
+        BlockStore cachingStore = new CachingBlockStore(fileStore, ImmutableSet.of(IndexBlock.class, FreeListBlockStore.FreeListBlock.class));
         this.store = new StateCheckBlockStore(new FreeListBlockStore(cachingStore, maxFreeListEntries));
         try {
             open();
@@ -0,0 +1,445 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.btree;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.io.BufferCaster;
+import org.gradle.internal.io.MappedBuffers;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link BlockStore} which reads and writes blocks through a memory mapping of the cache file, rather than through a system call per block.
+ *
+ * Uses the same file format as {@link FileBackedBlockStore}, so either store can open a file written by the other.
+ *
+ * The file is mapped in chunks of {@link #CHUNK_SIZE} bytes and the mapping grows as blocks are added, extending the file ahead of the blocks written to it.
+ * Writes go to the page cache and are written to disk by the operating system, in the same way as writes through a {@link RandomAccessFile}.
+ * The file is truncated back to the end of the last block when the store is closed, which happens when the unit of work that opened the cache ends.
+ * The mappings are released when the store is closed, rather than when the buffers are garbage collected, so a cache reopened for each unit of work does not accumulate mappings.
+ * A file left extended by a process that did not close the store is accepted, and the blocks added by the next process overwrite the padding.
+ *
+ * Any use of the store after it has been closed fails with an {@link IllegalStateException}, rather than accessing a released mapping.
+ *
+ * Should not be used on Windows, where a file cannot be truncated while it is mapped.
+ */
+public class MappedFileBlockStore implements BlockStore {
+    private static final int CHUNK_BITS = 26;
+    static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+    private static final long MIN_MAPPED_SIZE = 64 * 1024;
+    private static final int HEADER_SIZE = 1 + Block.INT_SIZE; // type, payload size
+    private static final int TAIL_SIZE = Block.INT_SIZE;
+
+    private final File cacheFile;
+    private final List<MappedByteBuffer> chunks = new ArrayList<MappedByteBuffer>();
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long mappedSize;
+    private long currentFileSize;
+    private long nextBlock;
+    private Factory factory;
+    private boolean open;
+
+    public MappedFileBlockStore(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    @Override
+    public String toString() {
+        return "cache '" + cacheFile + "'";
+    }
+
+    public void open(Runnable runnable, Factory factory) {
+        this.factory = factory;
+        try {
+            cacheFile.getParentFile().mkdirs();
+            file = new RandomAccessFile(cacheFile, "rw");
+            channel = file.getChannel();
+            long fileLength = file.length();
+            map(fileLength);
+            currentFileSize = isPadded(fileLength) ? findEndOfBlocks(fileLength) : fileLength;
+            nextBlock = currentFileSize;
+            open = true;
+            if (currentFileSize == 0) {
+                runnable.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            unmap();
+            if (file.length() > currentFileSize) {
+                channel.truncate(currentFileSize);
+            }
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void clear() {
+        checkOpen();
+        try {
+            unmap();
+            file.setLength(0);
+            currentFileSize = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        nextBlock = 0;
+    }
+
+    public void attach(BlockPayload block) {
+        if (block.getBlock() == null) {
+            block.setBlock(new BlockImpl(block));
+        }
+    }
+
+    public void remove(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        blockImpl.detach();
+    }
+
+    public void flush() {
+    }
+
+    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+        return read(BlockPointer.pos(0), payloadType);
+    }
+
+    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+        assert !pos.isNull();
+        checkOpen();
+        try {
+            T payload = payloadType.cast(factory.create(payloadType));
+            BlockImpl block = new BlockImpl(payload, pos);
+            block.read();
+            return payload;
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void write(BlockPayload block) {
+        checkOpen();
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        try {
+            blockImpl.write();
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void checkOpen() {
+        if (!open) {
+            throw new IllegalStateException(String.format("Cannot use %s as it has been closed.", this));
+        }
+    }
+
+    private long alloc(long length) {
+        long pos = nextBlock;
+        nextBlock += length;
+        return pos;
+    }
+
+    /**
+     * Makes sure the given number of bytes from the start of the file are mapped, extending the file when required.
+     * Small files are mapped in power of two sizes, and larger files in whole chunks, so that the mapping does not need to change for each block added.
+     */
+    private void ensureMapped(long size) throws IOException {
+        if (size <= mappedSize) {
+            return;
+        }
+        long newSize;
+        if (size >= CHUNK_SIZE) {
+            newSize = ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS) << CHUNK_BITS;
+        } else {
+            newSize = Math.max(MIN_MAPPED_SIZE, Long.highestOneBit(size - 1) << 1);
+        }
+        map(newSize);
+    }
+
+    private void map(long size) throws IOException {
+        int chunkCount = (int) ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+        for (int i = 0; i < chunkCount; i++) {
+            long start = (long) i << CHUNK_BITS;
+            long chunkSize = Math.min(CHUNK_SIZE, size - start);
+            if (i < chunks.size() && chunks.get(i).capacity() == chunkSize) {
+                continue;
+            }
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE, start, chunkSize);
+            if (i < chunks.size()) {
+                MappedBuffers.release(chunks.set(i, chunk));
+            } else {
+                chunks.add(chunk);
+            }
+        }
+        mappedSize = size;
+    }
+
+    private void unmap() {
+        for (MappedByteBuffer chunk : chunks) {
+            MappedBuffers.release(chunk);
+        }
+        chunks.clear();
+        mappedSize = 0;
+    }
+
+    /**
+     * Returns whether the file has been extended beyond its last block and not truncated again, because the process writing to it did not close the store.
+     * The padding consists of zeros, whereas the file otherwise ends with the non-zero size of the last block.
+     */
+    private boolean isPadded(long fileLength) throws IOException {
+        if (fileLength < TAIL_SIZE) {
+            return fileLength > 0;
+        }
+        return new DataInputStream(new MappedInputStream(fileLength - TAIL_SIZE, fileLength)).readInt() == 0;
+    }
+
+    /**
+     * Follows the sizes in the block headers from the start of the file up to the first zero type, which marks the start of the padding.
+     */
+    private long findEndOfBlocks(long fileLength) throws IOException {
+        long pos = 0;
+        while (pos + HEADER_SIZE + TAIL_SIZE <= fileLength) {
+            DataInputStream inputStream = new DataInputStream(new MappedInputStream(pos, fileLength));
+            byte type = inputStream.readByte();
+            if (type == 0) {
+                return pos;
+            }
+            int payloadSize = inputStream.readInt();
+            if (payloadSize < 0) {
+                // Leave it to the reads of the blocks to report the corruption
+                return fileLength;
+            }
+            pos += HEADER_SIZE + TAIL_SIZE + payloadSize;
+        }
+        return pos <= fileLength ? pos : fileLength;
+    }
+
+    private MappedByteBuffer chunkFor(long pos) {
+        return chunks.get((int) (pos >>> CHUNK_BITS));
+    }
+
+    private static int offsetInChunk(long pos) {
+        return (int) (pos & (CHUNK_SIZE - 1));
+    }
+
+    private final class BlockImpl extends Block {
+        private BlockPointer pos;
+        private int payloadSize;
+
+        private BlockImpl(BlockPayload payload, BlockPointer pos) {
+            this(payload);
+            setPos(pos);
+        }
+
+        public BlockImpl(BlockPayload payload) {
+            super(payload);
+            pos = null;
+            payloadSize = -1;
+        }
+
+        @Override
+        public boolean hasPos() {
+            return pos != null;
+        }
+
+        @Override
+        public BlockPointer getPos() {
+            if (pos == null) {
+                pos = BlockPointer.pos(alloc(getSize()));
+            }
+            return pos;
+        }
+
+        @Override
+        public void setPos(BlockPointer pos) {
+            assert this.pos == null && !pos.isNull();
+            this.pos = pos;
+        }
+
+        public int getSize() {
+            if (payloadSize < 0) {
+                payloadSize = getPayload().getSize();
+            }
+            return payloadSize + HEADER_SIZE + TAIL_SIZE;
+        }
+
+        @Override
+        public void setSize(int size) {
+            int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
+            assert newPayloadSize >= payloadSize;
+            payloadSize = newPayloadSize;
+        }
+
+        public void write() throws Exception {
+            long pos = getPos().getPos();
+            long finalSize = pos + HEADER_SIZE + TAIL_SIZE + payloadSize;
+            ensureMapped(finalSize);
+
+            MappedOutputStream output = new MappedOutputStream(pos);
+            DataOutputStream outputStream = new DataOutputStream(output);
+
+            BlockPayload payload = getPayload();
+
+            // Write header
+            outputStream.writeByte(payload.getType());
+            outputStream.writeInt(payloadSize);
+
+            // Write body
+            payload.write(outputStream);
+
+            // Write count, which includes the header
+            long bytesWritten = output.position - pos;
+            if (bytesWritten > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Block payload exceeds maximum size");
+            }
+            outputStream.writeInt((int) bytesWritten);
+
+            if (currentFileSize < finalSize) {
+                currentFileSize = finalSize;
+            }
+        }
+
+        public void read() throws Exception {
+            long pos = getPos().getPos();
+            assert pos >= 0;
+            if (pos + HEADER_SIZE >= currentFileSize) {
+                throw blockCorruptedException();
+            }
+
+            MappedInputStream input = new MappedInputStream(pos, currentFileSize);
+            DataInputStream inputStream = new DataInputStream(input);
+
+            BlockPayload payload = getPayload();
+
+            // Read header
+            byte type = inputStream.readByte();
+            if (type != payload.getType()) {
+                throw blockCorruptedException();
+            }
+
+            // Read body
+            payloadSize = inputStream.readInt();
+            if (pos + HEADER_SIZE + TAIL_SIZE + payloadSize > currentFileSize) {
+                throw blockCorruptedException();
+            }
+            payload.read(inputStream);
+
+            // Read and verify count
+            long actualCount = input.position - pos;
+            long count = inputStream.readInt();
+            if (actualCount != count) {
+                throw blockCorruptedException();
+            }
+        }
+
+        public RuntimeException blockCorruptedException() {
+            return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
+                    MappedFileBlockStore.this));
+        }
+    }
+
+    private class MappedInputStream extends InputStream {
+        private final long limit;
+        private long position;
+
+        MappedInputStream(long position, long limit) {
+            this.position = position;
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() {
+            if (position >= limit) {
+                return -1;
+            }
+            int value = chunkFor(position).get(offsetInChunk(position)) & 0xff;
+            position++;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (position >= limit) {
+                return -1;
+            }
+            ByteBuffer chunk = chunkFor(position).duplicate();
+            int offsetInChunk = offsetInChunk(position);
+            int count = (int) Math.min(Math.min(length, chunk.capacity() - offsetInChunk), limit - position);
+            BufferCaster.cast(chunk).position(offsetInChunk);
+            chunk.get(bytes, offset, count);
+            position += count;
+            return count;
+        }
+    }
+
+    private class MappedOutputStream extends OutputStream {
+        private long position;
+
+        MappedOutputStream(long position) {
+            this.position = position;
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            ensureMapped(position + 1);
+            chunkFor(position).put(offsetInChunk(position), (byte) value);
+            position++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            ensureMapped(position + length);
+            while (length > 0) {
+                ByteBuffer chunk = chunkFor(position).duplicate();
+                int offsetInChunk = offsetInChunk(position);
+                int count = Math.min(length, chunk.capacity() - offsetInChunk);
+                BufferCaster.cast(chunk).position(offsetInChunk);
+                chunk.put(bytes, offset, count);
+                offset += count;
+                length -= count;
+                position += count;
+            }
+        }
+    }
+}
@@ -41,38 +41,44 @@ public class StateCheckBlockStore implements BlockStore {
         blockStore.close();
     }
 
+    private void checkOpen() {
+        if (!open) {
+            throw new IllegalStateException("The block store has been closed.");
+        }
+    }
+
     public void clear() {
-        assert open;
+        checkOpen();
         blockStore.clear();
     }
 
     public void remove(BlockPayload block) {
-        assert open;
+        checkOpen();
         blockStore.remove(block);
     }
 
     public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
-        assert open;
+        checkOpen();
         return blockStore.readFirst(payloadType);
     }
 
     public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
-        assert open;
+        checkOpen();
         return blockStore.read(pos, payloadType);
     }
 
     public void write(BlockPayload block) {
-        assert open;
+        checkOpen();
         blockStore.write(block);
     }
 
     public void attach(BlockPayload block) {
-        assert open;
+        checkOpen();
         blockStore.attach(block);
     }
 
     public void flush() {
-        assert open;
+        checkOpen();
         blockStore.flush();
     }
 }
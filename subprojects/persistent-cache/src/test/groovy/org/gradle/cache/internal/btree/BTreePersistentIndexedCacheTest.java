@@ -15,6 +15,7 @@
  */
 package org.gradle.cache.internal.btree;
 
+import org.gradle.api.UncheckedIOException;
 import org.gradle.internal.serialize.DefaultSerializer;
 import org.gradle.internal.serialize.Serializer;
 import org.gradle.test.fixtures.file.TestFile;
@@ -38,6 +39,7 @@ import java.util.Map;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class BTreePersistentIndexedCacheTest {
     @Rule
@@ -173,6 +175,95 @@ public class BTreePersistentIndexedCacheTest {
         verifyAndCloseCache();
     }
 
+    @Test
+    public void memoryMappedAndFileBackedCachesCanReadEachOthersEntries() {
+        List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < 500; i++) {
+            values.add(i);
+        }
+
+        cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, stringSerializer, integerSerializer, (short) 4, 100, true);
+        checkAdds(values.subList(0, 250));
+        verifyAndCloseCache();
+        long mappedLength = cacheFile.length();
+
+        cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, stringSerializer, integerSerializer, (short) 4, 100, false);
+        assertThat(cache.get("key_100"), equalTo(100));
+        checkAdds(values.subList(250, 500));
+        verifyAndCloseCache();
+        assertThat(cacheFile.length(), greaterThan(mappedLength));
+
+        cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, stringSerializer, integerSerializer, (short) 4, 100, true);
+        for (Integer value : values) {
+            assertThat(cache.get(String.format("key_%d", value)), equalTo(value));
+        }
+        verifyAndCloseCache();
+    }
+
+    @Test
+    public void memoryMappedCacheAcceptsFileLeftPaddedByProcessThatDidNotCloseIt() throws IOException {
+        List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < 500; i++) {
+            values.add(i);
+        }
+
+        cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, stringSerializer, integerSerializer, (short) 4, 100, true);
+        checkAdds(values.subList(0, 250));
+        verifyAndCloseCache();
+        long length = cacheFile.length();
+
+        RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+        file.setLength(MappedFileBlockStore.CHUNK_SIZE);
+        file.close();
+
+        cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, stringSerializer, integerSerializer, (short) 4, 100, true);
+        assertThat(cache.get("key_100"), equalTo(100));
+        checkAdds(values.subList(250, 500));
+        verifyAndCloseCache();
+        assertThat(cacheFile.length(), greaterThan(length));
+        assertThat(cacheFile.length(), lessThan(MappedFileBlockStore.CHUNK_SIZE));
+
+        cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, stringSerializer, integerSerializer, (short) 4, 100, false);
+        for (Integer value : values) {
+            assertThat(cache.get(String.format("key_%d", value)), equalTo(value));
+        }
+        verifyAndCloseCache();
+    }
+
+    @Test
+    public void memoryMappedCacheFailsWhenUsedAfterClose() {
+        checkFailsWhenUsedAfterClose(true);
+    }
+
+    @Test
+    public void fileBackedCacheFailsWhenUsedAfterClose() {
+        checkFailsWhenUsedAfterClose(false);
+    }
+
+    private void checkFailsWhenUsedAfterClose(boolean memoryMapped) {
+        cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, stringSerializer, integerSerializer, (short) 4, 100, memoryMapped);
+        checkAdds(1, 2, 3);
+        cache.close();
+
+        try {
+            cache.get("key_1");
+            fail();
+        } catch (UncheckedIOException e) {
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        }
+        try {
+            cache.put("key_4", 4);
+            fail();
+        } catch (UncheckedIOException e) {
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        }
+
+        createCache();
+        assertThat(cache.get("key_1"), equalTo(1));
+        assertNull(cache.get("key_4"));
+        verifyAndCloseCache();
+    }
+
     @Test
     public void persistsReplacedEntries() {
         createCache();
@@ -17,6 +17,7 @@
 package org.gradle.api.tasks.testing
 
 import org.gradle.api.GradleException
+import org.gradle.api.internal.tasks.testing.JvmTestExecutionSpec
 import org.gradle.api.internal.tasks.testing.TestCompleteEvent
 import org.gradle.api.internal.tasks.testing.TestDescriptorInternal
 import org.gradle.api.internal.tasks.testing.TestExecuter
@@ -27,6 +28,7 @@ import org.gradle.api.internal.tasks.testing.report.TestReporter
 import org.gradle.internal.work.WorkerLeaseRegistry
 import org.gradle.test.fixtures.AbstractProjectBuilderSpec
 import org.gradle.util.TestUtil
+import spock.lang.Unroll
 
 class TestTaskSpec extends AbstractProjectBuilderSpec {
     def testExecuter = Mock(TestExecuter)
@@ -238,6 +240,43 @@ class TestTaskSpec extends AbstractProjectBuilderSpec {
         task.testListenerInternalBroadcaster.isEmpty()
     }
 
+    @Unroll
+    def "records test durations only when test classes are ordered or sharded (longestTestClassesFirst: #longestFirst, shardCount: #shardCount)"() {
+        JvmTestExecutionSpec spec = null
+        task.longestTestClassesFirst = longestFirst
+        task.shardCount = shardCount
+
+        when:
+        task.executeTests()
+
+        then:
+        1 * testExecuter.execute(_ as TestExecutionSpec, _) >> { spec = it[0] }
+        spec.testDurationsFile == null
+        spec.recordedTestDurationsFile == (recorded ? new File(task.temporaryDir, "test-durations.txt") : null)
+
+        where:
+        longestFirst | shardCount | recorded
+        false        | 1          | false
+        true         | 1          | true
+        false        | 2          | true
+    }
+
+    def "passes configured test durations file to read only"() {
+        JvmTestExecutionSpec spec = null
+        def durationsFile = task.project.file("test-durations.txt")
+        durationsFile.text = "org.gradle.SomeTest=100\n"
+        task.testDurationsFile = durationsFile
+        task.shardCount = 2
+
+        when:
+        task.executeTests()
+
+        then:
+        1 * testExecuter.execute(_ as TestExecutionSpec, _) >> { spec = it[0] }
+        spec.testDurationsFile == durationsFile
+        spec.recordedTestDurationsFile != durationsFile
+    }
+
     def "removes listeners even if execution fails"() {
         given:
         testExecuter.execute(_ as TestExecutionSpec, _ as TestResultProcessor) >> { throw new RuntimeException("Boo!") }
@@ -16,91 +16,445 @@
 
 package org.gradle.internal.snapshot.impl;
 
+import org.gradle.api.internal.file.FileSystemSubset;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 import org.gradle.internal.file.FileMetadataSnapshot;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.nativeintegration.filesystem.Stat;
+import org.gradle.internal.snapshot.DirectorySnapshot;
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemMirror;
+import org.gradle.internal.snapshot.FileSystemSnapshotVisitor;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
 import org.gradle.internal.snapshot.WellKnownFileLocations;
 
 import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * See {@link DefaultFileSystemSnapshotter} for some more details
+ * See {@link DefaultFileSystemSnapshotter} for some more details.
+ *
+ * By default all state is discarded at the end of each build. When state retention is enabled, the state is kept across builds in the same daemon
+ * and only the locations which have changed are invalidated: locations which are about to be changed by the build are invalidated via {@link #beforeOutputChange(Iterable)},
+ * and locations which have changed between builds are detected at the start of the next build. Every retained file is checked, since a file can be changed in place
+ * without changing the modification time of its directory. Directories are checked by their modification time, which changes when children are added or removed.
+ * The unchanged files and directories in a changed directory are kept, only the snapshot of the changed directory itself is discarded.
+ *
+ * During a continuous build, the file watcher reports the changes to the watched locations via {@link #changesReportedByWatcher(FileSystemSubset, FileSystemSubset, Iterable)}.
+ * Those changes are invalidated right away, and the check at the start of the next build then skips the files in the watched locations.
+ * This is the only case in which retained files are not checked. The watcher keeps running and reporting changes until the next build has completed,
+ * so the watches registered by the next build take over without a gap. Files are still checked in the locations the watcher was polling or had not registered yet,
+ * and in the locations a watcher only started watching during the previous build, since changes made before the watch was registered were not reported.
  */
 public class DefaultFileSystemMirror implements FileSystemMirror {
-    // Maps from interned absolute path for a file to metadata for the file.
-    private final Map<String, FileMetadataSnapshot> metadata = new ConcurrentHashMap<String, FileMetadataSnapshot>();
-    private final Map<String, FileMetadataSnapshot> cacheMetadata = new ConcurrentHashMap<String, FileMetadataSnapshot>();
-    // Maps from interned absolute path for a file to snapshot for the file.
-    private final Map<String, FileSystemLocationSnapshot> files = new ConcurrentHashMap<String, FileSystemLocationSnapshot>();
-    private final Map<String, FileSystemLocationSnapshot> cacheFiles = new ConcurrentHashMap<String, FileSystemLocationSnapshot>();
+    /**
+     * System property used to enable retaining the state of the file system across builds.
+     */
+    public static final String RETAIN_STATE_PROPERTY = "org.gradle.unsafe.vfs.retention";
+
+    private static final Logger LOGGER = Logging.getLogger(DefaultFileSystemMirror.class);
+    private static final long TIMESTAMP_RESOLUTION_MILLIS = 2000;
+
+    // Metadata and snapshots for files, keyed by absolute path.
+    private final FileSystemHierarchy files = new FileSystemHierarchy();
+    private final FileSystemHierarchy cacheFiles = new FileSystemHierarchy();
+    // Maps from absolute path for a retained directory to the modification time and file key of the directory when the previous build finished.
+    private final Map<String, DirectoryStamp> retainedDirectories = new ConcurrentHashMap<String, DirectoryStamp>();
+    // Locations for which a file watcher reported all changes since the previous build finished, or null if there are none.
+    private volatile FileSystemSubset watchedLocations;
+    // Locations within the watched locations for which the file watcher may have missed changes, or null if there are none.
+    private volatile FileSystemSubset unwatchedLocations;
+    // Locations a file watcher started watching during the current build which were not watched already, and may have changes that were not reported.
+    private volatile FileSystemSubset.Builder lateWatchedLocations = FileSystemSubset.builder();
 
     private final WellKnownFileLocations wellKnownFileLocations;
+    private final Stat stat;
 
-    public DefaultFileSystemMirror(WellKnownFileLocations wellKnownFileLocations) {
+    public DefaultFileSystemMirror(WellKnownFileLocations wellKnownFileLocations, Stat stat) {
         this.wellKnownFileLocations = wellKnownFileLocations;
+        this.stat = stat;
     }
 
     @Nullable
     @Override
     public FileSystemLocationSnapshot getSnapshot(String absolutePath) {
-        // Could potentially also look whether we have the details for an ancestor directory tree
         // Could possibly infer that the path refers to a directory, if we have details for a descendant path (and it's not a missing file)
         if (wellKnownFileLocations.isImmutable(absolutePath)) {
-            return cacheFiles.get(absolutePath);
+            return cacheFiles.getSnapshot(absolutePath);
         }
-        return files.get(absolutePath);
+        return files.getSnapshot(absolutePath);
     }
 
     @Override
     public void putSnapshot(FileSystemLocationSnapshot snapshot) {
         String absolutePath = snapshot.getAbsolutePath();
         if (wellKnownFileLocations.isImmutable(absolutePath)) {
-            cacheFiles.put(absolutePath, snapshot);
+            cacheFiles.putSnapshot(snapshot);
         } else {
-            files.put(absolutePath, snapshot);
+            files.putSnapshot(snapshot);
         }
     }
 
     @Override
     public FileMetadataSnapshot getMetadata(String absolutePath) {
         if (wellKnownFileLocations.isImmutable(absolutePath)) {
-            return cacheMetadata.get(absolutePath);
+            return cacheFiles.getMetadata(absolutePath);
         }
-        return metadata.get(absolutePath);
+        return files.getMetadata(absolutePath);
     }
 
     @Override
     public void putMetadata(String absolutePath, FileMetadataSnapshot metadata) {
         if (wellKnownFileLocations.isImmutable(absolutePath)) {
-            cacheMetadata.put(absolutePath, metadata);
+            cacheFiles.putMetadata(absolutePath, metadata);
         } else {
-            this.metadata.put(absolutePath, metadata);
+            files.putMetadata(absolutePath, metadata);
         }
     }
 
     public void beforeOutputChange() {
         // When the outputs are generated, throw away all state for files that do not live in an append-only cache.
         // This is intentionally very simple, to be improved later
-        metadata.clear();
         files.clear();
     }
 
     public void beforeBuildFinished() {
         // We throw away all state between builds
-        metadata.clear();
-        cacheMetadata.clear();
         files.clear();
         cacheFiles.clear();
+        retainedDirectories.clear();
+        watchedLocations = null;
+        unwatchedLocations = null;
+        lateWatchedLocations = FileSystemSubset.builder();
+    }
+
+    /**
+     * Keeps the state for the next build, recording the modification time of each retained directory,
+     * so children added to or removed from it between builds can be detected.
+     */
+    public void beforeBuildFinishedRetainingState() {
+        retainedDirectories.clear();
+        DirectoryStampRecorder recorder = new DirectoryStampRecorder(System.currentTimeMillis());
+        files.visit(recorder);
+        cacheFiles.visit(recorder);
+        // The watcher which reported the watched locations stops once this build has completed
+        watchedLocations = null;
+        unwatchedLocations = null;
+    }
+
+    /**
+     * Invalidates the retained state for all locations which have changed since the previous build finished.
+     */
+    public void afterBuildStarted() {
+        ChangedLocationCollector collector = new ChangedLocationCollector(watchedLocations, unwatchedLocations, lateWatchedLocations.build());
+        lateWatchedLocations = FileSystemSubset.builder();
+        files.visit(collector);
+        cacheFiles.visit(collector);
+        retainedDirectories.clear();
+        for (String changedPath : collector.changedPaths) {
+            invalidate(changedPath);
+        }
+        for (FileSystemLocationSnapshot unchangedSnapshot : collector.unchangedSnapshots) {
+            if (!containsChangedLocation(collector.changedPaths, unchangedSnapshot.getAbsolutePath())) {
+                putSnapshot(unchangedSnapshot);
+            }
+        }
+        LOGGER.info("Invalidated {} changed locations in the retained file system state, checked {} files.", collector.changedPaths.size(), collector.checkedFiles);
+    }
+
+    /**
+     * Records that a file watcher started watching the given locations during the current build. Unless the watcher of the previous build was still watching them,
+     * the files in these locations may have been snapshotted before the watch was registered, so they are checked at the start of the next build.
+     */
+    public void startedWatching(FileSystemSubset locations) {
+        if (!isWatchedAlready(locations)) {
+            lateWatchedLocations.add(locations);
+        }
+    }
+
+    /**
+     * Invalidates the locations that a file watcher reported as changed. The watcher reported every change to the files in the watched locations
+     * since it started watching during the previous build, so the start of the next build does not need to check those files again.
+     * The unwatched locations are the ones the watcher was only polling or had not registered yet, which may have changes the watcher did not report.
+     * The watcher keeps reporting changes via {@link #changeReportedByWatcher(String)} until the next build has completed.
+     */
+    public void changesReportedByWatcher(FileSystemSubset watchedLocations, FileSystemSubset unwatchedLocations, Iterable<String> changedPaths) {
+        for (String changedPath : changedPaths) {
+            invalidate(changedPath);
+        }
+        this.unwatchedLocations = unwatchedLocations;
+        this.watchedLocations = watchedLocations;
+    }
+
+    public void changeReportedByWatcher(String changedPath) {
+        invalidate(changedPath);
+    }
+
+    /**
+     * Discards the state of all files which do not live in an append-only cache, since the file watcher may have missed changes to them.
+     */
+    public void changesMissedByWatcher() {
+        watchedLocations = null;
+        unwatchedLocations = null;
+        files.clear();
     }
 
     public void beforeOutputChange(Iterable<String> affectedOutputPaths) {
         for (String affectedOutputPath : affectedOutputPaths) {
-            metadata.remove(affectedOutputPath);
-            files.remove(affectedOutputPath);
-            cacheMetadata.remove(affectedOutputPath);
-            cacheFiles.remove(affectedOutputPath);
+            invalidate(affectedOutputPath);
+        }
+    }
+
+    /**
+     * Removes the state for the given location, for everything below it and for all its ancestors, since the snapshot of an ancestor directory includes the changed location.
+     */
+    private void invalidate(String path) {
+        files.invalidate(path);
+        cacheFiles.invalidate(path);
+    }
+
+    private boolean isWatchedAlready(FileSystemSubset locations) {
+        FileSystemSubset watched = watchedLocations;
+        FileSystemSubset unwatched = unwatchedLocations;
+        if (watched == null) {
+            return false;
+        }
+        // The watcher reports changes to everything below the roots of the watched locations
+        FileSystemSubset watchedRoots = watched.unfiltered();
+        FileSystemSubset unwatchedRoots = unwatched == null ? null : unwatched.unfiltered();
+        for (File root : locations.getRoots()) {
+            if (!watchedRoots.contains(root) || (unwatchedRoots != null && unwatchedRoots.contains(root))) {
+                return false;
+            }
+        }
+        if (unwatched != null) {
+            FileSystemSubset roots = locations.unfiltered();
+            for (File unwatchedRoot : unwatched.getRoots()) {
+                if (roots.contains(unwatchedRoot)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the given location or a location below it has changed, as found when checking another retained location.
+     */
+    private static boolean containsChangedLocation(NavigableSet<String> changedPaths, String absolutePath) {
+        for (String changedPath : changedPaths.subSet(absolutePath, true, absolutePath + Character.MAX_VALUE, false)) {
+            if (changedPath.length() == absolutePath.length() || changedPath.charAt(absolutePath.length()) == File.separatorChar) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private static DirectoryStamp stampDirectory(String absolutePath) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Paths.get(absolutePath), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (!attributes.isDirectory()) {
+                return null;
+            }
+            return new DirectoryStamp(attributes.lastModifiedTime().toMillis(), attributes.fileKey());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private class DirectoryStampRecorder implements FileSystemHierarchy.Visitor, FileSystemSnapshotVisitor {
+        private final Set<String> visitedDirectories = new HashSet<String>();
+        private final long stampTime;
+
+        DirectoryStampRecorder(long stampTime) {
+            this.stampTime = stampTime;
+        }
+
+        @Override
+        public void visit(String absolutePath, @Nullable FileMetadataSnapshot metadata, @Nullable FileSystemLocationSnapshot snapshot) {
+            if (snapshot != null) {
+                snapshot.accept(this);
+            }
+        }
+
+        @Override
+        public boolean preVisitDirectory(DirectorySnapshot directorySnapshot) {
+            String absolutePath = directorySnapshot.getAbsolutePath();
+            if (!visitedDirectories.add(absolutePath)) {
+                // Already recorded as part of another retained snapshot
+                return false;
+            }
+            recordStamp(absolutePath);
+            return true;
+        }
+
+        @Override
+        public void visit(FileSystemLocationSnapshot fileSnapshot) {
+        }
+
+        @Override
+        public void postVisitDirectory(DirectorySnapshot directorySnapshot) {
+        }
+
+        private void recordStamp(String absolutePath) {
+            if (retainedDirectories.containsKey(absolutePath)) {
+                return;
+            }
+            DirectoryStamp stamp = stampDirectory(absolutePath);
+            // On file systems with a coarse timestamp resolution, a directory changed just before the end of the build
+            // can change again without changing its modification time, so it is checked as a changed directory instead
+            if (stamp != null && stamp.lastModified < stampTime - TIMESTAMP_RESOLUTION_MILLIS) {
+                retainedDirectories.put(absolutePath, stamp);
+            }
+        }
+    }
+
+    /**
+     * Collects the changed locations, and the unchanged snapshots within them which can be kept.
+     */
+    private class ChangedLocationCollector implements FileSystemHierarchy.Visitor {
+        private final Map<String, Boolean> checkedDirectories = new HashMap<String, Boolean>();
+        private final NavigableSet<String> changedPaths = new TreeSet<String>();
+        private final List<FileSystemLocationSnapshot> unchangedSnapshots = new ArrayList<FileSystemLocationSnapshot>();
+        private final FileSystemSubset watchedLocations;
+        private final FileSystemSubset unwatchedLocations;
+        private final FileSystemSubset lateWatchedLocations;
+        private int checkedFiles;
+
+        public ChangedLocationCollector(@Nullable FileSystemSubset watchedLocations, @Nullable FileSystemSubset unwatchedLocations, FileSystemSubset lateWatchedLocations) {
+            this.watchedLocations = watchedLocations;
+            this.unwatchedLocations = unwatchedLocations;
+            this.lateWatchedLocations = lateWatchedLocations;
+        }
+
+        @Override
+        public void visit(String absolutePath, @Nullable FileMetadataSnapshot metadata, @Nullable FileSystemLocationSnapshot snapshot) {
+            if (metadata != null && hasChanged(absolutePath, metadata)) {
+                changedPaths.add(absolutePath);
+                return;
+            }
+            if (snapshot != null) {
+                List<FileSystemLocationSnapshot> unchangedDescendants = new ArrayList<FileSystemLocationSnapshot>();
+                if (hasChanged(snapshot, unchangedDescendants)) {
+                    changedPaths.add(absolutePath);
+                    unchangedSnapshots.addAll(unchangedDescendants);
+                }
+            }
+        }
+
+        private boolean hasChanged(String absolutePath, FileMetadataSnapshot metadata) {
+            if (metadata.getType() != FileType.Directory && !needsCheck(absolutePath)) {
+                return false;
+            }
+            FileMetadataSnapshot current = stat.stat(new File(absolutePath));
+            return metadata.getType() != current.getType()
+                || metadata.getLastModified() != current.getLastModified()
+                || metadata.getLength() != current.getLength();
+        }
+
+        /**
+         * Checks the snapshot and everything below it, collecting the largest unchanged snapshots below it when it has changed.
+         */
+        private boolean hasChanged(FileSystemLocationSnapshot snapshot, List<FileSystemLocationSnapshot> unchangedDescendants) {
+            String absolutePath = snapshot.getAbsolutePath();
+            if (snapshot.getType() == FileType.Directory) {
+                // Children have been added or removed, or the directory has been replaced
+                boolean changed = isChangedDirectory(absolutePath);
+                List<FileSystemLocationSnapshot> unchangedChildren = new ArrayList<FileSystemLocationSnapshot>();
+                for (FileSystemLocationSnapshot child : ((DirectorySnapshot) snapshot).getChildren()) {
+                    List<FileSystemLocationSnapshot> unchangedBelowChild = new ArrayList<FileSystemLocationSnapshot>();
+                    if (hasChanged(child, unchangedBelowChild)) {
+                        changed = true;
+                        unchangedChildren.addAll(unchangedBelowChild);
+                    } else {
+                        unchangedChildren.add(child);
+                    }
+                }
+                if (changed) {
+                    unchangedDescendants.addAll(unchangedChildren);
+                }
+                return changed;
+            }
+            if (!needsCheck(absolutePath)) {
+                return false;
+            }
+            FileMetadataSnapshot current = stat.stat(new File(absolutePath));
+            if (current.getType() != snapshot.getType()) {
+                return true;
+            }
+            return snapshot.getType() == FileType.RegularFile
+                && !snapshot.isContentAndMetadataUpToDate(new RegularFileSnapshot(absolutePath, snapshot.getName(), snapshot.getHash(), current.getLastModified()));
+        }
+
+        /**
+         * Files are checked unless a working file watcher reported all changes to them.
+         * Files in locations the watcher was polling, had not registered yet or only started watching after they were snapshotted are checked as well.
+         */
+        private boolean needsCheck(String absolutePath) {
+            if (watchedLocations != null) {
+                File file = new File(absolutePath);
+                if (watchedLocations.contains(file)
+                    && !lateWatchedLocations.contains(file)
+                    && (unwatchedLocations == null || !unwatchedLocations.contains(file))) {
+                    return false;
+                }
+            }
+            checkedFiles++;
+            return true;
+        }
+
+        private boolean isChangedDirectory(String absolutePath) {
+            Boolean changed = checkedDirectories.get(absolutePath);
+            if (changed == null) {
+                DirectoryStamp previous = retainedDirectories.get(absolutePath);
+                changed = previous == null || !previous.equals(stampDirectory(absolutePath));
+                checkedDirectories.put(absolutePath, changed);
+            }
+            return changed;
+        }
+    }
+
+    private static class DirectoryStamp {
+        private final long lastModified;
+        private final Object fileKey;
+
+        DirectoryStamp(long lastModified, @Nullable Object fileKey) {
+            this.lastModified = lastModified;
+            this.fileKey = fileKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            DirectoryStamp that = (DirectoryStamp) o;
+            return lastModified == that.lastModified
+                && (fileKey == null ? that.fileKey == null : fileKey.equals(that.fileKey));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (lastModified ^ (lastModified >>> 32)) + (fileKey == null ? 0 : fileKey.hashCode());
         }
     }
 }
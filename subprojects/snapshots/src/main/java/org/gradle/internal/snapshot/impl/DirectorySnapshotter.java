@@ -55,23 +55,43 @@ import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
+/**
+ * Walks a directory tree and snapshots its contents.
+ *
+ * When a {@link ForkJoinPool} is given, sibling directories are walked and regular files are hashed in parallel on that pool.
+ * The resulting snapshot is the same as the one produced by walking the tree sequentially.
+ */
 public class DirectorySnapshotter {
     private final FileHasher hasher;
     private final FileSystem fileSystem;
     private final StringInterner stringInterner;
     private final DefaultExcludes defaultExcludes;
+    private final ParallelDirectorySnapshotter parallelSnapshotter;
 
     public DirectorySnapshotter(FileHasher hasher, FileSystem fileSystem, StringInterner stringInterner, String... defaultExcludes) {
+        this(hasher, fileSystem, stringInterner, null, defaultExcludes);
+    }
+
+    public DirectorySnapshotter(FileHasher hasher, FileSystem fileSystem, StringInterner stringInterner, @Nullable ForkJoinPool parallelSnapshottingPool, String... defaultExcludes) {
         this.hasher = hasher;
         this.fileSystem = fileSystem;
         this.stringInterner = stringInterner;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
+        this.parallelSnapshotter = parallelSnapshottingPool == null ? null : new ParallelDirectorySnapshotter(hasher, stringInterner, parallelSnapshottingPool);
     }
 
     public FileSystemLocationSnapshot snapshot(String absolutePath, @Nullable PatternSet patterns, final MutableBoolean hasBeenFiltered) {
         Path rootPath = Paths.get(absolutePath);
         final Spec<FileTreeElement> spec = (patterns == null || patterns.isEmpty()) ? null : patterns.getAsSpec();
+        final PathFilter filter = new PathFilter(defaultExcludes, spec, hasBeenFiltered, fileSystem);
+        if (parallelSnapshotter != null) {
+            FileSystemLocationSnapshot snapshot = parallelSnapshotter.snapshot(rootPath, filter);
+            if (snapshot != null) {
+                return snapshot;
+            }
+        }
         final MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
 
         try {
@@ -79,7 +99,7 @@ public class DirectorySnapshotter {
                 @Override
                 public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
                     String name = stringInterner.intern(dir.getFileName().toString());
-                    if (builder.isRoot() || isAllowed(dir, name, true, attrs, builder.getRelativePath())) {
+                    if (builder.isRoot() || filter.isAllowed(dir, name, true, attrs, builder.getRelativePath())) {
                         builder.preVisitDirectory(internedAbsolutePath(dir), name);
                         return FileVisitResult.CONTINUE;
                     } else {
@@ -90,7 +110,7 @@ public class DirectorySnapshotter {
                 @Override
                 public FileVisitResult visitFile(Path file, @Nullable BasicFileAttributes attrs) {
                     String name = stringInterner.intern(file.getFileName().toString());
-                    if (isAllowed(file, name, false, attrs, builder.getRelativePath())) {
+                    if (filter.isAllowed(file, name, false, attrs, builder.getRelativePath())) {
                         if (attrs == null) {
                             throw new GradleException(String.format("Cannot read file '%s': not authorized.", file));
                         }
@@ -108,7 +128,7 @@ public class DirectorySnapshotter {
                     // File loop exceptions are ignored. When we encounter a loop (via symbolic links), we continue
                     // so we include all the other files apart from the loop.
                     // This way, we include each file only once.
-                    if (isNotFileSystemLoopException(exc) && isAllowed(file, file.getFileName().toString(), false, null, builder.getRelativePath())) {
+                    if (isNotFileSystemLoopException(exc) && filter.isAllowed(file, file.getFileName().toString(), false, null, builder.getRelativePath())) {
                         throw new GradleException(String.format("Could not read path '%s'.", file), exc);
                     }
                     return FileVisitResult.CONTINUE;
@@ -141,24 +161,6 @@ public class DirectorySnapshotter {
                 private String internedAbsolutePath(Path file) {
                     return stringInterner.intern(file.toString());
                 }
-
-                private boolean isAllowed(Path path, String name, boolean isDirectory, @Nullable BasicFileAttributes attrs, Iterable<String> relativePath) {
-                    if (isDirectory) {
-                        if (defaultExcludes.excludeDir(name)) {
-                            return false;
-                        }
-                    } else if (defaultExcludes.excludeFile(name)) {
-                        return false;
-                    }
-                    if (spec == null) {
-                        return true;
-                    }
-                    boolean allowed = spec.isSatisfiedBy(new PathBackedFileTreeElement(path, name, isDirectory, attrs, relativePath, fileSystem));
-                    if (!allowed) {
-                        hasBeenFiltered.set(true);
-                    }
-                    return allowed;
-                }
             });
         } catch (IOException e) {
             throw new GradleException(String.format("Could not list contents of directory '%s'.", rootPath), e);
@@ -166,6 +168,41 @@ public class DirectorySnapshotter {
         return builder.getResult();
     }
 
+    /**
+     * Decides which files and directories are included in the snapshot of a directory tree.
+     */
+    static class PathFilter {
+        private final DefaultExcludes defaultExcludes;
+        private final Spec<FileTreeElement> spec;
+        private final MutableBoolean hasBeenFiltered;
+        private final Stat stat;
+
+        PathFilter(DefaultExcludes defaultExcludes, @Nullable Spec<FileTreeElement> spec, MutableBoolean hasBeenFiltered, Stat stat) {
+            this.defaultExcludes = defaultExcludes;
+            this.spec = spec;
+            this.hasBeenFiltered = hasBeenFiltered;
+            this.stat = stat;
+        }
+
+        public boolean isAllowed(Path path, String name, boolean isDirectory, @Nullable BasicFileAttributes attrs, Iterable<String> relativePath) {
+            if (isDirectory) {
+                if (defaultExcludes.excludeDir(name)) {
+                    return false;
+                }
+            } else if (defaultExcludes.excludeFile(name)) {
+                return false;
+            }
+            if (spec == null) {
+                return true;
+            }
+            boolean allowed = spec.isSatisfiedBy(new PathBackedFileTreeElement(path, name, isDirectory, attrs, relativePath, stat));
+            if (!allowed) {
+                hasBeenFiltered.set(true);
+            }
+            return allowed;
+        }
+    }
+
     @VisibleForTesting
     static class DefaultExcludes {
         private final ImmutableSet<String> excludeFileNames;
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl;
+
+import org.gradle.internal.concurrent.Stoppable;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the pool used by {@link DirectorySnapshotter} to walk and hash directory trees in parallel.
+ *
+ * Parallel snapshotting is disabled unless the {@value #PARALLEL_SNAPSHOTTING_PROPERTY} system property is set to {@code true}.
+ */
+public class DirectorySnapshotterPool implements Stoppable {
+    public static final String PARALLEL_SNAPSHOTTING_PROPERTY = "org.gradle.internal.snapshot.parallel";
+
+    private final ForkJoinPool pool;
+
+    public static DirectorySnapshotterPool fromSystemProperties() {
+        boolean enabled = Boolean.getBoolean(PARALLEL_SNAPSHOTTING_PROPERTY);
+        return new DirectorySnapshotterPool(enabled ? Runtime.getRuntime().availableProcessors() : 0);
+    }
+
+    /**
+     * @param parallelism the number of threads to use, or 0 to snapshot sequentially.
+     */
+    public DirectorySnapshotterPool(int parallelism) {
+        this.pool = parallelism > 0 ? new ForkJoinPool(parallelism, new NamedThreadFactory(), null, false) : null;
+    }
+
+    /**
+     * Returns the pool to use for parallel snapshotting, or {@code null} when snapshotting sequentially.
+     */
+    @Nullable
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    @Override
+    public void stop() {
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class NamedThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Directory snapshotter " + thread.getPoolIndex());
+            return thread;
+        }
+    }
+}
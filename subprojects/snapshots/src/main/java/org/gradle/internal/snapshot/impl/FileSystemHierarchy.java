@@ -0,0 +1,363 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl;
+
+import org.gradle.internal.file.FileMetadataSnapshot;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+
+import javax.annotation.Nullable;
+import java.io.File;
+
+/**
+ * A compressed prefix tree of file system locations, keyed by path segments.
+ *
+ * Locations which share a path prefix share the nodes for the prefix, and chains of nodes without any state are collapsed into a single node.
+ * This makes it possible to serve lookups for a location from the snapshot of an ancestor directory, and to invalidate a location together
+ * with everything below it in time proportional to the depth of the location.
+ *
+ * Nodes are immutable, so lookups do not require any locking. Updates replace the nodes from the root down to the changed node.
+ */
+class FileSystemHierarchy {
+    private static final char SEPARATOR = File.separatorChar;
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Node EMPTY_ROOT = new Node("", NO_CHILDREN, null, null);
+
+    private volatile Node root = EMPTY_ROOT;
+
+    @Nullable
+    public FileMetadataSnapshot getMetadata(String absolutePath) {
+        Node node = root;
+        int offset = 0;
+        while (true) {
+            Node child = findChild(node, absolutePath, offset);
+            if (child == null || !isPrefixOf(child.prefix, absolutePath, offset)) {
+                return null;
+            }
+            int endOfChild = offset + child.prefix.length();
+            if (endOfChild == absolutePath.length()) {
+                return child.metadata;
+            }
+            node = child;
+            offset = endOfChild + 1;
+        }
+    }
+
+    /**
+     * Returns the snapshot for the given location, either stored directly for the location or as part of the snapshot of an ancestor directory.
+     */
+    @Nullable
+    public FileSystemLocationSnapshot getSnapshot(String absolutePath) {
+        Node node = root;
+        int offset = 0;
+        DirectorySnapshot ancestor = null;
+        int offsetInAncestor = 0;
+        while (true) {
+            Node child = findChild(node, absolutePath, offset);
+            if (child == null || !isPrefixOf(child.prefix, absolutePath, offset)) {
+                break;
+            }
+            int endOfChild = offset + child.prefix.length();
+            if (endOfChild == absolutePath.length()) {
+                if (child.snapshot != null) {
+                    return child.snapshot;
+                }
+                break;
+            }
+            node = child;
+            offset = endOfChild + 1;
+            if (child.snapshot instanceof DirectorySnapshot) {
+                ancestor = (DirectorySnapshot) child.snapshot;
+                offsetInAncestor = offset;
+            }
+        }
+        return ancestor == null ? null : findDescendant(ancestor, absolutePath, offsetInAncestor);
+    }
+
+    public synchronized void putMetadata(String absolutePath, FileMetadataSnapshot metadata) {
+        root = store(root, absolutePath, 0, metadata, null);
+    }
+
+    public synchronized void putSnapshot(FileSystemLocationSnapshot snapshot) {
+        root = store(root, snapshot.getAbsolutePath(), 0, null, snapshot);
+    }
+
+    /**
+     * Removes the state for the given location and everything below it, as well as the state of all ancestors of the location.
+     */
+    public synchronized void invalidate(String absolutePath) {
+        root = invalidate(root, absolutePath, 0);
+    }
+
+    public synchronized void clear() {
+        root = EMPTY_ROOT;
+    }
+
+    public boolean isEmpty() {
+        return root.children.length == 0;
+    }
+
+    /**
+     * Visits all locations which have state, parents before their children.
+     */
+    public void visit(Visitor visitor) {
+        for (Node child : root.children) {
+            visit(child, child.prefix, visitor);
+        }
+    }
+
+    private static void visit(Node node, String absolutePath, Visitor visitor) {
+        if (node.metadata != null || node.snapshot != null) {
+            visitor.visit(absolutePath, node.metadata, node.snapshot);
+        }
+        for (Node child : node.children) {
+            visit(child, absolutePath + SEPARATOR + child.prefix, visitor);
+        }
+    }
+
+    @Nullable
+    private static FileSystemLocationSnapshot findDescendant(DirectorySnapshot ancestor, String absolutePath, int offset) {
+        FileSystemLocationSnapshot current = ancestor;
+        int start = offset;
+        while (start <= absolutePath.length()) {
+            if (!(current instanceof DirectorySnapshot)) {
+                return null;
+            }
+            int end = absolutePath.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                end = absolutePath.length();
+            }
+            current = findChildSnapshot((DirectorySnapshot) current, absolutePath, start, end);
+            if (current == null) {
+                // The directory snapshot does not include default excludes, so the location may still exist
+                return null;
+            }
+            start = end + 1;
+        }
+        return current;
+    }
+
+    @Nullable
+    private static FileSystemLocationSnapshot findChildSnapshot(DirectorySnapshot directory, String absolutePath, int start, int end) {
+        int length = end - start;
+        for (FileSystemLocationSnapshot child : directory.getChildren()) {
+            String name = child.getName();
+            if (name.length() == length && absolutePath.regionMatches(start, name, 0, length)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private static Node store(Node node, String path, int offset, @Nullable FileMetadataSnapshot metadata, @Nullable FileSystemLocationSnapshot snapshot) {
+        int index = indexOfChild(node.children, path, offset);
+        if (index < 0) {
+            Node leaf = new Node(path.substring(offset), NO_CHILDREN, metadata, snapshot);
+            return node.withChildren(insert(node.children, -index - 1, leaf));
+        }
+        Node child = node.children[index];
+        int commonPrefix = sizeOfCommonPrefix(child.prefix, path, offset);
+        Node newChild;
+        if (commonPrefix == child.prefix.length()) {
+            if (offset + commonPrefix == path.length()) {
+                newChild = child.withValues(metadata == null ? child.metadata : metadata, snapshot == null ? child.snapshot : snapshot);
+            } else {
+                newChild = store(child, path, offset + commonPrefix + 1, metadata, snapshot);
+            }
+        } else {
+            // Split the child at the end of the common prefix
+            Node shortenedChild = child.withPrefix(child.prefix.substring(commonPrefix + 1));
+            String commonPath = child.prefix.substring(0, commonPrefix);
+            if (offset + commonPrefix == path.length()) {
+                newChild = new Node(commonPath, new Node[]{shortenedChild}, metadata, snapshot);
+            } else {
+                Node leaf = new Node(path.substring(offset + commonPrefix + 1), NO_CHILDREN, metadata, snapshot);
+                Node[] children = compareFirstSegment(leaf.prefix, 0, shortenedChild.prefix) < 0
+                    ? new Node[]{leaf, shortenedChild}
+                    : new Node[]{shortenedChild, leaf};
+                newChild = new Node(commonPath, children, null, null);
+            }
+        }
+        Node[] children = node.children.clone();
+        children[index] = newChild;
+        return node.withChildren(children);
+    }
+
+    private static Node invalidate(Node node, String path, int offset) {
+        int index = indexOfChild(node.children, path, offset);
+        if (index < 0) {
+            return node;
+        }
+        Node child = node.children[index];
+        int commonPrefix = sizeOfCommonPrefix(child.prefix, path, offset);
+        if (offset + commonPrefix == path.length()) {
+            // The child is the invalidated location or below it
+            return node.withChildren(remove(node.children, index));
+        }
+        if (commonPrefix < child.prefix.length()) {
+            // The invalidated location is not in the tree
+            return node;
+        }
+        Node newChild = invalidate(child, path, offset + commonPrefix + 1).withValues(null, null);
+        if (newChild.children.length == 0) {
+            return node.withChildren(remove(node.children, index));
+        }
+        if (newChild.children.length == 1) {
+            // Collapse nodes without state
+            Node grandChild = newChild.children[0];
+            newChild = grandChild.withPrefix(newChild.prefix + SEPARATOR + grandChild.prefix);
+        }
+        Node[] children = node.children.clone();
+        children[index] = newChild;
+        return node.withChildren(children);
+    }
+
+    @Nullable
+    private static Node findChild(Node node, String path, int offset) {
+        int index = indexOfChild(node.children, path, offset);
+        return index < 0 ? null : node.children[index];
+    }
+
+    /**
+     * Finds the child which shares the first segment with the path starting at the given offset, using the same encoding as {@link java.util.Arrays#binarySearch(Object[], Object)}.
+     */
+    private static int indexOfChild(Node[] children, String path, int offset) {
+        int low = 0;
+        int high = children.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = compareFirstSegment(path, offset, children[mid].prefix);
+            if (comparison > 0) {
+                low = mid + 1;
+            } else if (comparison < 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static int compareFirstSegment(String path, int offset, String prefix) {
+        int pathLength = path.length() - offset;
+        int maxPos = Math.min(pathLength, prefix.length());
+        for (int pos = 0; pos < maxPos; pos++) {
+            char pathChar = path.charAt(offset + pos);
+            char prefixChar = prefix.charAt(pos);
+            if (pathChar == SEPARATOR || prefixChar == SEPARATOR) {
+                if (pathChar == prefixChar) {
+                    return 0;
+                }
+                return pathChar == SEPARATOR ? -1 : 1;
+            }
+            if (pathChar != prefixChar) {
+                return pathChar < prefixChar ? -1 : 1;
+            }
+        }
+        boolean pathEndsSegment = pathLength == maxPos || path.charAt(offset + maxPos) == SEPARATOR;
+        boolean prefixEndsSegment = prefix.length() == maxPos || prefix.charAt(maxPos) == SEPARATOR;
+        if (pathEndsSegment == prefixEndsSegment) {
+            return 0;
+        }
+        return pathEndsSegment ? -1 : 1;
+    }
+
+    /**
+     * Whether the prefix consists of whole segments at the start of the path at the given offset.
+     */
+    private static boolean isPrefixOf(String prefix, String path, int offset) {
+        int prefixLength = prefix.length();
+        if (path.length() - offset < prefixLength || !path.regionMatches(offset, prefix, 0, prefixLength)) {
+            return false;
+        }
+        return path.length() - offset == prefixLength || path.charAt(offset + prefixLength) == SEPARATOR;
+    }
+
+    /**
+     * The length of the longest common prefix of whole segments. Requires the first segments to be equal.
+     */
+    private static int sizeOfCommonPrefix(String prefix, String path, int offset) {
+        int pathLength = path.length() - offset;
+        int maxPos = Math.min(prefix.length(), pathLength);
+        int lastSeparator = 0;
+        for (int pos = 0; pos < maxPos; pos++) {
+            char prefixChar = prefix.charAt(pos);
+            if (prefixChar != path.charAt(offset + pos)) {
+                return lastSeparator;
+            }
+            if (prefixChar == SEPARATOR) {
+                lastSeparator = pos;
+            }
+        }
+        if (prefix.length() == pathLength) {
+            return maxPos;
+        }
+        char next = prefix.length() > pathLength ? prefix.charAt(maxPos) : path.charAt(offset + maxPos);
+        return next == SEPARATOR ? maxPos : lastSeparator;
+    }
+
+    private static Node[] insert(Node[] children, int index, Node child) {
+        Node[] newChildren = new Node[children.length + 1];
+        System.arraycopy(children, 0, newChildren, 0, index);
+        newChildren[index] = child;
+        System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+        return newChildren;
+    }
+
+    private static Node[] remove(Node[] children, int index) {
+        if (children.length == 1) {
+            return NO_CHILDREN;
+        }
+        Node[] newChildren = new Node[children.length - 1];
+        System.arraycopy(children, 0, newChildren, 0, index);
+        System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+        return newChildren;
+    }
+
+    public interface Visitor {
+        void visit(String absolutePath, @Nullable FileMetadataSnapshot metadata, @Nullable FileSystemLocationSnapshot snapshot);
+    }
+
+    private static final class Node {
+        /**
+         * The path relative to the parent node, consisting of one or more segments.
+         */
+        private final String prefix;
+        private final Node[] children;
+        private final FileMetadataSnapshot metadata;
+        private final FileSystemLocationSnapshot snapshot;
+
+        Node(String prefix, Node[] children, @Nullable FileMetadataSnapshot metadata, @Nullable FileSystemLocationSnapshot snapshot) {
+            this.prefix = prefix;
+            this.children = children;
+            this.metadata = metadata;
+            this.snapshot = snapshot;
+        }
+
+        Node withChildren(Node[] children) {
+            return new Node(prefix, children, metadata, snapshot);
+        }
+
+        Node withPrefix(String prefix) {
+            return new Node(prefix, children, metadata, snapshot);
+        }
+
+        Node withValues(@Nullable FileMetadataSnapshot metadata, @Nullable FileSystemLocationSnapshot snapshot) {
+            return new Node(prefix, children, metadata, snapshot);
+        }
+    }
+}
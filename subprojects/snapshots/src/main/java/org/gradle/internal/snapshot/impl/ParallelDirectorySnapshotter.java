@@ -0,0 +1,230 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.GradleException;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.nativeintegration.filesystem.DefaultFileMetadata;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Snapshots a directory tree by walking sibling directories and hashing regular files in parallel on a {@link ForkJoinPool}.
+ *
+ * Follows the same rules as the sequential walk in {@link DirectorySnapshotter}: symbolic links are followed, loops are skipped,
+ * and children are sorted by name, so the resulting snapshot and its hash are the same.
+ */
+class ParallelDirectorySnapshotter {
+    private final FileHasher hasher;
+    private final StringInterner stringInterner;
+    private final ForkJoinPool pool;
+
+    ParallelDirectorySnapshotter(FileHasher hasher, StringInterner stringInterner, ForkJoinPool pool) {
+        this.hasher = hasher;
+        this.stringInterner = stringInterner;
+        this.pool = pool;
+    }
+
+    /**
+     * Snapshots the given directory, or returns {@code null} if the root is not a readable directory and needs to be handled by the sequential walk.
+     */
+    @Nullable
+    public FileSystemLocationSnapshot snapshot(Path rootPath, DirectorySnapshotter.PathFilter filter) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(rootPath, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        if (!attributes.isDirectory() || !Files.isReadable(rootPath)) {
+            return null;
+        }
+        String name = stringInterner.intern(rootPath.getFileName().toString());
+        ImmutableList<Ancestor> ancestors = ImmutableList.of(new Ancestor(rootPath, attributes.fileKey()));
+        return pool.invoke(new DirectoryTask(rootPath, name, ImmutableList.<String>of(), ancestors, filter));
+    }
+
+    private String internedAbsolutePath(Path path) {
+        return stringInterner.intern(path.toString());
+    }
+
+    private class DirectoryTask extends RecursiveTask<FileSystemLocationSnapshot> {
+        private final Path directory;
+        private final String name;
+        private final ImmutableList<String> relativePath;
+        private final ImmutableList<Ancestor> ancestors;
+        private final DirectorySnapshotter.PathFilter filter;
+
+        DirectoryTask(Path directory, String name, ImmutableList<String> relativePath, ImmutableList<Ancestor> ancestors, DirectorySnapshotter.PathFilter filter) {
+            this.directory = directory;
+            this.name = name;
+            this.relativePath = relativePath;
+            this.ancestors = ancestors;
+            this.filter = filter;
+        }
+
+        @Override
+        @Nullable
+        protected FileSystemLocationSnapshot compute() {
+            DirectoryStream<Path> stream;
+            try {
+                stream = Files.newDirectoryStream(directory);
+            } catch (IOException e) {
+                Iterable<String> parentPath = relativePath.isEmpty() ? relativePath : relativePath.subList(0, relativePath.size() - 1);
+                if (filter.isAllowed(directory, name, false, null, parentPath)) {
+                    throw new GradleException(String.format("Could not read path '%s'.", directory), e);
+                }
+                return null;
+            }
+
+            List<ForkJoinTask<FileSystemLocationSnapshot>> children = new ArrayList<ForkJoinTask<FileSystemLocationSnapshot>>();
+            try {
+                for (Path child : stream) {
+                    ForkJoinTask<FileSystemLocationSnapshot> task = createTask(child);
+                    if (task != null) {
+                        children.add(task.fork());
+                    }
+                }
+            } catch (DirectoryIteratorException e) {
+                throw new GradleException(String.format("Could not read directory path '%s'.", directory), e.getCause());
+            } finally {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    // Ignore, the contents have already been listed
+                }
+            }
+
+            MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+            builder.preVisitDirectory(internedAbsolutePath(directory), name);
+            for (ForkJoinTask<FileSystemLocationSnapshot> child : children) {
+                FileSystemLocationSnapshot snapshot = child.join();
+                if (snapshot != null) {
+                    builder.visit(snapshot);
+                }
+            }
+            builder.postVisitDirectory();
+            return builder.getResult();
+        }
+
+        @Nullable
+        private ForkJoinTask<FileSystemLocationSnapshot> createTask(Path path) {
+            String childName = stringInterner.intern(path.getFileName().toString());
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                try {
+                    // A symbolic link which cannot be followed
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException notReadable) {
+                    if (filter.isAllowed(path, childName, false, null, relativePath)) {
+                        throw new GradleException(String.format("Could not read path '%s'.", path), e);
+                    }
+                    return null;
+                }
+            }
+
+            if (attributes.isDirectory()) {
+                if (isLoop(path, attributes) || !filter.isAllowed(path, childName, true, attributes, relativePath)) {
+                    return null;
+                }
+                ImmutableList<String> childRelativePath = ImmutableList.<String>builder().addAll(relativePath).add(childName).build();
+                ImmutableList<Ancestor> childAncestors = ImmutableList.<Ancestor>builder().addAll(ancestors).add(new Ancestor(path, attributes.fileKey())).build();
+                return new DirectoryTask(path, childName, childRelativePath, childAncestors, filter);
+            }
+            if (!filter.isAllowed(path, childName, false, attributes, relativePath)) {
+                return null;
+            }
+            if (attributes.isSymbolicLink()) {
+                throw new GradleException(String.format("Could not list contents of '%s'. Couldn't follow symbolic link.", path));
+            }
+            return new RegularFileTask(path, childName, attributes);
+        }
+
+        /**
+         * Same check as {@link Files#walkFileTree(Path, java.util.Set, int, java.nio.file.FileVisitor)} uses to detect loops when following links.
+         */
+        private boolean isLoop(Path path, BasicFileAttributes attributes) {
+            Object fileKey = attributes.fileKey();
+            for (Ancestor ancestor : ancestors) {
+                if (fileKey != null && ancestor.fileKey != null) {
+                    if (fileKey.equals(ancestor.fileKey)) {
+                        return true;
+                    }
+                } else {
+                    try {
+                        if (Files.isSameFile(path, ancestor.path)) {
+                            return true;
+                        }
+                    } catch (IOException e) {
+                        // Not the same file
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private class RegularFileTask extends RecursiveTask<FileSystemLocationSnapshot> {
+        private final Path file;
+        private final String name;
+        private final BasicFileAttributes attributes;
+
+        RegularFileTask(Path file, String name, BasicFileAttributes attributes) {
+            this.file = file;
+            this.name = name;
+            this.attributes = attributes;
+        }
+
+        @Override
+        protected FileSystemLocationSnapshot compute() {
+            DefaultFileMetadata metadata = new DefaultFileMetadata(FileType.RegularFile, attributes.lastModifiedTime().toMillis(), attributes.size());
+            HashCode hash = hasher.hash(file.toFile(), metadata);
+            return new RegularFileSnapshot(internedAbsolutePath(file), name, hash, metadata.getLastModified());
+        }
+    }
+
+    private static class Ancestor {
+        private final Path path;
+        private final Object fileKey;
+
+        Ancestor(Path path, @Nullable Object fileKey) {
+            this.path = path;
+            this.fileKey = fileKey;
+        }
+    }
+}
@@ -35,7 +35,7 @@ import spock.lang.Specification
 
 class AbsolutePathFileCollectionFingerprinterTest extends Specification {
     def stringInterner = new StringInterner()
-    def fileSystemMirror = new DefaultFileSystemMirror(Stub(WellKnownFileLocations))
+    def fileSystemMirror = new DefaultFileSystemMirror(Stub(WellKnownFileLocations), TestFiles.fileSystem())
     def fingerprinter = new AbsolutePathFileCollectionFingerprinter(new DefaultFileSystemSnapshotter(new TestFileHasher(), stringInterner, TestFiles.fileSystem(), fileSystemMirror))
     def listener = Mock(ChangeListener)
 
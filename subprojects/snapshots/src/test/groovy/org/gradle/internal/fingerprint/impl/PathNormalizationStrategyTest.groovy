@@ -67,7 +67,7 @@ class PathNormalizationStrategyTest extends Specification {
         emptyDir.mkdirs()
         missingFile = file("missing-file")
 
-        def snapshotter = new DefaultFileSystemSnapshotter(new TestFileHasher(), interner, TestFiles.fileSystem(), new DefaultFileSystemMirror(new DefaultWellKnownFileLocations([])))
+        def snapshotter = new DefaultFileSystemSnapshotter(new TestFileHasher(), interner, TestFiles.fileSystem(), new DefaultFileSystemMirror(new DefaultWellKnownFileLocations([]), TestFiles.fileSystem()))
 
         roots = [
             snapshotter.snapshot(jarFile1),
@@ -19,9 +19,12 @@ package org.gradle.internal.snapshot.impl
 import org.gradle.BuildResult
 import org.gradle.api.internal.GradleInternal
 import org.gradle.api.internal.changedetection.state.DefaultWellKnownFileLocations
+import org.gradle.api.internal.file.FileSystemSubset
+import org.gradle.api.internal.file.TestFiles
 import org.gradle.internal.classpath.CachedJarFileStore
 import org.gradle.internal.file.FileMetadataSnapshot
 import org.gradle.internal.hash.HashCode
+import org.gradle.internal.snapshot.DirectorySnapshot
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot
 import org.gradle.internal.snapshot.RegularFileSnapshot
 import org.gradle.test.fixtures.file.TestFile
@@ -40,7 +43,7 @@ class DefaultFileSystemMirrorTest extends Specification {
         cacheDir = tmpDir.createDir("cache")
         def fileStore = Stub(CachedJarFileStore)
         fileStore.fileStoreRoots >> [cacheDir]
-        mirror = new DefaultFileSystemMirror(new DefaultWellKnownFileLocations([fileStore]))
+        mirror = new DefaultFileSystemMirror(new DefaultWellKnownFileLocations([fileStore]), TestFiles.fileSystem())
     }
 
     def "keeps state about a file until task outputs are generated"() {
@@ -132,4 +135,279 @@ class DefaultFileSystemMirrorTest extends Specification {
         mirror.getMetadata(file.path) == null
         mirror.getSnapshot(file.path) == null
     }
+
+    def "retains state about unchanged files across builds"() {
+        def file = tmpDir.createFile("a")
+        def fileSnapshot = regularFileSnapshot(file)
+        def metadata = TestFiles.fileSystem().stat(file)
+
+        given:
+        mirror.putMetadata(file.path, metadata)
+        mirror.putSnapshot(fileSnapshot)
+
+        when:
+        mirror.beforeBuildFinishedRetainingState()
+        mirror.afterBuildStarted()
+
+        then:
+        mirror.getMetadata(file.path) == metadata
+        mirror.getSnapshot(file.path) == fileSnapshot
+    }
+
+    def "discards retained state about a file and its ancestors when the file changes between builds"() {
+        def dir = tmpDir.createDir("dir")
+        def file = dir.createFile("a")
+        def fileSnapshot = regularFileSnapshot(file)
+        def dirSnapshot = new DirectorySnapshot(dir.path, dir.name, [fileSnapshot], HashCode.fromInt(12))
+
+        given:
+        mirror.putSnapshot(dirSnapshot)
+        mirror.putSnapshot(fileSnapshot)
+        mirror.putMetadata(file.path, TestFiles.fileSystem().stat(file))
+        mirror.beforeBuildFinishedRetainingState()
+
+        when:
+        file.text = "changed"
+        file.lastModified = fileSnapshot.lastModified + 2000
+        mirror.afterBuildStarted()
+
+        then:
+        mirror.getMetadata(file.path) == null
+        mirror.getSnapshot(file.path) == null
+        mirror.getSnapshot(dir.path) == null
+    }
+
+    def "discards retained state about a directory when children are added between builds"() {
+        def dir = tmpDir.createDir("dir")
+        def file = dir.createFile("a")
+        def fileSnapshot = regularFileSnapshot(file)
+        def dirSnapshot = new DirectorySnapshot(dir.path, dir.name, [fileSnapshot], HashCode.fromInt(12))
+
+        given:
+        mirror.putSnapshot(dirSnapshot)
+        mirror.beforeBuildFinishedRetainingState()
+
+        when:
+        dir.createFile("b")
+        dir.lastModified = dir.lastModified() + 2000
+        mirror.afterBuildStarted()
+
+        then:
+        mirror.getSnapshot(dir.path) == null
+    }
+
+    def "discards retained state about a file changed in place without changing its directory"() {
+        def dir = tmpDir.createDir("dir")
+        def file = dir.createFile("a")
+        dir.lastModified = System.currentTimeMillis() - 10000
+        def fileSnapshot = regularFileSnapshot(file)
+        def dirSnapshot = new DirectorySnapshot(dir.path, dir.name, [fileSnapshot], HashCode.fromInt(12))
+        def dirStamp = dir.lastModified()
+
+        given:
+        mirror.putSnapshot(dirSnapshot)
+        mirror.putSnapshot(fileSnapshot)
+        mirror.beforeBuildFinishedRetainingState()
+
+        when:
+        file.text = "changed in place"
+        file.lastModified = fileSnapshot.lastModified + 2000
+        mirror.afterBuildStarted()
+
+        then:
+        dir.lastModified() == dirStamp
+        mirror.getSnapshot(file.path) == null
+        mirror.getSnapshot(dir.path) == null
+    }
+
+    def "keeps retained state about the unchanged files and directories of a changed directory"() {
+        def dir = tmpDir.createDir("dir")
+        def unchanged = dir.createFile("a")
+        def changed = dir.createFile("b")
+        def subDir = dir.createDir("sub")
+        def unchangedInSubDir = subDir.createFile("c")
+        [subDir, dir].each { it.lastModified = System.currentTimeMillis() - 10000 }
+        def unchangedSnapshot = regularFileSnapshot(unchanged)
+        def changedSnapshot = regularFileSnapshot(changed)
+        def subDirSnapshot = new DirectorySnapshot(subDir.path, subDir.name, [regularFileSnapshot(unchangedInSubDir)], HashCode.fromInt(13))
+        def dirSnapshot = new DirectorySnapshot(dir.path, dir.name, [unchangedSnapshot, changedSnapshot, subDirSnapshot], HashCode.fromInt(12))
+
+        given:
+        mirror.putSnapshot(dirSnapshot)
+        mirror.beforeBuildFinishedRetainingState()
+
+        when:
+        dir.createFile("d")
+        changed.text = "changed"
+        changed.lastModified = changedSnapshot.lastModified + 2000
+        mirror.afterBuildStarted()
+
+        then:
+        mirror.getSnapshot(dir.path) == null
+        mirror.getSnapshot(changed.path) == null
+        mirror.getSnapshot(unchanged.path) == unchangedSnapshot
+        mirror.getSnapshot(subDir.path) == subDirSnapshot
+    }
+
+    def "discards state about ancestors and descendants of changed outputs"() {
+        def dir = tmpDir.createDir("dir")
+        def file = dir.createFile("sub/a")
+        def unrelated = tmpDir.createFile("b")
+        def fileSnapshot = regularFileSnapshot(file)
+        def unrelatedSnapshot = regularFileSnapshot(unrelated)
+
+        given:
+        mirror.putSnapshot(new DirectorySnapshot(dir.path, dir.name, [], HashCode.fromInt(12)))
+        mirror.putSnapshot(fileSnapshot)
+        mirror.putSnapshot(unrelatedSnapshot)
+
+        when:
+        mirror.beforeOutputChange([dir.file("sub").path])
+
+        then:
+        mirror.getSnapshot(dir.path) == null
+        mirror.getSnapshot(file.path) == null
+        mirror.getSnapshot(unrelated.path) == unrelatedSnapshot
+    }
+
+    def "discards retained state about files reported as changed by the file watcher"() {
+        def dir = tmpDir.createDir("dir")
+        def file = dir.createFile("a")
+        def fileSnapshot = regularFileSnapshot(file)
+        def dirSnapshot = new DirectorySnapshot(dir.path, dir.name, [fileSnapshot], HashCode.fromInt(12))
+
+        given:
+        mirror.putSnapshot(dirSnapshot)
+        mirror.putSnapshot(fileSnapshot)
+        mirror.beforeBuildFinishedRetainingState()
+
+        when:
+        mirror.changesReportedByWatcher(FileSystemSubset.builder().add(dir).build(), FileSystemSubset.builder().build(), [file.path])
+        mirror.afterBuildStarted()
+
+        then:
+        mirror.getSnapshot(file.path) == null
+        mirror.getSnapshot(dir.path) == null
+    }
+
+    def "does not check files in watched locations at the start of the next build"() {
+        def watchedDir = tmpDir.createDir("watched")
+        def watched = watchedDir.createFile("a")
+        def unwatched = tmpDir.createFile("b")
+        def watchedSnapshot = regularFileSnapshot(watched)
+        def unwatchedSnapshot = regularFileSnapshot(unwatched)
+
+        given:
+        mirror.putSnapshot(watchedSnapshot)
+        mirror.putSnapshot(unwatchedSnapshot)
+        mirror.beforeBuildFinishedRetainingState()
+
+        when:
+        [watched, unwatched].each {
+            it.text = "changed"
+            it.lastModified = it.lastModified() + 2000
+        }
+        mirror.changesReportedByWatcher(FileSystemSubset.builder().add(watchedDir).build(), FileSystemSubset.builder().build(), [])
+        mirror.afterBuildStarted()
+
+        then:
+        mirror.getSnapshot(watched.path) == watchedSnapshot
+        mirror.getSnapshot(unwatched.path) == null
+    }
+
+    def "checks files in watched locations the watcher was polling or had not registered yet"() {
+        def watchedDir = tmpDir.createDir("watched")
+        def polledDir = watchedDir.createDir("polled")
+        def watched = watchedDir.createFile("a")
+        def polled = polledDir.createFile("b")
+        def watchedSnapshot = regularFileSnapshot(watched)
+        def polledSnapshot = regularFileSnapshot(polled)
+
+        given:
+        mirror.putSnapshot(watchedSnapshot)
+        mirror.putSnapshot(polledSnapshot)
+        mirror.beforeBuildFinishedRetainingState()
+
+        when:
+        [watched, polled].each {
+            it.text = "changed"
+            it.lastModified = it.lastModified() + 2000
+        }
+        mirror.changesReportedByWatcher(FileSystemSubset.builder().add(watchedDir).build(), FileSystemSubset.builder().add(polledDir).build(), [])
+        mirror.afterBuildStarted()
+
+        then:
+        mirror.getSnapshot(watched.path) == watchedSnapshot
+        mirror.getSnapshot(polled.path) == null
+    }
+
+    def "checks files which changed after the previous watcher stopped and before the watch of the build was registered"() {
+        def watchedDir = tmpDir.createDir("watched")
+        def file = watchedDir.createFile("a")
+        watchedDir.lastModified = System.currentTimeMillis() - 10000
+        def fileSnapshot = regularFileSnapshot(file)
+        def watchedLocations = FileSystemSubset.builder().add(watchedDir).build()
+
+        given:
+        mirror.afterBuildStarted()
+        mirror.putSnapshot(fileSnapshot)
+
+        when:
+        file.text = "changed"
+        file.lastModified = fileSnapshot.lastModified + 2000
+        mirror.startedWatching(watchedLocations)
+        mirror.beforeBuildFinishedRetainingState()
+        mirror.changesReportedByWatcher(watchedLocations, FileSystemSubset.builder().build(), [])
+        mirror.afterBuildStarted()
+
+        then:
+        mirror.getSnapshot(file.path) == null
+    }
+
+    def "does not check files which were watched continuously since they were snapshotted"() {
+        def watchedDir = tmpDir.createDir("watched")
+        def file = watchedDir.createFile("a")
+        watchedDir.lastModified = System.currentTimeMillis() - 10000
+        def fileSnapshot = regularFileSnapshot(file)
+        def watchedLocations = FileSystemSubset.builder().add(watchedDir).build()
+
+        given:
+        mirror.changesReportedByWatcher(watchedLocations, FileSystemSubset.builder().build(), [])
+        mirror.afterBuildStarted()
+        mirror.putSnapshot(fileSnapshot)
+        // The watcher of the previous build is still running when the watch of this build is registered
+        mirror.startedWatching(watchedLocations)
+        mirror.beforeBuildFinishedRetainingState()
+
+        when:
+        file.text = "changed"
+        file.lastModified = fileSnapshot.lastModified + 2000
+        mirror.changesReportedByWatcher(watchedLocations, FileSystemSubset.builder().build(), [])
+        mirror.afterBuildStarted()
+
+        then:
+        mirror.getSnapshot(file.path) == fileSnapshot
+    }
+
+    def "discards retained state about files reported as changed once the next build was triggered"() {
+        def file = tmpDir.createFile("a")
+        def fileSnapshot = regularFileSnapshot(file)
+        def watchedLocations = FileSystemSubset.builder().add(tmpDir.testDirectory).build()
+
+        given:
+        mirror.putSnapshot(fileSnapshot)
+        mirror.beforeBuildFinishedRetainingState()
+        mirror.changesReportedByWatcher(watchedLocations, FileSystemSubset.builder().build(), [])
+        mirror.afterBuildStarted()
+
+        when:
+        mirror.changeReportedByWatcher(file.path)
+
+        then:
+        mirror.getSnapshot(file.path) == null
+    }
+
+    private static RegularFileSnapshot regularFileSnapshot(TestFile file) {
+        new RegularFileSnapshot(file.path, file.name, HashCode.fromInt(25), file.lastModified())
+    }
 }
@@ -30,6 +30,8 @@ import org.gradle.util.UsesNativeServices
 import org.junit.Rule
 import spock.lang.Specification
 
+import java.util.concurrent.ForkJoinPool
+
 @UsesNativeServices
 class DirectorySnapshotterTest extends Specification {
     @Rule
@@ -132,6 +134,43 @@ class DirectorySnapshotterTest extends Specification {
         ] as Set
     }
 
+    def "parallel snapshot is the same as the sequential snapshot"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        rootDir.file("a.txt").text = "a"
+        rootDir.file("a/b/c.txt").text = "c"
+        rootDir.file("a/b/c.html").text = "html"
+        rootDir.file("a/c/c.txt").text = "other c"
+        rootDir.file("subdir1/a/b/c.html").text = "excluded"
+        rootDir.file(".git/config").text = "default exclude"
+        rootDir.createDir("empty/dir")
+
+        def patterns = new PatternSet()
+        patterns.include("**/*.txt")
+        patterns.exclude("subdir1/**")
+
+        def pool = new ForkJoinPool(4)
+        def parallelSnapshotter = new DirectorySnapshotter(fileHasher, TestFiles.fileSystem(), new StringInterner(), pool, DirectoryScanner.getDefaultExcludes())
+        def sequentialSnapshotter = new DirectorySnapshotter(fileHasher, TestFiles.fileSystem(), new StringInterner(), DirectoryScanner.getDefaultExcludes())
+
+        when:
+        def parallelFiltered = new MutableBoolean(false)
+        def sequentialFiltered = new MutableBoolean(false)
+        def parallelSnapshot = parallelSnapshotter.snapshot(rootDir.absolutePath, filter ? patterns : null, parallelFiltered)
+        def sequentialSnapshot = sequentialSnapshotter.snapshot(rootDir.absolutePath, filter ? patterns : null, sequentialFiltered)
+
+        then:
+        parallelSnapshot.hash == sequentialSnapshot.hash
+        visitedPaths(parallelSnapshot) == visitedPaths(sequentialSnapshot)
+        parallelFiltered.get() == sequentialFiltered.get()
+
+        cleanup:
+        pool.shutdown()
+
+        where:
+        filter << [true, false]
+    }
+
     def "default excludes are correctly parsed"() {
         def defaultExcludes = new DirectorySnapshotter.DefaultExcludes(DirectoryScanner.getDefaultExcludes())
 
@@ -152,6 +191,17 @@ class DirectorySnapshotterTest extends Specification {
         !defaultExcludes.excludeFile('.svnsomething')
         !defaultExcludes.excludeFile('#some')
     }
+
+    private static List<String> visitedPaths(FileSystemLocationSnapshot snapshot) {
+        def visited = []
+        snapshot.accept(new RelativePathTrackingVisitor() {
+            @Override
+            void visit(String absolutePath, Deque<String> relativePath) {
+                visited << absolutePath
+            }
+        })
+        return visited
+    }
 }
 
 abstract class RelativePathTrackingVisitor implements FileSystemSnapshotVisitor {
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl
+
+import org.gradle.internal.file.FileMetadataSnapshot
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.snapshot.DirectorySnapshot
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import spock.lang.Specification
+
+class FileSystemHierarchyTest extends Specification {
+    def hierarchy = new FileSystemHierarchy()
+
+    def "stores and finds snapshots for paths sharing a prefix"() {
+        def paths = ["/home/user/project/a", "/home/user/project/b", "/home/user/other", "/home/user", "/opt/c"]
+        def snapshots = paths.collect { regularFile(it) }
+
+        when:
+        snapshots.each { hierarchy.putSnapshot(it) }
+
+        then:
+        paths.eachWithIndex { path, index ->
+            assert hierarchy.getSnapshot(p(path)).is(snapshots[index])
+        }
+        hierarchy.getSnapshot(p("/home")) == null
+        hierarchy.getSnapshot(p("/home/user/project")) == null
+        hierarchy.getSnapshot(p("/home/user/proj")) == null
+        hierarchy.getSnapshot(p("/home/user/project/a/b")) == null
+    }
+
+    def "keeps metadata and snapshots for the same path"() {
+        def snapshot = regularFile("/a/b")
+        def metadata = Stub(FileMetadataSnapshot)
+
+        when:
+        hierarchy.putMetadata(p("/a/b"), metadata)
+        hierarchy.putSnapshot(snapshot)
+
+        then:
+        hierarchy.getMetadata(p("/a/b")).is(metadata)
+        hierarchy.getSnapshot(p("/a/b")).is(snapshot)
+        hierarchy.getMetadata(p("/a")) == null
+    }
+
+    def "finds descendants of a directory snapshot"() {
+        def file = regularFile("/root/dir/sub/file")
+        def sub = directory("/root/dir/sub", [file])
+        def dir = directory("/root/dir", [sub])
+
+        when:
+        hierarchy.putSnapshot(dir)
+
+        then:
+        hierarchy.getSnapshot(p("/root/dir")).is(dir)
+        hierarchy.getSnapshot(p("/root/dir/sub")).is(sub)
+        hierarchy.getSnapshot(p("/root/dir/sub/file")).is(file)
+        hierarchy.getSnapshot(p("/root/dir/sub/missing")) == null
+        hierarchy.getSnapshot(p("/root/dir/sub/file/below")) == null
+        hierarchy.getMetadata(p("/root/dir/sub/file")) == null
+    }
+
+    def "invalidates a location together with its descendants and ancestors"() {
+        def paths = ["/a", "/a/b", "/a/b/c", "/a/b/c/d", "/a/bc", "/a/e"]
+        paths.each { hierarchy.putSnapshot(regularFile(it)) }
+
+        when:
+        hierarchy.invalidate(p("/a/b"))
+
+        then:
+        hierarchy.getSnapshot(p("/a")) == null
+        hierarchy.getSnapshot(p("/a/b")) == null
+        hierarchy.getSnapshot(p("/a/b/c")) == null
+        hierarchy.getSnapshot(p("/a/b/c/d")) == null
+        hierarchy.getSnapshot(p("/a/bc")) != null
+        hierarchy.getSnapshot(p("/a/e")) != null
+    }
+
+    def "invalidates locations inside a collapsed path"() {
+        hierarchy.putSnapshot(regularFile("/a/b/c/d"))
+        hierarchy.putSnapshot(regularFile("/x"))
+
+        when:
+        hierarchy.invalidate(p("/a/b"))
+
+        then:
+        hierarchy.getSnapshot(p("/a/b/c/d")) == null
+        hierarchy.getSnapshot(p("/x")) != null
+    }
+
+    def "invalidating a location which is not known keeps unrelated state"() {
+        hierarchy.putSnapshot(regularFile("/a/b/c"))
+        hierarchy.putSnapshot(regularFile("/a/d"))
+
+        when:
+        hierarchy.invalidate(p("/a/b/other"))
+
+        then:
+        hierarchy.getSnapshot(p("/a/b/c")) != null
+        hierarchy.getSnapshot(p("/a/d")) != null
+    }
+
+    def "visits all locations with state"() {
+        def paths = ["/a/b", "/a/b/c", "/a/d", "/e"]
+        paths.each { hierarchy.putSnapshot(regularFile(it)) }
+        hierarchy.putMetadata(p("/f/g"), Stub(FileMetadataSnapshot))
+        def visited = []
+
+        when:
+        hierarchy.visit { String absolutePath, FileMetadataSnapshot metadata, FileSystemLocationSnapshot snapshot -> visited << absolutePath }
+
+        then:
+        visited as Set == (paths + "/f/g").collect { p(it) } as Set
+    }
+
+    def "can be cleared"() {
+        hierarchy.putSnapshot(regularFile("/a/b"))
+
+        when:
+        hierarchy.clear()
+
+        then:
+        hierarchy.empty
+        hierarchy.getSnapshot(p("/a/b")) == null
+    }
+
+    private static RegularFileSnapshot regularFile(String path) {
+        def absolutePath = p(path)
+        new RegularFileSnapshot(absolutePath, new File(absolutePath).name, HashCode.fromInt(1), 0)
+    }
+
+    private static DirectorySnapshot directory(String path, List<FileSystemLocationSnapshot> children) {
+        def absolutePath = p(path)
+        new DirectorySnapshot(absolutePath, new File(absolutePath).name, children, HashCode.fromInt(2))
+    }
+
+    private static String p(String path) {
+        path.replace('/', File.separator)
+    }
+}
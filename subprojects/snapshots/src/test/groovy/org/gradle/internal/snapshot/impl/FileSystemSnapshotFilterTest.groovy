@@ -47,7 +47,7 @@ class FileSystemSnapshotFilterTest extends Specification {
             intern(_) >> { String string -> string }
         }
 
-        snapshotter = new DefaultFileSystemSnapshotter(new TestFileHasher(), interner, fileSystem, new DefaultFileSystemMirror(new DefaultWellKnownFileLocations([])))
+        snapshotter = new DefaultFileSystemSnapshotter(new TestFileHasher(), interner, fileSystem, new DefaultFileSystemMirror(new DefaultWellKnownFileLocations([]), TestFiles.fileSystem()))
     }
 
     def "filters correctly"() {
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor;
+import org.gradle.api.internal.tasks.testing.DefaultTestDescriptor;
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.api.tasks.testing.TestResult;
+import org.gradle.internal.id.CompositeIdGenerator;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.SerializerRegistry;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the events of a parameterized test suite from a test worker to the build process, the way {@link TestWorker} and
+ * {@link ForkingTestClassProcessor} do, and reports the time taken per test.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class TestEventSerializerBenchmark {
+    private static final int CLASSES = 20;
+    private static final int TESTS_PER_CLASS = 500;
+    private static final long WORKER_ID = 3;
+
+    @Benchmark
+    @OperationsPerInvocation(CLASSES * TESTS_PER_CLASS)
+    public void writeAndReadTestEvents(Blackhole blackhole) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(bytes);
+        EventSerializers worker = new EventSerializers(TestEventSerializer.create());
+        long time = 0;
+        for (int i = 0; i < CLASSES; i++) {
+            String className = "org.gradle.sample.parameterized.SomeParameterizedTest" + i;
+            CompositeIdGenerator.CompositeId classId = new CompositeIdGenerator.CompositeId(WORKER_ID, (long) i * (TESTS_PER_CLASS + 1));
+            worker.descriptors.write(encoder, new DefaultTestClassDescriptor(classId, className));
+            worker.startEvents.write(encoder, new TestStartEvent(time++));
+            for (int j = 1; j <= TESTS_PER_CLASS; j++) {
+                CompositeIdGenerator.CompositeId testId = new CompositeIdGenerator.CompositeId(WORKER_ID, (long) i * (TESTS_PER_CLASS + 1) + j);
+                String testName = "handlesParameter[" + j % 50 + "]";
+                worker.descriptors.write(encoder, new DefaultTestDescriptor(testId, className, testName));
+                worker.startEvents.write(encoder, new TestStartEvent(time++, classId));
+                worker.ids.write(encoder, testId);
+                worker.outputEvents.write(encoder, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "Output of the test\n"));
+                worker.ids.write(encoder, testId);
+                worker.completeEvents.write(encoder, new TestCompleteEvent(time++, TestResult.ResultType.SUCCESS));
+            }
+            worker.ids.write(encoder, classId);
+            worker.completeEvents.write(encoder, new TestCompleteEvent(time++));
+        }
+        encoder.flush();
+
+        KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(bytes.toByteArray()));
+        EventSerializers build = new EventSerializers(TestEventSerializer.create());
+        for (int i = 0; i < CLASSES; i++) {
+            blackhole.consume(build.descriptors.read(decoder));
+            blackhole.consume(build.startEvents.read(decoder));
+            for (int j = 1; j <= TESTS_PER_CLASS; j++) {
+                blackhole.consume(build.descriptors.read(decoder));
+                blackhole.consume(build.startEvents.read(decoder));
+                blackhole.consume(build.ids.read(decoder));
+                blackhole.consume(build.outputEvents.read(decoder));
+                blackhole.consume(build.ids.read(decoder));
+                blackhole.consume(build.completeEvents.read(decoder));
+            }
+            blackhole.consume(build.ids.read(decoder));
+            blackhole.consume(build.completeEvents.read(decoder));
+        }
+    }
+
+    /**
+     * The serializers used for the parameters of the methods of {@link org.gradle.api.internal.tasks.testing.TestResultProcessor}.
+     */
+    private static class EventSerializers {
+        final Serializer<TestDescriptorInternal> descriptors;
+        final Serializer<TestStartEvent> startEvents;
+        final Serializer<TestCompleteEvent> completeEvents;
+        final Serializer<TestOutputEvent> outputEvents;
+        final Serializer<Object> ids;
+
+        EventSerializers(SerializerRegistry registry) {
+            descriptors = registry.build(TestDescriptorInternal.class);
+            startEvents = registry.build(TestStartEvent.class);
+            completeEvents = registry.build(TestCompleteEvent.class);
+            outputEvents = registry.build(TestOutputEvent.class);
+            ids = registry.build(Object.class);
+        }
+    }
+}
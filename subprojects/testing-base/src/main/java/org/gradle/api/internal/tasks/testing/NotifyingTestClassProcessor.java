@@ -0,0 +1,27 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing;
+
+/**
+ * A {@link TestClassProcessor} that tells when it is ready to accept another test class, so that test classes can be handed out to processors as they become idle.
+ */
+public interface NotifyingTestClassProcessor extends TestClassProcessor {
+    /**
+     * Sets the listener to notify. Must be called before the first test class is given to this processor.
+     */
+    void setProcessingListener(TestClassProcessingListener listener);
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing;
+
+/**
+ * Notified by a {@link NotifyingTestClassProcessor} as it works through the test classes given to it.
+ */
+public interface TestClassProcessingListener {
+    /**
+     * Called when the processor has finished with a test class, and is ready to accept another one.
+     */
+    void testClassProcessed();
+
+    /**
+     * Called when the processor cannot process any further test classes, for example because its worker process has crashed.
+     */
+    void processingFailed();
+}
@@ -16,6 +16,8 @@
 
 package org.gradle.api.internal.tasks.testing.processors;
 
+import org.gradle.api.internal.tasks.testing.NotifyingTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassProcessingListener;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
@@ -27,28 +29,56 @@ import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.internal.dispatch.DispatchException;
 
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Manages a set of parallel TestClassProcessors. Uses a simple round-robin algorithm to assign test classes to
- * processors.
+ * Manages a set of parallel TestClassProcessors.
+ *
+ * <p>When the processors are {@link NotifyingTestClassProcessor}s, test classes are queued and handed to the processor with the fewest test classes in flight,
+ * so that a processor that is given some slow test classes does not hold up test classes that other processors could run. Each processor is given up to
+ * {@value #MAX_TEST_CLASSES_IN_FLIGHT} test classes, so that it always has a test class to start once it has finished one, without waiting for the next
+ * test class to be sent to it.
+ * Otherwise, or when the processors are not asked to notify, uses a simple round-robin algorithm to assign test classes to processors.</p>
+ *
+ * <p>Processors should only be asked to notify when they run each test class as it is given to them. A processor that collects the test classes and
+ * runs them when it is stopped finishes with each test class straight away, so would be handed test classes no differently than by the round-robin algorithm.</p>
  */
 public class MaxNParallelTestClassProcessor implements TestClassProcessor {
+    private static final int MAX_TEST_CLASSES_IN_FLIGHT = 2;
+
     private final int maxProcessors;
     private final Factory<TestClassProcessor> factory;
     private final ActorFactory actorFactory;
+    private final boolean handOutToIdleProcessors;
     private TestResultProcessor resultProcessor;
     private int pos;
     private List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
     private List<TestClassProcessor> rawProcessors = new ArrayList<TestClassProcessor>();
     private List<Actor> actors = new ArrayList<Actor>();
+    private List<ProcessorState> notifyingProcessors = new ArrayList<ProcessorState>();
+    private final Queue<TestClassRunInfo> pending = new LinkedList<TestClassRunInfo>();
+    private final Lock lock = new ReentrantLock();
+    private final Condition pendingDispatched = lock.newCondition();
     private Actor resultProcessorActor;
     private volatile boolean stoppedNow;
 
     public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory) {
+        this(maxProcessors, factory, actorFactory, true);
+    }
+
+    /**
+     * @param handOutToIdleProcessors whether to ask {@link NotifyingTestClassProcessor}s to notify, and hand test classes to them as they become idle.
+     */
+    public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory, boolean handOutToIdleProcessors) {
         this.maxProcessors = maxProcessors;
         this.factory = factory;
         this.actorFactory = actorFactory;
+        this.handOutToIdleProcessors = handOutToIdleProcessors;
     }
 
     @Override
@@ -64,24 +94,77 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
             return;
         }
 
-        TestClassProcessor processor;
-        if (processors.size() < maxProcessors) {
-            processor = factory.create();
-            rawProcessors.add(processor);
-            Actor actor = actorFactory.createActor(processor);
-            processor = actor.getProxy(TestClassProcessor.class);
-            actors.add(actor);
-            processors.add(processor);
-            processor.startProcessing(resultProcessor);
-        } else {
-            processor = processors.get(pos);
-            pos = (pos + 1) % processors.size();
+        lock.lock();
+        try {
+            if (processors.size() < maxProcessors) {
+                TestClassProcessor rawProcessor = factory.create();
+                rawProcessors.add(rawProcessor);
+                Actor actor = actorFactory.createActor(rawProcessor);
+                TestClassProcessor processor = actor.getProxy(TestClassProcessor.class);
+                actors.add(actor);
+                processors.add(processor);
+                if (handOutToIdleProcessors && rawProcessor instanceof NotifyingTestClassProcessor) {
+                    ProcessorState state = new ProcessorState(processor);
+                    ((NotifyingTestClassProcessor) rawProcessor).setProcessingListener(state);
+                    notifyingProcessors.add(state);
+                }
+                processor.startProcessing(resultProcessor);
+            }
+            if (notifyingProcessors.isEmpty()) {
+                TestClassProcessor processor = processors.get(pos);
+                pos = (pos + 1) % processors.size();
+                processor.processTestClass(testClass);
+            } else {
+                pending.add(testClass);
+                dispatchPending();
+            }
+        } finally {
+            lock.unlock();
         }
-        processor.processTestClass(testClass);
+    }
+
+    /**
+     * Hands pending test classes to the processors with the fewest test classes in flight. Must be called while holding the lock.
+     */
+    private void dispatchPending() {
+        while (!pending.isEmpty()) {
+            ProcessorState target = null;
+            boolean anyAvailable = false;
+            for (ProcessorState state : notifyingProcessors) {
+                if (!state.failed) {
+                    anyAvailable = true;
+                    if (state.inFlight < MAX_TEST_CLASSES_IN_FLIGHT && (target == null || state.inFlight < target.inFlight)) {
+                        target = state;
+                    }
+                }
+            }
+            if (!anyAvailable) {
+                // Nothing is left to process the test classes. The failure of the processors is reported when they are stopped
+                pending.clear();
+                break;
+            }
+            if (target == null) {
+                return;
+            }
+            target.inFlight++;
+            target.processor.processTestClass(pending.remove());
+        }
+        pendingDispatched.signalAll();
     }
 
     @Override
     public void stop() {
+        lock.lock();
+        try {
+            while (!pending.isEmpty() && !stoppedNow) {
+                pendingDispatched.await();
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            lock.unlock();
+        }
+
         try {
             CompositeStoppable.stoppable(processors).add(actors).add(resultProcessorActor).stop();
         } catch (DispatchException e) {
@@ -92,8 +175,47 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     @Override
     public void stopNow() {
         stoppedNow = true;
+        lock.lock();
+        try {
+            pending.clear();
+            pendingDispatched.signalAll();
+        } finally {
+            lock.unlock();
+        }
         for (TestClassProcessor processor : rawProcessors) {
             processor.stopNow();
         }
     }
+
+    private class ProcessorState implements TestClassProcessingListener {
+        private final TestClassProcessor processor;
+        private int inFlight;
+        private boolean failed;
+
+        ProcessorState(TestClassProcessor processor) {
+            this.processor = processor;
+        }
+
+        @Override
+        public void testClassProcessed() {
+            lock.lock();
+            try {
+                inFlight--;
+                dispatchPending();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void processingFailed() {
+            lock.lock();
+            try {
+                failed = true;
+                dispatchPending();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
 }
@@ -16,16 +16,19 @@
 
 package org.gradle.api.internal.tasks.testing.processors;
 
+import org.gradle.api.internal.tasks.testing.NotifyingTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassProcessingListener;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.internal.Factory;
 
-public class RestartEveryNTestClassProcessor implements TestClassProcessor {
+public class RestartEveryNTestClassProcessor implements NotifyingTestClassProcessor {
     private final Factory<TestClassProcessor> factory;
     private final long restartEvery;
     private long testCount;
     private TestResultProcessor resultProcessor;
+    private TestClassProcessingListener processingListener;
     private volatile boolean stoppedNow;
     private volatile TestClassProcessor processor;
 
@@ -34,6 +37,14 @@ public class RestartEveryNTestClassProcessor implements TestClassProcessor {
         this.restartEvery = restartEvery;
     }
 
+    /**
+     * Passes the listener on to the processors created by the factory. For processors that do not notify a listener, a test class is considered processed once it has been handed over.
+     */
+    @Override
+    public void setProcessingListener(TestClassProcessingListener processingListener) {
+        this.processingListener = processingListener;
+    }
+
     @Override
     public void startProcessing(TestResultProcessor resultProcessor) {
         this.resultProcessor = resultProcessor;
@@ -47,9 +58,18 @@ public class RestartEveryNTestClassProcessor implements TestClassProcessor {
 
         if (processor == null) {
             processor = factory.create();
+            if (processingListener != null && processor instanceof NotifyingTestClassProcessor) {
+                ((NotifyingTestClassProcessor) processor).setProcessingListener(processingListener);
+            }
             processor.startProcessing(resultProcessor);
         }
-        processor.processTestClass(testClass);
+        try {
+            processor.processTestClass(testClass);
+        } finally {
+            if (processingListener != null && !(processor instanceof NotifyingTestClassProcessor)) {
+                processingListener.testClassProcessed();
+            }
+        }
         testCount++;
         if (testCount == restartEvery) {
             endBatch();
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.results.TestClassDurations;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits the test classes into a number of shards, and passes only the classes of one shard to its delegate.
+ *
+ * When durations are given, the shards have about the same expected duration: classes are assigned longest first, each to the shard with
+ * the smallest expected duration so far. The assignment only depends on the names of the classes and their durations, so every shard computes
+ * the same split given the same classes and durations. Without durations, each class is assigned to a shard by the hash of its name,
+ * which gives the same split on every machine.
+ */
+public class ShardingTestClassProcessor implements TestClassProcessor {
+    @Nullable
+    private final TestClassDurations durations;
+    private final int shardIndex;
+    private final int shardCount;
+    private final TestClassProcessor delegate;
+    private final List<TestClassRunInfo> testClasses = new ArrayList<TestClassRunInfo>();
+
+    public ShardingTestClassProcessor(@Nullable TestClassDurations durations, int shardIndex, int shardCount, TestClassProcessor delegate) {
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("Cannot run shard " + shardIndex + " of " + shardCount + " shards.");
+        }
+        this.durations = durations;
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void startProcessing(TestResultProcessor resultProcessor) {
+        delegate.startProcessing(resultProcessor);
+    }
+
+    @Override
+    public void processTestClass(TestClassRunInfo testClass) {
+        if (durations == null) {
+            // String.hashCode() is specified, so gives the same split on every JVM
+            int hash = testClass.getTestClassName().hashCode() % shardCount;
+            if ((hash < 0 ? hash + shardCount : hash) == shardIndex) {
+                delegate.processTestClass(testClass);
+            }
+            return;
+        }
+        testClasses.add(testClass);
+    }
+
+    @Override
+    public void stop() {
+        if (durations == null) {
+            delegate.stop();
+            return;
+        }
+        List<TestClassRunInfo> sorted = new ArrayList<TestClassRunInfo>(testClasses);
+        Collections.sort(sorted, new Comparator<TestClassRunInfo>() {
+            @Override
+            public int compare(TestClassRunInfo left, TestClassRunInfo right) {
+                long leftDuration = durations.getExpectedDuration(left.getTestClassName());
+                long rightDuration = durations.getExpectedDuration(right.getTestClassName());
+                if (leftDuration != rightDuration) {
+                    return leftDuration < rightDuration ? 1 : -1;
+                }
+                return left.getTestClassName().compareTo(right.getTestClassName());
+            }
+        });
+
+        long[] shardDurations = new long[shardCount];
+        Set<TestClassRunInfo> selected = Collections.newSetFromMap(new IdentityHashMap<TestClassRunInfo, Boolean>());
+        for (TestClassRunInfo testClass : sorted) {
+            int shard = 0;
+            for (int i = 1; i < shardCount; i++) {
+                if (shardDurations[i] < shardDurations[shard]) {
+                    shard = i;
+                }
+            }
+            shardDurations[shard] += durations.getExpectedDuration(testClass.getTestClassName());
+            if (shard == shardIndex) {
+                selected.add(testClass);
+            }
+        }
+
+        // Keep the order in which the classes were found, later processors decide on the order to run them in
+        for (TestClassRunInfo testClass : testClasses) {
+            if (selected.contains(testClass)) {
+                delegate.processTestClass(testClass);
+            }
+        }
+        delegate.stop();
+    }
+
+    @Override
+    public void stopNow() {
+        delegate.stopNow();
+    }
+}
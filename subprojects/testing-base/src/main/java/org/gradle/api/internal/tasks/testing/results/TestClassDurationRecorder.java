@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.results;
+
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records how long each test class took to run, while passing all events on to its delegate.
+ *
+ * The duration of a class is taken from the outermost suite reported for it. For test frameworks that do not report a suite per class,
+ * the durations of the tests of the class are added up instead.
+ */
+public class TestClassDurationRecorder implements TestResultProcessor {
+    private final TestResultProcessor delegate;
+    private final Map<Object, Started> running = new HashMap<Object, Started>();
+    private final Set<String> runningClasses = new HashSet<String>();
+    private final Map<String, Long> classDurations = new HashMap<String, Long>();
+    private final Map<String, Long> testDurations = new HashMap<String, Long>();
+
+    public TestClassDurationRecorder(TestResultProcessor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        synchronized (this) {
+            String className = test.getClassName();
+            if (className != null) {
+                if (!test.isComposite()) {
+                    running.put(test.getId(), new Started(className, false, event.getStartTime()));
+                } else if (runningClasses.add(className)) {
+                    running.put(test.getId(), new Started(className, true, event.getStartTime()));
+                }
+            }
+        }
+        delegate.started(test, event);
+    }
+
+    @Override
+    public void completed(Object testId, TestCompleteEvent event) {
+        synchronized (this) {
+            Started started = running.remove(testId);
+            if (started != null) {
+                long duration = Math.max(0, event.getEndTime() - started.startTime);
+                if (started.classLevel) {
+                    runningClasses.remove(started.className);
+                    add(classDurations, started.className, duration);
+                } else {
+                    add(testDurations, started.className, duration);
+                }
+            }
+        }
+        delegate.completed(testId, event);
+    }
+
+    @Override
+    public void output(Object testId, TestOutputEvent event) {
+        delegate.output(testId, event);
+    }
+
+    @Override
+    public void failure(Object testId, Throwable result) {
+        delegate.failure(testId, result);
+    }
+
+    /**
+     * Returns the durations, in milliseconds, of the classes that completed so far.
+     */
+    public synchronized Map<String, Long> getDurations() {
+        Map<String, Long> durations = new HashMap<String, Long>(testDurations);
+        durations.putAll(classDurations);
+        return durations;
+    }
+
+    private static void add(Map<String, Long> durations, String className, long duration) {
+        Long previous = durations.get(className);
+        durations.put(className, previous == null ? duration : previous + duration);
+    }
+
+    private static class Started {
+        final String className;
+        final boolean classLevel;
+        final long startTime;
+
+        Started(String className, boolean classLevel, long startTime) {
+            this.className = className;
+            this.classLevel = classLevel;
+            this.startTime = startTime;
+        }
+    }
+}
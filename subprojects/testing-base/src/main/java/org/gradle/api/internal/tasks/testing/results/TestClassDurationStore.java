@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.results;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.gradle.api.UncheckedIOException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Persists the durations of the test classes of a test task between builds.
+ *
+ * The durations are stored as sorted {@code <class name>=<milliseconds>} lines, so that the file can be inspected and shared between machines,
+ * for example to give all shards of a test task the same view of the durations.
+ */
+public class TestClassDurationStore {
+    private final File file;
+
+    public TestClassDurationStore(File file) {
+        this.file = file;
+    }
+
+    public TestClassDurations load() {
+        return new TestClassDurations(read());
+    }
+
+    /**
+     * Replaces the durations of the given classes, keeping those of all other classes.
+     */
+    public void update(Map<String, Long> durations) {
+        if (durations.isEmpty()) {
+            return;
+        }
+        Map<String, Long> merged = read();
+        merged.putAll(durations);
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, Long> entry : merged.entrySet()) {
+            content.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        try {
+            Files.createParentDirs(file);
+            Files.asCharSink(file, Charsets.UTF_8).write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write test class durations to " + file, e);
+        }
+    }
+
+    private TreeMap<String, Long> read() {
+        TreeMap<String, Long> durations = new TreeMap<String, Long>();
+        if (!file.isFile()) {
+            return durations;
+        }
+        try {
+            for (String line : Files.asCharSource(file, Charsets.UTF_8).readLines()) {
+                int separator = line.lastIndexOf('=');
+                if (separator <= 0) {
+                    continue;
+                }
+                try {
+                    durations.put(line.substring(0, separator), Long.parseLong(line.substring(separator + 1).trim()));
+                } catch (NumberFormatException e) {
+                    // Ignore malformed entries, they will be replaced the next time the class runs
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read test class durations from " + file, e);
+        }
+        return durations;
+    }
+}
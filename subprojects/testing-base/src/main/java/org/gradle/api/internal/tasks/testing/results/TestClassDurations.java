@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.results;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The durations, in milliseconds, that test classes took when they were last run.
+ *
+ * Classes without a known duration are expected to take the mean duration of the known classes.
+ */
+public class TestClassDurations {
+    private static final TestClassDurations NONE = new TestClassDurations(Collections.<String, Long>emptyMap());
+
+    private final Map<String, Long> durations;
+    private final long defaultDuration;
+
+    public TestClassDurations(Map<String, Long> durations) {
+        this.durations = durations;
+        long total = 0;
+        for (Long duration : durations.values()) {
+            total += duration;
+        }
+        this.defaultDuration = durations.isEmpty() ? 1 : Math.max(1, total / durations.size());
+    }
+
+    public static TestClassDurations none() {
+        return NONE;
+    }
+
+    public long getExpectedDuration(String testClassName) {
+        Long duration = durations.get(testClassName);
+        return duration != null ? duration : defaultDuration;
+    }
+
+    public Map<String, Long> asMap() {
+        return Collections.unmodifiableMap(durations);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link TestResultProcessor} which merges consecutive output events of the same test and destination into a single event,
+ * so that a test writing many lines of output sends an event per batch of lines rather than per line.
+ *
+ * The batched output is forwarded before any other event, when it grows beyond {@value #MAX_BATCH_LENGTH} characters, and otherwise
+ * at most {@value #FLUSH_DELAY_MILLIS}ms after the batch was started.
+ */
+class BatchingTestOutputTestResultProcessor implements TestResultProcessor {
+    static final int MAX_BATCH_LENGTH = 16 * 1024;
+    static final long FLUSH_DELAY_MILLIS = 100;
+
+    private final TestResultProcessor processor;
+    private final ScheduledExecutorService executor;
+    private final Object lock = new Object();
+    private final StringBuilder batch = new StringBuilder();
+    private Object batchTestId;
+    private TestOutputEvent.Destination batchDestination;
+    private boolean flushScheduled;
+
+    BatchingTestOutputTestResultProcessor(TestResultProcessor processor, ScheduledExecutorService executor) {
+        this.processor = processor;
+        this.executor = executor;
+    }
+
+    @Override
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        synchronized (lock) {
+            flushBatch();
+            processor.started(test, event);
+        }
+    }
+
+    @Override
+    public void completed(Object testId, TestCompleteEvent event) {
+        synchronized (lock) {
+            flushBatch();
+            processor.completed(testId, event);
+        }
+    }
+
+    @Override
+    public void output(Object testId, TestOutputEvent event) {
+        synchronized (lock) {
+            if (batch.length() > 0 && (!testId.equals(batchTestId) || event.getDestination() != batchDestination)) {
+                flushBatch();
+            }
+            if (batch.length() == 0 && event.getMessage().length() >= MAX_BATCH_LENGTH) {
+                processor.output(testId, event);
+                return;
+            }
+            batchTestId = testId;
+            batchDestination = event.getDestination();
+            batch.append(event.getMessage());
+            if (batch.length() >= MAX_BATCH_LENGTH) {
+                flushBatch();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (lock) {
+                            flushScheduled = false;
+                            flushBatch();
+                        }
+                    }
+                }, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @Override
+    public void failure(Object testId, Throwable result) {
+        synchronized (lock) {
+            flushBatch();
+            processor.failure(testId, result);
+        }
+    }
+
+    /**
+     * Forwards the batched output without waiting for the batch to be complete.
+     */
+    public void flush() {
+        synchronized (lock) {
+            flushBatch();
+        }
+    }
+
+    private void flushBatch() {
+        if (batch.length() == 0) {
+            return;
+        }
+        String message = batch.toString();
+        batch.setLength(0);
+        processor.output(batchTestId, new DefaultTestOutputEvent(batchDestination, message));
+    }
+}
@@ -19,10 +19,12 @@ package org.gradle.api.internal.tasks.testing.worker;
 import org.gradle.api.Action;
 import org.gradle.api.internal.DocumentationRegistry;
 import org.gradle.api.internal.classpath.ModuleRegistry;
-import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.NotifyingTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassProcessingListener;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.internal.dispatch.StreamCompletion;
 import org.gradle.internal.remote.ObjectConnection;
 import org.gradle.internal.work.WorkerLeaseRegistry;
 import org.gradle.process.JavaForkOptions;
@@ -38,7 +40,7 @@ import java.util.List;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
-public class ForkingTestClassProcessor implements TestClassProcessor {
+public class ForkingTestClassProcessor implements NotifyingTestClassProcessor {
     private final WorkerLeaseRegistry.WorkerLease currentWorkerLease;
     private final WorkerProcessFactory workerFactory;
     private final WorkerTestClassProcessorFactory processorFactory;
@@ -53,6 +55,8 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     private WorkerLeaseRegistry.WorkerLeaseCompletion completion;
     private DocumentationRegistry documentationRegistry;
     private boolean stoppedNow;
+    private volatile boolean stopping;
+    private TestClassProcessingListener processingListener;
 
     public ForkingTestClassProcessor(WorkerLeaseRegistry.WorkerLease parentWorkerLease, WorkerProcessFactory workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction, ModuleRegistry moduleRegistry, DocumentationRegistry documentationRegistry) {
         this.currentWorkerLease = parentWorkerLease;
@@ -65,6 +69,11 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
         this.documentationRegistry = documentationRegistry;
     }
 
+    @Override
+    public void setProcessingListener(TestClassProcessingListener processingListener) {
+        this.processingListener = processingListener;
+    }
+
     @Override
     public void startProcessing(TestResultProcessor resultProcessor) {
         this.resultProcessor = resultProcessor;
@@ -85,6 +94,10 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
                 } catch (RuntimeException e) {
                     completion.leaseFinish();
                     completion = null;
+                    // The test class will not be processed, but the next one may be
+                    if (processingListener != null) {
+                        processingListener.testClassProcessed();
+                    }
                     throw e;
                 }
             }
@@ -110,6 +123,7 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
         ObjectConnection connection = workerProcess.getConnection();
         connection.useParameterSerializers(TestEventSerializer.create());
         connection.addIncoming(TestResultProcessor.class, resultProcessor);
+        connection.addIncoming(TestClassProcessingListener.class, new WorkerProcessingListener());
         RemoteTestClassProcessor remoteProcessor = connection.addOutgoing(RemoteTestClassProcessor.class);
         connection.connect();
         remoteProcessor.startProcessing();
@@ -145,6 +159,7 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     public void stop() {
         try {
             if (remoteProcessor != null) {
+                stopping = true;
                 lock.lock();
                 try {
                     if (!stoppedNow) {
@@ -181,4 +196,30 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
             lock.unlock();
         }
     }
+
+    /**
+     * Forwards the notifications of the worker process, and notifies a failure when the worker process goes away before it has been asked to stop.
+     */
+    private class WorkerProcessingListener implements TestClassProcessingListener, StreamCompletion {
+        @Override
+        public void testClassProcessed() {
+            if (processingListener != null) {
+                processingListener.testClassProcessed();
+            }
+        }
+
+        @Override
+        public void processingFailed() {
+            if (processingListener != null) {
+                processingListener.processingFailed();
+            }
+        }
+
+        @Override
+        public void endStream() {
+            if (!stopping) {
+                processingFailed();
+            }
+        }
+    }
 }
@@ -22,17 +22,31 @@ import org.gradle.api.tasks.testing.TestResult;
 import org.gradle.internal.id.CompositeIdGenerator;
 import org.gradle.internal.serialize.*;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializes the messages exchanged between the build process and a test worker.
+ *
+ * Each registry created by {@link #create()} must be used for a single connection, as it keeps tables of the names of the
+ * classes and tests sent over it, so that a name used by many descriptors is only sent once.
+ */
 public class TestEventSerializer {
     public static SerializerRegistry create() {
         BaseSerializerFactory factory = new BaseSerializerFactory();
         DefaultSerializerRegistry registry = new DefaultSerializerRegistry();
+        StringTable classNames = new StringTable();
+        StringTable testNames = new StringTable();
         registry.register(DefaultTestClassRunInfo.class, new DefaultTestClassRunInfoSerializer());
         registry.register(CompositeIdGenerator.CompositeId.class, new IdSerializer());
-        registry.register(DefaultTestSuiteDescriptor.class, new DefaultTestSuiteDescriptorSerializer());
-        registry.register(WorkerTestClassProcessor.WorkerTestSuiteDescriptor.class, new WorkerTestSuiteDescriptorSerializer());
-        registry.register(DefaultTestClassDescriptor.class, new DefaultTestClassDescriptorSerializer());
-        registry.register(DefaultTestMethodDescriptor.class, new DefaultTestMethodDescriptorSerializer());
-        registry.register(DefaultTestDescriptor.class, new DefaultTestDescriptorSerializer());
+        registry.register(DefaultTestSuiteDescriptor.class, new DefaultTestSuiteDescriptorSerializer(classNames));
+        registry.register(WorkerTestClassProcessor.WorkerTestSuiteDescriptor.class, new WorkerTestSuiteDescriptorSerializer(classNames));
+        registry.register(DefaultTestClassDescriptor.class, new DefaultTestClassDescriptorSerializer(classNames));
+        registry.register(DefaultTestMethodDescriptor.class, new DefaultTestMethodDescriptorSerializer(classNames, testNames));
+        registry.register(DefaultTestDescriptor.class, new DefaultTestDescriptorSerializer(classNames, testNames));
         registry.register(TestStartEvent.class, new TestStartEventSerializer());
         registry.register(TestCompleteEvent.class, new TestCompleteEventSerializer());
         registry.register(DefaultTestOutputEvent.class, new DefaultTestOutputEventSerializer());
@@ -64,16 +78,64 @@ public class TestEventSerializer {
         }
     }
 
+    /**
+     * Assigns an index to the strings written, so that a string written again is sent as its index. The strings read are kept
+     * separately from those written, as the same serializers write the messages sent over a connection and read the messages received from it.
+     *
+     * Once the table is full, further strings are sent in full every time, to bound the memory used by suites with many unique test names.
+     */
+    private static class StringTable {
+        private static final int MAX_SIZE = 10000;
+        private static final int NEW_STRING = 0;
+        private static final int UNINDEXED_STRING = 1;
+        private static final int FIRST_INDEX = 2;
+
+        private final Map<String, Integer> written = new HashMap<String, Integer>();
+        private final List<String> read = new ArrayList<String>();
+
+        void write(Encoder encoder, String value) throws IOException {
+            Integer index = written.get(value);
+            if (index != null) {
+                encoder.writeSmallInt(FIRST_INDEX + index);
+                return;
+            }
+            if (written.size() < MAX_SIZE) {
+                written.put(value, written.size());
+                encoder.writeSmallInt(NEW_STRING);
+            } else {
+                encoder.writeSmallInt(UNINDEXED_STRING);
+            }
+            encoder.writeString(value);
+        }
+
+        String read(Decoder decoder) throws IOException {
+            int tag = decoder.readSmallInt();
+            if (tag == NEW_STRING) {
+                String value = decoder.readString();
+                read.add(value);
+                return value;
+            }
+            if (tag == UNINDEXED_STRING) {
+                return decoder.readString();
+            }
+            int index = tag - FIRST_INDEX;
+            if (index >= read.size()) {
+                throw new IllegalArgumentException(String.format("Unexpected string index %d found.", index));
+            }
+            return read.get(index);
+        }
+    }
+
     private static class IdSerializer implements Serializer<CompositeIdGenerator.CompositeId> {
         @Override
         public CompositeIdGenerator.CompositeId read(Decoder decoder) throws Exception {
-            return new CompositeIdGenerator.CompositeId(decoder.readLong(), decoder.readLong());
+            return new CompositeIdGenerator.CompositeId(decoder.readSmallLong(), decoder.readSmallLong());
         }
 
         @Override
         public void write(Encoder encoder, CompositeIdGenerator.CompositeId value) throws Exception {
-            encoder.writeLong((Long) value.getScope());
-            encoder.writeLong((Long) value.getId());
+            encoder.writeSmallLong((Long) value.getScope());
+            encoder.writeSmallLong((Long) value.getId());
         }
     }
 
@@ -94,14 +156,14 @@ public class TestEventSerializer {
 
         @Override
         public TestStartEvent read(Decoder decoder) throws Exception {
-            long time = decoder.readLong();
+            long time = decoder.readSmallLong();
             Object id = idSerializer.read(decoder);
             return new TestStartEvent(time, id);
         }
 
         @Override
         public void write(Encoder encoder, TestStartEvent value) throws Exception {
-            encoder.writeLong(value.getStartTime());
+            encoder.writeSmallLong(value.getStartTime());
             idSerializer.write(encoder, (CompositeIdGenerator.CompositeId) value.getParentId());
         }
     }
@@ -111,14 +173,14 @@ public class TestEventSerializer {
 
         @Override
         public TestCompleteEvent read(Decoder decoder) throws Exception {
-            long endTime = decoder.readLong();
+            long endTime = decoder.readSmallLong();
             TestResult.ResultType result = typeSerializer.read(decoder);
             return new TestCompleteEvent(endTime, result);
         }
 
         @Override
         public void write(Encoder encoder, TestCompleteEvent value) throws Exception {
-            encoder.writeLong(value.getEndTime());
+            encoder.writeSmallLong(value.getEndTime());
             typeSerializer.write(encoder, value.getResultType());
         }
     }
@@ -142,96 +204,125 @@ public class TestEventSerializer {
 
     private static class DefaultTestSuiteDescriptorSerializer implements Serializer<DefaultTestSuiteDescriptor> {
         final Serializer<CompositeIdGenerator.CompositeId> idSerializer = new IdSerializer();
+        private final StringTable classNames;
+
+        DefaultTestSuiteDescriptorSerializer(StringTable classNames) {
+            this.classNames = classNames;
+        }
 
         @Override
         public DefaultTestSuiteDescriptor read(Decoder decoder) throws Exception {
             Object id = idSerializer.read(decoder);
-            String name = decoder.readString();
+            String name = classNames.read(decoder);
             return new DefaultTestSuiteDescriptor(id, name);
         }
 
         @Override
         public void write(Encoder encoder, DefaultTestSuiteDescriptor value) throws Exception {
             idSerializer.write(encoder, (CompositeIdGenerator.CompositeId) value.getId());
-            encoder.writeString(value.getName());
+            classNames.write(encoder, value.getName());
         }
     }
 
     private static class WorkerTestSuiteDescriptorSerializer implements Serializer<WorkerTestClassProcessor.WorkerTestSuiteDescriptor> {
         final Serializer<CompositeIdGenerator.CompositeId> idSerializer = new IdSerializer();
+        private final StringTable classNames;
+
+        WorkerTestSuiteDescriptorSerializer(StringTable classNames) {
+            this.classNames = classNames;
+        }
 
         @Override
         public WorkerTestClassProcessor.WorkerTestSuiteDescriptor read(Decoder decoder) throws Exception {
             Object id = idSerializer.read(decoder);
-            String name = decoder.readString();
+            String name = classNames.read(decoder);
             return new WorkerTestClassProcessor.WorkerTestSuiteDescriptor(id, name);
         }
 
         @Override
         public void write(Encoder encoder, WorkerTestClassProcessor.WorkerTestSuiteDescriptor value) throws Exception {
             idSerializer.write(encoder, (CompositeIdGenerator.CompositeId) value.getId());
-            encoder.writeString(value.getName());
+            classNames.write(encoder, value.getName());
         }
     }
 
     private static class DefaultTestClassDescriptorSerializer implements Serializer<DefaultTestClassDescriptor> {
         final Serializer<CompositeIdGenerator.CompositeId> idSerializer = new IdSerializer();
+        private final StringTable classNames;
+
+        DefaultTestClassDescriptorSerializer(StringTable classNames) {
+            this.classNames = classNames;
+        }
 
         @Override
         public DefaultTestClassDescriptor read(Decoder decoder) throws Exception {
             Object id = idSerializer.read(decoder);
-            String name = decoder.readString();
-            String displayName = decoder.readString();
+            String name = classNames.read(decoder);
+            String displayName = classNames.read(decoder);
             return new DefaultTestClassDescriptor(id, name, displayName);
         }
 
         @Override
         public void write(Encoder encoder, DefaultTestClassDescriptor value) throws Exception {
             idSerializer.write(encoder, (CompositeIdGenerator.CompositeId) value.getId());
-            encoder.writeString(value.getName());
-            encoder.writeString(value.getDisplayName());
+            classNames.write(encoder, value.getName());
+            classNames.write(encoder, value.getDisplayName());
         }
     }
 
     private static class DefaultTestDescriptorSerializer implements Serializer<DefaultTestDescriptor> {
         final Serializer<CompositeIdGenerator.CompositeId> idSerializer = new IdSerializer();
+        private final StringTable classNames;
+        private final StringTable testNames;
+
+        DefaultTestDescriptorSerializer(StringTable classNames, StringTable testNames) {
+            this.classNames = classNames;
+            this.testNames = testNames;
+        }
 
         @Override
         public DefaultTestDescriptor read(Decoder decoder) throws Exception {
             Object id = idSerializer.read(decoder);
-            String className = decoder.readString();
-            String classDisplayName = decoder.readString();
-            String name = decoder.readString();
-            String displayName = decoder.readString();
+            String className = classNames.read(decoder);
+            String classDisplayName = classNames.read(decoder);
+            String name = testNames.read(decoder);
+            String displayName = testNames.read(decoder);
             return new DefaultTestDescriptor(id, className, name, classDisplayName, displayName);
         }
 
         @Override
         public void write(Encoder encoder, DefaultTestDescriptor value) throws Exception {
             idSerializer.write(encoder, (CompositeIdGenerator.CompositeId) value.getId());
-            encoder.writeString(value.getClassName());
-            encoder.writeString(value.getClassDisplayName());
-            encoder.writeString(value.getName());
-            encoder.writeString(value.getDisplayName());
+            classNames.write(encoder, value.getClassName());
+            classNames.write(encoder, value.getClassDisplayName());
+            testNames.write(encoder, value.getName());
+            testNames.write(encoder, value.getDisplayName());
         }
     }
 
     private static class DefaultTestMethodDescriptorSerializer implements Serializer<DefaultTestMethodDescriptor> {
         final Serializer<CompositeIdGenerator.CompositeId> idSerializer = new IdSerializer();
+        private final StringTable classNames;
+        private final StringTable testNames;
+
+        DefaultTestMethodDescriptorSerializer(StringTable classNames, StringTable testNames) {
+            this.classNames = classNames;
+            this.testNames = testNames;
+        }
 
         @Override
         public DefaultTestMethodDescriptor read(Decoder decoder) throws Exception {
             Object id = idSerializer.read(decoder);
-            String className = decoder.readString();
-            String name = decoder.readString();
+            String className = classNames.read(decoder);
+            String name = testNames.read(decoder);
             return new DefaultTestMethodDescriptor(id, className, name);
         }
 
         @Override
         public void write(Encoder encoder, DefaultTestMethodDescriptor value) throws Exception {
             idSerializer.write(encoder, (CompositeIdGenerator.CompositeId) value.getId());
-            encoder.writeString(value.getClassName());
-            encoder.writeString(value.getName());
+            classNames.write(encoder, value.getClassName());
+            testNames.write(encoder, value.getName());
         }
     }
 }
@@ -17,6 +17,7 @@
 package org.gradle.api.internal.tasks.testing.worker;
 
 import org.gradle.api.Action;
+import org.gradle.api.internal.tasks.testing.TestClassProcessingListener;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
@@ -49,7 +50,8 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
     private final WorkerTestClassProcessorFactory factory;
     private CountDownLatch completed;
     private TestClassProcessor processor;
-    private TestResultProcessor resultProcessor;
+    private BatchingTestOutputTestResultProcessor resultProcessor;
+    private TestClassProcessingListener processingListener;
 
     public TestWorker(WorkerTestClassProcessorFactory factory) {
         this.factory = factory;
@@ -100,7 +102,9 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
 
         ObjectConnection serverConnection = workerProcessContext.getServerConnection();
         serverConnection.useParameterSerializers(TestEventSerializer.create());
-        this.resultProcessor = serverConnection.addOutgoing(TestResultProcessor.class);
+        ExecutorFactory executorFactory = testServices.get(ExecutorFactory.class);
+        this.resultProcessor = new BatchingTestOutputTestResultProcessor(serverConnection.addOutgoing(TestResultProcessor.class), executorFactory.createScheduled("Test output batching", 1));
+        this.processingListener = serverConnection.addOutgoing(TestClassProcessingListener.class);
         serverConnection.addIncoming(RemoteTestClassProcessor.class, this);
         serverConnection.connect();
     }
@@ -122,6 +126,7 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         } finally {
             // Clean the interrupted status
             Thread.interrupted();
+            processingListener.testClassProcessed();
         }
     }
 
@@ -131,6 +136,7 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         try {
             processor.stop();
         } finally {
+            resultProcessor.flush();
             completed.countDown();
             // Clean the interrupted status
             // because some test class processors do work here, e.g. JUnitPlatform
@@ -16,6 +16,8 @@
 
 package org.gradle.api.internal.tasks.testing.processors
 
+import org.gradle.api.internal.tasks.testing.NotifyingTestClassProcessor
+import org.gradle.api.internal.tasks.testing.TestClassProcessingListener
 import org.gradle.api.internal.tasks.testing.TestClassProcessor
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo
 import org.gradle.api.internal.tasks.testing.TestResultProcessor
@@ -202,4 +204,212 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         1 * processor1.stopNow()
         1 * processor2.stopNow()
     }
+
+    def "hands queued test classes to notifying processors as they finish test classes"() {
+        TestClassRunInfo test1 = Mock()
+        TestClassRunInfo test2 = Mock()
+        TestClassRunInfo test3 = Mock()
+        TestClassRunInfo test4 = Mock()
+        TestClassRunInfo test5 = Mock()
+        TestClassRunInfo test6 = Mock()
+        NotifyingTestClassProcessor processor1 = Mock()
+        NotifyingTestClassProcessor processor2 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        TestClassProcessor asyncProcessor2 = Mock()
+        Actor actor1 = Mock()
+        Actor actor2 = Mock()
+        TestClassProcessingListener listener1 = null
+        TestClassProcessingListener listener2 = null
+
+        startProcessor()
+
+        when:
+        processor.processTestClass(test1)
+        processor.processTestClass(test2)
+
+        then:
+        1 * factory.create() >> processor1
+        1 * actorFactory.createActor(processor1) >> actor1
+        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
+        1 * processor1.setProcessingListener(_) >> { listener1 = it[0] }
+        1 * asyncProcessor1.processTestClass(test1)
+        1 * factory.create() >> processor2
+        1 * actorFactory.createActor(processor2) >> actor2
+        1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
+        1 * processor2.setProcessingListener(_) >> { listener2 = it[0] }
+        1 * asyncProcessor2.processTestClass(test2)
+
+        when:
+        processor.processTestClass(test3)
+        processor.processTestClass(test4)
+
+        then:
+        1 * asyncProcessor1.processTestClass(test3)
+        1 * asyncProcessor2.processTestClass(test4)
+
+        when:
+        processor.processTestClass(test5)
+        processor.processTestClass(test6)
+
+        then:
+        0 * asyncProcessor1.processTestClass(_)
+        0 * asyncProcessor2.processTestClass(_)
+
+        when:
+        listener2.testClassProcessed()
+
+        then:
+        1 * asyncProcessor2.processTestClass(test5)
+        0 * asyncProcessor1.processTestClass(_)
+
+        when:
+        listener2.testClassProcessed()
+
+        then:
+        1 * asyncProcessor2.processTestClass(test6)
+
+        when:
+        processor.stop()
+
+        then:
+        1 * asyncProcessor1.stop()
+        1 * asyncProcessor2.stop()
+    }
+
+    def "assigns test classes to notifying processors in turn when not handing them out to idle processors"() {
+        def roundRobinProcessor = new MaxNParallelTestClassProcessor(2, factory, actorFactory, false)
+        TestClassRunInfo test1 = Mock()
+        TestClassRunInfo test2 = Mock()
+        TestClassRunInfo test3 = Mock()
+        TestClassRunInfo test4 = Mock()
+        NotifyingTestClassProcessor processor1 = Mock()
+        NotifyingTestClassProcessor processor2 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        TestClassProcessor asyncProcessor2 = Mock()
+        Actor actor1 = Mock()
+        Actor actor2 = Mock()
+
+        1 * actorFactory.createActor(resultProcessor) >> resultProcessorActor
+        1 * resultProcessorActor.getProxy(TestResultProcessor) >> asyncResultProcessor
+        roundRobinProcessor.startProcessing(resultProcessor)
+
+        when:
+        roundRobinProcessor.processTestClass(test1)
+        roundRobinProcessor.processTestClass(test2)
+        roundRobinProcessor.processTestClass(test3)
+        roundRobinProcessor.processTestClass(test4)
+
+        then:
+        1 * factory.create() >> processor1
+        1 * actorFactory.createActor(processor1) >> actor1
+        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
+        1 * factory.create() >> processor2
+        1 * actorFactory.createActor(processor2) >> actor2
+        1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
+        0 * processor1.setProcessingListener(_)
+        0 * processor2.setProcessingListener(_)
+        1 * asyncProcessor1.processTestClass(test1)
+        1 * asyncProcessor2.processTestClass(test2)
+        1 * asyncProcessor1.processTestClass(test3)
+        1 * asyncProcessor2.processTestClass(test4)
+
+        when:
+        roundRobinProcessor.stop()
+
+        then:
+        1 * asyncProcessor1.stop()
+        1 * asyncProcessor2.stop()
+    }
+
+    def "does not hand test classes to a notifying processor that has failed"() {
+        TestClassRunInfo test1 = Mock()
+        TestClassRunInfo test2 = Mock()
+        TestClassRunInfo test3 = Mock()
+        TestClassRunInfo test4 = Mock()
+        TestClassRunInfo test5 = Mock()
+        NotifyingTestClassProcessor processor1 = Mock()
+        NotifyingTestClassProcessor processor2 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        TestClassProcessor asyncProcessor2 = Mock()
+        Actor actor1 = Mock()
+        Actor actor2 = Mock()
+        TestClassProcessingListener listener1 = null
+        TestClassProcessingListener listener2 = null
+
+        startProcessor()
+
+        when:
+        processor.processTestClass(test1)
+        processor.processTestClass(test2)
+        processor.processTestClass(test3)
+        processor.processTestClass(test4)
+        processor.processTestClass(test5)
+
+        then:
+        1 * factory.create() >> processor1
+        1 * actorFactory.createActor(processor1) >> actor1
+        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
+        1 * processor1.setProcessingListener(_) >> { listener1 = it[0] }
+        1 * factory.create() >> processor2
+        1 * actorFactory.createActor(processor2) >> actor2
+        1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
+        1 * processor2.setProcessingListener(_) >> { listener2 = it[0] }
+        2 * asyncProcessor1.processTestClass(_)
+        2 * asyncProcessor2.processTestClass(_)
+
+        when:
+        listener1.processingFailed()
+        listener1.testClassProcessed()
+
+        then:
+        0 * asyncProcessor1.processTestClass(_)
+
+        when:
+        listener2.testClassProcessed()
+
+        then:
+        1 * asyncProcessor2.processTestClass(test5)
+
+        when:
+        processor.stop()
+
+        then:
+        1 * asyncProcessor1.stop()
+        1 * asyncProcessor2.stop()
+    }
+
+    def "discards queued test classes when all notifying processors have failed"() {
+        TestClassRunInfo test1 = Mock()
+        TestClassRunInfo test2 = Mock()
+        TestClassRunInfo test3 = Mock()
+        NotifyingTestClassProcessor processor1 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        Actor actor1 = Mock()
+        TestClassProcessingListener listener1 = null
+        def singleProcessor = new MaxNParallelTestClassProcessor(1, factory, actorFactory)
+        actorFactory.createActor(resultProcessor) >> resultProcessorActor
+        resultProcessorActor.getProxy(TestResultProcessor) >> asyncResultProcessor
+        singleProcessor.startProcessing(resultProcessor)
+
+        when:
+        singleProcessor.processTestClass(test1)
+        singleProcessor.processTestClass(test2)
+        singleProcessor.processTestClass(test3)
+
+        then:
+        1 * factory.create() >> processor1
+        1 * actorFactory.createActor(processor1) >> actor1
+        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
+        1 * processor1.setProcessingListener(_) >> { listener1 = it[0] }
+        1 * asyncProcessor1.processTestClass(test1)
+        1 * asyncProcessor1.processTestClass(test2)
+
+        when:
+        listener1.processingFailed()
+        singleProcessor.stop()
+
+        then:
+        0 * asyncProcessor1.processTestClass(_)
+        1 * asyncProcessor1.stop()
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.results.TestClassDurations
+import spock.lang.Specification
+
+class ShardingTestClassProcessorTest extends Specification {
+    TestClassProcessor delegate = Mock()
+    TestResultProcessor testResultProcessor = Mock()
+    def durations = new TestClassDurations([A: 100L, B: 60L, C: 50L, D: 40L, E: 10L])
+
+    def 'passes test classes of the selected shard to delegate in discovery order'() {
+        given:
+        def processor = new ShardingTestClassProcessor(durations, 0, 2, delegate)
+
+        when:
+        processor.startProcessing(testResultProcessor)
+        ['E', 'D', 'C', 'B', 'A'].each { processor.processTestClass(new DefaultTestClassRunInfo(it)) }
+        processor.stop()
+
+        then:
+        1 * delegate.startProcessing(testResultProcessor)
+        then:
+        1 * delegate.processTestClass(new DefaultTestClassRunInfo('D'))
+        then:
+        1 * delegate.processTestClass(new DefaultTestClassRunInfo('A'))
+        then:
+        1 * delegate.stop()
+        0 * delegate._
+    }
+
+    def 'splits test classes into shards of similar duration'() {
+        expect:
+        shard(0, 2, ['A', 'B', 'C', 'D', 'E']) == ['A', 'D']
+        shard(1, 2, ['A', 'B', 'C', 'D', 'E']) == ['B', 'C', 'E']
+    }
+
+    def 'split does not depend on discovery order'() {
+        expect:
+        shard(1, 3, ['A', 'B', 'C', 'D', 'E', 'F', 'G']).sort() == shard(1, 3, ['G', 'F', 'E', 'D', 'C', 'B', 'A']).sort()
+    }
+
+    def 'every test class is run by exactly one shard'() {
+        def classes = (1..20).collect { "Class$it".toString() }
+
+        when:
+        def shards = (0..<4).collect { shard(it, 4, classes) }
+
+        then:
+        shards.flatten().sort() == classes.sort()
+        shards.every { !it.empty }
+    }
+
+    def 'splits test classes by hash of their name when there are no durations'() {
+        def classes = (1..20).collect { "Class$it".toString() }
+
+        when:
+        def shards = (0..<4).collect { shard(it, 4, classes, null) }
+
+        then:
+        shards.flatten().sort() == classes.sort()
+        shards.every { !it.empty }
+        shards[1] == classes.findAll { Math.floorMod(it.hashCode(), 4) == 1 }
+        shard(1, 4, classes.reverse(), null).sort() == shards[1].sort()
+    }
+
+    def 'passes test classes of the selected shard to delegate as they are found when there are no durations'() {
+        given:
+        def processor = new ShardingTestClassProcessor(null, 0, 2, delegate)
+        def selected = ['A', 'B', 'C', 'D'].find { Math.floorMod(it.hashCode(), 2) == 0 }
+
+        when:
+        processor.processTestClass(new DefaultTestClassRunInfo(selected))
+
+        then:
+        1 * delegate.processTestClass(new DefaultTestClassRunInfo(selected))
+
+        when:
+        processor.stop()
+
+        then:
+        1 * delegate.stop()
+        0 * delegate._
+    }
+
+    def 'rejects shard index outside of shard count'() {
+        when:
+        new ShardingTestClassProcessor(durations, 2, 2, delegate)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private List<String> shard(int shardIndex, int shardCount, List<String> classes, TestClassDurations durations = this.durations) {
+        def selected = []
+        def target = Stub(TestClassProcessor) {
+            processTestClass(_) >> { TestClassRunInfo testClass -> selected << testClass.testClassName }
+        }
+        def processor = new ShardingTestClassProcessor(durations, shardIndex, shardCount, target)
+        classes.each { processor.processTestClass(new DefaultTestClassRunInfo(it)) }
+        processor.stop()
+        return selected
+    }
+}
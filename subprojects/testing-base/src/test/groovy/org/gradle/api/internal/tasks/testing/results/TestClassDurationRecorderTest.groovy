@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.results
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestSuiteDescriptor
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import spock.lang.Specification
+
+class TestClassDurationRecorderTest extends Specification {
+    private final TestResultProcessor target = Mock()
+    private final TestClassDurationRecorder recorder = new TestClassDurationRecorder(target)
+
+    def "records duration of test classes"() {
+        def root = new DefaultTestSuiteDescriptor("root", "root")
+        def testClass = new DefaultTestClassDescriptor("class", "Class1")
+        def test = new DefaultTestDescriptor("test", "Class1", "test")
+        def startEvent = new TestStartEvent(100L)
+
+        when:
+        recorder.started(root, new TestStartEvent(0L))
+        recorder.started(testClass, startEvent)
+        recorder.started(test, new TestStartEvent(110L))
+        recorder.completed("test", new TestCompleteEvent(120L))
+        recorder.completed("class", new TestCompleteEvent(150L))
+        recorder.completed("root", new TestCompleteEvent(200L))
+
+        then:
+        1 * target.started(testClass, startEvent)
+        5 * target._
+        recorder.durations == [Class1: 50L]
+    }
+
+    def "uses outermost suite of a test class"() {
+        when:
+        recorder.started(new DefaultTestClassDescriptor("class", "Class1"), new TestStartEvent(100L))
+        recorder.started(new DefaultTestClassDescriptor("nested", "Class1"), new TestStartEvent(110L))
+        recorder.completed("nested", new TestCompleteEvent(120L))
+        recorder.completed("class", new TestCompleteEvent(200L))
+
+        then:
+        recorder.durations == [Class1: 100L]
+    }
+
+    def "adds up durations of tests when test class has no suite"() {
+        when:
+        recorder.started(new DefaultTestDescriptor("test1", "Class1", "test1"), new TestStartEvent(100L))
+        recorder.completed("test1", new TestCompleteEvent(120L))
+        recorder.started(new DefaultTestDescriptor("test2", "Class1", "test2"), new TestStartEvent(120L))
+        recorder.completed("test2", new TestCompleteEvent(150L))
+
+        then:
+        recorder.durations == [Class1: 50L]
+    }
+}
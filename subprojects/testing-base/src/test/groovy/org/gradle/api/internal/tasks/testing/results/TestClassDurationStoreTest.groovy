@@ -0,0 +1,63 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.results
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class TestClassDurationStoreTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmp = new TestNameTestDirectoryProvider()
+
+    def file = tmp.file("durations/test-durations.txt")
+    def store = new TestClassDurationStore(file)
+
+    def "has no durations when file does not exist"() {
+        expect:
+        store.load().asMap().isEmpty()
+        store.load().getExpectedDuration("Class1") == 1
+    }
+
+    def "durations written to the store can be read back"() {
+        when:
+        store.update([Class2: 20L, Class1: 10L])
+
+        then:
+        file.text == "Class1=10\nClass2=20\n"
+        store.load().asMap() == [Class1: 10L, Class2: 20L]
+    }
+
+    def "updates replace durations of the given classes and keep the others"() {
+        given:
+        store.update([Class1: 10L, Class2: 20L])
+
+        when:
+        store.update([Class2: 40L, Class3: 30L])
+
+        then:
+        store.load().asMap() == [Class1: 10L, Class2: 40L, Class3: 30L]
+    }
+
+    def "ignores malformed lines"() {
+        given:
+        file.text = "Class1=10\nbroken\nClass2=abc\n\n"
+
+        expect:
+        store.load().asMap() == [Class1: 10L]
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.api.internal.tasks.testing.DefaultTestDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdErr
+import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdOut
+
+class BatchingTestOutputTestResultProcessorTest extends Specification {
+    TestResultProcessor target = Mock()
+    ScheduledExecutorService executor = Mock()
+    @Subject processor = new BatchingTestOutputTestResultProcessor(target, executor)
+
+    def "merges consecutive output of a test and forwards it before the next event"() {
+        def complete = new TestCompleteEvent(1)
+
+        when:
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "line 1\n"))
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "line 2\n"))
+
+        then:
+        1 * executor.schedule(_, BatchingTestOutputTestResultProcessor.FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS)
+        0 * target._
+
+        when:
+        processor.completed("1", complete)
+
+        then:
+        1 * target.output("1", { it.destination == StdOut && it.message == "line 1\nline 2\n" })
+
+        then:
+        1 * target.completed("1", complete)
+        0 * target._
+    }
+
+    def "forwards output when the test or destination changes"() {
+        def test = new DefaultTestDescriptor("3", "Foo", "bar")
+        def start = new TestStartEvent(1)
+
+        when:
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "out"))
+        processor.output("1", new DefaultTestOutputEvent(StdErr, "err"))
+        processor.output("2", new DefaultTestOutputEvent(StdErr, "other"))
+        processor.started(test, start)
+
+        then:
+        1 * target.output("1", { it.destination == StdOut && it.message == "out" })
+
+        then:
+        1 * target.output("1", { it.destination == StdErr && it.message == "err" })
+
+        then:
+        1 * target.output("2", { it.destination == StdErr && it.message == "other" })
+
+        then:
+        1 * target.started(test, start)
+        0 * target._
+    }
+
+    def "forwards output when the scheduled flush runs"() {
+        Runnable flush = null
+
+        when:
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "line 1\n"))
+
+        then:
+        1 * executor.schedule(_, _, _) >> { Runnable action, long delay, TimeUnit unit -> flush = action; null }
+        0 * target._
+
+        when:
+        flush.run()
+
+        then:
+        1 * target.output("1", { it.message == "line 1\n" })
+        0 * target._
+
+        when:
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "line 2\n"))
+
+        then:
+        1 * executor.schedule(_, _, _)
+    }
+
+    def "forwards large output without waiting"() {
+        def large = "x" * BatchingTestOutputTestResultProcessor.MAX_BATCH_LENGTH
+        def event = new DefaultTestOutputEvent(StdOut, large)
+
+        when:
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "line\n"))
+        processor.output("1", new DefaultTestOutputEvent(StdOut, large))
+
+        then:
+        1 * target.output("1", { it.message == "line\n" + large })
+
+        when:
+        processor.output("1", event)
+
+        then:
+        1 * target.output("1", event)
+    }
+
+    def "forwards output when flushed"() {
+        when:
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "line\n"))
+        processor.flush()
+        processor.flush()
+
+        then:
+        1 * target.output("1", { it.message == "line\n" })
+        0 * target._
+    }
+}
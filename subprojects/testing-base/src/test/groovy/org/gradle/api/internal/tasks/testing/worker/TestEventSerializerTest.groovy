@@ -22,6 +22,8 @@ import org.gradle.api.tasks.testing.TestOutputEvent
 import org.gradle.api.tasks.testing.TestResult
 import org.gradle.internal.id.CompositeIdGenerator
 import org.gradle.internal.serialize.SerializerSpec
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder
 
 class TestEventSerializerTest extends SerializerSpec {
     def serializer = TestEventSerializer.create()
@@ -115,6 +117,44 @@ class TestEventSerializerTest extends SerializerSpec {
         result.name == "some-test"
     }
 
+    def "sends names shared by descriptors only once"() {
+        def descriptor1 = new DefaultTestDescriptor(new CompositeIdGenerator.CompositeId(1L, 2L), "some-class", "some-test")
+        def descriptor2 = new DefaultTestDescriptor(new CompositeIdGenerator.CompositeId(1L, 3L), "some-class", "some-test")
+        def descriptorSerializer = serializer.build(DefaultTestDescriptor)
+
+        when:
+        def bytes1 = toBytes(descriptor1, descriptorSerializer)
+        def bytes2 = toBytes(descriptor2, descriptorSerializer)
+        def result1 = fromBytes(bytes1, descriptorSerializer)
+        def result2 = fromBytes(bytes2, descriptorSerializer)
+
+        then:
+        bytes2.length == 7
+        result1.id == descriptor1.id
+        result1.className == "some-class"
+        result1.name == "some-test"
+        result2.id == descriptor2.id
+        result2.className == "some-class"
+        result2.name == "some-test"
+    }
+
+    def "serializes descriptors with more unique names than fit in the name tables"() {
+        def descriptors = (0..<12000).collect { new DefaultTestMethodDescriptor(new CompositeIdGenerator.CompositeId(1L, it as Long), "class-${it % 100}", "test-${it}") }
+        def descriptorSerializer = serializer.build(DefaultTestMethodDescriptor)
+
+        when:
+        def bytes = new ByteArrayOutputStream()
+        def encoder = new KryoBackedEncoder(bytes)
+        descriptors.each { descriptorSerializer.write(encoder, it) }
+        descriptors.each { descriptorSerializer.write(encoder, it) }
+        encoder.flush()
+        def decoder = new KryoBackedDecoder(new ByteArrayInputStream(bytes.toByteArray()))
+        def results = (0..<descriptors.size() * 2).collect { descriptorSerializer.read(decoder) }
+
+        then:
+        results.collect { [it.id, it.className, it.name] } == (descriptors + descriptors).collect { [it.id, it.className, it.name] }
+    }
+
     def "serializes TestStartEvent"() {
         def id = new CompositeIdGenerator.CompositeId(1L, 2L)
         def event1 = new TestStartEvent(123L, id)
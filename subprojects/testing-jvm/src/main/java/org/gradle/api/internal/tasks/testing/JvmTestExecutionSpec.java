@@ -21,6 +21,7 @@ import org.gradle.api.file.FileTree;
 import org.gradle.process.JavaForkOptions;
 import org.gradle.util.Path;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.Set;
 
@@ -36,8 +37,18 @@ public class JvmTestExecutionSpec implements TestExecutionSpec {
     private final JavaForkOptions javaForkOptions;
     private final int maxParallelForks;
     private final Set<String> previousFailedTestClasses;
+    private final File testDurationsFile;
+    private final File recordedTestDurationsFile;
+    private final boolean longestTestClassesFirst;
+    private final int shardIndex;
+    private final int shardCount;
 
     public JvmTestExecutionSpec(TestFramework testFramework, Iterable<? extends File> classpath, FileTree candidateClassFiles, boolean scanForTestClasses, FileCollection testClassesDirs, String path, Path identityPath, long forkEvery, JavaForkOptions javaForkOptions, int maxParallelForks, Set<String> previousFailedTestClasses) {
+        this(testFramework, classpath, candidateClassFiles, scanForTestClasses, testClassesDirs, path, identityPath, forkEvery, javaForkOptions, maxParallelForks, previousFailedTestClasses, null, null, false, 0, 1);
+    }
+
+    public JvmTestExecutionSpec(TestFramework testFramework, Iterable<? extends File> classpath, FileTree candidateClassFiles, boolean scanForTestClasses, FileCollection testClassesDirs, String path, Path identityPath, long forkEvery, JavaForkOptions javaForkOptions, int maxParallelForks, Set<String> previousFailedTestClasses,
+                                @Nullable File testDurationsFile, @Nullable File recordedTestDurationsFile, boolean longestTestClassesFirst, int shardIndex, int shardCount) {
         this.testFramework = testFramework;
         this.classpath = classpath;
         this.candidateClassFiles = candidateClassFiles;
@@ -49,6 +60,11 @@ public class JvmTestExecutionSpec implements TestExecutionSpec {
         this.javaForkOptions = javaForkOptions;
         this.maxParallelForks = maxParallelForks;
         this.previousFailedTestClasses = previousFailedTestClasses;
+        this.testDurationsFile = testDurationsFile;
+        this.recordedTestDurationsFile = recordedTestDurationsFile;
+        this.longestTestClassesFirst = longestTestClassesFirst;
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
     }
 
     public TestFramework getTestFramework() {
@@ -94,4 +110,32 @@ public class JvmTestExecutionSpec implements TestExecutionSpec {
     public Set<String> getPreviousFailedTestClasses() {
         return previousFailedTestClasses;
     }
+
+    /**
+     * The shared durations to split and order the test classes by, which are never written.
+     */
+    @Nullable
+    public File getTestDurationsFile() {
+        return testDurationsFile;
+    }
+
+    /**
+     * The file to record the durations of the executed test classes in, or {@code null} when durations are not recorded.
+     */
+    @Nullable
+    public File getRecordedTestDurationsFile() {
+        return recordedTestDurationsFile;
+    }
+
+    public boolean isLongestTestClassesFirst() {
+        return longestTestClassesFirst;
+    }
+
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
 }
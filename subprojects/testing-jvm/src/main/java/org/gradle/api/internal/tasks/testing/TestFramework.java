@@ -39,6 +39,13 @@ public interface TestFramework {
      */
     WorkerTestClassProcessorFactory getProcessorFactory();
 
+    /**
+     * Returns whether the test class processor created by {@link #getProcessorFactory()} runs each test class when it is given to it, rather than
+     * collecting the test classes and running them when it is stopped. Test classes are handed to the worker processes as they become idle only when
+     * this is true, and are otherwise assigned to the worker processes in turn.
+     */
+    boolean runsTestClassesEagerly();
+
     /**
      * Returns an action which is used to perform some framework specific worker process configuration. This action is
      * executed before starting each worker process.
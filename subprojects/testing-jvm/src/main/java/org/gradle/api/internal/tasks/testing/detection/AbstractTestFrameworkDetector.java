@@ -24,6 +24,10 @@ import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.internal.Factories;
 import org.gradle.internal.Factory;
 import org.gradle.internal.IoActions;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Type;
 import org.slf4j.Logger;
@@ -34,21 +38,29 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.gradle.internal.FileUtils.hasExtension;
 
+/**
+ * Detects test classes by inspecting their class files and those of their super classes.
+ *
+ * Class files may be processed concurrently. When a {@link TestClassDetectionCache} is set, what was learned from a class file is reused
+ * for any class file with the same content.
+ */
 public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor> implements TestFrameworkDetector {
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractTestFrameworkDetector.class);
     private static final String JAVA_LANG_OBJECT = "java/lang/Object";
 
-    private List<File> testClassDirectories;
+    private volatile List<File> testClassDirectories;
     private final ClassFileExtractionManager classFileExtractionManager;
     private final Map<File, Boolean> superClasses;
     private TestClassProcessor testClassProcessor;
+    private TestClassDetectionCache detectionCache;
+    private FileHasher fileHasher;
 
     private Set<File> testClassesDirectories;
     private Set<File> testClasspath;
@@ -56,7 +68,7 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
     protected AbstractTestFrameworkDetector(ClassFileExtractionManager classFileExtractionManager) {
         assert classFileExtractionManager != null;
         this.classFileExtractionManager = classFileExtractionManager;
-        this.superClasses = new HashMap<File, Boolean>();
+        this.superClasses = new ConcurrentHashMap<File, Boolean>();
     }
 
     protected abstract T createClassVisitor();
@@ -90,8 +102,15 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         if (testClassDirectories != null) {
             return;
         }
+        synchronized (this) {
+            if (testClassDirectories == null) {
+                testClassDirectories = collectClassDirectories();
+            }
+        }
+    }
 
-        testClassDirectories = new ArrayList<File>();
+    private List<File> collectClassDirectories() {
+        List<File> testClassDirectories = new ArrayList<File>();
 
         if (testClassesDirectories != null) {
             testClassDirectories.addAll(testClassesDirectories);
@@ -105,6 +124,7 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
                 }
             }
         }
+        return testClassDirectories;
     }
 
     @Override
@@ -117,6 +137,31 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         this.testClasspath = testClasspath;
     }
 
+    @Override
+    public void setDetectionCache(TestClassDetectionCache detectionCache, FileHasher fileHasher) {
+        this.detectionCache = detectionCache;
+        this.fileHasher = fileHasher;
+    }
+
+    private TestClass readClassFileCached(File testClassFile, Factory<String> fallbackClassNameProvider) {
+        if (detectionCache == null) {
+            return readClassFile(testClassFile, fallbackClassNameProvider);
+        }
+        Hasher hasher = Hashing.newHasher();
+        hasher.putString(getClass().getName());
+        hasher.putHash(fileHasher.hash(testClassFile));
+        HashCode key = hasher.hash();
+        TestClass testClass = detectionCache.get(key);
+        if (testClass == null) {
+            testClass = readClassFile(testClassFile, fallbackClassNameProvider);
+            // The name of a class that cannot be parsed depends on where the file was found, so only parsed classes are shared
+            if (testClass.isParsed()) {
+                detectionCache.put(key, testClass);
+            }
+        }
+        return testClass;
+    }
+
     private TestClass readClassFile(File testClassFile, Factory<String> fallbackClassNameProvider) {
         final TestClassVisitor classVisitor = createClassVisitor();
 
@@ -150,7 +195,7 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
      * parent class is a test class all the extending classes are marked as test classes.
      */
     private boolean processTestClass(File testClassFile, boolean superClass, Factory<String> fallbackClassNameProvider) {
-        TestClass testClass = readClassFile(testClassFile, fallbackClassNameProvider);
+        TestClass testClass = readClassFileCached(testClassFile, fallbackClassNameProvider);
 
         boolean isTest = testClass.isTest();
 
@@ -210,27 +255,33 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         this.testClassProcessor = testClassProcessor;
     }
 
-    private static class TestClass {
+    static class TestClass {
+        private final boolean parsed;
         private final boolean test;
         private final boolean isAbstract;
         private final String className;
         private final String superClassName;
 
         static TestClass forParseableFile(TestClassVisitor testClassVisitor) {
-            return new TestClass(testClassVisitor.isTest(), testClassVisitor.isAbstract(), testClassVisitor.getClassName(), testClassVisitor.getSuperClassName());
+            return new TestClass(true, testClassVisitor.isTest(), testClassVisitor.isAbstract(), testClassVisitor.getClassName(), testClassVisitor.getSuperClassName());
         }
 
         static TestClass forUnparseableFile(String className) {
-            return new TestClass(true, false, className, null);
+            return new TestClass(false, true, false, className, null);
         }
 
-        private TestClass(boolean test, boolean isAbstract, String className, String superClassName) {
+        private TestClass(boolean parsed, boolean test, boolean isAbstract, String className, String superClassName) {
+            this.parsed = parsed;
             this.test = test;
             this.isAbstract = isAbstract;
             this.className = className;
             this.superClassName = superClassName;
         }
 
+        boolean isParsed() {
+            return parsed;
+        }
+
         boolean isTest() {
             return test;
         }
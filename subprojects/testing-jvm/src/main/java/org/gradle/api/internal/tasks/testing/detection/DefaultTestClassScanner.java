@@ -16,6 +16,8 @@
 
 package org.gradle.api.internal.tasks.testing.detection;
 
+import com.google.common.collect.Lists;
+import org.gradle.api.Action;
 import org.gradle.api.file.EmptyFileVisitor;
 import org.gradle.api.file.FileTree;
 import org.gradle.api.file.FileVisitDetails;
@@ -23,32 +25,56 @@ import org.gradle.api.internal.file.RelativeFile;
 import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.regex.Pattern;
 
 /**
  * The default test class scanner. Depending on the availability of a test framework detector,
  * a detection or filename scan is performed to find test classes.
+ *
+ * When a build operation executor is available, class files are inspected concurrently, and the detected test classes are passed on
+ * ordered by name once all class files have been inspected.
  */
 public class DefaultTestClassScanner implements Runnable {
     private static final Pattern ANONYMOUS_CLASS_NAME = Pattern.compile(".*\\$\\d+");
+    private static final int CLASS_FILES_PER_OPERATION = 500;
     private final FileTree candidateClassFiles;
     private final TestFrameworkDetector testFrameworkDetector;
     private final TestClassProcessor testClassProcessor;
+    private final BuildOperationExecutor buildOperationExecutor;
 
     public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
                                    TestClassProcessor testClassProcessor) {
+        this(candidateClassFiles, testFrameworkDetector, testClassProcessor, null);
+    }
+
+    public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
+                                   TestClassProcessor testClassProcessor, @Nullable BuildOperationExecutor buildOperationExecutor) {
         this.candidateClassFiles = candidateClassFiles;
         this.testFrameworkDetector = testFrameworkDetector;
         this.testClassProcessor = testClassProcessor;
+        this.buildOperationExecutor = buildOperationExecutor;
     }
 
     @Override
     public void run() {
         if (testFrameworkDetector == null) {
             filenameScan();
-        } else {
+        } else if (buildOperationExecutor == null) {
             detectionScan();
+        } else {
+            parallelDetectionScan();
         }
     }
 
@@ -61,6 +87,31 @@ public class DefaultTestClassScanner implements Runnable {
         });
     }
 
+    private void parallelDetectionScan() {
+        final List<RelativeFile> classFiles = new ArrayList<RelativeFile>();
+        candidateClassFiles.visit(new ClassFileVisitor() {
+            public void visitClassFile(FileVisitDetails fileDetails) {
+                classFiles.add(new RelativeFile(fileDetails.getFile(), fileDetails.getRelativePath()));
+            }
+        });
+
+        final CollectingTestClassProcessor detectedClasses = new CollectingTestClassProcessor();
+        testFrameworkDetector.startDetection(detectedClasses);
+        buildOperationExecutor.runAll(new Action<BuildOperationQueue<RunnableBuildOperation>>() {
+            @Override
+            public void execute(BuildOperationQueue<RunnableBuildOperation> queue) {
+                for (List<RelativeFile> batch : Lists.partition(classFiles, CLASS_FILES_PER_OPERATION)) {
+                    queue.add(new DetectTestClasses(batch));
+                }
+            }
+        });
+
+        // Pass on the classes in a stable order, regardless of the order in which they were detected
+        for (TestClassRunInfo testClass : detectedClasses.getSortedTestClasses()) {
+            testClassProcessor.processTestClass(testClass);
+        }
+    }
+
     private void filenameScan() {
         candidateClassFiles.visit(new ClassFileVisitor() {
             public void visitClassFile(FileVisitDetails fileDetails) {
@@ -92,4 +143,55 @@ public class DefaultTestClassScanner implements Runnable {
     private String getClassName(FileVisitDetails fileDetails) {
         return fileDetails.getRelativePath().getPathString().replaceAll("\\.class", "").replace('/', '.');
     }
+
+    private class DetectTestClasses implements RunnableBuildOperation {
+        private final List<RelativeFile> classFiles;
+
+        DetectTestClasses(List<RelativeFile> classFiles) {
+            this.classFiles = classFiles;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            for (RelativeFile classFile : classFiles) {
+                testFrameworkDetector.processTestClass(classFile);
+            }
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Detect test classes");
+        }
+    }
+
+    private static class CollectingTestClassProcessor implements TestClassProcessor {
+        private final List<TestClassRunInfo> testClasses = new ArrayList<TestClassRunInfo>();
+
+        @Override
+        public void startProcessing(TestResultProcessor resultProcessor) {
+        }
+
+        @Override
+        public synchronized void processTestClass(TestClassRunInfo testClass) {
+            testClasses.add(testClass);
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void stopNow() {
+        }
+
+        synchronized List<TestClassRunInfo> getSortedTestClasses() {
+            Collections.sort(testClasses, new Comparator<TestClassRunInfo>() {
+                @Override
+                public int compare(TestClassRunInfo left, TestClassRunInfo right) {
+                    return left.getTestClassName().compareTo(right.getTestClassName());
+                }
+            });
+            return testClasses;
+        }
+    }
 }
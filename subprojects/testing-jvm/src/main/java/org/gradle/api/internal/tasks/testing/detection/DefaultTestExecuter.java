@@ -27,16 +27,22 @@ import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 import org.gradle.api.internal.tasks.testing.filter.DefaultTestFilter;
+import org.gradle.api.internal.tasks.testing.processors.LongestFirstTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.MaxNParallelTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.PatternMatchTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.RestartEveryNTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.RunPreviousFailedFirstTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.processors.ShardingTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.TestMainAction;
+import org.gradle.api.internal.tasks.testing.results.TestClassDurationRecorder;
+import org.gradle.api.internal.tasks.testing.results.TestClassDurationStore;
+import org.gradle.api.internal.tasks.testing.results.TestClassDurations;
 import org.gradle.api.internal.tasks.testing.worker.ForkingTestClassProcessor;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.internal.Factory;
 import org.gradle.internal.actor.ActorFactory;
+import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.time.Clock;
 import org.gradle.internal.work.WorkerLeaseRegistry;
@@ -61,11 +67,14 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
     private final Clock clock;
     private final DocumentationRegistry documentationRegistry;
     private final DefaultTestFilter testFilter;
+    private final TestClassDetectionCache detectionCache;
+    private final FileHasher fileHasher;
     private TestClassProcessor processor;
 
     public DefaultTestExecuter(WorkerProcessFactory workerFactory, ActorFactory actorFactory, ModuleRegistry moduleRegistry,
                                WorkerLeaseRegistry workerLeaseRegistry, BuildOperationExecutor buildOperationExecutor, int maxWorkerCount,
-                               Clock clock, DocumentationRegistry documentationRegistry, DefaultTestFilter testFilter) {
+                               Clock clock, DocumentationRegistry documentationRegistry, DefaultTestFilter testFilter,
+                               TestClassDetectionCache detectionCache, FileHasher fileHasher) {
         this.workerFactory = workerFactory;
         this.actorFactory = actorFactory;
         this.moduleRegistry = moduleRegistry;
@@ -75,6 +84,8 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
         this.clock = clock;
         this.documentationRegistry = documentationRegistry;
         this.testFilter = testFilter;
+        this.detectionCache = detectionCache;
+        this.fileHasher = fileHasher;
     }
 
     @Override
@@ -94,10 +105,23 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
                 return new RestartEveryNTestClassProcessor(forkingProcessorFactory, testExecutionSpec.getForkEvery());
             }
         };
-        processor =
-            new PatternMatchTestClassProcessor(testFilter,
-                new RunPreviousFailedFirstTestClassProcessor(testExecutionSpec.getPreviousFailedTestClasses(),
-                    new MaxNParallelTestClassProcessor(getMaxParallelForks(testExecutionSpec), reforkingProcessorFactory, actorFactory)));
+        // Shards are split by the shared durations only, as the split must be the same on every machine
+        final TestClassDurations sharedDurations = testExecutionSpec.getTestDurationsFile() == null ? null : new TestClassDurationStore(testExecutionSpec.getTestDurationsFile()).load();
+        final TestClassDurationStore durationStore = testExecutionSpec.getRecordedTestDurationsFile() == null ? null : new TestClassDurationStore(testExecutionSpec.getRecordedTestDurationsFile());
+        TestClassProcessor orderingProcessor =
+            new RunPreviousFailedFirstTestClassProcessor(testExecutionSpec.getPreviousFailedTestClasses(),
+                new MaxNParallelTestClassProcessor(getMaxParallelForks(testExecutionSpec), reforkingProcessorFactory, actorFactory, testFramework.runsTestClassesEagerly()));
+        if (testExecutionSpec.isLongestTestClassesFirst()) {
+            TestClassDurations durations = sharedDurations;
+            if (durations == null) {
+                durations = durationStore == null ? TestClassDurations.none() : durationStore.load();
+            }
+            orderingProcessor = new LongestFirstTestClassProcessor(durations, orderingProcessor);
+        }
+        if (testExecutionSpec.getShardCount() > 1) {
+            orderingProcessor = new ShardingTestClassProcessor(sharedDurations, testExecutionSpec.getShardIndex(), testExecutionSpec.getShardCount(), orderingProcessor);
+        }
+        processor = new PatternMatchTestClassProcessor(testFilter, orderingProcessor);
 
         final FileTree testClassFiles = testExecutionSpec.getCandidateClassFiles();
 
@@ -106,14 +130,24 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
             TestFrameworkDetector testFrameworkDetector = testFramework.getDetector();
             testFrameworkDetector.setTestClasses(testExecutionSpec.getTestClassesDirs().getFiles());
             testFrameworkDetector.setTestClasspath(classpath);
-            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor);
+            testFrameworkDetector.setDetectionCache(detectionCache, fileHasher);
+            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor, buildOperationExecutor);
         } else {
             detector = new DefaultTestClassScanner(testClassFiles, null, processor);
         }
 
         final Object testTaskOperationId = buildOperationExecutor.getCurrentOperation().getParentId();
 
-        new TestMainAction(detector, processor, testResultProcessor, clock, testTaskOperationId, testExecutionSpec.getPath(), "Gradle Test Run " + testExecutionSpec.getIdentityPath()).run();
+        if (durationStore == null) {
+            new TestMainAction(detector, processor, testResultProcessor, clock, testTaskOperationId, testExecutionSpec.getPath(), "Gradle Test Run " + testExecutionSpec.getIdentityPath()).run();
+            return;
+        }
+        TestClassDurationRecorder durationRecorder = new TestClassDurationRecorder(testResultProcessor);
+        try {
+            new TestMainAction(detector, processor, durationRecorder, clock, testTaskOperationId, testExecutionSpec.getPath(), "Gradle Test Run " + testExecutionSpec.getIdentityPath()).run();
+        } finally {
+            durationStore.update(durationRecorder.getDurations());
+        }
     }
 
     @Override
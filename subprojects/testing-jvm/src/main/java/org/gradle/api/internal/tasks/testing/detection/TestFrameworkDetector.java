@@ -17,6 +17,7 @@ package org.gradle.api.internal.tasks.testing.detection;
 
 import org.gradle.api.internal.file.RelativeFile;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.internal.hash.FileHasher;
 
 import java.io.File;
 import java.util.Set;
@@ -29,4 +30,9 @@ public interface TestFrameworkDetector {
     void setTestClasses(Set<File> testClasses);
 
     void setTestClasspath(Set<File> classpath);
+
+    /**
+     * Reuses what was learned from class files with the same content, including in earlier builds.
+     */
+    void setDetectionCache(TestClassDetectionCache detectionCache, FileHasher fileHasher);
 }
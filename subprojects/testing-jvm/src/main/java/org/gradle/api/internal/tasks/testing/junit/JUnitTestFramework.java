@@ -51,6 +51,11 @@ public class JUnitTestFramework implements TestFramework {
             filter.getCommandLineIncludePatterns()));
     }
 
+    @Override
+    public boolean runsTestClassesEagerly() {
+        return true;
+    }
+
     @Override
     public Action<WorkerProcessBuilder> getWorkerConfigurationAction() {
         return new Action<WorkerProcessBuilder>() {
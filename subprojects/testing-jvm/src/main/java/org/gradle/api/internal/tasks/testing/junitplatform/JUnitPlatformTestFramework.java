@@ -55,6 +55,12 @@ public class JUnitPlatformTestFramework implements TestFramework {
             filter.getCommandLineIncludePatterns()));
     }
 
+    @Override
+    public boolean runsTestClassesEagerly() {
+        // The test classes are collected and run together when the processor is stopped
+        return false;
+    }
+
     @Override
     public Action<WorkerProcessBuilder> getWorkerConfigurationAction() {
         return new Action<WorkerProcessBuilder>() {
@@ -76,6 +76,12 @@ public class TestNGTestFramework implements TestFramework {
         return new TestClassProcessorFactoryImpl(this.options.getOutputDirectory(), spec, suiteFiles);
     }
 
+    @Override
+    public boolean runsTestClassesEagerly() {
+        // The test classes are collected and run together when the processor is stopped
+        return false;
+    }
+
     private void verifyConfigFailurePolicy() {
         if (!options.getConfigFailurePolicy().equals(TestNGOptions.DEFAULT_CONFIG_FAILURE_POLICY)) {
             verifyMethodExists("setConfigFailurePolicy", String.class,
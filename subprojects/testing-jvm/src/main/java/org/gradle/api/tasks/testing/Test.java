@@ -21,6 +21,7 @@ import groovy.lang.Closure;
 import org.gradle.StartParameter;
 import org.gradle.api.Action;
 import org.gradle.api.Incubating;
+import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.JavaVersion;
 import org.gradle.api.NonNullApi;
 import org.gradle.api.file.FileCollection;
@@ -34,6 +35,7 @@ import org.gradle.api.internal.tasks.testing.JvmTestExecutionSpec;
 import org.gradle.api.internal.tasks.testing.TestExecuter;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.detection.DefaultTestExecuter;
+import org.gradle.api.internal.tasks.testing.detection.TestClassDetectionCache;
 import org.gradle.api.internal.tasks.testing.filter.DefaultTestFilter;
 import org.gradle.api.internal.tasks.testing.junit.JUnitTestFramework;
 import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
@@ -44,9 +46,11 @@ import org.gradle.api.specs.Spec;
 import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.Classpath;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.InputFiles;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.PathSensitive;
 import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.SkipWhenEmpty;
@@ -59,6 +63,7 @@ import org.gradle.api.tasks.util.PatternFilterable;
 import org.gradle.internal.Actions;
 import org.gradle.internal.Cast;
 import org.gradle.internal.actor.ActorFactory;
+import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.jvm.UnsupportedJavaRuntimeException;
 import org.gradle.internal.jvm.inspection.JvmVersionDetector;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -148,6 +153,10 @@ public class Test extends AbstractTestTask implements JavaForkOptions, PatternFi
     private boolean scanForTestClasses = true;
     private long forkEvery;
     private int maxParallelForks = 1;
+    private boolean longestTestClassesFirst;
+    private int shardIndex;
+    private int shardCount = 1;
+    private File testDurationsFile;
     private TestExecuter<JvmTestExecutionSpec> testExecuter;
 
     public Test() {
@@ -558,7 +567,8 @@ public class Test extends AbstractTestTask implements JavaForkOptions, PatternFi
     protected JvmTestExecutionSpec createTestExecutionSpec() {
         JavaForkOptions javaForkOptions = getForkOptionsFactory().newJavaForkOptions();
         copyTo(javaForkOptions);
-        return new JvmTestExecutionSpec(getTestFramework(), getClasspath(), getCandidateClassFiles(), isScanForTestClasses(), getTestClassesDirs(), getPath(), getIdentityPath(), getForkEvery(), javaForkOptions, getMaxParallelForks(), getPreviousFailedTestClasses());
+        return new JvmTestExecutionSpec(getTestFramework(), getClasspath(), getCandidateClassFiles(), isScanForTestClasses(), getTestClassesDirs(), getPath(), getIdentityPath(), getForkEvery(), javaForkOptions, getMaxParallelForks(), getPreviousFailedTestClasses(),
+            getTestDurationsFile(), getRecordedTestDurationsFile(), isLongestTestClassesFirst(), getShardIndex(), getShardCount());
     }
 
     private Set<String> getPreviousFailedTestClasses() {
@@ -590,6 +600,10 @@ public class Test extends AbstractTestTask implements JavaForkOptions, PatternFi
             getLogger().info("Running tests for remote debugging.");
         }
 
+        if (getShardIndex() >= getShardCount()) {
+            throw new InvalidUserDataException("Cannot run shard " + getShardIndex() + " of " + getPath() + ", which is split into " + getShardCount() + " shards.");
+        }
+
         try {
             super.executeTests();
         } finally {
@@ -606,7 +620,9 @@ public class Test extends AbstractTestTask implements JavaForkOptions, PatternFi
                 getServices().get(StartParameter.class).getMaxWorkerCount(),
                 getServices().get(Clock.class),
                 getServices().get(DocumentationRegistry.class),
-                (DefaultTestFilter) getFilter());
+                (DefaultTestFilter) getFilter(),
+                getServices().get(TestClassDetectionCache.class),
+                getServices().get(FileHasher.class));
         } else {
             return testExecuter;
         }
@@ -1031,6 +1047,128 @@ public class Test extends AbstractTestTask implements JavaForkOptions, PatternFi
         this.maxParallelForks = maxParallelForks;
     }
 
+    /**
+     * Returns whether the test classes that took longest in previous runs are executed first. Defaults to false.
+     *
+     * <p>
+     * When tests are executed in parallel, starting the longest test classes first prevents a long test class from running on its own at the end of the test run.
+     * Test classes that did not run before are expected to take as long as an average test class. The durations are taken from the
+     * {@link #getTestDurationsFile() test durations file} when one is set, and otherwise from the durations recorded by previous runs of this task on this machine.
+     * </p>
+     *
+     * @see #getTestDurationsFile()
+     * @since 5.5
+     */
+    @Incubating
+    @Internal
+    public boolean isLongestTestClassesFirst() {
+        return longestTestClassesFirst;
+    }
+
+    /**
+     * Sets whether the test classes that took longest in previous runs are executed first.
+     *
+     * @since 5.5
+     */
+    @Incubating
+    public void setLongestTestClassesFirst(boolean longestTestClassesFirst) {
+        this.longestTestClassesFirst = longestTestClassesFirst;
+    }
+
+    /**
+     * Returns the number of shards that the test classes of this task are split into. Defaults to 1.
+     *
+     * <p>
+     * Only the test classes of the shard given by {@link #getShardIndex()} are executed, which allows running the shards of a single test task on different machines.
+     * When a {@link #getTestDurationsFile() test durations file} is set, the test classes are split into shards with about the same expected duration,
+     * and all shards compute the same split when they see the same test classes and the same durations file. Otherwise, test classes are split by the hash of their name.
+     * </p>
+     *
+     * @since 5.5
+     */
+    @Incubating
+    @Input
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Sets the number of shards that the test classes of this task are split into.
+     *
+     * @param shardCount The number of shards. Use 1 to execute all test classes.
+     * @since 5.5
+     */
+    @Incubating
+    public void setShardCount(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Cannot set shardCount to a value less than 1.");
+        }
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Returns the zero-based index of the shard whose test classes are executed. Defaults to 0.
+     *
+     * @see #getShardCount()
+     * @since 5.5
+     */
+    @Incubating
+    @Input
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    /**
+     * Sets the zero-based index of the shard whose test classes are executed. Must be less than {@link #getShardCount()}.
+     *
+     * @since 5.5
+     */
+    @Incubating
+    public void setShardIndex(int shardIndex) {
+        if (shardIndex < 0) {
+            throw new IllegalArgumentException("Cannot set shardIndex to a value less than 0.");
+        }
+        this.shardIndex = shardIndex;
+    }
+
+    /**
+     * Returns the file with the durations of the test classes of this task that are used to order and shard the test classes. Defaults to null.
+     *
+     * <p>
+     * The file contains {@code <class name>=<milliseconds>} lines. It is only read, so it can be shared between the machines that run different shards of this task.
+     * When {@link #isLongestTestClassesFirst() ordering} or {@link #getShardCount() sharding} is enabled, each run records the durations of the test classes it executed
+     * in {@code test-durations.txt} in the {@link #getTemporaryDir() temporary directory} of this task. These files can be merged to create the shared file.
+     * </p>
+     *
+     * @since 5.5
+     */
+    @Incubating
+    @Nullable
+    @Optional
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getTestDurationsFile() {
+        return testDurationsFile;
+    }
+
+    /**
+     * Sets the file with the durations of the test classes of this task that are used to order and shard the test classes.
+     *
+     * @since 5.5
+     */
+    @Incubating
+    public void setTestDurationsFile(@Nullable File testDurationsFile) {
+        this.testDurationsFile = testDurationsFile;
+    }
+
+    @Nullable
+    private File getRecordedTestDurationsFile() {
+        if (!isLongestTestClassesFirst() && getShardCount() == 1) {
+            return null;
+        }
+        return new File(getTemporaryDir(), "test-durations.txt");
+    }
+
     /**
      * Returns the classes files to scan for test classes.
      *
@@ -21,7 +21,9 @@ import org.gradle.api.file.FileVisitDetails
 import org.gradle.api.file.FileVisitor
 import org.gradle.api.file.RelativePath
 import org.gradle.api.internal.file.DefaultFileVisitDetails
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
 import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.junit.Test
 import spock.lang.Specification
 import spock.lang.Subject
@@ -78,6 +80,37 @@ class DefaultTestClassScannerTest extends Specification {
         0 * _._
     }
 
+    @Test
+    void detectsTestClassesInOperationsAndPassesThemOnOrderedByName() {
+        given:
+        def buildOperationExecutor = new TestBuildOperationExecutor()
+        def target = Mock(TestClassProcessor)
+        def parallelScanner = new DefaultTestClassScanner(files, detector, target, buildOperationExecutor)
+        def detected
+        detector.startDetection(_) >> { args -> detected = args[0] }
+        files.visit(_) >> { args ->
+            FileVisitor visitor = args[0]
+            ['ClassB', 'ClassA', 'ClassC'].each { visitor.visitFile(stubFileVisitDetails(it)) }
+        }
+        detector.processTestClass(_) >> { args ->
+            String name = args[0].relativePath.pathString - '.class'
+            if (name != 'ClassC') {
+                detected.processTestClass(new DefaultTestClassRunInfo(name))
+            }
+            true
+        }
+
+        when:
+        parallelScanner.run()
+
+        then:
+        1 * target.processTestClass(new DefaultTestClassRunInfo('ClassA'))
+        then:
+        1 * target.processTestClass(new DefaultTestClassRunInfo('ClassB'))
+        0 * target._
+        buildOperationExecutor.operations*.displayName == ['Detect test classes']
+    }
+
     FileVisitDetails stubFileVisitDetails(String className) {
         return new DefaultFileVisitDetails(new File("${className}.class"), new RelativePath(false, "${className}.class"), null, null, null)
     }